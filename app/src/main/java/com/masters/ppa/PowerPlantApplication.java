@@ -3,6 +3,7 @@ package com.masters.ppa;
 import android.app.Application;
 
 import com.masters.ppa.data.database.AppDatabase;
+import com.masters.ppa.data.parser.MetricClassificationRegistry;
 import com.masters.ppa.utils.FileUtils;
 
 /**
@@ -19,6 +20,7 @@ public class PowerPlantApplication extends Application {
         
         AppDatabase.getInstance(this);
         FileUtils.createRequiredDirectories(this);
+        MetricClassificationRegistry.getInstance(this);
     }
 
     /**
@@ -0,0 +1,71 @@
+package com.masters.ppa.data.api;
+
+import java.util.Locale;
+
+/**
+ * Square of the weather grid a station falls in. Stations in the same cell share one
+ * forecast, requested for the cell center.
+ */
+public final class GridCell {
+
+    /**
+     * Cell size in degrees, about the resolution of the Open-Meteo models (~11 km)
+     */
+    public static final double SIZE_DEG = 0.1;
+
+    private final int latIndex;
+    private final int lonIndex;
+
+    private GridCell(int latIndex, int lonIndex) {
+        this.latIndex = latIndex;
+        this.lonIndex = lonIndex;
+    }
+
+    public static GridCell of(double lat, double lon) {
+        return new GridCell((int) Math.floor(lat / SIZE_DEG), (int) Math.floor(lon / SIZE_DEG));
+    }
+
+    public double getLatitude() {
+        return (latIndex + 0.5) * SIZE_DEG;
+    }
+
+    public double getLongitude() {
+        return (lonIndex + 0.5) * SIZE_DEG;
+    }
+
+    /**
+     * Stable identifier, usable in file names
+     */
+    public String getKey() {
+        return latIndex + "_" + lonIndex;
+    }
+
+    /**
+     * Center coordinates as sent to the API
+     */
+    String formatLatitude() {
+        return String.format(Locale.US, "%.4f", getLatitude());
+    }
+
+    String formatLongitude() {
+        return String.format(Locale.US, "%.4f", getLongitude());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GridCell)) return false;
+        GridCell other = (GridCell) o;
+        return latIndex == other.latIndex && lonIndex == other.lonIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * latIndex + lonIndex;
+    }
+
+    @Override
+    public String toString() {
+        return "GridCell(" + formatLatitude() + ", " + formatLongitude() + ")";
+    }
+}
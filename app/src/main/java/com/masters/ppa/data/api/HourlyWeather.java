@@ -0,0 +1,239 @@
+package com.masters.ppa.data.api;
+
+import com.masters.ppa.utils.DateUtils;
+import com.masters.ppa.utils.FileUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Hourly Open-Meteo weather as primitive columns, sorted by time.
+ *
+ * Times are epoch seconds of the location's local time taken as UTC (the convention of the
+ * other stores); missing values are NaN. Values keep the precision the API returned.
+ */
+public final class HourlyWeather {
+
+    public static final String COL_TIME = "time";
+    public static final String COL_TEMPERATURE = "temperature_2m";
+    public static final String COL_CLOUD_COVER = "cloud_cover";
+    public static final String COL_SHORTWAVE_RADIATION = "shortwave_radiation";
+    public static final String COL_DIRECT_RADIATION = "direct_radiation";
+    public static final String COL_DIFFUSE_RADIATION = "diffuse_radiation";
+    public static final String COL_WIND_SPEED = "wind_speed_10m";
+
+    /**
+     * Value columns, in Open-Meteo "hourly" variable names and CSV order
+     */
+    public static final String[] VALUE_COLUMNS = {
+        COL_TEMPERATURE, COL_CLOUD_COVER, COL_SHORTWAVE_RADIATION,
+        COL_DIRECT_RADIATION, COL_DIFFUSE_RADIATION, COL_WIND_SPEED
+    };
+
+    private static final DateTimeFormatter CSV_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+    private final long[] epochs;
+    // values[column][row], columns in VALUE_COLUMNS order
+    private final float[][] values;
+
+    HourlyWeather(long[] epochs, float[][] values) {
+        this.epochs = epochs;
+        this.values = values;
+    }
+
+    /**
+     * Parse the "hourly" object of an Open-Meteo response; hours without any value are dropped
+     */
+    public static HourlyWeather fromJson(JSONObject hourly) throws JSONException {
+        JSONArray times = hourly.getJSONArray("time");
+        JSONArray[] arrays = new JSONArray[VALUE_COLUMNS.length];
+        for (int c = 0; c < VALUE_COLUMNS.length; c++) {
+            arrays[c] = hourly.getJSONArray(VALUE_COLUMNS[c]);
+        }
+
+        int size = times.length();
+        long[] epochs = new long[size];
+        float[][] values = new float[VALUE_COLUMNS.length][size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            LocalDateTime time = DateUtils.parseLocalDateTime(times.getString(i));
+            if (time == null) {
+                continue;
+            }
+            boolean hasValidData = false;
+            for (int c = 0; c < VALUE_COLUMNS.length; c++) {
+                double value = arrays[c].optDouble(i, Double.NaN);
+                values[c][count] = (float) value;
+                hasValidData |= !Double.isNaN(value);
+            }
+            if (hasValidData) {
+                epochs[count++] = time.toEpochSecond(ZoneOffset.UTC);
+            }
+        }
+        return new HourlyWeather(epochs, values).truncate(count);
+    }
+
+    public int size() {
+        return epochs.length;
+    }
+
+    public long getEpoch(int i) {
+        return epochs[i];
+    }
+
+    public boolean isEmpty() {
+        return epochs.length == 0;
+    }
+
+    public LocalDateTime getTime(int i) {
+        return LocalDateTime.ofEpochSecond(epochs[i], 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Value of a column at row i (NaN if missing)
+     * @param column Index into VALUE_COLUMNS
+     */
+    public float get(int column, int i) {
+        return values[column][i];
+    }
+
+    /**
+     * Value at row i, or defaultValue if missing
+     */
+    public float get(int column, int i, float defaultValue) {
+        float value = values[column][i];
+        return Float.isNaN(value) ? defaultValue : value;
+    }
+
+    /**
+     * Column index of an Open-Meteo variable name, or -1
+     */
+    public static int columnIndex(String name) {
+        for (int c = 0; c < VALUE_COLUMNS.length; c++) {
+            if (VALUE_COLUMNS[c].equals(name)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Time of the first / last row as the API formats it, or null if empty
+     */
+    public String getFirstTimestamp() {
+        return epochs.length > 0 ? CSV_TIME_FORMAT.format(getTime(0)) : null;
+    }
+
+    public String getLastTimestamp() {
+        return epochs.length > 0 ? CSV_TIME_FORMAT.format(getTime(epochs.length - 1)) : null;
+    }
+
+    /**
+     * Union of two series by hour; where both have a row for the same hour the newer one wins.
+     * Duplicate hours within a series (e.g. repeated local times around DST) keep the last row.
+     */
+    public static HourlyWeather merge(HourlyWeather older, HourlyWeather newer) {
+        int capacity = older.size() + newer.size();
+        long[] epochs = new long[capacity];
+        float[][] values = new float[VALUE_COLUMNS.length][capacity];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < older.size() || j < newer.size()) {
+            HourlyWeather source;
+            int row;
+            if (j >= newer.size() || (i < older.size() && older.epochs[i] < newer.epochs[j])) {
+                source = older;
+                row = i++;
+            } else {
+                // Equal hours take the newer row; the older one is then skipped as a duplicate
+                source = newer;
+                row = j++;
+                while (i < older.size() && older.epochs[i] == newer.epochs[row]) {
+                    i++;
+                }
+            }
+            int target = count > 0 && epochs[count - 1] == source.epochs[row] ? count - 1 : count++;
+            epochs[target] = source.epochs[row];
+            for (int c = 0; c < values.length; c++) {
+                values[c][target] = source.values[c][row];
+            }
+        }
+        return new HourlyWeather(epochs, values).truncate(count);
+    }
+
+    /**
+     * Rows at or after the given epoch second
+     */
+    public HourlyWeather since(long epoch) {
+        int from = 0;
+        while (from < epochs.length && epochs[from] < epoch) {
+            from++;
+        }
+        if (from == 0) {
+            return this;
+        }
+        float[][] trimmed = new float[values.length][];
+        for (int c = 0; c < values.length; c++) {
+            trimmed[c] = Arrays.copyOfRange(values[c], from, epochs.length);
+        }
+        return new HourlyWeather(Arrays.copyOfRange(epochs, from, epochs.length), trimmed);
+    }
+
+    long[] epochs() {
+        return epochs;
+    }
+
+    float[] column(int c) {
+        return values[c];
+    }
+
+    /**
+     * Export as CSV (time + VALUE_COLUMNS), values in shortest round-trip form
+     */
+    public void writeCsv(File file) throws IOException {
+        FileUtils.ensureDirectoryExists(file.getParentFile());
+        StringBuilder line = new StringBuilder(96);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, false))) {
+            writer.write(COL_TIME);
+            for (String column : VALUE_COLUMNS) {
+                writer.write(',');
+                writer.write(column);
+            }
+            writer.write('\n');
+            for (int i = 0; i < epochs.length; i++) {
+                line.setLength(0);
+                line.append(CSV_TIME_FORMAT.format(getTime(i)));
+                for (float[] column : values) {
+                    line.append(',');
+                    if (!Float.isNaN(column[i]) && !Float.isInfinite(column[i])) {
+                        line.append(column[i]);
+                    }
+                }
+                line.append('\n');
+                writer.write(line.toString());
+            }
+        }
+    }
+
+    private HourlyWeather truncate(int count) {
+        if (count == epochs.length) {
+            return this;
+        }
+        float[][] truncated = new float[values.length][];
+        for (int c = 0; c < values.length; c++) {
+            truncated[c] = Arrays.copyOf(values[c], count);
+        }
+        return new HourlyWeather(Arrays.copyOf(epochs, count), truncated);
+    }
+}
@@ -0,0 +1,170 @@
+package com.masters.ppa.data.api;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Application-scoped OkHttp client shared by all Solarman and Open-Meteo requests.
+ *
+ * One connection pool keeps TLS connections alive between requests (HTTP/2 is negotiated
+ * via ALPN where the server supports it, gzip is requested and decoded transparently).
+ * The shared dispatcher limits enqueued calls; synchronous calls are limited per host
+ * by an interceptor, since the dispatcher does not queue them.
+ */
+public final class HttpClientProvider {
+
+    private static final String TAG = "HttpClientProvider";
+
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS = 16;
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+    private static final int DEFAULT_TIMEOUT_MS = 20000;
+
+    public static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private static OkHttpClient client;
+
+    private HttpClientProvider() {
+    }
+
+    /**
+     * Get shared client with default timeouts
+     */
+    public static synchronized OkHttpClient getClient() {
+        if (client == null) {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(MAX_REQUESTS);
+            dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+            client = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .dispatcher(dispatcher)
+                    .addInterceptor(new HostConcurrencyInterceptor(MAX_REQUESTS_PER_HOST))
+                    .connectTimeout(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .readTimeout(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .writeTimeout(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .retryOnConnectionFailure(true)
+                    .build();
+            Log.d(TAG, "Shared HTTP client created");
+        }
+        return client;
+    }
+
+    /**
+     * Get client with custom timeouts; shares connection pool and dispatcher with the default client
+     */
+    public static OkHttpClient getClient(int timeoutMs) {
+        if (timeoutMs == DEFAULT_TIMEOUT_MS) {
+            return getClient();
+        }
+        return getClient().newBuilder()
+                .connectTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Limits concurrent calls per host (covers synchronous execute() calls). A slot is held
+     * until the response body is closed, since callers read bodies as streams.
+     */
+    private static class HostConcurrencyInterceptor implements Interceptor {
+        private final int permitsPerHost;
+        private final Map<String, Semaphore> hostPermits = new HashMap<>();
+
+        HostConcurrencyInterceptor(int permitsPerHost) {
+            this.permitsPerHost = permitsPerHost;
+        }
+
+        private synchronized Semaphore permitsFor(String host) {
+            Semaphore permits = hostPermits.get(host);
+            if (permits == null) {
+                permits = new Semaphore(permitsPerHost, true);
+                hostPermits.put(host, permits);
+            }
+            return permits;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Semaphore permits = permitsFor(chain.request().url().host());
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new java.io.InterruptedIOException("Interrupted waiting for host slot");
+            }
+            Response response;
+            try {
+                response = chain.proceed(chain.request());
+            } catch (IOException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+            ResponseBody body = response.body();
+            if (body == null) {
+                permits.release();
+                return response;
+            }
+            return response.newBuilder().body(new PermitResponseBody(body, permits)).build();
+        }
+    }
+
+    /**
+     * Response body that returns its host slot when closed (once, however often close is called)
+     */
+    private static class PermitResponseBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        PermitResponseBody(ResponseBody delegate, Semaphore permits) {
+            this.delegate = delegate;
+            AtomicBoolean released = new AtomicBoolean();
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
@@ -10,18 +10,17 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
 /**
  * Service for interacting with Solarman API
  */
@@ -29,13 +28,13 @@ public class InverterApiService {
     
     private static final String TAG = "InverterApiService";
     private static final String API_BASE = "https://globalapi.solarmanpv.com";
+    private static final int TIMEOUT_MS = 15000;
+    private static final int MAX_ATTEMPTS = 2;
     
     private final Context context;
     private final ExecutorService executor;
     private final SolarmanApiConfigRepository configRepository;
-    
-    private String cachedAccessToken;
-    private long tokenExpiryTime = 0;
+    private final OkHttpClient httpClient = HttpClientProvider.getClient(TIMEOUT_MS);
 
     public InverterApiService(Context context) {
         this.context = context.getApplicationContext();
@@ -61,147 +60,10 @@ public class InverterApiService {
     }
 
     /**
-     * Get access token (synchronous, called on background thread)
+     * Get access token (synchronous, called on background thread); shared across services
      */
     private String getAccessToken() throws Exception {
-        // Check if we have a valid cached token
-        if (cachedAccessToken != null && System.currentTimeMillis() < tokenExpiryTime) {
-            Log.d(TAG, "✅ Using cached access token (expires in " + 
-                  ((tokenExpiryTime - System.currentTimeMillis()) / 1000 / 60) + " minutes)");
-            return cachedAccessToken;
-        }
-
-        SolarmanApiConfig config = configRepository.getSolarmanApiConfigSync();
-        if (config == null) {
-            throw new Exception("Solarman API configuration not found. Please configure in Settings.");
-        }
-
-        // Validate required fields
-        if (config.getAppId() == null || config.getAppId().isEmpty()) {
-            throw new Exception("App ID is not configured");
-        }
-        if (config.getAppSecret() == null || config.getAppSecret().isEmpty()) {
-            throw new Exception("App Secret is not configured");
-        }
-        if (config.getEmail() == null || config.getEmail().isEmpty()) {
-            throw new Exception("Email is not configured");
-        }
-        if (config.getPassword() == null || config.getPassword().isEmpty()) {
-            throw new Exception("Password is not configured");
-        }
-
-        String url = API_BASE + "/account/v1.0/token?appId=" + config.getAppId() + "&language=en";
-        
-        // Hash password with SHA-256 (Solarman API requires hashed password)
-        String hashedPassword = hashPassword(config.getPassword());
-        
-        JSONObject payload = new JSONObject();
-        payload.put("appSecret", config.getAppSecret());
-        payload.put("email", config.getEmail());
-        payload.put("password", hashedPassword);
-
-        Log.d(TAG, "🔐 Requesting access token from Solarman API...");
-        Log.d(TAG, "URL: " + url);
-        Log.d(TAG, "Payload: {appSecret: ***, email: " + config.getEmail() + ", password: (hashed)}");
-
-        HttpURLConnection connection = null;
-        try {
-            URL requestUrl = new URL(url);
-            connection = (HttpURLConnection) requestUrl.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setDoOutput(true);
-            connection.setConnectTimeout(15000);
-            connection.setReadTimeout(15000);
-
-            // Send request
-            String payloadString = payload.toString();
-            // Log payload without showing hashed password (for security)
-            JSONObject logPayload = new JSONObject();
-            logPayload.put("appSecret", "***");
-            logPayload.put("email", config.getEmail());
-            logPayload.put("password", "(hashed - SHA-256)");
-            Log.d(TAG, "Sending payload: " + logPayload.toString());
-            
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = payloadString.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-                os.flush();
-            }
-
-            // Read response
-            // NOTE: getResponseCode() must be called before reading the response
-            int responseCode = connection.getResponseCode();
-            Log.d(TAG, "Response code: " + responseCode);
-            
-            String responseBody = readResponse(connection, responseCode);
-            Log.d(TAG, "Response body: " + (responseBody.length() > 200 ? 
-                  responseBody.substring(0, 200) + "..." : responseBody));
-
-            // Try to parse JSON response regardless of status code
-            JSONObject response;
-            try {
-                response = new JSONObject(responseBody);
-            } catch (JSONException e) {
-                Log.e(TAG, "❌ Failed to parse response as JSON", e);
-                throw new Exception("HTTP Error " + responseCode + ": Invalid JSON response: " + responseBody);
-            }
-            
-            // Check for error messages in response first
-            if (response.has("msg") && !response.isNull("msg")) {
-                String errorMsg = response.optString("msg", "");
-                if (!errorMsg.isEmpty()) {
-                    Log.e(TAG, "❌ API Error message: " + errorMsg);
-                    // Include response code in error if not 200
-                    if (responseCode != 200) {
-                        throw new Exception("HTTP Error " + responseCode + ": " + errorMsg);
-                    } else if (!response.optBoolean("success", false)) {
-                        throw new Exception("Authentication failed: " + errorMsg);
-                    }
-                }
-            }
-            
-            if (responseCode != 200) {
-                Log.e(TAG, "❌ HTTP Error " + responseCode + ": " + responseBody);
-                String errorMsg = response.optString("msg", "Unknown error");
-                throw new Exception("HTTP Error " + responseCode + ": " + errorMsg);
-            }
-            
-            if (!response.optBoolean("success", false)) {
-                Log.e(TAG, "❌ Authentication failed. Response: " + response.toString());
-                String errorMsg = response.optString("msg", "Authentication failed");
-                throw new Exception("Authentication failed: " + errorMsg);
-            }
-
-            if (!response.has("access_token") || response.isNull("access_token")) {
-                Log.e(TAG, "❌ No access_token in response: " + response.toString());
-                throw new Exception("No access_token in response: " + response.toString());
-            }
-
-            String accessToken = response.getString("access_token");
-            if (accessToken == null || accessToken.isEmpty()) {
-                throw new Exception("Access token is empty");
-            }
-            
-            cachedAccessToken = accessToken;
-            // Token typically expires in 24 hours, cache for 23 hours
-            tokenExpiryTime = System.currentTimeMillis() + (23 * 60 * 60 * 1000);
-            
-            Log.d(TAG, "✅ Access token obtained successfully (length: " + accessToken.length() + " chars)");
-            Log.d(TAG, "Token expires at: " + new java.util.Date(tokenExpiryTime).toString());
-            return accessToken;
-
-        } catch (JSONException e) {
-            Log.e(TAG, "❌ JSON parsing error", e);
-            throw new Exception("Failed to parse authentication response: " + e.getMessage(), e);
-        } catch (java.io.IOException e) {
-            Log.e(TAG, "❌ Network error during authentication", e);
-            throw new Exception("Network error: " + e.getMessage(), e);
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
-        }
+        return SolarmanTokenManager.getInstance(context).getAccessToken();
     }
 
     /**
@@ -229,10 +91,7 @@ public class InverterApiService {
             throw new Exception("Device SN is required");
         }
 
-        // Get access token (will use cache if available)
-        String accessToken = getAccessToken();
-        
-        String url = API_BASE + "/device/v1.0/currentData?appId=" + config.getAppId() + "&language=en";
+        String url = API_BASE + RequestResilience.ENDPOINT_CURRENT_DATA + "?appId=" + config.getAppId() + "&language=en";
         
         JSONObject payload = new JSONObject();
         payload.put("deviceSn", deviceSn);
@@ -240,34 +99,43 @@ public class InverterApiService {
         Log.d(TAG, "📡 Requesting inverter data for device: " + deviceSn);
         Log.d(TAG, "URL: " + url);
 
-        HttpURLConnection connection = null;
-        try {
-            URL requestUrl = new URL(url);
-            connection = (HttpURLConnection) requestUrl.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Authorization", "bearer " + accessToken);
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setDoOutput(true);
-            connection.setConnectTimeout(15000);
-            connection.setReadTimeout(15000);
+        String payloadString = payload.toString();
+        Log.d(TAG, "Sending payload: " + payloadString);
 
-            // Send request
-            String payloadString = payload.toString();
-            Log.d(TAG, "Sending payload: " + payloadString);
-            
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = payloadString.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-                os.flush();
+        // Breaker, backoff and metrics are shared with the other Solarman calls
+        SolarmanTokenManager tokenManager = SolarmanTokenManager.getInstance(context);
+        return RequestResilience.getInstance(context).execute(
+                RequestResilience.ENDPOINT_CURRENT_DATA, MAX_ATTEMPTS, attempt -> {
+            // Read per attempt, so a retry picks up a token renewed in the meantime
+            String accessToken = tokenManager.getAccessToken();
+            try {
+                return requestCurrentData(url, payloadString, accessToken);
+            } catch (SolarmanTokenManager.TokenRejectedException e) {
+                Log.w(TAG, "Access token rejected, renewing: " + e.getMessage());
+                return requestCurrentData(url, payloadString, tokenManager.refresh(accessToken));
             }
+        });
+    }
 
+    /**
+     * One current-data request with the given token
+     */
+    private JSONObject requestCurrentData(String url, String payloadString, String accessToken) throws Exception {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Authorization", "bearer " + accessToken)
+                .post(RequestBody.create(payloadString, HttpClientProvider.JSON))
+                .build();
+        try (Response httpResponse = httpClient.newCall(request).execute()) {
             // Read response
-            // NOTE: getResponseCode() must be called before reading the response
-            int responseCode = connection.getResponseCode();
+            int responseCode = httpResponse.code();
             Log.d(TAG, "Response code: " + responseCode);
-            
-            String responseBody = readResponse(connection, responseCode);
-            
+            if (responseCode == 401) {
+                throw new SolarmanTokenManager.TokenRejectedException("HTTP 401 for current data");
+            }
+        
+            String responseBody = readResponse(httpResponse);
+        
             // Log response summary (don't log full body if too large)
             if (responseBody.length() > 500) {
                 Log.d(TAG, "Response body (first 500 chars): " + responseBody.substring(0, 500) + "...");
@@ -281,33 +149,44 @@ public class InverterApiService {
                 response = new JSONObject(responseBody);
             } catch (JSONException e) {
                 Log.e(TAG, "❌ Failed to parse response as JSON", e);
+                if (responseCode != 200) {
+                    // e.g. an HTML error page from a proxy; keep the status so 429/5xx are retried
+                    throw new RequestResilience.HttpStatusException(responseCode,
+                        RequestResilience.retryAfterMs(httpResponse), "HTTP Error " + responseCode + ": Invalid JSON response");
+                }
                 throw new Exception("HTTP Error " + responseCode + ": Invalid JSON response: " + responseBody);
             }
-            
+        
             // Check for error messages in response first
             if (response.has("msg") && !response.isNull("msg")) {
                 String errorMsg = response.optString("msg", "");
                 if (!errorMsg.isEmpty()) {
                     Log.e(TAG, "❌ API Error message: " + errorMsg);
+                    if (!response.optBoolean("success", false)
+                            && SolarmanTokenManager.isTokenRejected(responseCode, errorMsg)) {
+                        throw new SolarmanTokenManager.TokenRejectedException("Token rejected: " + errorMsg);
+                    }
                     // Include response code in error if not 200
                     if (responseCode != 200) {
-                        throw new Exception("HTTP Error " + responseCode + ": " + errorMsg);
+                        throw new RequestResilience.HttpStatusException(responseCode,
+                            RequestResilience.retryAfterMs(httpResponse), "HTTP Error " + responseCode + ": " + errorMsg);
                     } else if (!response.optBoolean("success", false)) {
-                        throw new Exception("Data request failed: " + errorMsg);
+                        throw new RequestResilience.ApiRejectedException("Data request failed: " + errorMsg);
                     }
                 }
             }
-            
+        
             if (responseCode != 200) {
                 Log.e(TAG, "❌ HTTP Error " + responseCode + ": " + responseBody);
                 String errorMsg = response.optString("msg", "Unknown error");
-                throw new Exception("HTTP Error " + responseCode + ": " + errorMsg);
+                throw new RequestResilience.HttpStatusException(responseCode,
+                    RequestResilience.retryAfterMs(httpResponse), "HTTP Error " + responseCode + ": " + errorMsg);
             }
-            
+        
             if (!response.optBoolean("success", false)) {
                 Log.e(TAG, "❌ Data request failed. Response: " + response.toString());
                 String errorMsg = response.optString("msg", "Data request failed");
-                throw new Exception("Data request failed: " + errorMsg);
+                throw new RequestResilience.ApiRejectedException("Data request failed: " + errorMsg);
             }
 
             // Check if dataList exists
@@ -317,7 +196,7 @@ public class InverterApiService {
                 int dataCount = response.optJSONArray("dataList").length();
                 Log.d(TAG, "✅ Inverter data successfully retrieved (" + dataCount + " metrics)");
             }
-            
+        
             return response;
 
         } catch (JSONException e) {
@@ -326,61 +205,23 @@ public class InverterApiService {
         } catch (java.io.IOException e) {
             Log.e(TAG, "❌ Network error during data request", e);
             throw new Exception("Network error: " + e.getMessage(), e);
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
         }
     }
 
     /**
-     * Hash password with SHA-256 for Solarman API authentication
-     * @param password The plain text password
-     * @return SHA-256 hash in hex format (64 characters)
+     * Read response body (success or error)
+     * @param httpResponse The HTTP response
      */
-    private String hashPassword(String password) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
-            
-            // Convert byte array to hex string
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Error hashing password", e);
-            // If hashing fails, return original password (fallback)
-            return password;
-        }
-    }
-    
-    /**
-     * Read response from HTTP connection
-     * @param connection The HTTP connection
-     * @param responseCode The response code (already retrieved to avoid multiple calls)
-     */
-    private String readResponse(HttpURLConnection connection, int responseCode) throws Exception {
-        InputStream inputStream;
-        if (responseCode >= 200 && responseCode < 300) {
-            inputStream = connection.getInputStream();
-        } else {
-            inputStream = connection.getErrorStream();
-        }
-
-        if (inputStream == null) {
+    private String readResponse(Response httpResponse) throws java.io.IOException {
+        int responseCode = httpResponse.code();
+        ResponseBody body = httpResponse.body();
+        if (body == null) {
             // Some servers don't send error body, return a default message
             return "{\"success\":false,\"msg\":\"HTTP " + responseCode + " - No response body\"}";
         }
 
         StringBuilder response = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+        try (BufferedReader reader = new BufferedReader(body.charStream())) {
             String line;
             while ((line = reader.readLine()) != null) {
                 response.append(line);
@@ -400,8 +241,7 @@ public class InverterApiService {
      * Clear cached token (force refresh on next request)
      */
     public void clearCachedToken() {
-        cachedAccessToken = null;
-        tokenExpiryTime = 0;
+        SolarmanTokenManager.getInstance(context).invalidate();
     }
 
     /**
@@ -0,0 +1,530 @@
+package com.masters.ppa.data.api;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.util.Log;
+
+import com.masters.ppa.utils.NetworkUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Response;
+
+/**
+ * Retry, backoff and circuit breaking for Solarman API calls.
+ *
+ * Failed attempts are retried with exponential backoff and full jitter (or the server's
+ * Retry-After). Each endpoint has its own circuit breaker: after repeated failures calls
+ * fail fast until a single probe succeeds. When the device is offline the attempt waits
+ * for a connectivity callback instead of polling. Every attempt first takes a permit from
+ * one process-wide token bucket, so all Solarman callers share the same request rate.
+ * Only I/O errors, 429 and 5xx are retried and counted against the circuit; authentication
+ * and validation errors fail at once. Per-endpoint metrics are kept for diagnostics
+ * (see getMetrics(), exportMetrics()).
+ */
+public class RequestResilience {
+
+    private static final String TAG = "RequestResilience";
+
+    public static final String METRICS_FILE = "request_metrics.json";
+
+    public static final String ENDPOINT_HISTORY = "/device/v1.0/historical";
+    public static final String ENDPOINT_CURRENT_DATA = "/device/v1.0/currentData";
+
+    private static final long BASE_DELAY_MS = 500;
+    private static final long MAX_DELAY_MS = 30_000;
+    private static final long MAX_RETRY_AFTER_MS = 120_000;
+
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long OPEN_DURATION_MS = 30_000;
+
+    private static final long NETWORK_WAIT_MS = 5 * 60 * 1000L;
+
+    // Shared by all Solarman requests of the process
+    private static final int RATE_LIMIT_BURST = 4;
+    private static final double RATE_LIMIT_PER_SECOND = 2.0;
+
+    private static RequestResilience instance;
+
+    private final Context context;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    // Connectivity callback shared by all threads in awaitNetwork(), guarded by networkLock
+    private final Object networkLock = new Object();
+    private ConnectivityManager.NetworkCallback networkCallback;
+    private CountDownLatch networkLatch;
+    private int networkWaiters;
+
+    /**
+     * One attempt of a call
+     */
+    public interface Attempt<T> {
+        T run(int attempt) throws Exception;
+    }
+
+    /**
+     * Non-2xx HTTP response; 429 and 5xx are retried (honouring Retry-After), others are not
+     */
+    public static class HttpStatusException extends Exception {
+        private final int code;
+        private final long retryAfterMs;
+
+        public HttpStatusException(int code, long retryAfterMs, String message) {
+            super(message);
+            this.code = code;
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+
+        public boolean isRetryable() {
+            return code == 429 || code >= 500;
+        }
+    }
+
+    /**
+     * The API answered but refused the request (success=false). Not retried and not counted
+     * against the circuit: the endpoint works, the request itself was rejected.
+     */
+    public static class ApiRejectedException extends Exception {
+        public ApiRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Thrown without calling the endpoint while its circuit is open
+     */
+    public static class CircuitOpenException extends Exception {
+        private final long retryInMs;
+
+        CircuitOpenException(String endpoint, long retryInMs) {
+            super("Circuit open for " + endpoint + ", retry in " + (retryInMs / 1000) + " s");
+            this.retryInMs = retryInMs;
+        }
+
+        public long getRetryInMs() {
+            return retryInMs;
+        }
+    }
+
+    /**
+     * Snapshot of one endpoint's counters
+     */
+    public static class EndpointMetrics {
+        public final long attempts;
+        public final long successes;
+        public final long failures;
+        public final long rejected;
+        public final long retries;
+        public final long shortCircuited;
+        public final long averageLatencyMs;
+        public final long maxLatencyMs;
+        public final int circuitOpenCount;
+        public final long circuitOpenMs;
+        public final boolean circuitOpen;
+
+        EndpointMetrics(long attempts, long successes, long failures, long rejected, long retries, long shortCircuited,
+                        long averageLatencyMs, long maxLatencyMs, int circuitOpenCount,
+                        long circuitOpenMs, boolean circuitOpen) {
+            this.attempts = attempts;
+            this.successes = successes;
+            this.failures = failures;
+            this.rejected = rejected;
+            this.retries = retries;
+            this.shortCircuited = shortCircuited;
+            this.averageLatencyMs = averageLatencyMs;
+            this.maxLatencyMs = maxLatencyMs;
+            this.circuitOpenCount = circuitOpenCount;
+            this.circuitOpenMs = circuitOpenMs;
+            this.circuitOpen = circuitOpen;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                "attempts=%d ok=%d failed=%d rejected=%d retries=%d shortCircuited=%d latency(avg/max)=%d/%d ms " +
+                "circuitOpened=%d openTime=%d s%s",
+                attempts, successes, failures, rejected, retries, shortCircuited, averageLatencyMs, maxLatencyMs,
+                circuitOpenCount, circuitOpenMs / 1000, circuitOpen ? " (open)" : "");
+        }
+    }
+
+    /**
+     * Closed -> open after FAILURE_THRESHOLD consecutive failures; after OPEN_DURATION_MS one
+     * probe is let through (half-open), which closes or re-opens the circuit
+     */
+    private static class CircuitBreaker {
+        private final String endpoint;
+        private int consecutiveFailures;
+        private long openedAt;
+        private long openUntil;
+        private boolean probeInFlight;
+
+        private long attempts;
+        private long successes;
+        private long failures;
+        private long rejected;
+        private long retries;
+        private long shortCircuited;
+        private long totalLatencyMs;
+        private long maxLatencyMs;
+        private int openCount;
+        private long openTimeMs;
+
+        CircuitBreaker(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        synchronized void beforeAttempt() throws CircuitOpenException {
+            long now = System.currentTimeMillis();
+            if (openUntil > 0) {
+                if (now < openUntil || probeInFlight) {
+                    shortCircuited++;
+                    throw new CircuitOpenException(endpoint, Math.max(1000L, openUntil - now));
+                }
+                probeInFlight = true; // half-open
+            }
+            attempts++;
+        }
+
+        synchronized void onSuccess(long latencyMs) {
+            successes++;
+            onAnswered(latencyMs);
+        }
+
+        /**
+         * The endpoint answered but refused the request; like a success this closes a half-open circuit
+         */
+        synchronized void onRejected(long latencyMs) {
+            rejected++;
+            onAnswered(latencyMs);
+        }
+
+        private void onAnswered(long latencyMs) {
+            recordLatency(latencyMs);
+            consecutiveFailures = 0;
+            if (openUntil > 0) {
+                openTimeMs += System.currentTimeMillis() - openedAt;
+                openUntil = 0;
+                probeInFlight = false;
+                Log.i(TAG, "Circuit closed for " + endpoint);
+            }
+        }
+
+        synchronized void onFailure(long latencyMs, boolean countsForCircuit) {
+            recordLatency(latencyMs);
+            failures++;
+            if (probeInFlight) {
+                probeInFlight = false;
+                openUntil = System.currentTimeMillis() + OPEN_DURATION_MS;
+                Log.w(TAG, "Probe failed, circuit stays open for " + endpoint);
+                return;
+            }
+            if (countsForCircuit && ++consecutiveFailures >= FAILURE_THRESHOLD && openUntil == 0) {
+                openedAt = System.currentTimeMillis();
+                openUntil = openedAt + OPEN_DURATION_MS;
+                openCount++;
+                Log.w(TAG, "Circuit opened for " + endpoint + " after " + consecutiveFailures + " failures");
+            }
+        }
+
+        synchronized void onRetry() {
+            retries++;
+        }
+
+        /**
+         * A call that gave up (e.g. interrupted) must not leave the half-open probe slot taken
+         */
+        synchronized void onAbandoned() {
+            probeInFlight = false;
+        }
+
+        private void recordLatency(long latencyMs) {
+            totalLatencyMs += latencyMs;
+            maxLatencyMs = Math.max(maxLatencyMs, latencyMs);
+        }
+
+        synchronized EndpointMetrics snapshot() {
+            long completed = successes + rejected + failures;
+            boolean open = openUntil > 0;
+            long openMs = openTimeMs + (open ? System.currentTimeMillis() - openedAt : 0);
+            return new EndpointMetrics(attempts, successes, failures, rejected, retries, shortCircuited,
+                completed > 0 ? totalLatencyMs / completed : 0, maxLatencyMs, openCount, openMs, open);
+        }
+    }
+
+    private RequestResilience(Context context) {
+        this(context.getApplicationContext(), new TokenBucketRateLimiter(RATE_LIMIT_BURST, RATE_LIMIT_PER_SECOND));
+    }
+
+    RequestResilience(Context context, TokenBucketRateLimiter rateLimiter) {
+        this.context = context;
+        this.rateLimiter = rateLimiter;
+    }
+
+    public static synchronized RequestResilience getInstance(Context context) {
+        if (instance == null) {
+            instance = new RequestResilience(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Run a call with retries, backoff, the shared rate limit and the endpoint's circuit breaker
+     * @param maxAttempts Total attempts (1 = no retry)
+     */
+    public <T> T execute(String endpoint, int maxAttempts, Attempt<T> call) throws Exception {
+        CircuitBreaker breaker = breakerFor(endpoint);
+        for (int attempt = 1; ; attempt++) {
+            breaker.beforeAttempt();
+            try {
+                rateLimiter.acquire();
+            } catch (InterruptedException e) {
+                breaker.onAbandoned();
+                throw e;
+            }
+            long start = System.currentTimeMillis();
+            try {
+                T result = call.run(attempt);
+                breaker.onSuccess(System.currentTimeMillis() - start);
+                return result;
+            } catch (InterruptedException e) {
+                breaker.onAbandoned();
+                throw e;
+            } catch (ApiRejectedException e) {
+                breaker.onRejected(System.currentTimeMillis() - start);
+                throw e;
+            } catch (Exception e) {
+                long latency = System.currentTimeMillis() - start;
+                // Losing our own connection says nothing about the endpoint
+                boolean offline = isNetworkError(e) && !NetworkUtils.isNetworkConnected(context);
+                breaker.onFailure(latency, !offline && isRetryable(e));
+
+                if (attempt >= maxAttempts || !isRetryable(e)) {
+                    throw e;
+                }
+                breaker.onRetry();
+                if (offline) {
+                    awaitNetwork();
+                    continue;
+                }
+                long delay = backoffDelay(attempt);
+                if (e instanceof HttpStatusException && ((HttpStatusException) e).getRetryAfterMs() > 0) {
+                    delay = Math.min(MAX_RETRY_AFTER_MS,
+                        Math.max(delay, ((HttpStatusException) e).getRetryAfterMs()));
+                }
+                Log.d(TAG, endpoint + " attempt " + attempt + " failed (" + e.getMessage() +
+                    "), retrying in " + delay + " ms");
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Block until a network with internet access is available (no polling). All waiting
+     * threads share one connectivity callback, registered by the first waiter and removed
+     * by the last one.
+     */
+    public void awaitNetwork() throws Exception {
+        if (NetworkUtils.isNetworkConnected(context)) {
+            return;
+        }
+        CountDownLatch connected;
+        synchronized (networkLock) {
+            if (networkCallback == null) {
+                ConnectivityManager connectivityManager =
+                    (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+                if (connectivityManager == null) {
+                    throw new Exception("ConnectivityManager not available");
+                }
+                CountDownLatch latch = new CountDownLatch(1);
+                ConnectivityManager.NetworkCallback callback = new ConnectivityManager.NetworkCallback() {
+                    @Override
+                    public void onAvailable(Network network) {
+                        latch.countDown();
+                    }
+                };
+                NetworkRequest request = new NetworkRequest.Builder()
+                    .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build();
+                connectivityManager.registerNetworkCallback(request, callback);
+                networkCallback = callback;
+                networkLatch = latch;
+                Log.d(TAG, "Waiting for network connection...");
+            }
+            networkWaiters++;
+            connected = networkLatch;
+        }
+        try {
+            if (!connected.await(NETWORK_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                throw new Exception("Network connection timeout after " + (NETWORK_WAIT_MS / 1000) + " seconds");
+            }
+        } finally {
+            synchronized (networkLock) {
+                if (--networkWaiters == 0) {
+                    ConnectivityManager connectivityManager =
+                        (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+                    try {
+                        if (connectivityManager != null) {
+                            connectivityManager.unregisterNetworkCallback(networkCallback);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        Log.w(TAG, "Network callback was not registered", e);
+                    }
+                    networkCallback = null;
+                    networkLatch = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Metrics of all endpoints called so far
+     */
+    public Map<String, EndpointMetrics> getMetrics() {
+        Map<String, EndpointMetrics> metrics = new LinkedHashMap<>();
+        for (Map.Entry<String, CircuitBreaker> entry : breakers.entrySet()) {
+            metrics.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return metrics;
+    }
+
+    public void logMetrics() {
+        for (Map.Entry<String, EndpointMetrics> entry : getMetrics().entrySet()) {
+            Log.i(TAG, entry.getKey() + ": " + entry.getValue());
+        }
+    }
+
+    /**
+     * Write the current metrics to files/request_metrics.json, e.g. for a bug report
+     */
+    public void exportMetrics() {
+        File file = new File(context.getFilesDir(), METRICS_FILE);
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            JSONObject endpoints = new JSONObject();
+            for (Map.Entry<String, EndpointMetrics> entry : getMetrics().entrySet()) {
+                EndpointMetrics metrics = entry.getValue();
+                JSONObject json = new JSONObject();
+                json.put("attempts", metrics.attempts);
+                json.put("successes", metrics.successes);
+                json.put("failures", metrics.failures);
+                json.put("rejected", metrics.rejected);
+                json.put("retries", metrics.retries);
+                json.put("shortCircuited", metrics.shortCircuited);
+                json.put("averageLatencyMs", metrics.averageLatencyMs);
+                json.put("maxLatencyMs", metrics.maxLatencyMs);
+                json.put("circuitOpenCount", metrics.circuitOpenCount);
+                json.put("circuitOpenMs", metrics.circuitOpenMs);
+                json.put("circuitOpen", metrics.circuitOpen);
+                endpoints.put(entry.getKey(), json);
+            }
+            JSONObject root = new JSONObject();
+            root.put("exportedAt", System.currentTimeMillis());
+            root.put("endpoints", endpoints);
+            try (FileWriter writer = new FileWriter(tempFile, false)) {
+                writer.write(root.toString(2));
+            }
+            if (!tempFile.renameTo(file)) {
+                Log.w(TAG, "Could not replace " + file.getName());
+            }
+        } catch (JSONException | IOException e) {
+            Log.w(TAG, "Error exporting request metrics", e);
+        }
+    }
+
+    /**
+     * Retry-After header in ms (delta-seconds or HTTP date); 0 if absent or invalid
+     */
+    public static long retryAfterMs(Response response) {
+        String value = response.header("Retry-After");
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000L);
+        } catch (NumberFormatException e) {
+            try {
+                SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+                httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+                Date date = httpDate.parse(value);
+                return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : 0;
+            } catch (ParseException parseError) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Check if exception is caused by missing/unstable network connection
+     */
+    public static boolean isNetworkError(Exception e) {
+        return e instanceof java.net.UnknownHostException ||
+            e instanceof java.net.ConnectException ||
+            e instanceof java.net.SocketTimeoutException ||
+            (e.getMessage() != null &&
+             (e.getMessage().contains("Unable to resolve host") ||
+              e.getMessage().contains("Network is unreachable") ||
+              e.getMessage().contains("Network error")));
+    }
+
+    /**
+     * Transient failures only: I/O errors (also when wrapped), 429 and 5xx
+     */
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof HttpStatusException) {
+            return ((HttpStatusException) e).isRetryable();
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Exponential backoff with full jitter: random in [0, min(MAX, BASE * 2^(attempt-1))]
+     */
+    private static long backoffDelay(int attempt) {
+        long ceiling = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attempt - 1, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private CircuitBreaker breakerFor(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker == null) {
+            breakers.putIfAbsent(endpoint, new CircuitBreaker(endpoint));
+            breaker = breakers.get(endpoint);
+        }
+        return breaker;
+    }
+}
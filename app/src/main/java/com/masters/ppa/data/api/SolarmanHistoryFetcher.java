@@ -0,0 +1,320 @@
+package com.masters.ppa.data.api;
+
+import android.util.Log;
+
+import com.masters.ppa.data.api.SolarmanHistoryParser.HistoryRecord;
+import com.masters.ppa.utils.CsvDayIndex;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Requests Solarman device history (/device/v1.0/historical) for one device in multi-day windows.
+ * Records are grouped by day while the response streams in, and every complete day is handed
+ * to a DaySink; only per-day record counts are kept. A window the API refuses because of its
+ * date range is split in half and both halves are requested again; other failures are
+ * recorded for every day of the window.
+ */
+final class SolarmanHistoryFetcher {
+
+    private static final String TAG = "SolarmanHistoryFetcher";
+
+    static final long ONE_DAY_MS = 24 * 60 * 60 * 1000L;
+
+    // Attempts per window request; delays between them come from RequestResilience
+    private static final int WINDOW_ATTEMPTS = 3;
+
+    /**
+     * Source of the access token; a token the API rejects is renewed once per request
+     */
+    interface TokenSource {
+        String getAccessToken() throws Exception;
+
+        String refresh(String rejectedToken) throws Exception;
+    }
+
+    /**
+     * Receives the records of one day (empty if the day has none) while the response is read.
+     * A day may arrive again if a request is retried; an exception marks the day failed.
+     */
+    interface DaySink {
+        void acceptDay(long dayTime, List<HistoryRecord> records) throws Exception;
+    }
+
+    /**
+     * Result of one history window: records handed over per day (0 = no data) and per-day failures
+     */
+    static final class HistoryWindow {
+        final long startTime;
+        final long endTime;
+        final Map<Long, Integer> days = new HashMap<>();
+        final Map<Long, Exception> failures = new HashMap<>();
+
+        HistoryWindow(long startTime, long endTime) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        boolean covers(long dayTime) {
+            return dayTime >= startTime && dayTime <= endTime;
+        }
+    }
+
+    /**
+     * The API refused a history window because of its date range; the window should be split
+     */
+    static final class WindowRejectedException extends RequestResilience.ApiRejectedException {
+        WindowRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private final OkHttpClient httpClient;
+    private final String url;
+    private final RequestResilience resilience;
+    private final TokenSource tokens;
+    private final long deviceId;
+    private final String deviceSn;
+    private final SolarmanStationDataService.ProgressCallback progressCallback;
+
+    /**
+     * @param url Full URL of the history endpoint
+     * @param progressCallback Receives one message per request attempt, or null
+     */
+    SolarmanHistoryFetcher(OkHttpClient httpClient, String url, RequestResilience resilience,
+                           TokenSource tokens, long deviceId, String deviceSn,
+                           SolarmanStationDataService.ProgressCallback progressCallback) {
+        this.httpClient = httpClient;
+        this.url = url;
+        this.resilience = resilience;
+        this.tokens = tokens;
+        this.deviceId = deviceId;
+        this.deviceSn = deviceSn;
+        this.progressCallback = progressCallback;
+    }
+
+    /**
+     * Fetch the days [startTime, endTime] (local midnights) into sink, splitting the window when
+     * the API rejects its date range. Network errors and an open circuit are propagated to the caller.
+     */
+    HistoryWindow fetchWindow(long startTime, long endTime, int timeType, DaySink sink) throws Exception {
+        HistoryWindow window = new HistoryWindow(startTime, endTime);
+        fetchWindowInto(window, startTime, endTime, timeType, sink);
+        return window;
+    }
+
+    private void fetchWindowInto(HistoryWindow window, long startTime, long endTime, int timeType,
+                                 DaySink sink) throws Exception {
+        int days = (int) ((endTime - startTime) / ONE_DAY_MS) + 1;
+        DayCollector collector;
+        try {
+            collector = fetchRange(new Date(startTime), new Date(endTime), timeType, sink);
+        } catch (WindowRejectedException e) {
+            if (days == 1) {
+                window.failures.put(startTime, e);
+                return;
+            }
+            Log.w(TAG, "History window of " + days + " days rejected, splitting: " + e.getMessage());
+            long midEnd = startTime + (days / 2 - 1) * ONE_DAY_MS;
+            fetchWindowInto(window, startTime, midEnd, timeType, sink);
+            fetchWindowInto(window, midEnd + ONE_DAY_MS, endTime, timeType, sink);
+            return;
+        } catch (Exception e) {
+            if (RequestResilience.isNetworkError(e) || e instanceof RequestResilience.CircuitOpenException) {
+                throw e;
+            }
+            for (long day = startTime; day <= endTime; day += ONE_DAY_MS) {
+                window.failures.put(day, e);
+            }
+            return;
+        }
+
+        window.days.putAll(collector.counts);
+        window.failures.putAll(collector.failures);
+    }
+
+    /**
+     * Request device history for a date range with retries (WINDOW_ATTEMPTS in total; delays
+     * between them come from RequestResilience). Each attempt streams into a new collector,
+     * so a retried day is handed to sink again in full.
+     */
+    private DayCollector fetchRange(Date startDate, Date endDate, int timeType, DaySink sink) throws Exception {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        JSONObject payload = new JSONObject();
+        payload.put("deviceId", deviceId);
+        payload.put("deviceSn", deviceSn);
+        payload.put("startTime", dateFormat.format(startDate));
+        payload.put("endTime", dateFormat.format(endDate));
+        payload.put("timeType", timeType);
+        String range = dateFormat.format(startDate) + "–" + dateFormat.format(endDate);
+
+        return resilience.execute(RequestResilience.ENDPOINT_HISTORY, WINDOW_ATTEMPTS, attempt -> {
+            String attemptMsg = String.format(Locale.getDefault(),
+                "Requesting device history (timeType=%d) from %s to %s... [try %d/%d]",
+                timeType, dateFormat.format(startDate), dateFormat.format(endDate), attempt, WINDOW_ATTEMPTS);
+            notifyProgress(attemptMsg);
+
+            String token = tokens.getAccessToken();
+            DayCollector collector = new DayCollector(startDate.getTime(), endDate.getTime(), sink);
+            try {
+                request(payload, token, range, collector);
+            } catch (SolarmanTokenManager.TokenRejectedException e) {
+                Log.w(TAG, "Access token rejected, renewing: " + e.getMessage());
+                request(payload, tokens.refresh(token), range, collector);
+            }
+            collector.finish();
+            return collector;
+        });
+    }
+
+    /**
+     * One history request with the given token
+     */
+    private void request(JSONObject payload, String token, String range,
+                         SolarmanHistoryParser.RecordSink sink) throws Exception {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Authorization", "Bearer " + token)
+                .post(RequestBody.create(payload.toString(), HttpClientProvider.JSON))
+                .build();
+        try (Response httpResponse = httpClient.newCall(request).execute()) {
+            int responseCode = httpResponse.code();
+            if (responseCode == 429 || responseCode >= 500) {
+                throw new RequestResilience.HttpStatusException(responseCode,
+                    RequestResilience.retryAfterMs(httpResponse),
+                    "HTTP " + responseCode + " for " + range);
+            }
+            if (responseCode == 401) {
+                throw new SolarmanTokenManager.TokenRejectedException("HTTP 401 for " + range);
+            }
+
+            // Parse straight from the response stream
+            ResponseBody body = httpResponse.body();
+            SolarmanHistoryParser.HistoryResponse response = SolarmanHistoryParser.parse(
+                body != null ? body.charStream() : new StringReader(""), responseCode, sink);
+            if (!response.success) {
+                String errorMsg = response.msg != null ? response.msg : "Request failed";
+                Log.w(TAG, "History request rejected: " + errorMsg);
+                if (SolarmanTokenManager.isTokenRejected(responseCode, errorMsg)) {
+                    throw new SolarmanTokenManager.TokenRejectedException("Token rejected for " + range + ": " + errorMsg);
+                }
+                if (isRangeRejection(errorMsg)) {
+                    throw new WindowRejectedException("Range rejected for " + range + ": " + errorMsg);
+                }
+                throw new RequestResilience.ApiRejectedException("API failed for " + range + ": " + errorMsg);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Request exception: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Whether a rejection message is about the requested period (e.g. "time range exceeds the limit")
+     */
+    static boolean isRangeRejection(String msg) {
+        String lower = msg.toLowerCase(Locale.ROOT);
+        return lower.contains("range") || lower.contains("interval") || lower.contains("span") ||
+            lower.contains("exceed") || lower.contains("too long") || lower.contains("too large");
+    }
+
+    /**
+     * Groups streamed records by request day and hands each day to the sink once the next day
+     * starts (records arrive in time order). Days without records are handed over empty by finish.
+     */
+    private static final class DayCollector implements SolarmanHistoryParser.RecordSink {
+        private final long startTime;
+        private final long endTime;
+        private final DaySink sink;
+        private final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        private final Map<String, Long> dayByKey = new HashMap<>();
+        private final Map<Long, Integer> counts = new LinkedHashMap<>();
+        private final Map<Long, Exception> failures = new HashMap<>();
+        private long currentDay = -1;
+        private List<HistoryRecord> currentRecords = new ArrayList<>();
+
+        DayCollector(long startTime, long endTime, DaySink sink) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.sink = sink;
+            for (long day = startTime; day <= endTime; day += ONE_DAY_MS) {
+                dayByKey.put(dayFormat.format(new Date(day)), day);
+            }
+        }
+
+        @Override
+        public void accept(HistoryRecord record) {
+            String dayKey = CsvDayIndex.dayKey(record.collectTime, dayFormat);
+            Long day = dayKey != null ? dayByKey.get(dayKey) : null;
+            if (day == null) {
+                // Unknown or out-of-window timestamp - keep it with the day of a single-day window only
+                if (startTime != endTime) {
+                    return;
+                }
+                day = startTime;
+            }
+            if (day != currentDay) {
+                handOver();
+                currentDay = day;
+            }
+            currentRecords.add(record);
+        }
+
+        /**
+         * Hand over the last day, then every day of the window that had no records
+         */
+        void finish() {
+            handOver();
+            for (long day = startTime; day <= endTime; day += ONE_DAY_MS) {
+                if (!counts.containsKey(day) && !failures.containsKey(day)) {
+                    deliver(day, new ArrayList<>());
+                }
+            }
+        }
+
+        private void handOver() {
+            if (currentDay >= 0 && !currentRecords.isEmpty()) {
+                deliver(currentDay, currentRecords);
+                currentRecords = new ArrayList<>();
+            }
+        }
+
+        private void deliver(long day, List<HistoryRecord> records) {
+            if (failures.containsKey(day)) {
+                return;
+            }
+            try {
+                sink.acceptDay(day, records);
+                Integer previous = counts.get(day);
+                counts.put(day, (previous != null ? previous : 0) + records.size());
+            } catch (Exception e) {
+                Log.e(TAG, "Could not store history of day " + day + ": " + e.getMessage());
+                counts.remove(day);
+                failures.put(day, e);
+            }
+        }
+    }
+
+    private void notifyProgress(String message) {
+        if (progressCallback != null) {
+            progressCallback.onProgress(message);
+        }
+        Log.d(TAG, message);
+    }
+}
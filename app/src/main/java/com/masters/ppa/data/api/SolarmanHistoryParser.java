@@ -0,0 +1,240 @@
+package com.masters.ppa.data.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming parser for Solarman /device/v1.0/historical responses.
+ * Reads paramDataList straight from the response stream and hands each compact record
+ * to a sink, without building the response string, an org.json tree or a record list.
+ */
+public final class SolarmanHistoryParser {
+
+    private SolarmanHistoryParser() {
+    }
+
+    /**
+     * One history sample: collect time plus parallel key/value arrays
+     */
+    public static final class HistoryRecord {
+        public final String collectTime;
+        public final String[] keys;
+        public final String[] values;
+
+        public HistoryRecord(String collectTime, String[] keys, String[] values) {
+            this.collectTime = collectTime;
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Receives each history record as soon as it has been read
+     */
+    public interface RecordSink {
+        void accept(HistoryRecord record) throws IOException;
+    }
+
+    /**
+     * Parsed response envelope; the records themselves went to the sink
+     */
+    public static final class HistoryResponse {
+        public final boolean success;
+        public final String msg;
+        public final int recordCount;
+
+        HistoryResponse(boolean success, String msg, int recordCount) {
+            this.success = success;
+            this.msg = msg;
+            this.recordCount = recordCount;
+        }
+    }
+
+    /**
+     * Parse a history response, passing each record to sink while reading; fields may appear
+     * in any order. Records are only passed on for a successful response: when paramDataList
+     * comes before the success flag, they are held until the envelope has been read.
+     * @param reader Response body reader (not closed here)
+     * @param responseCode HTTP status, used for the message of an empty body
+     */
+    public static HistoryResponse parse(Reader reader, int responseCode, RecordSink sink) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        try {
+            json.peek();
+        } catch (EOFException e) {
+            return new HistoryResponse(false, "HTTP " + responseCode + " - Empty response", 0);
+        }
+
+        boolean success = false;
+        String msg = null;
+        int recordCount = 0;
+        List<HistoryRecord> heldRecords = new ArrayList<>();
+        // Same keys repeat in every record - share one String instance per key
+        Map<String, String> keyPool = new HashMap<>();
+
+        try {
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "success":
+                        success = json.peek() == JsonToken.BOOLEAN ? json.nextBoolean()
+                            : Boolean.parseBoolean(json.nextString());
+                        break;
+                    case "msg":
+                        msg = json.nextString();
+                        break;
+                    case "paramDataList":
+                        if (success) {
+                            recordCount += readParamDataList(json, sink, keyPool);
+                        } else {
+                            readParamDataList(json, heldRecords::add, keyPool);
+                        }
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed history response: " + e.getMessage(), e);
+        }
+
+        if (success) {
+            for (HistoryRecord record : heldRecords) {
+                sink.accept(record);
+            }
+            recordCount += heldRecords.size();
+        }
+        return new HistoryResponse(success, msg, recordCount);
+    }
+
+    /**
+     * @return Number of records passed to sink
+     */
+    private static int readParamDataList(JsonReader json, RecordSink sink,
+                                         Map<String, String> keyPool) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_ARRAY) {
+            json.skipValue();
+            return 0;
+        }
+        int count = 0;
+        List<String> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+
+        json.beginArray();
+        while (json.hasNext()) {
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            String collectTime = "";
+            keys.clear();
+            values.clear();
+
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if ("collectTime".equals(name) && isScalar(json.peek())) {
+                    String value = readScalar(json);
+                    collectTime = value != null ? value : "";
+                } else if ("dataList".equals(name) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                    readDataList(json, keys, values, keyPool);
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+
+            sink.accept(new HistoryRecord(collectTime,
+                keys.toArray(new String[0]), values.toArray(new String[0])));
+            count++;
+        }
+        json.endArray();
+        return count;
+    }
+
+    private static void readDataList(JsonReader json, List<String> keys, List<String> values,
+                                     Map<String, String> keyPool) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            String key = null;
+            String name = null;
+            String value = null;
+
+            json.beginObject();
+            while (json.hasNext()) {
+                String field = json.nextName();
+                if (!isScalar(json.peek())) {
+                    json.skipValue();
+                    continue;
+                }
+                switch (field) {
+                    case "key":
+                        key = readScalar(json);
+                        break;
+                    case "name":
+                        name = readScalar(json);
+                        break;
+                    case "value":
+                        value = readScalar(json);
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+
+            // Same fallback as before: key, then name
+            String column = key != null ? key : (name != null ? name : "");
+            if (value != null) {
+                String pooled = keyPool.get(column);
+                if (pooled == null) {
+                    keyPool.put(column, column);
+                    pooled = column;
+                }
+                keys.add(pooled);
+                values.add(value);
+            }
+        }
+        json.endArray();
+    }
+
+    private static boolean isScalar(JsonToken token) {
+        return token == JsonToken.STRING || token == JsonToken.NUMBER
+            || token == JsonToken.BOOLEAN || token == JsonToken.NULL;
+    }
+
+    /**
+     * Read string/number/boolean as text; null becomes null
+     */
+    private static String readScalar(JsonReader json) throws IOException {
+        switch (json.peek()) {
+            case NULL:
+                json.nextNull();
+                return null;
+            case BOOLEAN:
+                return String.valueOf(json.nextBoolean());
+            default:
+                return json.nextString();
+        }
+    }
+}
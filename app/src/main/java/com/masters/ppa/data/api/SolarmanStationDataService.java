@@ -3,35 +3,37 @@ package com.masters.ppa.data.api;
 import android.content.Context;
 import android.util.Log;
 
+import com.masters.ppa.data.api.SolarmanHistoryParser.HistoryRecord;
 import com.masters.ppa.data.model.SolarmanApiConfig;
 import com.masters.ppa.data.model.StationConfig;
+import com.masters.ppa.data.model.TelemetryDaily;
+import com.masters.ppa.data.repository.GenerationDataRepository;
 import com.masters.ppa.data.repository.SolarmanApiConfigRepository;
 import com.masters.ppa.data.repository.StationConfigRepository;
-import com.masters.ppa.utils.NetworkUtils;
+import com.masters.ppa.data.repository.TelemetryRepository;
+import com.masters.ppa.utils.CsvDayIndex;
+import com.masters.ppa.utils.SchemaCsvWriter;
+import com.masters.ppa.utils.StateUtils;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileWriter;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import okhttp3.OkHttpClient;
+
 /**
  * Service for fetching station operational data from Solarman API
  */
@@ -53,16 +55,37 @@ public class SolarmanStationDataService {
     private final ExecutorService executor;
     private final SolarmanApiConfigRepository configRepository;
     private final StationConfigRepository stationConfigRepository;
+    private final TelemetryRepository telemetryRepository;
+    private final GenerationDataRepository generationDataRepository;
+    private final OkHttpClient httpClient = HttpClientProvider.getClient();
+    private final RequestResilience resilience;
     
-    private String cachedAccessToken;
-    private long tokenExpiryTime = 0;
     private ProgressCallback progressCallback;
     
     private static final String METADATA_FILE = "station_data_metadata.json";
     
+    // Parallel history fetch: bounded number of windows in flight (paced by RequestResilience)
+    private static final int MAX_IN_FLIGHT_REQUESTS = 4;
+    
+    // Largest history window (days) requested at once, per timeType. The spans follow the timeType
+    // notes of the Solarman OpenAPI reference for /device/v1.0/historical (frame data: at most
+    // 5 days per request; daily: one month; monthly: one year). The API reports no limit of its
+    // own, so a window it rejects anyway is split in half by SolarmanHistoryFetcher.
+    private static final int MAX_WINDOW_DAYS_FRAME = 5;
+    private static final int MAX_WINDOW_DAYS_DAILY = 30;
+    private static final int MAX_WINDOW_DAYS_MONTHLY = 365;
+    private static final long ONE_DAY_MS = 24 * 60 * 60 * 1000L;
+    
+    // Breaker pauses tolerated in one fetch run before giving up
+    private static final int MAX_CIRCUIT_PAUSES = 3;
+    
+    // Interior days missing from the CSV are retried up to this many times (see StationFetchLedger)
+    private static final int MAX_GAP_ATTEMPTS = 5;
+    
     public SolarmanStationDataService(Context context) {
         this.context = context.getApplicationContext();
         this.executor = Executors.newSingleThreadExecutor();
+        this.resilience = RequestResilience.getInstance(this.context);
         if (context instanceof android.app.Application) {
             this.configRepository = new SolarmanApiConfigRepository((android.app.Application) context);
             this.stationConfigRepository = new StationConfigRepository(context);
@@ -70,6 +93,8 @@ public class SolarmanStationDataService {
             this.configRepository = new SolarmanApiConfigRepository((android.app.Application) this.context);
             this.stationConfigRepository = new StationConfigRepository(this.context);
         }
+        this.telemetryRepository = new TelemetryRepository(this.context);
+        this.generationDataRepository = new GenerationDataRepository((android.app.Application) this.context);
     }
     
     /**
@@ -80,219 +105,182 @@ public class SolarmanStationDataService {
     }
     
     /**
-     * Get access token from Solarman API
+     * Get access token from the shared token manager (logs in only if needed)
      */
     private String getAccessToken() throws Exception {
-        // Check if we have a valid cached token
-        if (cachedAccessToken != null && System.currentTimeMillis() < tokenExpiryTime) {
-            Log.d(TAG, "Using cached access token");
-            return cachedAccessToken;
-        }
-
+        notifyProgress("Requesting access token...");
+        String accessToken = SolarmanTokenManager.getInstance(context).getAccessToken();
+        notifyProgress("Access token received");
+        return accessToken;
+    }
+    
+    /**
+     * History fetcher for the configured device; its token comes from the shared token manager
+     */
+    private SolarmanHistoryFetcher newHistoryFetcher() throws Exception {
         SolarmanApiConfig config = configRepository.getSolarmanApiConfigSync();
         if (config == null) {
-            throw new Exception("Solarman API configuration not found. Please configure in Settings.");
-        }
-
-        // Validate required fields
-        if (config.getAppId() == null || config.getAppId().isEmpty()) {
-            throw new Exception("App ID is not configured");
-        }
-        if (config.getAppSecret() == null || config.getAppSecret().isEmpty()) {
-            throw new Exception("App Secret is not configured");
+            throw new Exception("Solarman API configuration not found");
         }
-        if (config.getEmail() == null || config.getEmail().isEmpty()) {
-            throw new Exception("Email is not configured");
+        return new SolarmanHistoryFetcher(httpClient, API_BASE + RequestResilience.ENDPOINT_HISTORY, resilience,
+            SolarmanTokenManager.getInstance(context), config.getDeviceId(), config.getDeviceSn(),
+            this::notifyProgress);
+    }
+    
+    /**
+     * History window that is still being fetched
+     */
+    private static class PendingWindow {
+        final long endTime;
+        final Future<SolarmanHistoryFetcher.HistoryWindow> future;
+        
+        PendingWindow(long endTime, Future<SolarmanHistoryFetcher.HistoryWindow> future) {
+            this.endTime = endTime;
+            this.future = future;
         }
-        if (config.getPassword() == null || config.getPassword().isEmpty()) {
-            throw new Exception("Password is not configured");
+    }
+    
+    /**
+     * Largest window (days) requested at once for a timeType
+     */
+    private int getMaxWindowDays(int timeType) {
+        switch (timeType) {
+            case 1:
+                return MAX_WINDOW_DAYS_FRAME;
+            case 2:
+                return MAX_WINDOW_DAYS_DAILY;
+            case 3:
+                return MAX_WINDOW_DAYS_MONTHLY;
+            default:
+                return 1;
         }
-
-        String url = API_BASE + "/account/v1.0/token?appId=" + config.getAppId() + "&language=en";
-        
-        // Hash password with SHA-256
-        String hashedPassword = hashPassword(config.getPassword());
-        
-        JSONObject payload = new JSONObject();
-        payload.put("appSecret", config.getAppSecret());
-        payload.put("email", config.getEmail());
-        payload.put("password", hashedPassword);
-
-        notifyProgress("Requesting access token...");
-        Log.d(TAG, "Requesting access token from Solarman API...");
-
-        HttpURLConnection connection = null;
-        try {
-            URL requestUrl = new URL(url);
-            connection = (HttpURLConnection) requestUrl.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setDoOutput(true);
-            connection.setConnectTimeout(20000);
-            connection.setReadTimeout(20000);
-
-            // Send request
-            String payloadString = payload.toString();
-            try (java.io.OutputStream os = connection.getOutputStream()) {
-                byte[] input = payloadString.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-                os.flush();
-            }
-
-            // Read response
-            int responseCode = connection.getResponseCode();
-            String responseBody = readResponse(connection, responseCode);
-
-            JSONObject response = new JSONObject(responseBody);
-            
-            if (responseCode != 200 || !response.optBoolean("success", false)) {
-                String errorMsg = response.optString("msg", "Authentication failed");
-                throw new Exception("Authentication failed: " + errorMsg);
-            }
-
-            if (!response.has("access_token") || response.isNull("access_token")) {
-                throw new Exception("No access_token in response");
+    }
+    
+    /**
+     * Submit history windows ahead of the current day until the in-flight limit is reached.
+     * A day whose window failed (e.g. network loss) gets a new window starting at that day.
+     */
+    private void scheduleHistoryWindows(SolarmanHistoryFetcher historyFetcher, ExecutorService fetchExecutor,
+                                        java.util.TreeMap<Long, PendingWindow> inFlightWindows,
+                                        java.util.Map<Long, SolarmanHistoryFetcher.HistoryWindow> fetchedWindows,
+                                        long currentTime, long endTime, int windowDays) {
+        long nextStart = currentTime;
+        while (inFlightWindows.size() < MAX_IN_FLIGHT_REQUESTS && nextStart <= endTime) {
+            SolarmanHistoryFetcher.HistoryWindow fetched = findFetchedWindow(fetchedWindows, nextStart);
+            if (fetched != null) {
+                nextStart = fetched.endTime + ONE_DAY_MS;
+                continue;
             }
-
-            String accessToken = response.getString("access_token");
-            if (accessToken == null || accessToken.isEmpty()) {
-                throw new Exception("Access token is empty");
+            java.util.Map.Entry<Long, PendingWindow> pending = inFlightWindows.floorEntry(nextStart);
+            if (pending != null && pending.getValue().endTime >= nextStart) {
+                nextStart = pending.getValue().endTime + ONE_DAY_MS;
+                continue;
             }
             
-            cachedAccessToken = accessToken;
-            // Token typically expires in 24 hours, cache for 23 hours
-            tokenExpiryTime = System.currentTimeMillis() + (23 * 60 * 60 * 1000);
-            
-            notifyProgress("Access token received");
-            Log.d(TAG, "Access token obtained successfully");
-            return accessToken;
-
-        } catch (JSONException e) {
-            Log.e(TAG, "JSON parsing error", e);
-            throw new Exception("Failed to parse authentication response: " + e.getMessage(), e);
-        } catch (java.io.IOException e) {
-            Log.e(TAG, "Network error during authentication", e);
-            throw new Exception("Network error: " + e.getMessage(), e);
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
+            long windowStart = nextStart;
+            long windowEnd = Math.min(endTime, windowStart + (windowDays - 1) * ONE_DAY_MS);
+            java.util.Map.Entry<Long, PendingWindow> following = inFlightWindows.higherEntry(windowStart);
+            if (following != null && following.getKey() <= windowEnd) {
+                windowEnd = following.getKey() - ONE_DAY_MS;
             }
+            long finalWindowEnd = windowEnd;
+            inFlightWindows.put(windowStart, new PendingWindow(windowEnd, fetchExecutor.submit(
+                () -> historyFetcher.fetchWindow(windowStart, finalWindowEnd, 1, this::storeDay))));
+            nextStart = windowEnd + ONE_DAY_MS;
         }
     }
     
     /**
-     * Get device history data for a date range
+     * Day sink of the history fetcher: each complete day goes straight into the telemetry store
+     * (one transaction per day), from where the CSV writer reads it back in date order.
+     * A failed write is thrown, so the fetcher reports the day as failed.
      */
-    private List<JSONObject> getDeviceHistory(String token, Date startDate, Date endDate, int timeType, int retries, int delayMs) throws Exception {
-        SolarmanApiConfig config = configRepository.getSolarmanApiConfigSync();
-        if (config == null) {
-            throw new Exception("Solarman API configuration not found");
+    private void storeDay(long dayTime, List<HistoryRecord> records) {
+        if (!records.isEmpty()) {
+            telemetryRepository.writeRecords(records);
         }
-
-        String url = API_BASE + "/device/v1.0/historical";
-        
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        JSONObject payload = new JSONObject();
-        payload.put("deviceId", config.getDeviceId());
-        payload.put("deviceSn", config.getDeviceSn());
-        payload.put("startTime", dateFormat.format(startDate));
-        payload.put("endTime", dateFormat.format(endDate));
-        payload.put("timeType", timeType);
-
-        for (int attempt = 1; attempt <= retries; attempt++) {
-            String attemptMsg = String.format(Locale.getDefault(), 
-                "Requesting device history (timeType=%d) from %s to %s... [try %d/%d]", 
-                timeType, dateFormat.format(startDate), dateFormat.format(endDate), attempt, retries);
-            notifyProgress(attemptMsg);
-            Log.d(TAG, attemptMsg);
-            
+    }
+    
+    /**
+     * Stored records of the local day starting at dayTime, oldest first
+     */
+    private List<HistoryRecord> readStoredDay(long dayTime) {
+        // Solarman collectTime is Unix seconds, so store epochs are true epoch seconds
+        Calendar nextDay = Calendar.getInstance();
+        nextDay.setTimeInMillis(dayTime);
+        nextDay.add(Calendar.DAY_OF_MONTH, 1);
+        return telemetryRepository.getRecordsSync(dayTime / 1000L, nextDay.getTimeInMillis() / 1000L - 1);
+    }
+    
+    private SolarmanHistoryFetcher.HistoryWindow findFetchedWindow(java.util.Map<Long, SolarmanHistoryFetcher.HistoryWindow> fetchedWindows, long dayTime) {
+        for (SolarmanHistoryFetcher.HistoryWindow window : fetchedWindows.values()) {
+            if (window.covers(dayTime)) {
+                return window;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Get the number of records stored for one day, waiting for its window if needed;
+     * rethrows the day's failure
+     */
+    private int takeDay(java.util.TreeMap<Long, PendingWindow> inFlightWindows,
+                                     java.util.Map<Long, SolarmanHistoryFetcher.HistoryWindow> fetchedWindows,
+                                     long dayTime) throws Exception {
+        SolarmanHistoryFetcher.HistoryWindow window = findFetchedWindow(fetchedWindows, dayTime);
+        if (window == null) {
+            java.util.Map.Entry<Long, PendingWindow> entry = inFlightWindows.floorEntry(dayTime);
+            if (entry == null || entry.getValue().endTime < dayTime) {
+                throw new IllegalStateException("No history window scheduled for day " + dayTime);
+            }
+            inFlightWindows.remove(entry.getKey());
             try {
-                HttpURLConnection connection = null;
-                try {
-                    URL requestUrl = new URL(url);
-                    connection = (HttpURLConnection) requestUrl.openConnection();
-                    connection.setRequestMethod("POST");
-                    connection.setRequestProperty("Authorization", "Bearer " + token);
-                    connection.setRequestProperty("Content-Type", "application/json");
-                    connection.setDoOutput(true);
-                    connection.setConnectTimeout(20000);
-                    connection.setReadTimeout(20000);
-
-                    // Send request
-                    String payloadString = payload.toString();
-                    try (java.io.OutputStream os = connection.getOutputStream()) {
-                        byte[] input = payloadString.getBytes(StandardCharsets.UTF_8);
-                        os.write(input, 0, input.length);
-                        os.flush();
-                    }
-
-                    // Read response
-                    int responseCode = connection.getResponseCode();
-                    String responseBody = readResponse(connection, responseCode);
-
-                    JSONObject response = new JSONObject(responseBody);
-
-                    if (!response.optBoolean("success", false)) {
-                        String errorMsg = response.optString("msg", "Request failed");
-                        Log.w(TAG, "History request failed: " + errorMsg);
-                        if (attempt == retries) {
-                            throw new RuntimeException("API failed " + retries + "× for " + 
-                                dateFormat.format(startDate) + "–" + dateFormat.format(endDate) + ": " + errorMsg);
-                        }
-                        Thread.sleep(delayMs);
-                        continue;
-                    }
-
-                    // Success - return data
-                    JSONArray paramDataList = response.optJSONArray("paramDataList");
-                    List<JSONObject> result = new ArrayList<>();
-                    if (paramDataList != null) {
-                        for (int i = 0; i < paramDataList.length(); i++) {
-                            result.add(paramDataList.getJSONObject(i));
-                        }
-                    }
-                    return result;
-
-                } catch (JSONException | java.io.IOException e) {
-                    Log.e(TAG, "Request exception: " + e.getMessage());
-                    
-                    // Check if it's a network error
-                    if (e instanceof java.net.UnknownHostException || 
-                        e instanceof java.net.ConnectException ||
-                        e instanceof java.net.SocketTimeoutException ||
-                        (e instanceof java.io.IOException && e.getMessage() != null && 
-                         (e.getMessage().contains("Unable to resolve host") || 
-                          e.getMessage().contains("Network is unreachable")))) {
-                        
-                        // Wait for network connection
-                        notifyProgress("Waiting for network connection...");
-                        waitForNetworkConnection();
-                        notifyProgress("Network connection restored, retrying...");
-                    }
-                    
-                    if (attempt == retries) {
-                        throw new RuntimeException("Network or parsing error after " + retries + 
-                            " retries for " + dateFormat.format(startDate) + "–" + dateFormat.format(endDate), e);
-                    }
-                    Thread.sleep(delayMs);
-                } finally {
-                    if (connection != null) {
-                        connection.disconnect();
-                    }
+                window = entry.getValue().future.get();
+            } catch (java.util.concurrent.ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Request interrupted", e);
+                throw e;
             }
+            fetchedWindows.put(window.startTime, window);
         }
-
-        throw new RuntimeException("Unexpected exit from getDeviceHistory()");
+        
+        Exception failure = window.failures.remove(dayTime);
+        Integer dayCount = window.days.remove(dayTime);
+        if (window.days.isEmpty() && window.failures.isEmpty()) {
+            fetchedWindows.remove(window.startTime);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return dayCount != null ? dayCount : 0;
+    }
+    
+    /**
+     * Check if exception is caused by missing/unstable network connection
+     */
+    private boolean isNetworkError(Exception e) {
+        return RequestResilience.isNetworkError(e);
+    }
+    
+    /**
+     * Hash of config fields that change what the Solarman API returns (device identity).
+     * A change invalidates the fetched station data.
+     */
+    private String calculateTelemetryConfigHash(SolarmanApiConfig config) {
+        if (config == null) return "";
+        
+        String configString = config.getDeviceId() + "_" + config.getDeviceSn();
+        return shortHash(configString);
     }
     
     /**
-     * Calculate hash of station configuration
+     * Hash of station model fields (power, panels, tilt, location). A change invalidates
+     * only results derived with the model (saved forecasts), not the fetched data.
      */
-    private String calculateConfigHash(StationConfig config) {
+    private String calculateModelConfigHash(StationConfig config) {
         if (config == null) return "";
         
         String configString = String.format(Locale.US, "%.2f_%d_%d_%.4f_%d_%.6f_%.6f",
@@ -303,7 +291,13 @@ public class SolarmanStationDataService {
             config.getTiltDeg(),
             config.getLatitude(),
             config.getLongitude());
-        
+        return shortHash(configString);
+    }
+    
+    /**
+     * First 16 hex chars of SHA-256 (falls back to the input)
+     */
+    private String shortHash(String configString) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hash = digest.digest(configString.getBytes(StandardCharsets.UTF_8));
@@ -350,7 +344,7 @@ public class SolarmanStationDataService {
     /**
      * Save metadata to file
      */
-    private void saveMetadata(String configHash, Date configLastChanged, Date fetchDate) {
+    private void saveMetadata(String telemetryHash, String modelHash, Date configLastChanged, Date fetchDate) {
         try {
             File csvDir = new File(context.getFilesDir(), "csv");
             if (!csvDir.exists()) {
@@ -359,9 +353,17 @@ public class SolarmanStationDataService {
             
             File metadataFile = new File(csvDir, METADATA_FILE);
             JSONObject metadata = new JSONObject();
-            metadata.put("configHash", configHash);
+            metadata.put("telemetryHash", telemetryHash);
+            metadata.put("configHash", modelHash);
             metadata.put("configLastChanged", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(configLastChanged));
-            metadata.put("lastFetchDate", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(fetchDate));
+            if (fetchDate != null) {
+                metadata.put("lastFetchDate", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(fetchDate));
+            } else {
+                String lastFetchDate = loadMetadata().optString("lastFetchDate", "");
+                if (!lastFetchDate.isEmpty()) {
+                    metadata.put("lastFetchDate", lastFetchDate);
+                }
+            }
             
             try (FileWriter writer = new FileWriter(metadataFile, false)) {
                 writer.write(metadata.toString(2)); // Pretty print with 2 spaces
@@ -379,142 +381,147 @@ public class SolarmanStationDataService {
     }
     
     /**
-     * Get date range from existing station CSV
+     * Local days (yyyy-MM-dd) with rows in the telemetry store, from its daily rollups
      */
-    private Date[] getStationCsvDateRange(File csvFile) {
-        if (!csvFile.exists()) {
+    private java.util.TreeSet<String> loadStoredDays() {
+        java.util.TreeSet<String> days = new java.util.TreeSet<>();
+        for (TelemetryDaily rollup : telemetryRepository.getAllDailyRollupsSync()) {
+            days.add(rollup.getDay().toString());
+        }
+        return days;
+    }
+    
+    /**
+     * Date range (first and last day) of the telemetry store, or null if it is empty
+     */
+    private Date[] getStoredDateRange(java.util.SortedSet<String> storedDays) {
+        if (storedDays.isEmpty()) {
             return null;
         }
-        
-        try (BufferedReader reader = new BufferedReader(new java.io.FileReader(csvFile))) {
-            reader.readLine(); // Skip header
-            
-            String firstLine = null;
-            String lastLine = null;
-            String line;
-            
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                if (firstLine == null) {
-                    firstLine = line;
-                }
-                lastLine = line;
-            }
-            
-            if (firstLine == null || lastLine == null) {
-                return null;
-            }
-            
-            // Extract date from first column
-            String[] firstParts = firstLine.split(",", 2);
-            String[] lastParts = lastLine.split(",", 2);
-            
-            if (firstParts.length == 0 || lastParts.length == 0) {
-                return null;
-            }
-            
-            SimpleDateFormat[] formats = {
-                new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.getDefault()),
-                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()),
-                new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
-            };
-            
-            Date startDate = null;
-            Date endDate = null;
-            
-            for (SimpleDateFormat format : formats) {
-                try {
-                    startDate = format.parse(firstParts[0].trim());
-                    endDate = format.parse(lastParts[0].trim());
-                    break;
-                } catch (Exception e) {
-                    // Try next format
-                }
-            }
-            
-            if (startDate != null && endDate != null) {
-                return new Date[]{startDate, endDate};
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error reading station CSV date range", e);
+        Date startDate = CsvDayIndex.parseDay(storedDays.first());
+        Date endDate = CsvDayIndex.parseDay(storedDays.last());
+        if (startDate != null && endDate != null) {
+            return new Date[]{startDate, endDate};
         }
-        
         return null;
     }
     
     /**
-     * Trim CSV file to start from specific date
+     * Trim telemetry store and CSV file to start from specific date
+     * (the CSV with a single copy from the day's byte offset)
      */
     private void trimCsvToDate(File csvFile, Date minDate) {
+        String minDay = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(minDate);
+        // Solarman collectTime is Unix seconds, so the store epoch of local midnight is the Date's
+        telemetryRepository.deleteBefore(minDate.getTime() / 1000L);
         if (!csvFile.exists()) {
             return;
         }
-        
         try {
-            // Read all lines
-            List<String> lines = new ArrayList<>();
-            try (BufferedReader reader = new BufferedReader(new java.io.FileReader(csvFile))) {
-                String header = reader.readLine();
-                if (header == null) return;
-                lines.add(header);
-                
-                String line;
-                SimpleDateFormat[] formats = {
-                    new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.getDefault()),
-                    new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()),
-                    new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
-                };
-                
-                while ((line = reader.readLine()) != null) {
-                    if (line.trim().isEmpty()) continue;
-                    
-                    String[] parts = line.split(",", 2);
-                    if (parts.length > 0) {
-                        Date lineDate = null;
-                        for (SimpleDateFormat format : formats) {
-                            try {
-                                lineDate = format.parse(parts[0].trim());
-                                break;
-                            } catch (Exception e) {
-                                // Try next format
-                            }
-                        }
-                        
-                        // Keep line if date is >= minDate (compare dates only, ignore time)
-                        if (lineDate != null) {
-                            java.util.Calendar lineCal = java.util.Calendar.getInstance();
-                            lineCal.setTime(lineDate);
-                            lineCal.set(java.util.Calendar.HOUR_OF_DAY, 0);
-                            lineCal.set(java.util.Calendar.MINUTE, 0);
-                            lineCal.set(java.util.Calendar.SECOND, 0);
-                            lineCal.set(java.util.Calendar.MILLISECOND, 0);
-                            
-                            java.util.Calendar minCal = java.util.Calendar.getInstance();
-                            minCal.setTime(minDate);
-                            minCal.set(java.util.Calendar.HOUR_OF_DAY, 0);
-                            minCal.set(java.util.Calendar.MINUTE, 0);
-                            minCal.set(java.util.Calendar.SECOND, 0);
-                            minCal.set(java.util.Calendar.MILLISECOND, 0);
-                            
-                            if (!lineCal.getTime().before(minCal.getTime())) {
-                                lines.add(line);
-                            }
-                        }
+            if (CsvDayIndex.load(csvFile).trimBefore(minDay)) {
+                Log.d(TAG, "Trimmed CSV file to start from " + minDay);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error trimming CSV file", e);
+        }
+    }
+    
+    /**
+     * Rewrite station_data.csv from the telemetry store if it lacks stored days
+     * (e.g. a CSV write failed after the day was stored, or the file was deleted)
+     */
+    private void syncCsvMirror(File csvFile, java.util.SortedSet<String> storedDays) {
+        CsvDayIndex index = csvFile.exists() ? CsvDayIndex.load(csvFile) : null;
+        for (String day : storedDays) {
+            if (index == null || !index.containsDay(day)) {
+                notifyProgress("Rebuilding station CSV from the telemetry store...");
+                int rows = telemetryRepository.exportCsv(csvFile);
+                Log.d(TAG, "CSV was missing " + day + ", rewrote " + rows + " rows from the store");
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Re-fetch days missing inside the stored range (failed or never recorded in the ledger)
+     * into the telemetry store and splice them into the CSV. Stops early on network loss;
+     * the rest is retried next run.
+     * @return Number of rows inserted
+     */
+    private int fillLedgerGaps(SolarmanHistoryFetcher historyFetcher, File csvFile,
+                               StationFetchLedger ledger, java.util.SortedSet<String> storedDays) throws Exception {
+        List<String> gapDays = ledger.planGapDays(storedDays, MAX_GAP_ATTEMPTS);
+        if (gapDays.isEmpty()) {
+            return 0;
+        }
+        notifyProgress("Backfilling " + gapDays.size() + " missing days...");
+        
+        CsvDayIndex index = CsvDayIndex.load(csvFile);
+        java.util.TreeMap<String, List<HistoryRecord>> fetchedDays = new java.util.TreeMap<>();
+        java.util.TreeMap<String, byte[]> blocks = new java.util.TreeMap<>();
+        int insertedRows = 0;
+        try (SchemaCsvWriter csvWriter = SchemaCsvWriter.open(csvFile, "collectTime", true)) {
+            for (String day : gapDays) {
+                long dayTime = CsvDayIndex.parseDay(day).getTime();
+                Exception failure;
+                int storedCount = 0;
+                try {
+                    SolarmanHistoryFetcher.HistoryWindow window = historyFetcher.fetchWindow(dayTime, dayTime, 1, this::storeDay);
+                    failure = window.failures.get(dayTime);
+                    Integer count = window.days.get(dayTime);
+                    storedCount = count != null ? count : 0;
+                } catch (Exception e) {
+                    if (isNetworkError(e) || e instanceof RequestResilience.CircuitOpenException) {
+                        notifyProgress("Solarman API unreachable during backfill, remaining days kept for next run");
+                        break;
                     }
+                    failure = e;
                 }
+                if (failure != null) {
+                    ledger.recordFailed(day);
+                    notifyProgress("Backfill " + day + " - failed: " + failure.getMessage());
+                    continue;
+                }
+                
+                List<HistoryRecord> dayData = storedCount > 0 ? readStoredDay(dayTime) : new ArrayList<>();
+                if (storedCount > 0 && dayData.isEmpty()) {
+                    ledger.recordFailed(day);
+                    notifyProgress("Backfill " + day + " - failed: stored rows could not be read back");
+                    continue;
+                }
+                if (dayData.isEmpty()) {
+                    ledger.recordEmpty(day);
+                    continue;
+                }
+                for (HistoryRecord item : dayData) {
+                    csvWriter.addColumns(item.keys);
+                }
+                fetchedDays.put(day, dayData);
+                ledger.recordFetched(day, dayData.size());
+                insertedRows += dayData.size();
+                notifyProgress("Backfill " + day + " - " + dayData.size() + " records");
             }
-            
-            // Write back
-            try (FileWriter writer = new FileWriter(csvFile, false)) {
-                for (String line : lines) {
-                    writer.write(line + "\n");
+            // Format once all columns are known, so every spliced row has the full width
+            for (java.util.Map.Entry<String, List<HistoryRecord>> entry : fetchedDays.entrySet()) {
+                StringBuilder rows = new StringBuilder();
+                for (HistoryRecord item : entry.getValue()) {
+                    rows.append(csvWriter.formatRow(item.collectTime, item.keys, item.values));
                 }
+                blocks.put(entry.getKey(), rows.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (csvWriter.flush()) {
+                // Existing rows were padded for the new columns, so their offsets moved
+                index = CsvDayIndex.load(csvFile);
+            } else {
+                index.save(csvWriter.getHeaderBytes());
             }
-            
-            Log.d(TAG, "Trimmed CSV file to start from " + new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(minDate));
-        } catch (Exception e) {
-            Log.e(TAG, "Error trimming CSV file", e);
         }
+        
+        if (!blocks.isEmpty()) {
+            index.insertDays(blocks);
+        }
+        ledger.save();
+        return insertedRows;
     }
     
     /**
@@ -532,12 +539,18 @@ public class SolarmanStationDataService {
                     return;
                 }
                 
-                String currentConfigHash = calculateConfigHash(currentConfig);
+                String currentTelemetryHash = calculateTelemetryConfigHash(configRepository.getSolarmanApiConfigSync());
+                String currentModelHash = calculateModelConfigHash(currentConfig);
                 
                 // Load metadata
                 JSONObject metadata = loadMetadata();
-                String lastConfigHash = metadata.optString("configHash", "");
-                boolean configChanged = !currentConfigHash.equals(lastConfigHash);
+                String lastModelHash = metadata.optString("configHash", "");
+                boolean modelChanged = !currentModelHash.equals(lastModelHash);
+                // Metadata written before the split has no telemetry hash - keep its data
+                boolean telemetryChanged = metadata.has("telemetryHash")
+                    ? !currentTelemetryHash.equals(metadata.optString("telemetryHash", ""))
+                    : !metadata.has("configHash");
+                boolean configChanged = telemetryChanged || modelChanged;
                 
                 // Get config last changed date
                 Date configLastChanged = new Date(); // Default to current time
@@ -564,8 +577,19 @@ public class SolarmanStationDataService {
                     }
                 }
                 
-                if (configChanged) {
-                    notifyProgress("Configuration changed, fetching all data...");
+                if (modelChanged) {
+                    // Forecasts were computed with the old station model; fetched data stays valid
+                    StateUtils.clearForecastData(context);
+                }
+                if (modelChanged && !telemetryChanged) {
+                    // Record now: an early return below must not clear forecasts again next run
+                    saveMetadata(currentTelemetryHash, currentModelHash, configLastChanged, null);
+                }
+                
+                if (telemetryChanged) {
+                    notifyProgress("Device changed, fetching all data...");
+                } else if (modelChanged) {
+                    notifyProgress("Station model changed, keeping fetched data, checking for missing dates...");
                 } else {
                     notifyProgress("Configuration unchanged, checking for missing dates...");
                 }
@@ -607,20 +631,38 @@ public class SolarmanStationDataService {
                 
                 Date fetchStartDate = weatherStartDate;
                 boolean appendMode = false;
+                StationFetchLedger ledger = StationFetchLedger.load(csvFile);
+                SolarmanHistoryFetcher historyFetcher = newHistoryFetcher();
                 
-                if (!configChanged && csvFile.exists()) {
-                    // Check existing data range
-                    Date[] existingRange = getStationCsvDateRange(csvFile);
+                if (!telemetryChanged) {
+                    // History fetched before the telemetry store existed is moved into it first
+                    int importedRows = csvFile.exists() ? telemetryRepository.importCsvIfEmpty(csvFile) : 0;
+                    if (importedRows > 0) {
+                        notifyProgress("Imported " + importedRows + " stored records into the telemetry store");
+                        generationDataRepository.refreshActualFromTelemetry();
+                    }
+                    
+                    // The store is the record of what was fetched; the CSV only mirrors it
+                    java.util.TreeSet<String> storedDays = loadStoredDays();
+                    Date[] existingRange = getStoredDateRange(storedDays);
                     if (existingRange != null) {
                         Date existingStart = existingRange[0];
                         Date existingEnd = existingRange[1];
                         
-                        // Trim CSV if it starts before weather data
+                        // Trim store and CSV if they start before weather data
                         if (existingStart.before(weatherStartDate)) {
-                            notifyProgress("Trimming CSV to match weather date range...");
+                            notifyProgress("Trimming stored data to match weather date range...");
                             trimCsvToDate(csvFile, weatherStartDate);
+                            storedDays = loadStoredDays();
                             existingStart = weatherStartDate;
                         }
+                        syncCsvMirror(csvFile, storedDays);
+                        
+                        // Retry days missing inside the stored range before extending it
+                        int backfilledRows = fillLedgerGaps(historyFetcher, csvFile, ledger, storedDays);
+                        if (backfilledRows > 0) {
+                            notifyProgress("Backfilled " + backfilledRows + " records into existing range");
+                        }
                         
                         // If we have data up to some date, start from next day
                         if (!existingEnd.before(weatherEndDate)) {
@@ -634,17 +676,21 @@ public class SolarmanStationDataService {
                             return;
                         }
                         
-                        // Start from day after existing end
+                        // Start from day after existing end (the weather start if everything was trimmed)
                         long oneDay = 24 * 60 * 60 * 1000L;
-                        fetchStartDate = new Date(existingEnd.getTime() + oneDay);
-                        appendMode = true;
+                        fetchStartDate = new Date(Math.max(existingEnd.getTime() + oneDay, weatherStartDate.getTime()));
+                        appendMode = csvFile.exists();
                         notifyProgress("Resuming from " + new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(fetchStartDate));
                     }
-                } else if (configChanged) {
-                    // Config changed, start fresh
+                } else {
+                    // Different device, start fresh
                     if (csvFile.exists()) {
                         csvFile.delete();
                     }
+                    SchemaCsvWriter.schemaFileFor(csvFile).delete();
+                    CsvDayIndex.indexFileFor(csvFile).delete();
+                    ledger.clear();
+                    telemetryRepository.clear();
                 }
                 
                 Date startDate = fetchStartDate;
@@ -653,7 +699,7 @@ public class SolarmanStationDataService {
                 if (startDate.after(endDate)) {
                     notifyProgress("All data already exists, no fetch needed");
                     if (callback != null) {
-                        Date[] finalRange = getStationCsvDateRange(csvFile);
+                        Date[] finalRange = getStoredDateRange(loadStoredDays());
                         if (finalRange != null) {
                             String firstTimestamp = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(finalRange[0]);
                             String lastTimestamp = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(finalRange[1]);
@@ -668,49 +714,24 @@ public class SolarmanStationDataService {
                 notifyProgress("Date range: " + new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(startDate) + 
                     " to " + new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(endDate));
                 
-                // Get access token
-                String token = getAccessToken();
+                // Log in up front so configuration errors surface before the fetch starts
+                getAccessToken();
                 
-                // Open CSV file for writing (append if resuming)
-                FileWriter csvWriter = null;
-                // Use LinkedHashSet to preserve insertion order (order of appearance)
-                java.util.Set<String> allKeys = new java.util.LinkedHashSet<>();
-                java.util.List<String> allKeysOrdered = new java.util.ArrayList<>(); // Maintain order for header
+                // Open CSV file for writing (append if resuming); columns come from the schema registry
+                SchemaCsvWriter csvWriter = null;
+                CsvDayIndex dayIndex = null;
                 int totalRecords = 0;
-                int currentBlockSize = 0;
-                int lastValidBlockSize = 0;
-                boolean hasValidData = false;
-                Date currentBlockStartDate = null; // Track date where current block starts
-                Date lastValidBlockStartDate = null; // Track date where last valid block starts
                 
-                // If appending, read existing keys from header
-                if (appendMode && csvFile.exists()) {
-                    try (BufferedReader reader = new BufferedReader(new java.io.FileReader(csvFile))) {
-                        String header = reader.readLine();
-                        if (header != null) {
-                            String[] keys = header.split(",");
-                            for (String key : keys) {
-                                String trimmedKey = key.trim();
-                                if (!trimmedKey.isEmpty() && !trimmedKey.equals("collectTime")) {
-                                    allKeys.add(trimmedKey);
-                                    allKeysOrdered.add(trimmedKey);
-                                }
-                            }
-                            hasValidData = true;
-                        }
-                    } catch (Exception e) {
-                        Log.w(TAG, "Error reading existing CSV header", e);
-                    }
-                }
+                // Multi-day windows are requested ahead in parallel and stored day by day as they stream in;
+                // days are consumed (and written to the CSV) in date order
+                ExecutorService dayFetchExecutor = Executors.newFixedThreadPool(MAX_IN_FLIGHT_REQUESTS);
+                java.util.TreeMap<Long, PendingWindow> inFlightWindows = new java.util.TreeMap<>();
+                java.util.Map<Long, SolarmanHistoryFetcher.HistoryWindow> fetchedWindows = new java.util.HashMap<>();
+                int windowDays = getMaxWindowDays(1);
                 
                 try {
-                    csvWriter = new FileWriter(csvFile, appendMode);
-                    
-                    // Don't write header yet - we'll collect keys from first few days first
-                    boolean headerWritten = false;
-                    int keysCollectionDays = 0;
-                    final int MAX_KEYS_COLLECTION_DAYS = 3; // Collect keys from first 3 days
-                    java.util.List<JSONObject> pendingData = new java.util.ArrayList<>(); // Store data while collecting keys
+                    dayIndex = appendMode ? CsvDayIndex.load(csvFile) : CsvDayIndex.create(csvFile);
+                    csvWriter = SchemaCsvWriter.open(csvFile, "collectTime", appendMode);
                     
                     // Fetch data day by day and write to CSV immediately
                     long startTime = startDate.getTime();
@@ -718,7 +739,7 @@ public class SolarmanStationDataService {
                     long oneDay = 24 * 60 * 60 * 1000L;
                     
                     int dayCounter = 0;
-                    int consecutiveFailures = 0;
+                    int circuitPauses = 0;
                     
                     long currentTime = startTime;
                     while (currentTime <= endTime) {
@@ -726,238 +747,121 @@ public class SolarmanStationDataService {
                         Date currentDate = new Date(currentTime);
                         boolean shouldRetry = false;
                         
+                        // Keep up to MAX_IN_FLIGHT_REQUESTS windows running ahead of the current day
+                        scheduleHistoryWindows(historyFetcher, dayFetchExecutor, inFlightWindows, fetchedWindows,
+                            currentTime, endTime, windowDays);
+                        
+                        List<HistoryRecord> dayData = null;
                         try {
-                            List<JSONObject> dayData = getDeviceHistory(token, currentDate, currentDate, 1, 3, 3000);
+                            // The day is already in the store; it counts as fetched once it reads back
+                            int dayCount = takeDay(inFlightWindows, fetchedWindows, currentTime);
+                            dayData = dayCount > 0 ? readStoredDay(currentTime) : new ArrayList<>();
+                            if (dayCount > 0 && dayData.isEmpty()) {
+                                throw new IllegalStateException("Stored rows could not be read back");
+                            }
                             
-                            if (dayData != null && !dayData.isEmpty()) {
-                                // If this is start of a new block, mark the date
-                                if (currentBlockSize == 0) {
-                                    currentBlockStartDate = currentDate;
-                                }
-                                
-                                // Collect ALL keys from this day's data (preserve order)
-                                boolean newKeysFound = false;
-                                for (JSONObject item : dayData) {
-                                    JSONArray dataList = item.optJSONArray("dataList");
-                                    if (dataList != null) {
-                                        for (int i = 0; i < dataList.length(); i++) {
-                                            JSONObject dataItem = dataList.optJSONObject(i);
-                                            if (dataItem != null) {
-                                                String key = dataItem.optString("key", dataItem.optString("name", ""));
-                                                if (!key.isEmpty() && !allKeys.contains(key)) {
-                                                    allKeys.add(key);
-                                                    allKeysOrdered.add(key);
-                                                    newKeysFound = true;
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                                
-                                // If we're still collecting keys, store data for later
-                                if (!headerWritten && keysCollectionDays < MAX_KEYS_COLLECTION_DAYS) {
-                                    pendingData.addAll(dayData);
-                                    keysCollectionDays++;
-                                    if (newKeysFound) {
-                                        notifyProgress(String.format(Locale.getDefault(), 
-                                            "Day %d: %s - collecting keys (%d keys so far)...", dayCounter, 
-                                            new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(currentDate),
-                                            allKeysOrdered.size()));
-                                    }
-                                } else {
-                                    // Write header if this is first write
-                                    if (!headerWritten) {
-                                        if (!appendMode || !hasValidData) {
-                                            // Write header with all collected keys in order
-                                            csvWriter.write("collectTime");
-                                            for (String key : allKeysOrdered) {
-                                                csvWriter.write("," + key);
-                                            }
-                                            csvWriter.write("\n");
-                                            headerWritten = true;
-                                            hasValidData = true;
-                                            
-                                            // Write all pending data now that header is written
-                                            for (JSONObject item : pendingData) {
-                                                writeCsvRow(csvWriter, item, allKeys, allKeysOrdered);
-                                                totalRecords++;
-                                                currentBlockSize++;
-                                            }
-                                            pendingData.clear();
-                                            
-                                            notifyProgress("Header written with " + allKeysOrdered.size() + " columns");
-                                        } else {
-                                            // Appending mode - header already exists
-                                            headerWritten = true;
-                                            pendingData.clear();
-                                        }
-                                    }
-                                    
-                                    // Write current day's data rows
-                                    for (JSONObject item : dayData) {
-                                        writeCsvRow(csvWriter, item, allKeys, allKeysOrdered);
-                                        totalRecords++;
-                                        currentBlockSize++;
-                                    }
-                                }
-                                
-                                // Mark as having valid data after first successful write
-                                if (!hasValidData) {
-                                    hasValidData = true;
-                                }
-                                
-                                csvWriter.flush(); // Flush to disk periodically
-                                
-                                consecutiveFailures = 0;
-                                if (headerWritten) {
-                                    notifyProgress(String.format(Locale.getDefault(), 
-                                        "Day %d: %s - %d records (total: %d)", dayCounter, 
-                                        new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(currentDate),
-                                        dayData.size(), totalRecords));
-                                }
-                                
+                            String day = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(currentDate);
+                            if (!dayData.isEmpty()) {
+                                ledger.recordFetched(day, dayData.size());
+                                ledger.save();
                             } else {
-                                // Gap detected - if we were collecting keys, write header and pending data first
-                                if (!headerWritten && !pendingData.isEmpty()) {
-                                    if (!appendMode || !hasValidData) {
-                                        // Write header with all collected keys in order
-                                        csvWriter.write("collectTime");
-                                        for (String key : allKeysOrdered) {
-                                            csvWriter.write("," + key);
-                                        }
-                                        csvWriter.write("\n");
-                                        headerWritten = true;
-                                        hasValidData = true;
-                                        
-                                        // Write all pending data now that header is written
-                                        for (JSONObject item : pendingData) {
-                                            writeCsvRow(csvWriter, item, allKeys, allKeysOrdered);
-                                            totalRecords++;
-                                            currentBlockSize++;
-                                        }
-                                        pendingData.clear();
-                                        
-                                        notifyProgress("Header written with " + allKeysOrdered.size() + " columns before gap");
-                                    } else {
-                                        headerWritten = true;
-                                        pendingData.clear();
-                                    }
-                                }
-                                
-                                // Save current block as last valid and reset
-                                if (currentBlockSize > 0) {
-                                    notifyProgress("⚠️ Gap detected at " + 
-                                        new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(currentDate) + 
-                                        " — saving current block");
-                                    lastValidBlockSize = currentBlockSize;
-                                    lastValidBlockStartDate = currentBlockStartDate; // Save start date of the block we're saving
-                                    currentBlockSize = 0;
-                                    currentBlockStartDate = null;
-                                } else {
-                                    notifyProgress("Skipping empty day: " + 
-                                        new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(currentDate));
-                                }
-                                consecutiveFailures = 0;
+                                // Gaps stay in place; the ledger retries the day in a later backfill
+                                ledger.recordEmpty(day);
+                                ledger.save();
+                                notifyProgress("Skipping empty day: " + day);
                             }
                         } catch (Exception e) {
                             // Check if it's a network error
-                            boolean isNetworkError = e instanceof java.net.UnknownHostException || 
-                                e instanceof java.net.ConnectException ||
-                                e instanceof java.net.SocketTimeoutException ||
-                                (e.getMessage() != null && 
-                                 (e.getMessage().contains("Unable to resolve host") || 
-                                  e.getMessage().contains("Network is unreachable") ||
-                                  e.getMessage().contains("Network error")));
+                            boolean isNetworkError = isNetworkError(e);
                             
                             if (isNetworkError) {
-                                // Wait for network connection before continuing
+                                // Resume on the connectivity callback instead of polling
                                 notifyProgress("Waiting for network connection...");
                                 try {
-                                    waitForNetworkConnection();
+                                    resilience.awaitNetwork();
                                     notifyProgress("Network connection restored, retrying day " + dayCounter);
                                     // Retry the same day instead of moving to next
                                     dayCounter--; // Decrement counter to retry same day
-                                    consecutiveFailures = 0; // Reset failures since we're retrying
                                     shouldRetry = true; // Mark for retry
-                                    Thread.sleep(1000); // Brief pause before retry
                                 } catch (Exception networkWaitError) {
                                     notifyProgress("Network connection timeout, stopping");
                                     throw new RuntimeException("Network connection lost and not restored", networkWaitError);
                                 }
+                            } else if (e instanceof RequestResilience.CircuitOpenException) {
+                                // Endpoint keeps failing: pause until the breaker lets a probe through
+                                if (++circuitPauses > MAX_CIRCUIT_PAUSES) {
+                                    throw new RuntimeException("Stopping: Solarman history API keeps failing (last day = " + 
+                                        new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(currentDate) + ")", e);
+                                }
+                                long pauseMs = ((RequestResilience.CircuitOpenException) e).getRetryInMs();
+                                notifyProgress("Solarman API failing, pausing " + (pauseMs / 1000) + " s...");
+                                Thread.sleep(pauseMs);
+                                dayCounter--;
+                                shouldRetry = true;
                             } else {
-                                consecutiveFailures++;
+                                ledger.recordFailed(new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(currentDate));
+                                ledger.save();
                                 notifyProgress(String.format(Locale.getDefault(), 
-                                    "Day %d: %s - failed (%d consecutive fails): %s", 
+                                    "Day %d: %s - failed, will be retried by backfill: %s", 
                                     dayCounter, 
                                     new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(currentDate),
-                                    consecutiveFailures, e.getMessage()));
-                                
-                                if (consecutiveFailures >= 3) {
-                                    throw new RuntimeException("Stopping: 3 consecutive failed days (last = " + 
-                                        new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(currentDate) + ")", e);
-                                }
+                                    e.getMessage()));
                             }
                         }
                         
-                        // Move to next day only if not retrying
-                        if (!shouldRetry) {
-                            currentTime += oneDay;
-                            Thread.sleep(300); // Delay between requests
-                        }
-                    }
-                    
-                    // If header wasn't written yet (e.g., less than 3 days of data), write it now
-                    if (!headerWritten && !allKeysOrdered.isEmpty()) {
-                        if (!appendMode || !hasValidData) {
-                            // Write header with all collected keys in order
-                            csvWriter.write("collectTime");
-                            for (String key : allKeysOrdered) {
-                                csvWriter.write("," + key);
+                        if (dayData != null && !dayData.isEmpty()) {
+                            // Mirror the stored day into the CSV; a write error ends the run and the
+                            // next run rebuilds the CSV from the store
+                            int columnsBefore = csvWriter.getColumns().size();
+                            long dayOffset = csvWriter.getDataLength();
+                            for (HistoryRecord item : dayData) {
+                                csvWriter.writeRow(item.collectTime, item.keys, item.values);
+                                totalRecords++;
+                            }
+                            boolean rewritten = csvWriter.flush(); // Flush to disk (and header/schema if columns were added)
+                            if (rewritten) {
+                                // Older rows were padded for the new columns, so their offsets moved
+                                dayIndex = CsvDayIndex.load(csvFile);
+                            } else {
+                                dayIndex.addDay(new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(currentDate),
+                                    dayOffset);
+                                dayIndex.save(csvWriter.getHeaderBytes());
                             }
-                            csvWriter.write("\n");
-                            headerWritten = true;
-                            hasValidData = true;
                             
-                            // Write all pending data now that header is written
-                            for (JSONObject item : pendingData) {
-                                writeCsvRow(csvWriter, item, allKeys, allKeysOrdered);
-                                totalRecords++;
-                                currentBlockSize++;
+                            int columnsAdded = csvWriter.getColumns().size() - columnsBefore;
+                            if (columnsAdded > 0 && columnsBefore > 0) {
+                                notifyProgress("Added " + columnsAdded + " new columns (" +
+                                    csvWriter.getColumns().size() + " total)");
                             }
-                            pendingData.clear();
                             
-                            notifyProgress("Header written with " + allKeysOrdered.size() + " columns (from " + keysCollectionDays + " days)");
+                            notifyProgress(String.format(Locale.getDefault(), 
+                                "Day %d: %s - %d records (total: %d)", dayCounter, 
+                                new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(currentDate),
+                                dayData.size(), totalRecords));
                         }
-                    }
-                    
-                    // Keep the last continuous block
-                    if (currentBlockSize > 0) {
-                        lastValidBlockSize = currentBlockSize;
-                        // If no gap was detected, use current block start date
-                        if (lastValidBlockStartDate == null) {
-                            lastValidBlockStartDate = currentBlockStartDate;
+                        
+                        // Move to next day only if not retrying (pacing is done by the rate limiter)
+                        if (!shouldRetry) {
+                            currentTime += oneDay;
                         }
                     }
                     
                 } finally {
+                    dayFetchExecutor.shutdownNow();
+                    fetchedWindows.clear();
+                    resilience.logMetrics();
+                    resilience.exportMetrics();
                     if (csvWriter != null) {
                         csvWriter.close();
+                        if (dayIndex != null) {
+                            dayIndex.save(csvWriter.getHeaderBytes());
+                        }
                     }
                 }
                 
-                // Trim file to last continuous block if there was a gap
-                if (lastValidBlockStartDate != null && lastValidBlockSize > 0 && lastValidBlockSize < totalRecords) {
-                    notifyProgress("Trimming file to last continuous block starting from " + 
-                        new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(lastValidBlockStartDate));
-                    trimCsvToDate(csvFile, lastValidBlockStartDate);
-                }
-                
-                // Use the last valid block size for final count
-                int finalRecordCount = lastValidBlockSize > 0 ? lastValidBlockSize : totalRecords;
-                
-                notifyProgress("Final continuous block kept with " + finalRecordCount + " records");
+                notifyProgress("Fetched " + totalRecords + " records");
                 
-                if (finalRecordCount == 0) {
+                if (totalRecords == 0) {
                     if (callback != null) {
                         callback.onError("No data returned for the specified date range");
                     }
@@ -966,42 +870,21 @@ public class SolarmanStationDataService {
                 
                 String csvPath = csvFile.getAbsolutePath();
                 
-                // Get first and last timestamps from CSV
-                String firstTimestamp = null;
-                String lastTimestamp = null;
-                try (java.io.BufferedReader reader = new java.io.BufferedReader(
-                        new java.io.FileReader(csvFile))) {
-                    reader.readLine(); // Skip header
-                    String firstLine = reader.readLine();
-                    if (firstLine != null) {
-                        String[] parts = firstLine.split(",", 2);
-                        if (parts.length > 0) {
-                            firstTimestamp = parts[0];
-                        }
-                    }
-                    
-                    String line;
-                    String lastLine = null;
-                    while ((line = reader.readLine()) != null) {
-                        lastLine = line;
-                    }
-                    if (lastLine != null) {
-                        String[] parts = lastLine.split(",", 2);
-                        if (parts.length > 0) {
-                            lastTimestamp = parts[0];
-                        }
-                    }
-                } catch (Exception e) {
-                    Log.w(TAG, "Error reading timestamps from CSV", e);
-                }
+                // Get first and last timestamps from CSV (first row and file tail only)
+                String[] boundaryKeys = CsvDayIndex.readBoundaryKeys(csvFile);
+                String firstTimestamp = boundaryKeys[0];
+                String lastTimestamp = boundaryKeys[1];
                 
                 notifyProgress("Data saved successfully");
                 
+                // Daily actual generation is read from the rollups updated while writing
+                generationDataRepository.refreshActualFromTelemetry();
+                
                 // Save metadata
-                saveMetadata(currentConfigHash, configLastChanged, new Date());
+                saveMetadata(currentTelemetryHash, currentModelHash, configLastChanged, new Date());
                 
                 if (callback != null) {
-                    callback.onSuccess(csvPath, finalRecordCount, firstTimestamp, lastTimestamp);
+                    callback.onSuccess(csvPath, totalRecords, firstTimestamp, lastTimestamp);
                 }
                 
             } catch (Exception e) {
@@ -1013,6 +896,27 @@ public class SolarmanStationDataService {
         });
     }
     
+    /**
+     * Write the stored station telemetry to a CSV file in the station_data.csv layout
+     * (e.g. to share it or to rebuild a lost station_data.csv)
+     */
+    public void exportStationData(File targetFile, FetchCallback callback) {
+        executor.execute(() -> {
+            try {
+                int rowCount = telemetryRepository.exportCsv(targetFile);
+                String[] boundaryKeys = CsvDayIndex.readBoundaryKeys(targetFile);
+                if (callback != null) {
+                    callback.onSuccess(targetFile.getAbsolutePath(), rowCount, boundaryKeys[0], boundaryKeys[1]);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error exporting station data", e);
+                if (callback != null) {
+                    callback.onError("Error: " + e.getMessage());
+                }
+            }
+        });
+    }
+    
     /**
      * Read date range from weather CSV file
      */
@@ -1098,125 +1002,6 @@ public class SolarmanStationDataService {
         }
     }
     
-    /**
-     * Write a single CSV row
-     */
-    private void writeCsvRow(FileWriter writer, JSONObject item, java.util.Set<String> allKeys, java.util.List<String> allKeysOrdered) throws Exception {
-        String collectTime = item.optString("collectTime", "");
-        writer.write(collectTime);
-        
-        // Create map for this row's data
-        java.util.Map<String, String> rowData = new java.util.HashMap<>();
-        JSONArray dataList = item.optJSONArray("dataList");
-        if (dataList != null) {
-            for (int i = 0; i < dataList.length(); i++) {
-                JSONObject dataItem = dataList.optJSONObject(i);
-                if (dataItem != null) {
-                    String key = dataItem.optString("key", dataItem.optString("name", ""));
-                    Object value = dataItem.opt("value");
-                    if (value != null) {
-                        rowData.put(key, value.toString());
-                    }
-                }
-            }
-        }
-        
-        // Write values in the same order as headers (preserve order)
-        for (String key : allKeysOrdered) {
-            String value = rowData.getOrDefault(key, "");
-            writer.write("," + value);
-        }
-        writer.write("\n");
-    }
-    
-    /**
-     * Hash password with SHA-256
-     */
-    private String hashPassword(String password) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
-            
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (Exception e) {
-            Log.e(TAG, "Error hashing password", e);
-            return password;
-        }
-    }
-    
-    /**
-     * Read response from HTTP connection with size limit to prevent OOM
-     */
-    private String readResponse(HttpURLConnection connection, int responseCode) throws Exception {
-        InputStream inputStream;
-        if (responseCode >= 200 && responseCode < 300) {
-            inputStream = connection.getInputStream();
-        } else {
-            inputStream = connection.getErrorStream();
-        }
-
-        if (inputStream == null) {
-            return "{\"success\":false,\"msg\":\"HTTP " + responseCode + " - No response body\"}";
-        }
-
-        // Limit response size to prevent OOM (max 50MB for large date ranges)
-        final int MAX_SIZE = 50 * 1024 * 1024; // 50MB
-        StringBuilder response = new StringBuilder(8192); // Initial capacity
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(inputStream, StandardCharsets.UTF_8), 8192)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (response.length() + line.length() > MAX_SIZE) {
-                    Log.w(TAG, "Response too large, truncating at " + MAX_SIZE + " bytes");
-                    response.append(line.substring(0, Math.max(0, MAX_SIZE - response.length())));
-                    break;
-                }
-                response.append(line);
-            }
-        }
-        
-        String result = response.toString();
-        if (result.isEmpty()) {
-            return "{\"success\":false,\"msg\":\"HTTP " + responseCode + " - Empty response\"}";
-        }
-        
-        return result;
-    }
-    
-    /**
-     * Wait for network connection
-     */
-    private void waitForNetworkConnection() {
-        int maxWaitTime = 300000; // 5 minutes max wait
-        int checkInterval = 2000; // Check every 2 seconds
-        int waited = 0;
-        
-        while (waited < maxWaitTime) {
-            if (NetworkUtils.isNetworkConnected(context)) {
-                return; // Network connected
-            }
-            
-            try {
-                Thread.sleep(checkInterval);
-                waited += checkInterval;
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Wait for network interrupted", e);
-            }
-        }
-        
-        // If we get here, network didn't connect in time
-        throw new RuntimeException("Network connection timeout after " + (maxWaitTime / 1000) + " seconds");
-    }
-    
     /**
      * Notify progress callback
      */
@@ -1231,8 +1016,7 @@ public class SolarmanStationDataService {
      * Clear cached token
      */
     public void clearCachedToken() {
-        cachedAccessToken = null;
-        tokenExpiryTime = 0;
+        SolarmanTokenManager.getInstance(context).invalidate();
     }
     
     /**
@@ -0,0 +1,427 @@
+package com.masters.ppa.data.api;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import com.masters.ppa.data.model.SolarmanApiConfig;
+import com.masters.ppa.data.repository.SolarmanApiConfigRepository;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Process-wide Solarman access token shared by all API services.
+ *
+ * The token is persisted encrypted (Android Keystore AES/GCM) together with the fingerprint of
+ * the credentials it was issued for; only its expiry is stored in clear. The fingerprint of the
+ * saved settings is cached until SolarmanApiConfigRepository reports a change, so handing out a
+ * valid token needs no database read. Concurrent callers share one login, and a token close to
+ * expiry is refreshed in the background while the current one is still served.
+ */
+public class SolarmanTokenManager implements SolarmanHistoryFetcher.TokenSource {
+
+    private static final String TAG = "SolarmanTokenManager";
+    private static final String API_BASE = "https://globalapi.solarmanpv.com";
+
+    private static final String PREFS_NAME = "solarman_token_prefs";
+    private static final String KEY_TOKEN = "token_ciphertext";
+    private static final String KEY_IV = "token_iv";
+    private static final String KEY_EXPIRY = "token_expiry";
+    // Written in clear by older versions; removed on the next persist
+    private static final String KEY_FINGERPRINT = "credentials_fingerprint";
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "ppa_solarman_token_key";
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int GCM_TAG_BITS = 128;
+
+    // Used when the response has no expires_in
+    private static final long DEFAULT_TOKEN_LIFETIME_MS = 23 * 60 * 60 * 1000L;
+    // Tokens are not handed out during their last minutes
+    private static final long EXPIRY_MARGIN_MS = 5 * 60 * 1000L;
+    // Start a background refresh when less than this is left
+    private static final long REFRESH_AHEAD_MS = 60 * 60 * 1000L;
+
+    private static SolarmanTokenManager instance;
+
+    /**
+     * The API refused the access token (HTTP 401 or an auth error in the body); renew it and retry once
+     */
+    public static class TokenRejectedException extends RequestResilience.ApiRejectedException {
+        public TokenRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private final Context context;
+    private final SolarmanApiConfigRepository configRepository;
+    private final OkHttpClient httpClient = HttpClientProvider.getClient();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+    private final Object loginLock = new Object();
+    private final Object configLock = new Object();
+
+    private volatile String accessToken;
+    private volatile long expiryTime;
+    private volatile String fingerprint;
+    private volatile boolean restored;
+    // Fingerprint of the saved settings, null until computed or after they changed
+    private volatile String configFingerprint;
+    private long configVersion;
+
+    private SolarmanTokenManager(Context context) {
+        this.context = context.getApplicationContext();
+        this.configRepository = new SolarmanApiConfigRepository((Application) this.context);
+    }
+
+    public static synchronized SolarmanTokenManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new SolarmanTokenManager(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Get a valid access token, logging in only if there is none (call on a background thread)
+     */
+    @Override
+    public String getAccessToken() throws Exception {
+        ensureRestored();
+        String currentFingerprint = currentConfigFingerprint();
+
+        String token = accessToken;
+        long now = System.currentTimeMillis();
+        if (token != null && currentFingerprint.equals(fingerprint) && now < expiryTime - EXPIRY_MARGIN_MS) {
+            if (now >= expiryTime - REFRESH_AHEAD_MS) {
+                scheduleRefresh();
+            }
+            return token;
+        }
+        return refresh(token);
+    }
+
+    /**
+     * The saved Solarman settings changed or were deleted; the next request checks them again
+     */
+    public void onConfigChanged() {
+        synchronized (configLock) {
+            configVersion++;
+            configFingerprint = null;
+        }
+    }
+
+    /**
+     * Fingerprint of the saved settings, read from the database only after a change
+     */
+    private String currentConfigFingerprint() throws Exception {
+        String cached = configFingerprint;
+        if (cached != null) {
+            return cached;
+        }
+        long version;
+        synchronized (configLock) {
+            version = configVersion;
+        }
+        String computed = fingerprintOf(requireConfig());
+        synchronized (configLock) {
+            // A save while the settings were read makes the result stale
+            if (version == configVersion) {
+                configFingerprint = computed;
+            }
+        }
+        return computed;
+    }
+
+    /**
+     * Drop cached and persisted token (e.g. after the API rejected it)
+     */
+    public void invalidate() {
+        synchronized (loginLock) {
+            accessToken = null;
+            expiryTime = 0;
+            fingerprint = null;
+            restored = true;
+            getPrefs().edit().clear().apply();
+        }
+    }
+
+    /**
+     * Whether a Solarman response means the access token was rejected
+     * @param msg Error message of the response body, may be null
+     */
+    public static boolean isTokenRejected(int responseCode, String msg) {
+        if (responseCode == 401) {
+            return true;
+        }
+        if (msg == null) {
+            return false;
+        }
+        String lower = msg.toLowerCase(Locale.ROOT);
+        return lower.contains("token") || lower.contains("unauthorized") || lower.contains("auth");
+    }
+
+    private void scheduleRefresh() {
+        if (!refreshScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        String staleToken = accessToken;
+        refreshExecutor.execute(() -> {
+            try {
+                refresh(staleToken);
+                Log.d(TAG, "Token refreshed ahead of expiry");
+            } catch (Exception e) {
+                Log.w(TAG, "Background token refresh failed: " + e.getMessage());
+            } finally {
+                refreshScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Single-flight login: callers that waited for another login reuse its token.
+     * Also called after the API rejected seenToken.
+     * @param seenToken Token the caller saw before deciding to refresh
+     */
+    @Override
+    public String refresh(String seenToken) throws Exception {
+        synchronized (loginLock) {
+            SolarmanApiConfig config = requireConfig();
+            String currentFingerprint = fingerprintOf(config);
+            String token = accessToken;
+            if (token != null && token != seenToken && currentFingerprint.equals(fingerprint)
+                    && System.currentTimeMillis() < expiryTime - EXPIRY_MARGIN_MS) {
+                return token;
+            }
+
+            long[] lifetime = new long[1];
+            token = login(config, lifetime);
+            accessToken = token;
+            expiryTime = System.currentTimeMillis() + lifetime[0];
+            fingerprint = currentFingerprint;
+            persist(token, expiryTime, currentFingerprint);
+            Log.d(TAG, "Token expires at: " + new java.util.Date(expiryTime).toString());
+            return token;
+        }
+    }
+
+    private SolarmanApiConfig requireConfig() throws Exception {
+        SolarmanApiConfig config = configRepository.getSolarmanApiConfigSync();
+        if (config == null) {
+            throw new Exception("Solarman API configuration not found. Please configure in Settings.");
+        }
+
+        // Validate required fields
+        if (config.getAppId() == null || config.getAppId().isEmpty()) {
+            throw new Exception("App ID is not configured");
+        }
+        if (config.getAppSecret() == null || config.getAppSecret().isEmpty()) {
+            throw new Exception("App Secret is not configured");
+        }
+        if (config.getEmail() == null || config.getEmail().isEmpty()) {
+            throw new Exception("Email is not configured");
+        }
+        if (config.getPassword() == null || config.getPassword().isEmpty()) {
+            throw new Exception("Password is not configured");
+        }
+        return config;
+    }
+
+    /**
+     * Request a new token from Solarman API
+     * @param lifetimeOut Receives token lifetime in ms
+     */
+    private String login(SolarmanApiConfig config, long[] lifetimeOut) throws Exception {
+        String url = API_BASE + "/account/v1.0/token?appId=" + config.getAppId() + "&language=en";
+
+        // Solarman API requires SHA-256 hashed password
+        JSONObject payload = new JSONObject();
+        payload.put("appSecret", config.getAppSecret());
+        payload.put("email", config.getEmail());
+        payload.put("password", sha256Hex(config.getPassword()));
+
+        Log.d(TAG, "Requesting access token from Solarman API...");
+
+        Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(payload.toString(), HttpClientProvider.JSON))
+                .build();
+        try (Response httpResponse = httpClient.newCall(request).execute()) {
+            int responseCode = httpResponse.code();
+            String responseBody = httpResponse.body() != null ? httpResponse.body().string() : "";
+            if (responseBody.isEmpty()) {
+                throw new Exception("HTTP Error " + responseCode + ": Empty response");
+            }
+
+            JSONObject response;
+            try {
+                response = new JSONObject(responseBody);
+            } catch (JSONException e) {
+                throw new Exception("HTTP Error " + responseCode + ": Invalid JSON response: " + responseBody);
+            }
+
+            if (responseCode != 200) {
+                throw new Exception("HTTP Error " + responseCode + ": " + response.optString("msg", "Unknown error"));
+            }
+            if (!response.optBoolean("success", false)) {
+                throw new Exception("Authentication failed: " + response.optString("msg", "Authentication failed"));
+            }
+            if (!response.has("access_token") || response.isNull("access_token")) {
+                throw new Exception("No access_token in response");
+            }
+
+            String token = response.getString("access_token");
+            if (token == null || token.isEmpty()) {
+                throw new Exception("Access token is empty");
+            }
+
+            long expiresInSec = 0;
+            try {
+                expiresInSec = Long.parseLong(response.optString("expires_in", "0").trim());
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Unexpected expires_in: " + response.optString("expires_in"));
+            }
+            lifetimeOut[0] = expiresInSec > 0 ? expiresInSec * 1000L : DEFAULT_TOKEN_LIFETIME_MS;
+
+            Log.d(TAG, "Access token obtained successfully (length: " + token.length() + " chars)");
+            return token;
+        } catch (java.io.IOException e) {
+            Log.e(TAG, "Network error during authentication", e);
+            throw new Exception("Network error: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Load persisted token once, off the main thread (first getAccessToken call)
+     */
+    private void ensureRestored() {
+        if (restored) {
+            return;
+        }
+        synchronized (loginLock) {
+            if (!restored) {
+                restore();
+                restored = true;
+            }
+        }
+    }
+
+    /**
+     * Load persisted token if it can be decrypted
+     */
+    private void restore() {
+        SharedPreferences prefs = getPrefs();
+        String cipherText = prefs.getString(KEY_TOKEN, null);
+        String iv = prefs.getString(KEY_IV, null);
+        if (cipherText == null || iv == null) {
+            return;
+        }
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, getOrCreateKey(),
+                new GCMParameterSpec(GCM_TAG_BITS, Base64.decode(iv, Base64.NO_WRAP)));
+            byte[] plain = cipher.doFinal(Base64.decode(cipherText, Base64.NO_WRAP));
+            // Plain text is "<fingerprint>\n<token>"; older entries hold the token alone
+            String stored = new String(plain, StandardCharsets.UTF_8);
+            int separator = stored.indexOf('\n');
+            accessToken = separator >= 0 ? stored.substring(separator + 1) : stored;
+            expiryTime = prefs.getLong(KEY_EXPIRY, 0);
+            // Without an encrypted fingerprint the token is renewed on first use
+            fingerprint = separator >= 0 ? stored.substring(0, separator) : null;
+            Log.d(TAG, "Restored persisted token");
+        } catch (Exception e) {
+            Log.w(TAG, "Could not restore persisted token, discarding it", e);
+            prefs.edit().clear().apply();
+        }
+    }
+
+    private void persist(String token, long expiry, String credentialsFingerprint) {
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, getOrCreateKey());
+            byte[] encrypted = cipher.doFinal((credentialsFingerprint + "\n" + token).getBytes(StandardCharsets.UTF_8));
+            getPrefs().edit()
+                .putString(KEY_TOKEN, Base64.encodeToString(encrypted, Base64.NO_WRAP))
+                .putString(KEY_IV, Base64.encodeToString(cipher.getIV(), Base64.NO_WRAP))
+                .putLong(KEY_EXPIRY, expiry)
+                .remove(KEY_FINGERPRINT)
+                .apply();
+        } catch (Exception e) {
+            // Token stays in memory only
+            Log.w(TAG, "Could not persist token", e);
+        }
+    }
+
+    private SecretKey getOrCreateKey() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        if (keyStore.containsAlias(KEY_ALIAS)) {
+            return ((KeyStore.SecretKeyEntry) keyStore.getEntry(KEY_ALIAS, null)).getSecretKey();
+        }
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+            .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+            .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+            .setKeySize(256)
+            .build());
+        return generator.generateKey();
+    }
+
+    private SharedPreferences getPrefs() {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Fingerprint of the credentials a token was issued for; a settings change forces a new login
+     */
+    private static String fingerprintOf(SolarmanApiConfig config) {
+        return sha256Hex(config.getAppId() + "|" + config.getAppSecret() + "|" +
+            config.getEmail() + "|" + config.getPassword());
+    }
+
+    /**
+     * SHA-256 in lowercase hex (64 characters)
+     */
+    static String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hash) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1) {
+                    hexString.append('0');
+                }
+                hexString.append(hex);
+            }
+            return hexString.toString();
+        } catch (Exception e) {
+            Log.e(TAG, "Error hashing value", e);
+            // Same fallback as before: send the original value
+            return value;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.masters.ppa.data.api;
+
+import android.util.Log;
+
+import com.masters.ppa.utils.CsvDayIndex;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+
+/**
+ * Persisted per-day outcome of Solarman history fetches (station_data.ledger.json).
+ * Lets backfill skip days that are already stored and retry only missing, failed or empty ones
+ * (a day can come back empty while the logger has not uploaded it yet).
+ */
+public class StationFetchLedger {
+
+    private static final String TAG = "StationFetchLedger";
+
+    public static final String EXTENSION = ".ledger.json";
+
+    public enum Status {
+        FETCHED,
+        EMPTY,
+        FAILED
+    }
+
+    /**
+     * Ledger entry for one day
+     */
+    public static class DayEntry {
+        public final Status status;
+        public final int attempts;
+        public final int rowCount;
+        public final long updatedAt;
+
+        DayEntry(Status status, int attempts, int rowCount, long updatedAt) {
+            this.status = status;
+            this.attempts = attempts;
+            this.rowCount = rowCount;
+            this.updatedAt = updatedAt;
+        }
+    }
+
+    private final File ledgerFile;
+    private final TreeMap<String, DayEntry> days = new TreeMap<>();
+
+    private StationFetchLedger(File ledgerFile) {
+        this.ledgerFile = ledgerFile;
+    }
+
+    /**
+     * Ledger path for a CSV file (station_data.csv -> station_data.ledger.json)
+     */
+    public static File ledgerFileFor(File csvFile) {
+        String name = csvFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(csvFile.getParentFile(), base + EXTENSION);
+    }
+
+    /**
+     * Load ledger of a CSV file (empty if missing or unreadable)
+     */
+    public static StationFetchLedger load(File csvFile) {
+        StationFetchLedger ledger = new StationFetchLedger(ledgerFileFor(csvFile));
+        if (!ledger.ledgerFile.exists()) {
+            return ledger;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(ledger.ledgerFile))) {
+            StringBuilder content = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                content.append(line);
+            }
+            JSONObject json = new JSONObject(content.toString()).optJSONObject("days");
+            if (json != null) {
+                Iterator<String> keys = json.keys();
+                while (keys.hasNext()) {
+                    String day = keys.next();
+                    JSONObject entry = json.getJSONObject(day);
+                    ledger.days.put(day, new DayEntry(
+                        Status.valueOf(entry.getString("status")),
+                        entry.optInt("attempts", 0),
+                        entry.optInt("rows", 0),
+                        entry.optLong("updated", 0)));
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Error loading fetch ledger, starting empty", e);
+            ledger.days.clear();
+        }
+        return ledger;
+    }
+
+    public DayEntry get(String day) {
+        return days.get(day);
+    }
+
+    public void recordFetched(String day, int rowCount) {
+        record(day, Status.FETCHED, rowCount);
+    }
+
+    public void recordEmpty(String day) {
+        record(day, Status.EMPTY, 0);
+    }
+
+    public void recordFailed(String day) {
+        record(day, Status.FAILED, 0);
+    }
+
+    private void record(String day, Status status, int rowCount) {
+        DayEntry previous = days.get(day);
+        int attempts = previous != null ? previous.attempts + 1 : 1;
+        days.put(day, new DayEntry(status, attempts, rowCount, System.currentTimeMillis()));
+    }
+
+    /**
+     * Days inside the stored range that are missing from the telemetry store and worth
+     * retrying, fewest attempts first, then newest first
+     * @param storedDays Days (yyyy-MM-dd) with rows in the telemetry store
+     * @param maxAttempts Days that failed or came back empty this many times are given up
+     */
+    public List<String> planGapDays(SortedSet<String> storedDays, int maxAttempts) {
+        List<String> gaps = new ArrayList<>();
+        if (storedDays.isEmpty()) {
+            return gaps;
+        }
+        String first = storedDays.first();
+        String last = storedDays.last();
+        for (String day = addDays(first, 1); day.compareTo(last) < 0; day = addDays(day, 1)) {
+            if (storedDays.contains(day)) {
+                continue;
+            }
+            DayEntry entry = days.get(day);
+            if (entry == null || (entry.status != Status.FETCHED && entry.attempts < maxAttempts)) {
+                gaps.add(day);
+            }
+        }
+        gaps.sort((a, b) -> {
+            int attemptsA = days.containsKey(a) ? days.get(a).attempts : 0;
+            int attemptsB = days.containsKey(b) ? days.get(b).attempts : 0;
+            if (attemptsA != attemptsB) {
+                return Integer.compare(attemptsA, attemptsB);
+            }
+            return b.compareTo(a);
+        });
+        return gaps;
+    }
+
+    public void save() {
+        try {
+            JSONObject json = new JSONObject();
+            for (Map.Entry<String, DayEntry> entry : days.entrySet()) {
+                JSONObject day = new JSONObject();
+                day.put("status", entry.getValue().status.name());
+                day.put("attempts", entry.getValue().attempts);
+                day.put("rows", entry.getValue().rowCount);
+                day.put("updated", entry.getValue().updatedAt);
+                json.put(entry.getKey(), day);
+            }
+            JSONObject root = new JSONObject();
+            root.put("days", json);
+            try (FileWriter writer = new FileWriter(ledgerFile, false)) {
+                writer.write(root.toString());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving fetch ledger", e);
+        }
+    }
+
+    /**
+     * Forget all days (e.g. when the CSV is rebuilt from scratch)
+     */
+    public void clear() {
+        days.clear();
+        if (ledgerFile.exists() && !ledgerFile.delete()) {
+            Log.w(TAG, "Could not delete fetch ledger");
+        }
+    }
+
+    /**
+     * yyyy-MM-dd plus n calendar days
+     */
+    static String addDays(String day, int n) {
+        SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        Date date = CsvDayIndex.parseDay(day);
+        if (date == null) {
+            return day;
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.add(Calendar.DAY_OF_MONTH, n);
+        return dayFormat.format(calendar.getTime());
+    }
+}
@@ -0,0 +1,50 @@
+package com.masters.ppa.data.api;
+
+/**
+ * Blocking token-bucket rate limiter shared by concurrent API requests
+ */
+public class TokenBucketRateLimiter {
+
+    private final int capacity;
+    private final double permitsPerMs;
+    private double tokens;
+    private long lastRefillTime;
+
+    /**
+     * @param capacity Maximum burst size
+     * @param permitsPerSecond Sustained request rate
+     */
+    public TokenBucketRateLimiter(int capacity, double permitsPerSecond) {
+        if (capacity <= 0 || permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Capacity and rate must be positive");
+        }
+        this.capacity = capacity;
+        this.permitsPerMs = permitsPerSecond / 1000.0;
+        this.tokens = capacity;
+        this.lastRefillTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Block until a permit is available
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (true) {
+            refill();
+            if (tokens >= 1.0) {
+                tokens -= 1.0;
+                return;
+            }
+            long waitMs = (long) Math.ceil((1.0 - tokens) / permitsPerMs);
+            wait(Math.max(1L, waitMs));
+        }
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        long elapsed = now - lastRefillTime;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * permitsPerMs);
+            lastRefillTime = now;
+        }
+    }
+}
@@ -13,14 +13,15 @@ import org.json.JSONObject;
 
 import com.masters.ppa.utils.FileUtils;
 
-import java.util.Locale;
-
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
@@ -38,15 +39,19 @@ public class WeatherApiService {
     private static final String WEATHER_URL = "https://api.open-meteo.com/v1/forecast";
     private static final int TIMEOUT_MS = 20000;
     private static final int MAX_HISTORY_DAYS = 90; // 3 months
+    private static final int HISTORY_RETENTION_DAYS = 730; // archive kept for calibration
+    private static final double LOCATION_TOLERANCE_DEG = 0.01;
+    private static final long FORECAST_CELL_TTL_MS = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_LOCATIONS_PER_REQUEST = 100;
+    
+    // Serializes read-merge-write of the history archive between overlapping syncs
+    private static final Object HISTORY_LOCK = new Object();
     
     // CSV file paths
     private static final String WEATHER_DIR = "csv/weather";
     public static final String CSV_WEATHER_TODAY7 = "weather_next_7days.csv";
     public static final String CSV_WEATHER_3MONTHS = "weather_last_max_period.csv";
     
-    // CSV header
-    private static final String CSV_HEADER = "time,temperature_2m,cloud_cover,shortwave_radiation,direct_radiation,diffuse_radiation,wind_speed_10m";
-    
     /**
      * Interface for fetch completion callback
      */
@@ -60,10 +65,8 @@ public class WeatherApiService {
     
     public WeatherApiService(Context context) {
         this.context = context.getApplicationContext();
-        this.httpClient = new OkHttpClient.Builder()
+        this.httpClient = HttpClientProvider.getClient().newBuilder()
                 .callTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                .connectTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                .readTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
                 .build();
     }
     
@@ -73,25 +76,21 @@ public class WeatherApiService {
      * @param lon Longitude
      * @param startDate Start date
      * @param endDate End date
-     * @param outputFilename Output filename
-     * @param callback Callback for fetch completion
+     * @param storeName WeatherStore series to replace, or null
+     * @param outputFilename CSV export filename, or null for no export
+     * @param callback Callback for fetch completion (filePath is the CSV export, else the store file)
      */
     public void fetchAndSaveWeather(double lat, double lon, 
                                    LocalDate startDate, LocalDate endDate, 
-                                   String outputFilename, FetchCallback callback) {
-        // Ensure start date is not too far in the past
-        LocalDate apiMin = LocalDate.now(ZoneOffset.UTC).minusDays(MAX_HISTORY_DAYS - 1);
-        if (startDate.isBefore(apiMin)) {
-            startDate = apiMin;
-            Log.w(TAG, "Start date adjusted to API limit: " + startDate);
-        }
-        
-        // Create URL for API request
-        String url = WEATHER_URL + "?latitude=" + lat + "&longitude=" + lon +
-                "&hourly=temperature_2m,cloud_cover,shortwave_radiation," +
-                "direct_radiation,diffuse_radiation,wind_speed_10m" +
-                "&start_date=" + startDate + "&end_date=" + endDate + "&timezone=auto";
-        
+                                   String storeName, String outputFilename, FetchCallback callback) {
+        String url = buildUrl(lat, lon, clampStart(startDate), endDate);
+        enqueue(url, weather -> new SavedWeather(save(weather, storeName, outputFilename), weather), callback);
+    }
+    
+    /**
+     * Request url asynchronously and hand the parsed weather to handler off the main thread
+     */
+    private void enqueue(String url, ResponseHandler handler, FetchCallback callback) {
         Log.d(TAG, "Fetching weather data from: " + url);
         
         // Create output directory
@@ -103,9 +102,6 @@ public class WeatherApiService {
             return;
         }
         
-        // Create output file
-        File outputFile = new File(weatherDir, outputFilename);
-        
         // Create request
         Request request = new Request.Builder().url(url).build();
         
@@ -132,110 +128,18 @@ public class WeatherApiService {
                 }
                 
                 try {
-                    // Parse JSON response
-                    String responseBody = response.body().string();
-                    JSONObject obj = new JSONObject(responseBody);
-                    JSONObject hourly = obj.getJSONObject("hourly");
-                    JSONArray times = hourly.getJSONArray("time");
-                    JSONArray temps = hourly.getJSONArray("temperature_2m");
-                    JSONArray clouds = hourly.getJSONArray("cloud_cover");
-                    JSONArray swr = hourly.getJSONArray("shortwave_radiation");
-                    JSONArray dr = hourly.getJSONArray("direct_radiation");
-                    JSONArray dif = hourly.getJSONArray("diffuse_radiation");
-                    JSONArray wind = hourly.getJSONArray("wind_speed_10m");
-                    
-                    // Ensure parent directory exists
-                    com.masters.ppa.utils.FileUtils.ensureDirectoryExists(outputFile.getParentFile());
-                    
-                    // Write CSV file
-                    int validRowCount = 0;
-                    String firstTimestamp = null;
-                    String lastTimestamp = null;
-                    
-                    try (FileWriter writer = new FileWriter(outputFile, false)) { // false = overwrite existing file
-                        // Write header
-                        writer.write(CSV_HEADER + "\n");
-                        
-                        // Write data rows
-                        for (int i = 0; i < times.length(); i++) {
-                            // Check if row has valid data (not all NaN)
-                            boolean hasValidData = false;
-                            
-                            // Check temperature
-                            double temp = temps.optDouble(i, Double.NaN);
-                            if (!Double.isNaN(temp)) {
-                                hasValidData = true;
-                            }
-                            
-                            // Check cloud cover
-                            double cloud = clouds.optDouble(i, Double.NaN);
-                            if (!Double.isNaN(cloud)) {
-                                hasValidData = true;
-                            }
-                            
-                            // Check shortwave radiation
-                            double radiation = swr.optDouble(i, Double.NaN);
-                            if (!Double.isNaN(radiation)) {
-                                hasValidData = true;
-                            }
-                            
-                            // Check direct radiation
-                            double direct = dr.optDouble(i, Double.NaN);
-                            if (!Double.isNaN(direct)) {
-                                hasValidData = true;
-                            }
-                            
-                            // Check diffuse radiation
-                            double diffuse = dif.optDouble(i, Double.NaN);
-                            if (!Double.isNaN(diffuse)) {
-                                hasValidData = true;
-                            }
-                            
-                            // Check wind speed
-                            double windSpeed = wind.optDouble(i, Double.NaN);
-                            if (!Double.isNaN(windSpeed)) {
-                                hasValidData = true;
-                            }
-                            
-                            // Skip row if all values are NaN
-                            if (!hasValidData) {
-                                continue;
-                            }
-                            
-                            // Get timestamp
-                            String timestamp = times.getString(i);
-                            
-                            // Track first and last timestamps
-                            if (firstTimestamp == null) {
-                                firstTimestamp = timestamp;
-                            }
-                            lastTimestamp = timestamp;
-                            
-                            // Write row
-                            writer.write(timestamp + "," +
-                                    formatDouble(temp) + "," +
-                                    formatDouble(cloud) + "," + // Keep original scale (0-100%)
-                                    formatDouble(radiation) + "," +
-                                    formatDouble(direct) + "," +
-                                    formatDouble(diffuse) + "," +
-                                    formatDouble(windSpeed) + "\n");
-                            
-                            validRowCount++;
-                        }
-                    }
+                    SavedWeather saved = handler.handle(parseResponse(response.body().string()));
+                    HourlyWeather weather = saved.weather;
                     
-                    // Log success
-                    Log.d(TAG, "Weather data saved to: " + outputFile.getAbsolutePath() +
-                            " with " + validRowCount + " valid rows" +
-                            (firstTimestamp != null ? ", from " + firstTimestamp + " to " + lastTimestamp : ""));
+                    Log.d(TAG, "Weather data saved to: " + saved.file.getAbsolutePath() +
+                            " with " + weather.size() + " valid rows" +
+                            (weather.size() > 0 ? ", from " + weather.getFirstTimestamp() + " to " + weather.getLastTimestamp() : ""));
                     
                     // Call success callback
                     if (callback != null) {
-                        final String firstTs = firstTimestamp;
-                        final String lastTs = lastTimestamp;
-                        int finalValidRowCount = validRowCount;
                         new Handler(Looper.getMainLooper()).post(() ->
-                                callback.onSuccess(outputFile.getAbsolutePath(), finalValidRowCount, firstTs, lastTs));
+                                callback.onSuccess(saved.file.getAbsolutePath(), weather.size(),
+                                        weather.getFirstTimestamp(), weather.getLastTimestamp()));
                     }
                     
                 } catch (JSONException | IOException e) {
@@ -250,41 +154,251 @@ public class WeatherApiService {
     }
     
     /**
-     * Fetch 7-day forecast (today + 6 days)
-     * @param lat Latitude
-     * @param lon Longitude
-     * @param callback Callback for fetch completion
+     * Fetch the 7-day forecast and store it, blocking until done (must be called from background thread).
+     * Served from the grid cell cache when the station's cell was fetched within FORECAST_CELL_TTL_MS.
+     * @return Stored forecast
+     */
+    public HourlyWeather fetch7DaysWeatherSync(double lat, double lon) throws IOException, JSONException {
+        HourlyWeather weather = fetch7DaysWeatherSync(new double[]{lat}, new double[]{lon}).get(0);
+        save(weather, WeatherStore.FORECAST, CSV_WEATHER_TODAY7);
+        return weather;
+    }
+    
+    /**
+     * Fetch 7-day forecasts for many sites (must be called from background thread).
+     * Sites are grouped by GridCell and each cell is fetched at most once per FORECAST_CELL_TTL_MS;
+     * stale cells are requested together, MAX_LOCATIONS_PER_REQUEST per request.
+     * @param lats Site latitudes
+     * @param lons Site longitudes, same length as lats
+     * @return Forecast per site, in input order (sites in one cell share the same instance)
      */
-    public void fetch7DaysWeather(double lat, double lon, FetchCallback callback) {
+    public List<HourlyWeather> fetch7DaysWeatherSync(double[] lats, double[] lons) throws IOException, JSONException {
+        if (lats.length != lons.length) {
+            throw new IllegalArgumentException("Latitude and longitude counts differ");
+        }
+        
+        Map<GridCell, HourlyWeather> forecasts = new LinkedHashMap<>();
+        List<GridCell> stale = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < lats.length; i++) {
+            GridCell cell = GridCell.of(lats[i], lons[i]);
+            if (forecasts.containsKey(cell)) {
+                continue;
+            }
+            HourlyWeather cached = loadCachedForecast(cell, now);
+            forecasts.put(cell, cached);
+            if (cached == null) {
+                stale.add(cell);
+            }
+        }
+        
         LocalDate today = LocalDate.now(ZoneOffset.UTC);
-        LocalDate endDate = today.plusDays(6);
+        for (int from = 0; from < stale.size(); from += MAX_LOCATIONS_PER_REQUEST) {
+            List<GridCell> batch = stale.subList(from, Math.min(from + MAX_LOCATIONS_PER_REQUEST, stale.size()));
+            List<HourlyWeather> fetched = fetchCells(batch, today, today.plusDays(6));
+            for (int k = 0; k < batch.size(); k++) {
+                WeatherStore.save(context, forecastSeriesName(batch.get(k)), fetched.get(k));
+                forecasts.put(batch.get(k), fetched.get(k));
+            }
+        }
+        Log.d(TAG, "Forecasts for " + lats.length + " sites: " + forecasts.size() + " grid cells, " +
+                stale.size() + " fetched");
         
-        fetchAndSaveWeather(lat, lon, today, endDate, CSV_WEATHER_TODAY7, callback);
+        List<HourlyWeather> result = new ArrayList<>(lats.length);
+        for (int i = 0; i < lats.length; i++) {
+            result.add(forecasts.get(GridCell.of(lats[i], lons[i])));
+        }
+        return result;
+    }
+    
+    /**
+     * One request for all cells; Open-Meteo answers a coordinate list with an array in the same order
+     */
+    private List<HourlyWeather> fetchCells(List<GridCell> cells, LocalDate startDate, LocalDate endDate)
+            throws IOException, JSONException {
+        StringBuilder lats = new StringBuilder();
+        StringBuilder lons = new StringBuilder();
+        for (GridCell cell : cells) {
+            if (lats.length() > 0) {
+                lats.append(',');
+                lons.append(',');
+            }
+            lats.append(cell.formatLatitude());
+            lons.append(cell.formatLongitude());
+        }
+        String url = buildUrl(lats.toString(), lons.toString(), startDate, endDate);
+        Log.d(TAG, "Fetching weather for " + cells.size() + " grid cells from: " + url);
+        
+        Request request = new Request.Builder().url(url).build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("HTTP error: " + response.code());
+            }
+            String body = response.body().string();
+            if (!body.trim().startsWith("[")) {
+                // A single coordinate pair is answered with a plain object
+                if (cells.size() != 1) {
+                    throw new JSONException("Expected " + cells.size() + " locations, got one object");
+                }
+                return Collections.singletonList(parseResponse(body));
+            }
+            JSONArray locations = new JSONArray(body);
+            if (locations.length() != cells.size()) {
+                throw new JSONException("Expected " + cells.size() + " locations, got " + locations.length());
+            }
+            List<HourlyWeather> result = new ArrayList<>(cells.size());
+            for (int i = 0; i < locations.length(); i++) {
+                result.add(parseLocation(locations.getJSONObject(i)));
+            }
+            return result;
+        }
     }
     
     /**
-     * Fetch 3-month historical data (today - 90 days to today)
+     * Cached forecast of a cell if it is younger than FORECAST_CELL_TTL_MS
+     */
+    private HourlyWeather loadCachedForecast(GridCell cell, long now) {
+        File file = WeatherStore.fileFor(context, forecastSeriesName(cell));
+        if (!file.exists() || now - file.lastModified() >= FORECAST_CELL_TTL_MS) {
+            return null;
+        }
+        return WeatherStore.load(file);
+    }
+    
+    private static String forecastSeriesName(GridCell cell) {
+        return WeatherStore.FORECAST_CELL_PREFIX + cell.getKey();
+    }
+    
+    /**
+     * Bring the historical weather archive up to date and export it as CSV.
+     * Only days from the last archived day (re-fetched, it may be partial) to today are requested;
+     * the first sync for a location requests the full API window (today - 89 days to today).
+     * Archived hours older than the API window are kept for calibration, up to HISTORY_RETENTION_DAYS.
      * @param lat Latitude
      * @param lon Longitude
-     * @param callback Callback for fetch completion
+     * @param callback Callback for fetch completion (row count and range cover the whole archive)
      */
-    public void fetch3MonthsWeather(double lat, double lon, FetchCallback callback) {
+    public void syncHistoricalWeather(double lat, double lon, FetchCallback callback) {
         LocalDate today = LocalDate.now(ZoneOffset.UTC);
         LocalDate startDate = today.minusDays(MAX_HISTORY_DAYS);
         
-        fetchAndSaveWeather(lat, lon, startDate, today, CSV_WEATHER_3MONTHS, callback);
+        HourlyWeather archive = loadHistory(lat, lon);
+        if (archive != null && !archive.isEmpty()) {
+            LocalDate lastDay = archive.getTime(archive.size() - 1).toLocalDate();
+            startDate = lastDay.isAfter(today) ? today : lastDay;
+            Log.d(TAG, "Weather archive ends " + lastDay + ", syncing from " + startDate);
+        }
+        
+        String url = buildUrl(lat, lon, clampStart(startDate), today);
+        enqueue(url, fetched -> mergeHistory(lat, lon, fetched, today), callback);
+    }
+    
+    /**
+     * Merge fetched hours into the archive, save it and export the CSV
+     */
+    private SavedWeather mergeHistory(double lat, double lon, HourlyWeather fetched, LocalDate today)
+            throws IOException, JSONException {
+        synchronized (HISTORY_LOCK) {
+            HourlyWeather archive = loadHistory(lat, lon);
+            HourlyWeather merged = archive != null ? HourlyWeather.merge(archive, fetched) : fetched;
+            long retainFrom = today.minusDays(HISTORY_RETENTION_DAYS).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            merged = merged.since(retainFrom);
+            
+            File csvFile = save(merged, WeatherStore.HISTORY, CSV_WEATHER_3MONTHS);
+            JSONObject metadata = new JSONObject();
+            metadata.put("latitude", lat);
+            metadata.put("longitude", lon);
+            WeatherStore.saveMetadata(context, WeatherStore.HISTORY, metadata);
+            
+            Log.d(TAG, "Merged " + fetched.size() + " fetched hours into weather archive (" +
+                    (archive != null ? archive.size() : 0) + " -> " + merged.size() + " rows)");
+            return new SavedWeather(csvFile, merged);
+        }
+    }
+    
+    /**
+     * Archived history for a location, or null if there is none or it was fetched elsewhere
+     */
+    private HourlyWeather loadHistory(double lat, double lon) {
+        JSONObject metadata = WeatherStore.loadMetadata(context, WeatherStore.HISTORY);
+        double archivedLat = metadata.optDouble("latitude", Double.NaN);
+        double archivedLon = metadata.optDouble("longitude", Double.NaN);
+        if (!(Math.abs(archivedLat - lat) <= LOCATION_TOLERANCE_DEG
+                && Math.abs(archivedLon - lon) <= LOCATION_TOLERANCE_DEG)) {
+            if (WeatherStore.exists(context, WeatherStore.HISTORY)) {
+                Log.d(TAG, "Station location changed, weather archive will be replaced");
+            }
+            return null;
+        }
+        return WeatherStore.load(context, WeatherStore.HISTORY);
+    }
+    
+    /**
+     * Ensure start date is not too far in the past
+     */
+    private static LocalDate clampStart(LocalDate startDate) {
+        LocalDate apiMin = LocalDate.now(ZoneOffset.UTC).minusDays(MAX_HISTORY_DAYS - 1);
+        if (startDate.isBefore(apiMin)) {
+            Log.w(TAG, "Start date adjusted to API limit: " + apiMin);
+            return apiMin;
+        }
+        return startDate;
+    }
+    
+    private static String buildUrl(double lat, double lon, LocalDate startDate, LocalDate endDate) {
+        return buildUrl(String.valueOf(lat), String.valueOf(lon), startDate, endDate);
     }
     
     /**
-     * Format double value for CSV output
-     * @param value Double value
-     * @return Formatted string
+     * @param latitudes One latitude or a comma-separated list
+     * @param longitudes Longitudes matching latitudes
      */
-    private static String formatDouble(double value) {
-        if (Double.isNaN(value) || Double.isInfinite(value)) {
-            return "";
+    private static String buildUrl(String latitudes, String longitudes, LocalDate startDate, LocalDate endDate) {
+        return WEATHER_URL + "?latitude=" + latitudes + "&longitude=" + longitudes +
+                "&hourly=" + String.join(",", HourlyWeather.VALUE_COLUMNS) +
+                "&start_date=" + startDate + "&end_date=" + endDate + "&timezone=auto";
+    }
+    
+    private static HourlyWeather parseResponse(String responseBody) throws JSONException {
+        return parseLocation(new JSONObject(responseBody));
+    }
+    
+    private static HourlyWeather parseLocation(JSONObject obj) throws JSONException {
+        if (!obj.has("hourly")) {
+            throw new JSONException("Invalid API response: no hourly data");
+        }
+        return HourlyWeather.fromJson(obj.getJSONObject("hourly"));
+    }
+    
+    /**
+     * Store weather and/or export it as CSV
+     * @return CSV export if written, else the store file
+     */
+    private File save(HourlyWeather weather, String storeName, String csvFilename) throws IOException {
+        File savedFile = null;
+        if (storeName != null) {
+            WeatherStore.save(context, storeName, weather);
+            savedFile = WeatherStore.fileFor(context, storeName);
+        }
+        if (csvFilename != null) {
+            savedFile = getWeatherFile(csvFilename);
+            weather.writeCsv(savedFile);
+        }
+        return savedFile;
+    }
+    
+    private interface ResponseHandler {
+        SavedWeather handle(HourlyWeather weather) throws IOException, JSONException;
+    }
+    
+    private static final class SavedWeather {
+        final File file;
+        final HourlyWeather weather;
+        
+        SavedWeather(File file, HourlyWeather weather) {
+            this.file = file;
+            this.weather = weather;
         }
-        return String.format(Locale.US, "%.1f", value);
     }
     
     /**
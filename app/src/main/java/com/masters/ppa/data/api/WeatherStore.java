@@ -0,0 +1,137 @@
+package com.masters.ppa.data.api;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.masters.ppa.utils.PpaBinFile;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary store for fetched hourly weather, one .ppabin file per series under files/weather.
+ * The files are the primary copy; CSV files are only exported for readers that need them.
+ */
+public final class WeatherStore {
+
+    private static final String TAG = "WeatherStore";
+
+    private static final String STORE_DIR = "weather";
+
+    // Series names
+    public static final String FORECAST = "forecast";
+    public static final String HISTORY = "history";
+    // Per GridCell forecast cache, suffixed with GridCell.getKey()
+    public static final String FORECAST_CELL_PREFIX = "forecast_cell_";
+
+    private static final String METADATA_EXTENSION = ".json";
+
+    private WeatherStore() {
+    }
+
+    /**
+     * Replace a series atomically
+     */
+    public static void save(Context context, String name, HourlyWeather weather) throws IOException {
+        File file = fileFor(context, name);
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir.getAbsolutePath());
+        }
+        Map<String, long[]> longs = new LinkedHashMap<>();
+        longs.put(HourlyWeather.COL_TIME, weather.epochs());
+        Map<String, float[]> floats = new LinkedHashMap<>();
+        for (int c = 0; c < HourlyWeather.VALUE_COLUMNS.length; c++) {
+            floats.put(HourlyWeather.VALUE_COLUMNS[c], weather.column(c));
+        }
+        PpaBinFile.write(file, weather.size(), longs, floats);
+    }
+
+    /**
+     * Load a series, or null if it was never saved or cannot be read
+     */
+    public static HourlyWeather load(Context context, String name) {
+        return load(fileFor(context, name));
+    }
+
+    /**
+     * Load a series file, or null if it does not exist or cannot be read
+     */
+    public static HourlyWeather load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            PpaBinFile.Columns columns = PpaBinFile.read(file);
+            int rowCount = columns.getRowCount();
+            long[] epochs = new long[rowCount];
+            LongBuffer time = columns.getLongColumn(HourlyWeather.COL_TIME);
+            time.get(epochs);
+            float[][] values = new float[HourlyWeather.VALUE_COLUMNS.length][rowCount];
+            for (int c = 0; c < values.length; c++) {
+                FloatBuffer column = columns.getFloatColumn(HourlyWeather.VALUE_COLUMNS[c]);
+                column.get(values[c]);
+            }
+            return new HourlyWeather(epochs, values);
+        } catch (IOException e) {
+            Log.w(TAG, "Error reading weather series " + file.getName(), e);
+            return null;
+        }
+    }
+
+    public static boolean exists(Context context, String name) {
+        return fileFor(context, name).exists();
+    }
+
+    /**
+     * Delete a series and its metadata
+     */
+    public static void delete(Context context, String name) {
+        for (File file : new File[]{fileFor(context, name), metadataFileFor(context, name)}) {
+            if (file.exists() && !file.delete()) {
+                Log.w(TAG, "Could not delete " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Metadata saved next to a series (e.g. the location it was fetched for), empty if none
+     */
+    public static JSONObject loadMetadata(Context context, String name) {
+        File file = metadataFileFor(context, name);
+        if (!file.exists()) {
+            return new JSONObject();
+        }
+        try {
+            return new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Error reading metadata of " + name, e);
+            return new JSONObject();
+        }
+    }
+
+    public static void saveMetadata(Context context, String name, JSONObject metadata) throws IOException {
+        File file = metadataFileFor(context, name);
+        try (FileWriter writer = new FileWriter(file, false)) {
+            writer.write(metadata.toString());
+        }
+    }
+
+    public static File fileFor(Context context, String name) {
+        return new File(new File(context.getFilesDir(), STORE_DIR), name + PpaBinFile.EXTENSION);
+    }
+
+    private static File metadataFileFor(Context context, String name) {
+        return new File(new File(context.getFilesDir(), STORE_DIR), name + METADATA_EXTENSION);
+    }
+}
@@ -6,6 +6,7 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import com.masters.ppa.data.model.GenerationData;
@@ -19,6 +20,9 @@ import java.util.List;
 @Dao
 public interface GenerationDataDao {
     
+    // Rows per insertAll call in bulk operations (each call reuses one prepared statement)
+    int INSERT_CHUNK_SIZE = 1000;
+    
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insert(GenerationData generationData);
     
@@ -34,6 +38,38 @@ public interface GenerationDataDao {
     @Query("DELETE FROM generation_data")
     void deleteAll();
     
+    @Query("DELETE FROM generation_data WHERE isActual = 1")
+    void deleteAllActual();
+    
+    /**
+     * Insert a large list in one transaction, INSERT_CHUNK_SIZE rows at a time
+     */
+    @Transaction
+    default void insertAllChunked(List<GenerationData> generationDataList) {
+        for (int start = 0; start < generationDataList.size(); start += INSERT_CHUNK_SIZE) {
+            int end = Math.min(start + INSERT_CHUNK_SIZE, generationDataList.size());
+            insertAll(generationDataList.subList(start, end));
+        }
+    }
+    
+    /**
+     * Replace all rows atomically (readers never see an empty or half-loaded table)
+     */
+    @Transaction
+    default void replaceAll(List<GenerationData> generationDataList) {
+        deleteAll();
+        insertAllChunked(generationDataList);
+    }
+    
+    /**
+     * Replace the actual rows atomically, keeping predicted rows
+     */
+    @Transaction
+    default void replaceActual(List<GenerationData> generationDataList) {
+        deleteAllActual();
+        insertAllChunked(generationDataList);
+    }
+    
     @Query("SELECT * FROM generation_data ORDER BY date ASC")
     LiveData<List<GenerationData>> getAllGenerationData();
     
@@ -43,6 +79,12 @@ public interface GenerationDataDao {
     @Query("SELECT * FROM generation_data WHERE isActual = 0 AND date BETWEEN :startDate AND :endDate ORDER BY date ASC")
     LiveData<List<GenerationData>> getPredictedGenerationBetweenDates(Date startDate, Date endDate);
     
+    @Query("SELECT * FROM generation_data WHERE isActual = :isActual AND date BETWEEN :startDate AND :endDate ORDER BY date ASC")
+    List<GenerationData> getGenerationBetweenDatesSync(boolean isActual, Date startDate, Date endDate);
+    
+    @Query("DELETE FROM generation_data WHERE date < :before")
+    int deleteBefore(Date before);
+    
     @Query("SELECT * FROM generation_data WHERE isActual = 1 ORDER BY date DESC LIMIT 14")
     LiveData<List<GenerationData>> getLast14DaysActualGeneration();
     
@@ -0,0 +1,56 @@
+package com.masters.ppa.data.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import com.masters.ppa.data.model.LiveMetric;
+import com.masters.ppa.data.model.LiveSample;
+
+import java.util.List;
+
+/**
+ * Data Access Object for live inverter samples and their metric dictionary
+ */
+@Dao
+public interface LiveSampleDao {
+    
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertMetric(LiveMetric metric);
+    
+    @Update
+    void updateMetric(LiveMetric metric);
+    
+    @Query("SELECT * FROM live_metric")
+    List<LiveMetric> getAllMetricsSync();
+    
+    @Query("SELECT * FROM live_metric WHERE metricKey = :metricKey LIMIT 1")
+    LiveMetric getMetricSync(String metricKey);
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<LiveSample> samples);
+    
+    @Query("SELECT s.* FROM live_sample s JOIN live_metric m ON m.id = s.metricId " +
+           "WHERE m.metricKey = :metricKey AND s.epoch BETWEEN :fromEpoch AND :toEpoch ORDER BY s.epoch ASC")
+    LiveData<List<LiveSample>> getSamples(String metricKey, long fromEpoch, long toEpoch);
+    
+    @Query("SELECT s.* FROM live_sample s JOIN live_metric m ON m.id = s.metricId " +
+           "WHERE m.metricKey = :metricKey AND s.epoch BETWEEN :fromEpoch AND :toEpoch ORDER BY s.epoch ASC")
+    List<LiveSample> getSamplesSync(String metricKey, long fromEpoch, long toEpoch);
+    
+    @Query("SELECT s.* FROM live_sample s JOIN live_metric m ON m.id = s.metricId " +
+           "WHERE m.metricKey = :metricKey AND s.epoch < :epoch ORDER BY s.epoch DESC LIMIT 1")
+    LiveSample getSampleBeforeSync(String metricKey, long epoch);
+    
+    @Query("SELECT MAX(epoch) FROM live_sample")
+    Long getLatestEpochSync();
+    
+    @Query("DELETE FROM live_sample WHERE epoch < :epoch")
+    int deleteOlderThan(long epoch);
+    
+    @Query("DELETE FROM live_sample")
+    void deleteAll();
+}
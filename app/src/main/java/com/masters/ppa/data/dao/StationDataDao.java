@@ -6,6 +6,7 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import com.masters.ppa.data.model.StationData;
@@ -19,6 +20,9 @@ import java.util.List;
 @Dao
 public interface StationDataDao {
     
+    // Rows per insertAll call in bulk operations (each call reuses one prepared statement)
+    int INSERT_CHUNK_SIZE = 1000;
+    
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insert(StationData stationData);
     
@@ -34,8 +38,28 @@ public interface StationDataDao {
     @Query("DELETE FROM station_data")
     void deleteAll();
     
-    @Query("SELECT * FROM station_data ORDER BY timestamp DESC")
-    LiveData<List<StationData>> getAllStationData();
+    /**
+     * Insert a large list in one transaction, INSERT_CHUNK_SIZE rows at a time
+     */
+    @Transaction
+    default void insertAllChunked(List<StationData> stationDataList) {
+        for (int start = 0; start < stationDataList.size(); start += INSERT_CHUNK_SIZE) {
+            int end = Math.min(start + INSERT_CHUNK_SIZE, stationDataList.size());
+            insertAll(stationDataList.subList(start, end));
+        }
+    }
+    
+    /**
+     * Replace all rows atomically (readers never see an empty or half-loaded table)
+     */
+    @Transaction
+    default void replaceAll(List<StationData> stationDataList) {
+        deleteAll();
+        insertAllChunked(stationDataList);
+    }
+    
+    @Query("SELECT * FROM station_data WHERE timestamp >= :since ORDER BY timestamp DESC")
+    LiveData<List<StationData>> getStationDataSince(Date since);
     
     @Query("SELECT * FROM station_data ORDER BY timestamp DESC LIMIT 1")
     LiveData<StationData> getLatestStationData();
@@ -43,6 +67,29 @@ public interface StationDataDao {
     @Query("SELECT * FROM station_data WHERE timestamp BETWEEN :startDate AND :endDate ORDER BY timestamp ASC")
     LiveData<List<StationData>> getStationDataBetweenDates(Date startDate, Date endDate);
     
+    @Query("SELECT * FROM station_data WHERE timestamp BETWEEN :startDate AND :endDate ORDER BY timestamp ASC")
+    List<StationData> getStationDataBetweenDatesSync(Date startDate, Date endDate);
+    
+    /**
+     * Keyset page: up to limit rows before (before, beforeId), newest first
+     */
+    @Query("SELECT * FROM station_data WHERE timestamp <= :before AND (timestamp < :before OR id < :beforeId) " +
+           "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<StationData> getPageBefore(Date before, int beforeId, int limit);
+    
+    /**
+     * Keyset page: up to limit rows after (after, afterId), oldest first
+     */
+    @Query("SELECT * FROM station_data WHERE timestamp >= :after AND (timestamp > :after OR id > :afterId) " +
+           "ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    List<StationData> getPageAfter(Date after, int afterId, int limit);
+    
+    @Query("SELECT COUNT(*) FROM station_data WHERE timestamp BETWEEN :startDate AND :endDate")
+    int countBetweenDates(Date startDate, Date endDate);
+    
+    @Query("DELETE FROM station_data WHERE timestamp < :before")
+    int deleteBefore(Date before);
+    
     @Query("SELECT MAX(lastUpdated) FROM station_data")
     LiveData<Date> getLastUpdatedDate();
 }
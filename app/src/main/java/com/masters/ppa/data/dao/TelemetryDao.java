@@ -0,0 +1,182 @@
+package com.masters.ppa.data.dao;
+
+import android.database.Cursor;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.masters.ppa.data.model.StationTelemetry;
+import com.masters.ppa.data.model.TelemetryDaily;
+import com.masters.ppa.data.model.TelemetryHourly;
+import com.masters.ppa.data.model.TelemetryKey;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Data Access Object for the raw station telemetry store and its hourly/daily rollups.
+ * Rows and values are written by TelemetryRepository with prepared statements.
+ */
+@Dao
+public interface TelemetryDao {
+    
+    long HOUR_SECONDS = 60 * 60;
+    
+    String ROLLUP_COLUMNS = "(periodEpoch, sampleCount, pvEnergyKwh, peakPvKw, socMin, socMax, socAvg, " +
+        "gridImportKwh, gridExportKwh, loadEnergyKwh)";
+    
+    // Rows are 5 minute samples; grid and load power are in W, PV power in kW
+    String ROLLUP_AGGREGATES = "COUNT(*), " +
+        "SUM(MAX(pvPowerKw, 0)) * 5 / 60.0, " +
+        "MAX(pvPowerKw), " +
+        "COALESCE(MIN(NULLIF(batterySoc, 0)), 0), " +
+        "MAX(batterySoc), " +
+        "COALESCE(AVG(NULLIF(batterySoc, 0)), 0), " +
+        "SUM(MAX(gridPower, 0)) / 1000.0 * 5 / 60.0, " +
+        "SUM(MAX(-gridPower, 0)) / 1000.0 * 5 / 60.0, " +
+        "SUM(MAX(loadPower, 0)) / 1000.0 * 5 / 60.0";
+    
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertKey(TelemetryKey key);
+    
+    @Query("SELECT * FROM telemetry_key ORDER BY id ASC")
+    List<TelemetryKey> getAllKeysSync();
+    
+    @Query("SELECT * FROM telemetry_key WHERE name = :name LIMIT 1")
+    TelemetryKey getKeySync(String name);
+    
+    @Query("SELECT * FROM station_telemetry WHERE epoch BETWEEN :fromEpoch AND :toEpoch ORDER BY epoch ASC")
+    List<StationTelemetry> getRangeSync(long fromEpoch, long toEpoch);
+    
+    /**
+     * Rows with their raw values, one cursor row per value (row only, if it has none),
+     * ordered by time and key id
+     */
+    @Query("SELECT r.epoch, r.collectTime, v.keyId, v.value FROM station_telemetry r " +
+           "LEFT JOIN telemetry_value v ON v.epoch = r.epoch ORDER BY r.epoch ASC, v.keyId ASC")
+    Cursor getRawRowsCursor();
+    
+    /**
+     * Same as getRawRowsCursor, limited to rows with epoch in [fromEpoch, toEpoch]
+     */
+    @Query("SELECT r.epoch, r.collectTime, v.keyId, v.value FROM station_telemetry r " +
+           "LEFT JOIN telemetry_value v ON v.epoch = r.epoch WHERE r.epoch BETWEEN :fromEpoch AND :toEpoch " +
+           "ORDER BY r.epoch ASC, v.keyId ASC")
+    Cursor getRawRowsCursor(long fromEpoch, long toEpoch);
+    
+    @Query("SELECT MIN(epoch) FROM station_telemetry")
+    Long getFirstEpochSync();
+    
+    @Query("SELECT MAX(epoch) FROM station_telemetry")
+    Long getLastEpochSync();
+    
+    @Query("SELECT COUNT(*) FROM station_telemetry")
+    int getRowCountSync();
+    
+    @Query("DELETE FROM station_telemetry WHERE epoch < :epoch")
+    int deleteRowsBefore(long epoch);
+    
+    @Query("DELETE FROM telemetry_value WHERE epoch < :epoch")
+    void deleteValuesBefore(long epoch);
+    
+    @Query("DELETE FROM station_telemetry")
+    void deleteAllRows();
+    
+    @Query("DELETE FROM telemetry_value")
+    void deleteAllValues();
+    
+    @Query("DELETE FROM telemetry_key")
+    void deleteAllKeys();
+    
+    @Query("SELECT * FROM telemetry_hourly WHERE periodEpoch BETWEEN :fromEpoch AND :toEpoch ORDER BY periodEpoch ASC")
+    List<TelemetryHourly> getHourlyRollupsSync(long fromEpoch, long toEpoch);
+    
+    @Query("SELECT * FROM telemetry_daily WHERE periodEpoch BETWEEN :fromEpoch AND :toEpoch ORDER BY periodEpoch ASC")
+    List<TelemetryDaily> getDailyRollupsSync(long fromEpoch, long toEpoch);
+    
+    @Query("SELECT * FROM telemetry_daily WHERE periodEpoch BETWEEN :fromEpoch AND :toEpoch ORDER BY periodEpoch ASC")
+    LiveData<List<TelemetryDaily>> getDailyRollups(long fromEpoch, long toEpoch);
+    
+    @Query("SELECT * FROM telemetry_daily ORDER BY periodEpoch ASC")
+    List<TelemetryDaily> getAllDailyRollupsSync();
+    
+    @Query("DELETE FROM telemetry_hourly WHERE periodEpoch >= :fromEpoch AND periodEpoch < :toEpoch")
+    void deleteHourlyRollups(long fromEpoch, long toEpoch);
+    
+    @Query("DELETE FROM telemetry_daily WHERE periodEpoch >= :fromEpoch AND periodEpoch < :toEpoch")
+    void deleteDailyRollups(long fromEpoch, long toEpoch);
+    
+    @Query("INSERT OR REPLACE INTO telemetry_hourly " + ROLLUP_COLUMNS + " SELECT (epoch / 3600) * 3600, " +
+           ROLLUP_AGGREGATES + " FROM station_telemetry WHERE epoch >= :fromEpoch AND epoch < :toEpoch " +
+           "GROUP BY epoch / 3600")
+    void insertHourlyRollups(long fromEpoch, long toEpoch);
+    
+    /**
+     * Roll the rows in [fromEpoch, toEpoch) up into one daily row (none if there are no rows)
+     */
+    @Query("INSERT OR REPLACE INTO telemetry_daily " + ROLLUP_COLUMNS + " SELECT :periodEpoch, " +
+           ROLLUP_AGGREGATES + " FROM station_telemetry WHERE epoch >= :fromEpoch AND epoch < :toEpoch " +
+           "GROUP BY 1")
+    void insertDailyRollup(long periodEpoch, long fromEpoch, long toEpoch);
+    
+    @Query("DELETE FROM telemetry_hourly")
+    void deleteAllHourlyRollups();
+    
+    @Query("DELETE FROM telemetry_daily")
+    void deleteAllDailyRollups();
+    
+    /**
+     * Recompute the hourly and daily rollups of every period touching [fromEpoch, toEpoch]
+     * (periods left without rows are removed). Days are local days of the system zone.
+     */
+    @Transaction
+    default void refreshRollups(long fromEpoch, long toEpoch) {
+        long hourStart = Math.floorDiv(fromEpoch, HOUR_SECONDS) * HOUR_SECONDS;
+        long hourEnd = Math.floorDiv(toEpoch, HOUR_SECONDS) * HOUR_SECONDS + HOUR_SECONDS;
+        deleteHourlyRollups(hourStart, hourEnd);
+        insertHourlyRollups(hourStart, hourEnd);
+        
+        // Local days have 23 or 25 hours around DST changes, so each is bounded on its own
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate firstDay = TelemetryDaily.dayOf(fromEpoch, zone);
+        LocalDate lastDay = TelemetryDaily.dayOf(toEpoch, zone);
+        deleteDailyRollups(TelemetryDaily.periodEpochOf(firstDay), TelemetryDaily.periodEpochOf(lastDay.plusDays(1)));
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            insertDailyRollup(TelemetryDaily.periodEpochOf(day),
+                day.atStartOfDay(zone).toEpochSecond(), day.plusDays(1).atStartOfDay(zone).toEpochSecond());
+        }
+    }
+    
+    /**
+     * Delete rows (and their values) older than epoch
+     * @return Number of rows deleted
+     */
+    @Transaction
+    default int deleteBefore(long epoch) {
+        deleteValuesBefore(epoch);
+        int deleted = deleteRowsBefore(epoch);
+        deleteHourlyRollups(Long.MIN_VALUE, epoch);
+        deleteDailyRollups(Long.MIN_VALUE,
+            TelemetryDaily.periodEpochOf(TelemetryDaily.dayOf(epoch, ZoneId.systemDefault())));
+        // The periods containing epoch lost part of their rows
+        refreshRollups(epoch, epoch);
+        return deleted;
+    }
+    
+    /**
+     * Delete all telemetry including the key dictionary (e.g. another device was configured)
+     */
+    @Transaction
+    default void deleteAll() {
+        deleteAllValues();
+        deleteAllRows();
+        deleteAllKeys();
+        deleteAllHourlyRollups();
+        deleteAllDailyRollups();
+    }
+}
@@ -15,11 +15,13 @@ import com.masters.ppa.data.dao.ConfigInverterDao;
 import com.masters.ppa.data.dao.ConfigTowerDao;
 import com.masters.ppa.data.dao.GenerationDataDao;
 import com.masters.ppa.data.dao.InverterItemDao;
+import com.masters.ppa.data.dao.LiveSampleDao;
 import com.masters.ppa.data.dao.PerformanceConfigDao;
 import com.masters.ppa.data.dao.ProjectConfigDao;
 import com.masters.ppa.data.dao.SolarmanApiConfigDao;
 import com.masters.ppa.data.dao.StationConfigDao;
 import com.masters.ppa.data.dao.StationDataDao;
+import com.masters.ppa.data.dao.TelemetryDao;
 import com.masters.ppa.data.dao.WeatherDataDao;
 import com.masters.ppa.data.model.BatteryConfig;
 import com.masters.ppa.data.model.BatteryItem;
@@ -29,11 +31,18 @@ import com.masters.ppa.data.model.ConfigInverter;
 import com.masters.ppa.data.model.ConfigTower;
 import com.masters.ppa.data.model.GenerationData;
 import com.masters.ppa.data.model.InverterItem;
+import com.masters.ppa.data.model.LiveMetric;
+import com.masters.ppa.data.model.LiveSample;
 import com.masters.ppa.data.model.PerformanceConfig;
 import com.masters.ppa.data.model.ProjectConfig;
 import com.masters.ppa.data.model.SolarmanApiConfig;
 import com.masters.ppa.data.model.StationConfig;
 import com.masters.ppa.data.model.StationData;
+import com.masters.ppa.data.model.StationTelemetry;
+import com.masters.ppa.data.model.TelemetryDaily;
+import com.masters.ppa.data.model.TelemetryHourly;
+import com.masters.ppa.data.model.TelemetryKey;
+import com.masters.ppa.data.model.TelemetryValue;
 import com.masters.ppa.data.model.WeatherData;
 
 /**
@@ -53,8 +62,15 @@ import com.masters.ppa.data.model.WeatherData;
         ProjectConfig.class,
         ConfigInverter.class,
         ConfigTower.class,
-        ConfigBms.class
-}, version = 6, exportSchema = false)
+        ConfigBms.class,
+        LiveMetric.class,
+        LiveSample.class,
+        TelemetryKey.class,
+        StationTelemetry.class,
+        TelemetryValue.class,
+        TelemetryHourly.class,
+        TelemetryDaily.class
+}, version = 10, exportSchema = false)
 @TypeConverters({DateConverter.class})
 public abstract class AppDatabase extends RoomDatabase {
     
@@ -76,6 +92,8 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract ConfigInverterDao configInverterDao();
     public abstract ConfigTowerDao configTowerDao();
     public abstract ConfigBmsDao configBmsDao();
+    public abstract LiveSampleDao liveSampleDao();
+    public abstract TelemetryDao telemetryDao();
     
     // Singleton pattern
     public static synchronized AppDatabase getInstance(Context context) {
@@ -84,7 +102,10 @@ public abstract class AppDatabase extends RoomDatabase {
                     context.getApplicationContext(),
                     AppDatabase.class,
                     DATABASE_NAME)
-                    .fallbackToDestructiveMigration()
+                    .addMigrations(DatabaseMigrations.ALL)
+                    .fallbackToDestructiveMigrationFrom(1, 2, 3, 4, 5)
+                    // Analysis reads telemetry while a fetch is writing it
+                    .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
                     .build();
         }
         return instance;
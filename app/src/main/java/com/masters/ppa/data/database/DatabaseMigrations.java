@@ -0,0 +1,109 @@
+package com.masters.ppa.data.database;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.masters.ppa.data.dao.TelemetryDao;
+import com.masters.ppa.data.model.TelemetryDaily;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Schema migrations for AppDatabase. Versions before 6 are still rebuilt from scratch.
+ */
+public final class DatabaseMigrations {
+
+    private DatabaseMigrations() {
+    }
+
+    /**
+     * Live inverter sample time series (live_metric, live_sample)
+     */
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `live_metric` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`metricKey` TEXT, `name` TEXT, `unit` TEXT)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_live_metric_metricKey` ON `live_metric` (`metricKey`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `live_sample` (`epoch` INTEGER NOT NULL, `metricId` INTEGER NOT NULL, "
+                + "`value` REAL NOT NULL, PRIMARY KEY(`epoch`, `metricId`))");
+        }
+    };
+
+    /**
+     * Indexes for range queries on station_data and generation_data
+     */
+    public static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_station_data_timestamp` ON `station_data` (`timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_station_data_lastUpdated` ON `station_data` (`lastUpdated`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_generation_data_isActual_date` "
+                + "ON `generation_data` (`isActual`, `date`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_generation_data_date` ON `generation_data` (`date`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_generation_data_lastUpdated` ON `generation_data` (`lastUpdated`)");
+        }
+    };
+
+    /**
+     * Raw station telemetry store (telemetry_key, station_telemetry, telemetry_value);
+     * filled from station_data.csv on first use
+     */
+    public static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `telemetry_key` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`name` TEXT)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_telemetry_key_name` ON `telemetry_key` (`name`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `station_telemetry` (`epoch` INTEGER NOT NULL, `collectTime` TEXT, "
+                + "`pvPowerKw` REAL NOT NULL, `batterySoc` REAL NOT NULL, `batteryPowerRaw` REAL NOT NULL, "
+                + "`batteryTempC` REAL NOT NULL, `gridPower` REAL NOT NULL, `loadPower` REAL NOT NULL, "
+                + "PRIMARY KEY(`epoch`))");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `telemetry_value` (`epoch` INTEGER NOT NULL, `keyId` INTEGER NOT NULL, "
+                + "`value` TEXT, PRIMARY KEY(`epoch`, `keyId`))");
+        }
+    };
+
+    /**
+     * Hourly and daily telemetry rollups (telemetry_hourly, telemetry_daily)
+     */
+    public static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            for (String table : new String[]{"telemetry_hourly", "telemetry_daily"}) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `" + table + "` (`periodEpoch` INTEGER NOT NULL, "
+                    + "`sampleCount` INTEGER NOT NULL, `pvEnergyKwh` REAL NOT NULL, `peakPvKw` REAL NOT NULL, "
+                    + "`socMin` REAL NOT NULL, `socMax` REAL NOT NULL, `socAvg` REAL NOT NULL, "
+                    + "`gridImportKwh` REAL NOT NULL, `gridExportKwh` REAL NOT NULL, `loadEnergyKwh` REAL NOT NULL, "
+                    + "PRIMARY KEY(`periodEpoch`))");
+            }
+            // Backfill from the telemetry already stored
+            db.execSQL("INSERT OR REPLACE INTO telemetry_hourly " + TelemetryDao.ROLLUP_COLUMNS
+                + " SELECT (epoch / 3600) * 3600, " + TelemetryDao.ROLLUP_AGGREGATES
+                + " FROM station_telemetry GROUP BY epoch / 3600");
+            // Daily rows cover local days, one statement per day as in TelemetryDao.refreshRollups
+            ZoneId zone = ZoneId.systemDefault();
+            LocalDate firstDay = null;
+            LocalDate lastDay = null;
+            try (Cursor cursor = db.query("SELECT MIN(epoch), MAX(epoch) FROM station_telemetry")) {
+                if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                    firstDay = TelemetryDaily.dayOf(cursor.getLong(0), zone);
+                    lastDay = TelemetryDaily.dayOf(cursor.getLong(1), zone);
+                }
+            }
+            for (LocalDate day = firstDay; day != null && !day.isAfter(lastDay); day = day.plusDays(1)) {
+                db.execSQL("INSERT OR REPLACE INTO telemetry_daily " + TelemetryDao.ROLLUP_COLUMNS
+                    + " SELECT ?, " + TelemetryDao.ROLLUP_AGGREGATES
+                    + " FROM station_telemetry WHERE epoch >= ? AND epoch < ? GROUP BY 1",
+                    new Object[]{TelemetryDaily.periodEpochOf(day), day.atStartOfDay(zone).toEpochSecond(),
+                        day.plusDays(1).atStartOfDay(zone).toEpochSecond()});
+            }
+        }
+    };
+
+    public static final Migration[] ALL = {MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10};
+}
@@ -1,6 +1,7 @@
 package com.masters.ppa.data.model;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import java.util.Date;
@@ -8,7 +9,8 @@ import java.util.Date;
 /**
  * Entity class for power generation data
  */
-@Entity(tableName = "generation_data")
+@Entity(tableName = "generation_data", indices = {
+        @Index({"isActual", "date"}), @Index("date"), @Index("lastUpdated")})
 public class GenerationData {
     
     @PrimaryKey(autoGenerate = true)
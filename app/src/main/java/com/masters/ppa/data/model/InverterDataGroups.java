@@ -1,9 +1,13 @@
 package com.masters.ppa.data.model;
 
-import java.util.ArrayList;
+import com.masters.ppa.data.parser.MetricClassificationRegistry;
+
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Groups of inverter data organized by category
@@ -27,6 +31,22 @@ public class InverterDataGroups {
     
     // All metrics by key
     private final Map<String, InverterMetric> allMetrics = new HashMap<>();
+    
+    /**
+     * Category of a metric (rules in assets/metric_groups.json)
+     */
+    public enum Group {
+        SYSTEM_STATUS, POWER_FLOW, DAILY_SUMMARY, CUMULATIVE_SUMMARY, ADVANCED
+    }
+    
+    // Group each key was put in, so unchanged keys are not categorized again
+    private final Map<String, Group> groupByKey = new HashMap<>();
+    
+    // Metrics by lowercase name, for getMetricByName
+    private final Map<String, InverterMetric> metricsByName = new HashMap<>();
+    
+    // Keys that changed against the previous snapshot; null = everything is new
+    private Set<String> changedKeys;
 
     public Map<String, InverterMetric> getSystemStatus() {
         return systemStatus;
@@ -53,60 +73,109 @@ public class InverterDataGroups {
     }
 
     /**
-     * Add metric to appropriate group
+     * Keys added, changed or removed compared to the snapshot this one was derived from
+     * @return null if this is a full snapshot (no previous one)
      */
-    public void addMetric(InverterMetric metric) {
-        if (metric == null || metric.getKey() == null) {
-            return;
+    public Set<String> getChangedKeys() {
+        return changedKeys;
+    }
+
+    /**
+     * True if the metric changed in this snapshot (always true for a full snapshot)
+     */
+    public boolean hasChanged(String key) {
+        return changedKeys == null || changedKeys.contains(key);
+    }
+
+    /**
+     * Build the next snapshot from freshly polled metrics. Unchanged metrics keep their
+     * instance and group; only new keys (or renamed metrics) are categorized.
+     */
+    public InverterDataGroups updatedWith(List<InverterMetric> metrics) {
+        InverterDataGroups next = new InverterDataGroups();
+        next.changedKeys = new HashSet<>();
+        for (InverterMetric metric : metrics) {
+            if (metric == null || metric.getKey() == null) {
+                continue;
+            }
+            String key = metric.getKey();
+            InverterMetric previous = allMetrics.get(key);
+            if (previous != null && previous.hasSameContent(metric)) {
+                next.put(groupByKey.get(key), previous);
+                continue;
+            }
+            next.changedKeys.add(key);
+            if (previous != null && java.util.Objects.equals(previous.getName(), metric.getName())) {
+                next.put(groupByKey.get(key), metric);
+            } else {
+                next.addMetric(metric);
+            }
         }
-        
-        allMetrics.put(metric.getKey(), metric);
-        String key = metric.getKey();
-        String name = metric.getName();
-
-        // System Status Group
-        if ((key != null && (key.contains("ST_") || key.contains("INV_ST") || key.contains("INV_WORK") || 
-            key.contains("SYSTIM"))) ||
-            (name != null && (name.contains("Grid Status") || name.contains("Inverter status") || 
-            name.contains("Inverter Status") || name.contains("System Time") || 
-            name.contains("Status") || (name.contains("Temperature") || name.contains("Temp"))))) {
-            systemStatus.put(key, metric);
-            return;
+        for (String key : allMetrics.keySet()) {
+            if (!next.allMetrics.containsKey(key)) {
+                next.changedKeys.add(key);
+            }
         }
+        return next;
+    }
 
-        // Power Flow Group - Solar, Battery, Grid, Load, Consumption
-        if ((key != null && (key.contains("PV") || key.contains("B_P") || key.contains("B_left") || 
-            key.contains("PG_") || key.contains("E_Puse") || key.contains("T_AC_OP") ||
-            key.contains("DP") || key.contains("PVTP"))) ||
-            (name != null && (name.contains("Solar") || name.contains("PV") || name.contains("Battery") || 
-            name.contains("SoC") || name.contains("Grid") || name.contains("Consumption") || 
-            name.contains("Power") || name.contains("Current") || name.contains("Voltage")))) {
-            powerFlow.put(key, metric);
+    /**
+     * Add the changes of an earlier snapshot that observers never saw
+     */
+    public void mergeChangesFrom(InverterDataGroups undelivered) {
+        if (changedKeys == null) {
             return;
         }
+        if (undelivered.changedKeys == null) {
+            changedKeys = null;
+        } else {
+            changedKeys.addAll(undelivered.changedKeys);
+        }
+    }
 
-        // Daily Summary Group
-        // Generation time today, daily grid feed in, daily consumption
-        if ((key != null && (key.contains("Etdy") || key.equals("GE_T_TODAY") || key.equals("t_gc_tdy1"))) ||
-            (name != null && (name.contains("Daily") || name.contains("Generation Time Today") || 
-             name.contains("Daily Grid Feed-in") || name.contains("Daily Consumption")))) {
-            dailySummary.put(key, metric);
-            return;
+    private void put(Group group, InverterMetric metric) {
+        if (group == null) {
+            group = classify(metric.getKey(), metric.getName());
+        }
+        InverterMetric previous = allMetrics.put(metric.getKey(), metric);
+        if (previous != null && previous.getName() != null) {
+            metricsByName.remove(previous.getName().toLowerCase(Locale.ROOT), previous);
+        }
+        if (metric.getName() != null) {
+            metricsByName.put(metric.getName().toLowerCase(Locale.ROOT), metric);
         }
+        groupByKey.put(metric.getKey(), group);
+        switch (group) {
+            case SYSTEM_STATUS:
+                systemStatus.put(metric.getKey(), metric);
+                break;
+            case POWER_FLOW:
+                powerFlow.put(metric.getKey(), metric);
+                break;
+            case DAILY_SUMMARY:
+                dailySummary.put(metric.getKey(), metric);
+                break;
+            case CUMULATIVE_SUMMARY:
+                cumulativeSummary.put(metric.getKey(), metric);
+                break;
+            default:
+                advanced.put(metric.getKey(), metric);
+                break;
+        }
+    }
 
-        // Cumulative Summary Group
-        // Total charging energy, total discharging energy, cumulative grid feed in, generation time total
-        if ((key != null && (key.contains("Et_") || key.equals("t_cg_n1") || key.equals("t_dcg_n1") || 
-             key.equals("t_gc1") || key.equals("GE_T_TOTAL") || (key.contains("t_") && !key.contains("Etdy")))) ||
-            (name != null && (name.contains("Cumulative") || name.contains("Total Charging Energy") || 
-             name.contains("Total Discharging Energy") || name.contains("Cumulative Grid Feed-in") || 
-             name.contains("Generation Time Total")))) {
-            cumulativeSummary.put(key, metric);
+    /**
+     * Add metric to appropriate group
+     */
+    public void addMetric(InverterMetric metric) {
+        if (metric == null || metric.getKey() == null) {
             return;
         }
+        put(classify(metric.getKey(), metric.getName()), metric);
+    }
 
-        // Advanced Group (everything else)
-        advanced.put(key, metric);
+    private static Group classify(String key, String name) {
+        return MetricClassificationRegistry.get().classify(key, name);
     }
 
     /**
@@ -117,15 +186,9 @@ public class InverterDataGroups {
     }
 
     /**
-     * Get metric by name (case-insensitive search)
+     * Get metric by name (case-insensitive)
      */
     public InverterMetric getMetricByName(String name) {
-        for (InverterMetric metric : allMetrics.values()) {
-            if (metric.getName() != null && metric.getName().equalsIgnoreCase(name)) {
-                return metric;
-            }
-        }
-        return null;
+        return name != null ? metricsByName.get(name.toLowerCase(Locale.ROOT)) : null;
     }
 }
-
@@ -51,6 +51,16 @@ public class InverterMetric {
         this.unit = unit;
     }
 
+    /**
+     * Same name, value and unit (key is the identity)
+     */
+    public boolean hasSameContent(InverterMetric other) {
+        return other != null
+            && java.util.Objects.equals(name, other.name)
+            && java.util.Objects.equals(value, other.value)
+            && getUnit().equals(other.getUnit());
+    }
+
     /**
      * Get formatted value with unit
      */
@@ -0,0 +1,52 @@
+package com.masters.ppa.data.model;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Dictionary entry for a live inverter metric, so samples store a small id instead of the key
+ */
+@Entity(tableName = "live_metric", indices = {@Index(value = {"metricKey"}, unique = true)})
+public class LiveMetric {
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+
+    private String metricKey;
+    private String name;
+    private String unit;
+
+    // Getters and Setters
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getMetricKey() {
+        return metricKey;
+    }
+
+    public void setMetricKey(String metricKey) {
+        this.metricKey = metricKey;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public void setUnit(String unit) {
+        this.unit = unit;
+    }
+}
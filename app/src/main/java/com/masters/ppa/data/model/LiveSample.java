@@ -0,0 +1,50 @@
+package com.masters.ppa.data.model;
+
+import androidx.room.Entity;
+
+/**
+ * One numeric value of a live inverter poll. A row is written only when the value changed,
+ * so a metric holds its last value until the next row.
+ */
+@Entity(tableName = "live_sample", primaryKeys = {"epoch", "metricId"})
+public class LiveSample {
+
+    // Poll time in seconds since 1970
+    private long epoch;
+    private int metricId;
+    private double value;
+
+    public LiveSample() {
+    }
+
+    public LiveSample(long epoch, int metricId, double value) {
+        this.epoch = epoch;
+        this.metricId = metricId;
+        this.value = value;
+    }
+
+    // Getters and Setters
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public int getMetricId() {
+        return metricId;
+    }
+
+    public void setMetricId(int metricId) {
+        this.metricId = metricId;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public void setValue(double value) {
+        this.value = value;
+    }
+}
@@ -1,6 +1,7 @@
 package com.masters.ppa.data.model;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import java.util.Date;
@@ -8,7 +9,7 @@ import java.util.Date;
 /**
  * Entity class for current station data readings
  */
-@Entity(tableName = "station_data")
+@Entity(tableName = "station_data", indices = {@Index("timestamp"), @Index("lastUpdated")})
 public class StationData {
     
     @PrimaryKey(autoGenerate = true)
@@ -0,0 +1,91 @@
+package com.masters.ppa.data.model;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * One Solarman history row (normally every 5 minutes). Besides the original collectTime it
+ * holds the values the analysis jobs need, derived once when the row is stored; all raw
+ * values of the row are in telemetry_value.
+ */
+@Entity(tableName = "station_telemetry")
+public class StationTelemetry {
+
+    // collectTime as seconds; formatted times are taken as UTC, like HistorySnapshot does
+    @PrimaryKey
+    private long epoch;
+
+    private String collectTime;
+
+    private float pvPowerKw;
+    private float batterySoc;
+    private float batteryPowerRaw;
+    private float batteryTempC;
+    private float gridPower;
+    private float loadPower;
+
+    // Getters and Setters
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public String getCollectTime() {
+        return collectTime;
+    }
+
+    public void setCollectTime(String collectTime) {
+        this.collectTime = collectTime;
+    }
+
+    public float getPvPowerKw() {
+        return pvPowerKw;
+    }
+
+    public void setPvPowerKw(float pvPowerKw) {
+        this.pvPowerKw = pvPowerKw;
+    }
+
+    public float getBatterySoc() {
+        return batterySoc;
+    }
+
+    public void setBatterySoc(float batterySoc) {
+        this.batterySoc = batterySoc;
+    }
+
+    public float getBatteryPowerRaw() {
+        return batteryPowerRaw;
+    }
+
+    public void setBatteryPowerRaw(float batteryPowerRaw) {
+        this.batteryPowerRaw = batteryPowerRaw;
+    }
+
+    public float getBatteryTempC() {
+        return batteryTempC;
+    }
+
+    public void setBatteryTempC(float batteryTempC) {
+        this.batteryTempC = batteryTempC;
+    }
+
+    public float getGridPower() {
+        return gridPower;
+    }
+
+    public void setGridPower(float gridPower) {
+        this.gridPower = gridPower;
+    }
+
+    public float getLoadPower() {
+        return loadPower;
+    }
+
+    public void setLoadPower(float loadPower) {
+        this.loadPower = loadPower;
+    }
+}
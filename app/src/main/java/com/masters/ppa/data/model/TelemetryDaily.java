@@ -0,0 +1,39 @@
+package com.masters.ppa.data.model;
+
+import androidx.room.Entity;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Station telemetry rollup for one local day, kept up to date by TelemetryRepository.
+ * The period epoch is the local midnight taken as UTC, so it names the day the way the
+ * other day-keyed stores do; the rows it covers run from local midnight to local midnight.
+ */
+@Entity(tableName = "telemetry_daily")
+public class TelemetryDaily extends TelemetryRollup {
+
+    private static final long DAY_SECONDS = 24 * 60 * 60;
+
+    /**
+     * Day of this rollup
+     */
+    public LocalDate getDay() {
+        return LocalDate.ofEpochDay(Math.floorDiv(getPeriodEpoch(), DAY_SECONDS));
+    }
+
+    /**
+     * Period epoch of the rollup for a day
+     */
+    public static long periodEpochOf(LocalDate day) {
+        return day.toEpochDay() * DAY_SECONDS;
+    }
+
+    /**
+     * Local day a station_telemetry epoch falls in
+     */
+    public static LocalDate dayOf(long epoch, ZoneId zone) {
+        return Instant.ofEpochSecond(epoch).atZone(zone).toLocalDate();
+    }
+}
@@ -0,0 +1,10 @@
+package com.masters.ppa.data.model;
+
+import androidx.room.Entity;
+
+/**
+ * Station telemetry rollup for one hour, kept up to date by TelemetryRepository
+ */
+@Entity(tableName = "telemetry_hourly")
+public class TelemetryHourly extends TelemetryRollup {
+}
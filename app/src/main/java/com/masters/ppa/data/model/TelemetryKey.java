@@ -0,0 +1,42 @@
+package com.masters.ppa.data.model;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Dictionary entry for a Solarman history key (e.g. PVTP, SoC_BAP2), so telemetry values
+ * store a small id instead of the key
+ */
+@Entity(tableName = "telemetry_key", indices = {@Index(value = {"name"}, unique = true)})
+public class TelemetryKey {
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+
+    private String name;
+
+    public TelemetryKey() {
+    }
+
+    public TelemetryKey(String name) {
+        this.name = name;
+    }
+
+    // Getters and Setters
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
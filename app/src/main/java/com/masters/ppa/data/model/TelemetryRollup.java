@@ -0,0 +1,107 @@
+package com.masters.ppa.data.model;
+
+import androidx.room.PrimaryKey;
+
+/**
+ * Aggregates of station_telemetry over one period (see TelemetryHourly and TelemetryDaily).
+ * Energy assumes the 5 minute Solarman sample interval; grid power above zero is import,
+ * below zero export.
+ */
+public abstract class TelemetryRollup {
+
+    // Period start in seconds: the station_telemetry epoch of the hour, the local day for daily rows
+    @PrimaryKey
+    private long periodEpoch;
+
+    private int sampleCount;
+    private double pvEnergyKwh;
+    private float peakPvKw;
+    // SoC over samples that reported one (0 if none did)
+    private float socMin;
+    private float socMax;
+    private float socAvg;
+    private double gridImportKwh;
+    private double gridExportKwh;
+    private double loadEnergyKwh;
+
+    // Getters and Setters
+    public long getPeriodEpoch() {
+        return periodEpoch;
+    }
+
+    public void setPeriodEpoch(long periodEpoch) {
+        this.periodEpoch = periodEpoch;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(int sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public double getPvEnergyKwh() {
+        return pvEnergyKwh;
+    }
+
+    public void setPvEnergyKwh(double pvEnergyKwh) {
+        this.pvEnergyKwh = pvEnergyKwh;
+    }
+
+    public float getPeakPvKw() {
+        return peakPvKw;
+    }
+
+    public void setPeakPvKw(float peakPvKw) {
+        this.peakPvKw = peakPvKw;
+    }
+
+    public float getSocMin() {
+        return socMin;
+    }
+
+    public void setSocMin(float socMin) {
+        this.socMin = socMin;
+    }
+
+    public float getSocMax() {
+        return socMax;
+    }
+
+    public void setSocMax(float socMax) {
+        this.socMax = socMax;
+    }
+
+    public float getSocAvg() {
+        return socAvg;
+    }
+
+    public void setSocAvg(float socAvg) {
+        this.socAvg = socAvg;
+    }
+
+    public double getGridImportKwh() {
+        return gridImportKwh;
+    }
+
+    public void setGridImportKwh(double gridImportKwh) {
+        this.gridImportKwh = gridImportKwh;
+    }
+
+    public double getGridExportKwh() {
+        return gridExportKwh;
+    }
+
+    public void setGridExportKwh(double gridExportKwh) {
+        this.gridExportKwh = gridExportKwh;
+    }
+
+    public double getLoadEnergyKwh() {
+        return loadEnergyKwh;
+    }
+
+    public void setLoadEnergyKwh(double loadEnergyKwh) {
+        this.loadEnergyKwh = loadEnergyKwh;
+    }
+}
@@ -0,0 +1,49 @@
+package com.masters.ppa.data.model;
+
+import androidx.room.Entity;
+
+/**
+ * One raw value of a station telemetry row, kept as text exactly as Solarman returned it
+ */
+@Entity(tableName = "telemetry_value", primaryKeys = {"epoch", "keyId"})
+public class TelemetryValue {
+
+    // Row time in seconds, see StationTelemetry.epoch
+    private long epoch;
+    private int keyId;
+    private String value;
+
+    public TelemetryValue() {
+    }
+
+    public TelemetryValue(long epoch, int keyId, String value) {
+        this.epoch = epoch;
+        this.keyId = keyId;
+        this.value = value;
+    }
+
+    // Getters and Setters
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public int getKeyId() {
+        return keyId;
+    }
+
+    public void setKeyId(int keyId) {
+        this.keyId = keyId;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+}
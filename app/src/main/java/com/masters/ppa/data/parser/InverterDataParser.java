@@ -10,7 +10,9 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -25,7 +27,19 @@ public class InverterDataParser {
      */
     public static InverterDataGroups parseJsonResponse(JSONObject response) throws JSONException {
         InverterDataGroups groups = new InverterDataGroups();
+        for (InverterMetric metric : parseMetrics(response)) {
+            groups.addMetric(metric);
+        }
+        MetricClassificationRegistry.get().saveIfDirty();
+        Log.d(TAG, "Parsed " + groups.getAllMetrics().size() + " metrics");
+        return groups;
+    }
 
+    /**
+     * Parse dataList of a Solarman response into metrics, without grouping them
+     * (live polling diffs these against the previous InverterDataGroups)
+     */
+    public static List<InverterMetric> parseMetrics(JSONObject response) throws JSONException {
         if (!response.optBoolean("success", false)) {
             throw new JSONException("API response indicates failure");
         }
@@ -33,9 +47,10 @@ public class InverterDataParser {
         JSONArray dataList = response.optJSONArray("dataList");
         if (dataList == null) {
             Log.w(TAG, "dataList is null or empty");
-            return groups;
+            return new ArrayList<>();
         }
 
+        List<InverterMetric> metrics = new ArrayList<>(dataList.length());
         for (int i = 0; i < dataList.length(); i++) {
             try {
                 JSONObject item = dataList.getJSONObject(i);
@@ -52,14 +67,12 @@ public class InverterDataParser {
                 }
                 metric.setUnit(unit);
 
-                groups.addMetric(metric);
+                metrics.add(metric);
             } catch (JSONException e) {
                 Log.e(TAG, "Error parsing data item " + i, e);
             }
         }
-
-        Log.d(TAG, "Parsed " + groups.getAllMetrics().size() + " metrics");
-        return groups;
+        return metrics;
     }
 
     /**
@@ -0,0 +1,239 @@
+package com.masters.ppa.data.parser;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.masters.ppa.PowerPlantApplication;
+import com.masters.ppa.data.model.InverterDataGroups.Group;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metric key -> group decisions for InverterDataGroups.
+ *
+ * Rules come from assets/metric_groups.json and are evaluated only for a key/name pair
+ * that was never seen before; the result is cached (and persisted to
+ * files/metric_groups_cache.json), so regular refreshes cost a single hash lookup per metric.
+ * The cache is dropped whenever the rules asset changes.
+ */
+public class MetricClassificationRegistry {
+
+    private static final String TAG = "MetricClassification";
+
+    private static final String RULES_ASSET = "metric_groups.json";
+    private static final String CACHE_FILE = "metric_groups_cache.json";
+
+    private static volatile MetricClassificationRegistry instance;
+
+    private final File cacheFile;
+    private final List<Rule> rules = new ArrayList<>();
+    private Group fallback = Group.ADVANCED;
+    private int rulesHash;
+    private final Map<String, Group> cache = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    /**
+     * One group of the rules file; matches if any key or name condition matches
+     */
+    private static class Rule {
+        Group group;
+        final List<String> keyContains = new ArrayList<>();
+        final List<String> keyEquals = new ArrayList<>();
+        final List<String[]> keyContainsUnless = new ArrayList<>();
+        final List<String> nameContains = new ArrayList<>();
+
+        boolean matches(String key, String name) {
+            if (key != null) {
+                for (String part : keyContains) {
+                    if (key.contains(part)) {
+                        return true;
+                    }
+                }
+                if (keyEquals.contains(key)) {
+                    return true;
+                }
+                for (String[] pair : keyContainsUnless) {
+                    if (key.contains(pair[0]) && !key.contains(pair[1])) {
+                        return true;
+                    }
+                }
+            }
+            if (name != null) {
+                for (String part : nameContains) {
+                    if (name.contains(part)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private MetricClassificationRegistry(Context context) {
+        cacheFile = context != null ? new File(context.getFilesDir(), CACHE_FILE) : null;
+        if (context != null) {
+            loadRules(context);
+            loadCache();
+        }
+    }
+
+    public static MetricClassificationRegistry getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MetricClassificationRegistry.class) {
+                if (instance == null) {
+                    instance = new MetricClassificationRegistry(
+                        context != null ? context.getApplicationContext() : null);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Registry of the running application (for callers without a Context)
+     */
+    public static MetricClassificationRegistry get() {
+        return getInstance(PowerPlantApplication.getInstance());
+    }
+
+    /**
+     * Group of a metric; rules are evaluated only on a cache miss
+     */
+    public Group classify(String key, String name) {
+        String cacheKey = (key != null ? key : "") + '\u0000' + (name != null ? name : "");
+        Group group = cache.get(cacheKey);
+        if (group == null) {
+            group = evaluate(key, name);
+            cache.put(cacheKey, group);
+            dirty = true;
+        }
+        return group;
+    }
+
+    private Group evaluate(String key, String name) {
+        for (Rule rule : rules) {
+            if (rule.matches(key, name)) {
+                return rule.group;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Persist decisions made since the last save
+     */
+    public void saveIfDirty() {
+        if (!dirty || cacheFile == null) {
+            return;
+        }
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            try {
+                JSONObject entries = new JSONObject();
+                for (Map.Entry<String, Group> entry : cache.entrySet()) {
+                    entries.put(entry.getKey(), entry.getValue().name());
+                }
+                JSONObject root = new JSONObject();
+                root.put("rulesHash", rulesHash);
+                root.put("entries", entries);
+                try (FileWriter writer = new FileWriter(cacheFile, false)) {
+                    writer.write(root.toString());
+                }
+                Log.d(TAG, "Saved " + cache.size() + " metric classifications");
+            } catch (Exception e) {
+                Log.e(TAG, "Error saving metric classification cache", e);
+            }
+        }
+    }
+
+    private void loadRules(Context context) {
+        try (InputStream is = context.getAssets().open(RULES_ASSET)) {
+            String content = readAll(is);
+            rulesHash = content.hashCode();
+            JSONObject json = new JSONObject(content);
+            fallback = Group.valueOf(json.optString("fallback", Group.ADVANCED.name()));
+            JSONArray groups = json.getJSONArray("groups");
+            for (int i = 0; i < groups.length(); i++) {
+                JSONObject item = groups.getJSONObject(i);
+                Rule rule = new Rule();
+                rule.group = Group.valueOf(item.getString("group"));
+                addStrings(item.optJSONArray("keyContains"), rule.keyContains);
+                addStrings(item.optJSONArray("keyEquals"), rule.keyEquals);
+                addStrings(item.optJSONArray("nameContains"), rule.nameContains);
+                JSONArray unless = item.optJSONArray("keyContainsUnless");
+                if (unless != null) {
+                    for (int j = 0; j < unless.length(); j++) {
+                        JSONObject pair = unless.getJSONObject(j);
+                        rule.keyContainsUnless.add(
+                            new String[]{pair.getString("contains"), pair.getString("unless")});
+                    }
+                }
+                rules.add(rule);
+            }
+            Log.d(TAG, "Loaded " + rules.size() + " metric group rules");
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading " + RULES_ASSET + ", all metrics go to " + fallback, e);
+            rules.clear();
+        }
+    }
+
+    private void loadCache() {
+        if (!cacheFile.exists()) {
+            return;
+        }
+        try (InputStream is = new FileInputStream(cacheFile)) {
+            JSONObject json = new JSONObject(readAll(is));
+            if (json.optInt("rulesHash") != rulesHash || rules.isEmpty()) {
+                Log.d(TAG, "Metric group rules changed, discarding cached classifications");
+                dirty = true;
+                return;
+            }
+            JSONObject entries = json.getJSONObject("entries");
+            Iterator<String> keys = entries.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                cache.put(key, Group.valueOf(entries.getString(key)));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring unreadable metric classification cache", e);
+            cache.clear();
+        }
+    }
+
+    private static void addStrings(JSONArray array, List<String> target) throws Exception {
+        if (array == null) {
+            return;
+        }
+        for (int i = 0; i < array.length(); i++) {
+            target.add(array.getString(i));
+        }
+    }
+
+    private static String readAll(InputStream is) throws Exception {
+        StringBuilder content = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                content.append(line).append('\n');
+            }
+        }
+        return content.toString();
+    }
+}
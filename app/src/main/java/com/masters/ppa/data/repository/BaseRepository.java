@@ -0,0 +1,147 @@
+package com.masters.ppa.data.repository;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.masters.ppa.data.database.AppDatabase;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base for Room repositories.
+ *
+ * All repositories share one bounded pool of database threads. Each repository class (and so
+ * each group of tables) gets one serial view of that pool, shared by all its instances, so
+ * operations on the same tables run one at a time and in the order they were submitted (an
+ * insert followed by a read sees the insert, even through another instance).
+ */
+public abstract class BaseRepository {
+
+    private static final String TAG = "BaseRepository";
+
+    private static final int DB_THREADS = 4;
+
+    private static final ThreadPoolExecutor DB_EXECUTOR;
+
+    static {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "db-" + threadCount.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+        DB_EXECUTOR = new ThreadPoolExecutor(DB_THREADS, DB_THREADS, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), threadFactory);
+        DB_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    // Repository class -> its serial executor
+    private static final Map<Class<?>, Executor> SERIAL_EXECUTORS = new ConcurrentHashMap<>();
+
+    protected final AppDatabase database;
+    protected final Executor executor =
+        SERIAL_EXECUTORS.computeIfAbsent(getClass(), repositoryClass -> new SerialExecutor(DB_EXECUTOR));
+
+    protected BaseRepository(Context context) {
+        database = AppDatabase.getInstance(context);
+    }
+
+    /**
+     * App-wide database pool, for work that does not belong to a repository
+     */
+    public static Executor getDatabaseExecutor() {
+        return DB_EXECUTOR;
+    }
+
+    /**
+     * Run a read on this repository's executor and wait for its result
+     * (must not be called from a database thread)
+     * @param fallback Returned if the read fails or the wait is interrupted
+     */
+    protected <T> T callSync(Callable<T> task, T fallback) {
+        FutureTask<T> future = new FutureTask<>(task);
+        executor.execute(future);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback;
+        } catch (Exception e) {
+            Log.e(TAG, "Database operation failed", e);
+            return fallback;
+        }
+    }
+
+    /**
+     * Run a write on this repository's executor and wait until it is done
+     * (must not be called from a database thread)
+     * @throws RuntimeException If the write fails (the original exception if unchecked) or the
+     * wait is interrupted, so callers never mistake a lost write for an empty one
+     */
+    protected <T> T callWrite(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        executor.execute(future);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for database write", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Database write failed", cause);
+        }
+    }
+
+    /**
+     * Runs tasks one at a time, in submission order, on a shared executor
+     */
+    private static class SerialExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private final Executor target;
+        private Runnable active;
+
+        SerialExecutor(Executor target) {
+            this.target = target;
+        }
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.offer(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Database operation failed", e);
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            active = tasks.poll();
+            if (active != null) {
+                target.execute(active);
+            }
+        }
+    }
+}
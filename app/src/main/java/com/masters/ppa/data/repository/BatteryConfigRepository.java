@@ -2,24 +2,22 @@ package com.masters.ppa.data.repository;
 
 import android.app.Application;
 import android.content.Context;
-import android.os.AsyncTask;
 
 import androidx.lifecycle.LiveData;
 
 import com.masters.ppa.data.dao.BatteryConfigDao;
-import com.masters.ppa.data.database.AppDatabase;
 import com.masters.ppa.data.model.BatteryConfig;
 
 /**
  * Repository for BatteryConfig data
  */
-public class BatteryConfigRepository {
+public class BatteryConfigRepository extends BaseRepository {
     
     private final BatteryConfigDao batteryConfigDao;
     private final LiveData<BatteryConfig> batteryConfig;
     
     public BatteryConfigRepository(Context context) {
-        AppDatabase database = AppDatabase.getInstance(context);
+        super(context);
         batteryConfigDao = database.batteryConfigDao();
         batteryConfig = batteryConfigDao.getBatteryConfig();
     }
@@ -45,14 +43,14 @@ public class BatteryConfigRepository {
      * @param batteryConfig BatteryConfig to save
      */
     public void insert(BatteryConfig batteryConfig) {
-        new InsertAsyncTask(batteryConfigDao).execute(batteryConfig);
+        executor.execute(() -> batteryConfigDao.insert(batteryConfig));
     }
     
     /**
      * Delete battery configuration
      */
     public void delete() {
-        new DeleteAsyncTask(batteryConfigDao).execute();
+        executor.execute(batteryConfigDao::deleteAll);
     }
     
     /**
@@ -62,38 +60,4 @@ public class BatteryConfigRepository {
     public boolean exists() {
         return batteryConfigDao.getCount() > 0;
     }
-    
-    /**
-     * AsyncTask for insert operation
-     */
-    private static class InsertAsyncTask extends AsyncTask<BatteryConfig, Void, Void> {
-        private final BatteryConfigDao asyncTaskDao;
-        
-        InsertAsyncTask(BatteryConfigDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @Override
-        protected Void doInBackground(final BatteryConfig... params) {
-            asyncTaskDao.insert(params[0]);
-            return null;
-        }
-    }
-    
-    /**
-     * AsyncTask for delete operation
-     */
-    private static class DeleteAsyncTask extends AsyncTask<Void, Void, Void> {
-        private final BatteryConfigDao asyncTaskDao;
-        
-        DeleteAsyncTask(BatteryConfigDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @Override
-        protected Void doInBackground(final Void... params) {
-            asyncTaskDao.deleteAll();
-            return null;
-        }
-    }
 }
@@ -5,28 +5,22 @@ import android.content.Context;
 import androidx.lifecycle.LiveData;
 
 import com.masters.ppa.data.dao.BmsItemDao;
-import com.masters.ppa.data.database.AppDatabase;
 import com.masters.ppa.data.model.BmsItem;
 
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  * Repository for BmsItem data
  */
-public class BmsItemRepository {
+public class BmsItemRepository extends BaseRepository {
     
     private final BmsItemDao dao;
     private final LiveData<List<BmsItem>> allItems;
-    private final Executor executor;
     
     public BmsItemRepository(Context context) {
-        AppDatabase database = AppDatabase.getInstance(context);
+        super(context);
         dao = database.bmsItemDao();
         allItems = dao.getAll();
-        executor = Executors.newSingleThreadExecutor();
     }
     
     public LiveData<List<BmsItem>> getAll() {
@@ -42,63 +36,15 @@ public class BmsItemRepository {
     }
     
     public int countByName(String name) {
-        final int[] result = {0};
-        CountDownLatch latch = new CountDownLatch(1);
-        executor.execute(() -> {
-            try {
-                result[0] = dao.countByName(name);
-            } catch (Exception e) {
-                result[0] = 0;
-            } finally {
-                latch.countDown();
-            }
-        });
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            result[0] = 0;
-        }
-        return result[0];
+        return callSync(() -> dao.countByName(name), 0);
     }
     
     public List<BmsItem> getAllSync() {
-        final List<BmsItem>[] result = new List[]{null};
-        CountDownLatch latch = new CountDownLatch(1);
-        executor.execute(() -> {
-            try {
-                result[0] = dao.getAllSync();
-            } catch (Exception e) {
-                result[0] = new java.util.ArrayList<>();
-            } finally {
-                latch.countDown();
-            }
-        });
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            result[0] = new java.util.ArrayList<>();
-        }
-        return result[0];
+        return callSync(() -> dao.getAllSync(), new java.util.ArrayList<>());
     }
     
     public BmsItem getById(int id) {
-        final BmsItem[] result = {null};
-        CountDownLatch latch = new CountDownLatch(1);
-        executor.execute(() -> {
-            try {
-                result[0] = dao.getById(id);
-            } catch (Exception e) {
-                result[0] = null;
-            } finally {
-                latch.countDown();
-            }
-        });
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            result[0] = null;
-        }
-        return result[0];
+        return callSync(() -> dao.getById(id), null);
     }
 }
 
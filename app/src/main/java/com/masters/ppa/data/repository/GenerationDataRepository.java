@@ -1,22 +1,27 @@
 package com.masters.ppa.data.repository;
 
 import android.app.Application;
-import android.os.AsyncTask;
+import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 
 import com.masters.ppa.data.dao.GenerationDataDao;
-import com.masters.ppa.data.database.AppDatabase;
 import com.masters.ppa.data.model.GenerationData;
+import com.masters.ppa.data.model.TelemetryDaily;
 import com.masters.ppa.utils.CsvUtils;
 
+import java.io.File;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 /**
  * Repository for GenerationData
  */
-public class GenerationDataRepository {
+public class GenerationDataRepository extends BaseRepository {
+    
+    private static final String TAG = "GenerationDataRepository";
     
     private final GenerationDataDao generationDataDao;
     private final LiveData<List<GenerationData>> allGenerationData;
@@ -24,8 +29,8 @@ public class GenerationDataRepository {
     private final Application application;
     
     public GenerationDataRepository(Application application) {
+        super(application);
         this.application = application;
-        AppDatabase database = AppDatabase.getInstance(application);
         generationDataDao = database.generationDataDao();
         allGenerationData = generationDataDao.getAllGenerationData();
         lastUpdatedDate = generationDataDao.getLastUpdatedDate();
@@ -68,7 +73,7 @@ public class GenerationDataRepository {
      * @param generationData GenerationData to insert
      */
     public void insert(GenerationData generationData) {
-        new InsertAsyncTask(generationDataDao).execute(generationData);
+        executor.execute(() -> generationDataDao.insert(generationData));
     }
     
     /**
@@ -76,84 +81,55 @@ public class GenerationDataRepository {
      * @param generationDataList List of GenerationData to insert
      */
     public void insertAll(List<GenerationData> generationDataList) {
-        new InsertAllAsyncTask(generationDataDao).execute(generationDataList);
+        executor.execute(() -> generationDataDao.insertAllChunked(generationDataList));
     }
     
     /**
      * Delete all generation data
      */
     public void deleteAll() {
-        new DeleteAllAsyncTask(generationDataDao).execute();
+        executor.execute(generationDataDao::deleteAll);
     }
     
     /**
-     * Load generation data from CSV file
-     * @param isTestMode If true, load from test file
-     * @return true if successful
+     * Replace the actual generation rows with the daily PV energy of the telemetry rollups
+     * (blocks until done; call from a background thread)
+     * @return Number of days stored
+     * @throws RuntimeException If the rows could not be replaced
      */
-    public boolean loadFromCsv(boolean isTestMode) {
-        String filename = isTestMode ? CsvUtils.TEST_GENERATION_CSV : "generation_data.csv";
-        List<GenerationData> generationDataList = CsvUtils.readGenerationData(application, filename);
-        
-        if (!generationDataList.isEmpty()) {
-            // Clear existing data and insert new data
-            deleteAll();
-            insertAll(generationDataList);
-            return true;
-        }
-        
-        return false;
-    }
-    
-    /**
-     * AsyncTask for insert operation
-     */
-    private static class InsertAsyncTask extends AsyncTask<GenerationData, Void, Void> {
-        private final GenerationDataDao asyncTaskDao;
-        
-        InsertAsyncTask(GenerationDataDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @Override
-        protected Void doInBackground(final GenerationData... params) {
-            asyncTaskDao.insert(params[0]);
-            return null;
-        }
+    public int refreshActualFromTelemetry() {
+        return callWrite(() -> {
+            List<TelemetryDaily> rollups = database.telemetryDao().getAllDailyRollupsSync();
+            Date now = new Date();
+            List<GenerationData> generationDataList = new ArrayList<>(rollups.size());
+            for (TelemetryDaily rollup : rollups) {
+                GenerationData gd = new GenerationData();
+                gd.setDate(Date.from(rollup.getDay().atStartOfDay(ZoneId.systemDefault()).toInstant()));
+                gd.setGenerationKwh(rollup.getPvEnergyKwh());
+                gd.setPredictedGenerationKwh(0.0);
+                gd.setActual(true);
+                gd.setLastUpdated(now);
+                generationDataList.add(gd);
+            }
+            generationDataDao.replaceActual(generationDataList);
+            Log.d(TAG, "Refreshed " + generationDataList.size() + " actual days from telemetry rollups");
+            return generationDataList.size();
+        });
     }
     
     /**
-     * AsyncTask for insert all operation
-     */
-    private static class InsertAllAsyncTask extends AsyncTask<List<GenerationData>, Void, Void> {
-        private final GenerationDataDao asyncTaskDao;
-        
-        InsertAllAsyncTask(GenerationDataDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @SafeVarargs
-        @Override
-        protected final Void doInBackground(final List<GenerationData>... params) {
-            asyncTaskDao.insertAll(params[0]);
-            return null;
-        }
-    }
-    
-    /**
-     * AsyncTask for delete all operation
+     * Rebuild the actual generation rows from the daily telemetry rollups; in test mode the raw
+     * station test CSV is first imported into the telemetry store, if that is empty
+     * (blocks until done; call from a background thread)
+     * @param isTestMode If true, load from test file
+     * @return true if successful
      */
-    private static class DeleteAllAsyncTask extends AsyncTask<Void, Void, Void> {
-        private final GenerationDataDao asyncTaskDao;
-        
-        DeleteAllAsyncTask(GenerationDataDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @Override
-        protected Void doInBackground(Void... voids) {
-            asyncTaskDao.deleteAll();
-            return null;
+    public boolean loadFromCsv(boolean isTestMode) {
+        if (isTestMode) {
+            int imported = new TelemetryRepository(application)
+                .importCsvIfEmpty(new File(CsvUtils.TEST_GENERATION_CSV));
+            Log.d(TAG, "Imported " + imported + " test telemetry rows");
         }
+        return refreshActualFromTelemetry() > 0;
     }
 }
@@ -5,28 +5,22 @@ import android.content.Context;
 import androidx.lifecycle.LiveData;
 
 import com.masters.ppa.data.dao.InverterItemDao;
-import com.masters.ppa.data.database.AppDatabase;
 import com.masters.ppa.data.model.InverterItem;
 
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  * Repository for InverterItem data
  */
-public class InverterItemRepository {
+public class InverterItemRepository extends BaseRepository {
     
     private final InverterItemDao dao;
     private final LiveData<List<InverterItem>> allItems;
-    private final Executor executor;
     
     public InverterItemRepository(Context context) {
-        AppDatabase database = AppDatabase.getInstance(context);
+        super(context);
         dao = database.inverterItemDao();
         allItems = dao.getAll();
-        executor = Executors.newSingleThreadExecutor();
     }
     
     public LiveData<List<InverterItem>> getAll() {
@@ -42,63 +36,15 @@ public class InverterItemRepository {
     }
     
     public int countByName(String name) {
-        final int[] result = {0};
-        CountDownLatch latch = new CountDownLatch(1);
-        executor.execute(() -> {
-            try {
-                result[0] = dao.countByName(name);
-            } catch (Exception e) {
-                result[0] = 0;
-            } finally {
-                latch.countDown();
-            }
-        });
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            result[0] = 0;
-        }
-        return result[0];
+        return callSync(() -> dao.countByName(name), 0);
     }
     
     public List<InverterItem> getAllSync() {
-        final List<InverterItem>[] result = new List[]{null};
-        CountDownLatch latch = new CountDownLatch(1);
-        executor.execute(() -> {
-            try {
-                result[0] = dao.getAllSync();
-            } catch (Exception e) {
-                result[0] = new java.util.ArrayList<>();
-            } finally {
-                latch.countDown();
-            }
-        });
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            result[0] = new java.util.ArrayList<>();
-        }
-        return result[0];
+        return callSync(() -> dao.getAllSync(), new java.util.ArrayList<>());
     }
     
     public InverterItem getById(int id) {
-        final InverterItem[] result = {null};
-        CountDownLatch latch = new CountDownLatch(1);
-        executor.execute(() -> {
-            try {
-                result[0] = dao.getById(id);
-            } catch (Exception e) {
-                result[0] = null;
-            } finally {
-                latch.countDown();
-            }
-        });
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            result[0] = null;
-        }
-        return result[0];
+        return callSync(() -> dao.getById(id), null);
     }
 }
 
@@ -0,0 +1,226 @@
+package com.masters.ppa.data.repository;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.masters.ppa.data.dao.LiveSampleDao;
+import com.masters.ppa.data.model.InverterDataGroups;
+import com.masters.ppa.data.model.InverterMetric;
+import com.masters.ppa.data.model.LiveMetric;
+import com.masters.ppa.data.model.LiveSample;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repository for the time series of live inverter polls.
+ *
+ * Numeric metrics of each poll are buffered and written in batches; only metrics that changed
+ * since the previous snapshot get a row. Samples older than RETENTION_DAYS are pruned.
+ */
+public class LiveSampleRepository extends BaseRepository {
+
+    private static final String TAG = "LiveSampleRepository";
+
+    // Pending samples are written once this many are buffered or FLUSH_INTERVAL_MS passed
+    private static final int BATCH_SIZE = 500;
+    private static final long FLUSH_INTERVAL_MS = 5 * 60 * 1000L;
+    public static final int RETENTION_DAYS = 30;
+    private static final long PRUNE_INTERVAL_MS = 60 * 60 * 1000L;
+
+    private final LiveSampleDao liveSampleDao;
+
+    private final Object bufferLock = new Object();
+    private List<PendingSample> pending = new ArrayList<>();
+    private long lastFlushTime = System.currentTimeMillis();
+
+    // Metric key -> dictionary row; only touched on the executor
+    private Map<String, LiveMetric> metricsByKey;
+    private long lastPruneTime;
+
+    /**
+     * Sample whose metric id is resolved when the batch is written
+     */
+    private static class PendingSample {
+        final long epoch;
+        final InverterMetric metric;
+        final double value;
+
+        PendingSample(long epoch, InverterMetric metric, double value) {
+            this.epoch = epoch;
+            this.metric = metric;
+            this.value = value;
+        }
+    }
+
+    public LiveSampleRepository(Context context) {
+        super(context);
+        liveSampleDao = database.liveSampleDao();
+    }
+
+    /**
+     * Buffer the numeric metrics of a snapshot that changed against the previous one
+     * @param timeMillis Poll time
+     */
+    public void record(InverterDataGroups groups, long timeMillis) {
+        long epoch = timeMillis / 1000L;
+        List<PendingSample> batch = null;
+        synchronized (bufferLock) {
+            for (InverterMetric metric : groups.getAllMetrics().values()) {
+                if (!groups.hasChanged(metric.getKey())) {
+                    continue;
+                }
+                Double value = parseValue(metric.getValue());
+                if (value != null) {
+                    pending.add(new PendingSample(epoch, metric, value));
+                }
+            }
+            long now = System.currentTimeMillis();
+            if (pending.size() >= BATCH_SIZE || (!pending.isEmpty() && now - lastFlushTime >= FLUSH_INTERVAL_MS)) {
+                batch = takePending(now);
+            }
+        }
+        if (batch != null) {
+            write(batch);
+        }
+    }
+
+    /**
+     * Write buffered samples now (e.g. when polling stops)
+     */
+    public void flush() {
+        List<PendingSample> batch;
+        synchronized (bufferLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending(System.currentTimeMillis());
+        }
+        write(batch);
+    }
+
+    /**
+     * Samples of one metric in [fromEpoch, toEpoch] (seconds), oldest first
+     */
+    public LiveData<List<LiveSample>> getSamples(String metricKey, long fromEpoch, long toEpoch) {
+        return liveSampleDao.getSamples(metricKey, fromEpoch, toEpoch);
+    }
+
+    /**
+     * Samples of one metric in [fromEpoch, toEpoch], starting with the value that was current
+     * at fromEpoch (must be called from background thread)
+     */
+    public List<LiveSample> getSeriesSync(String metricKey, long fromEpoch, long toEpoch) {
+        List<LiveSample> series = new ArrayList<>();
+        LiveSample previous = liveSampleDao.getSampleBeforeSync(metricKey, fromEpoch);
+        if (previous != null) {
+            series.add(new LiveSample(fromEpoch, previous.getMetricId(), previous.getValue()));
+        }
+        series.addAll(liveSampleDao.getSamplesSync(metricKey, fromEpoch, toEpoch));
+        return series;
+    }
+
+    /**
+     * Time of the newest stored sample in seconds, or null if there is none
+     * (must be called from background thread)
+     */
+    public Long getLatestEpochSync() {
+        return liveSampleDao.getLatestEpochSync();
+    }
+
+    /**
+     * Delete all samples
+     */
+    public void deleteAll() {
+        synchronized (bufferLock) {
+            pending = new ArrayList<>();
+        }
+        executor.execute(liveSampleDao::deleteAll);
+    }
+
+    private List<PendingSample> takePending(long now) {
+        List<PendingSample> batch = pending;
+        pending = new ArrayList<>();
+        lastFlushTime = now;
+        return batch;
+    }
+
+    private void write(List<PendingSample> batch) {
+        executor.execute(() -> {
+            try {
+                database.runInTransaction(() -> {
+                    List<LiveSample> samples = new ArrayList<>(batch.size());
+                    for (PendingSample sample : batch) {
+                        samples.add(new LiveSample(sample.epoch, resolveMetricId(sample.metric), sample.value));
+                    }
+                    liveSampleDao.insertAll(samples);
+                });
+                Log.d(TAG, "Stored " + batch.size() + " live samples");
+                pruneIfDue();
+            } catch (Exception e) {
+                Log.e(TAG, "Error storing live samples", e);
+            }
+        });
+    }
+
+    /**
+     * Dictionary id of a metric, adding or updating its dictionary row as needed
+     */
+    private int resolveMetricId(InverterMetric metric) {
+        if (metricsByKey == null) {
+            metricsByKey = new HashMap<>();
+            for (LiveMetric known : liveSampleDao.getAllMetricsSync()) {
+                metricsByKey.put(known.getMetricKey(), known);
+            }
+        }
+        LiveMetric known = metricsByKey.get(metric.getKey());
+        if (known == null) {
+            known = new LiveMetric();
+            known.setMetricKey(metric.getKey());
+            known.setName(metric.getName());
+            known.setUnit(metric.getUnit());
+            long id = liveSampleDao.insertMetric(known);
+            if (id == -1) {
+                known = liveSampleDao.getMetricSync(metric.getKey());
+            } else {
+                known.setId((int) id);
+            }
+            metricsByKey.put(metric.getKey(), known);
+        } else if (!java.util.Objects.equals(known.getName(), metric.getName())
+                || !java.util.Objects.equals(known.getUnit(), metric.getUnit())) {
+            known.setName(metric.getName());
+            known.setUnit(metric.getUnit());
+            liveSampleDao.updateMetric(known);
+        }
+        return known.getId();
+    }
+
+    private void pruneIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastPruneTime < PRUNE_INTERVAL_MS) {
+            return;
+        }
+        lastPruneTime = now;
+        long cutoff = now / 1000L - RETENTION_DAYS * 24L * 60 * 60;
+        int deleted = liveSampleDao.deleteOlderThan(cutoff);
+        if (deleted > 0) {
+            Log.d(TAG, "Pruned " + deleted + " live samples older than " + RETENTION_DAYS + " days");
+        }
+    }
+
+    private static Double parseValue(String value) {
+        if (value == null || value.isEmpty() || "-".equals(value)) {
+            return null;
+        }
+        try {
+            double parsed = Double.parseDouble(value);
+            return Double.isNaN(parsed) || Double.isInfinite(parsed) ? null : parsed;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -5,28 +5,22 @@ import android.content.Context;
 import androidx.lifecycle.LiveData;
 
 import com.masters.ppa.data.dao.ProjectConfigDao;
-import com.masters.ppa.data.database.AppDatabase;
 import com.masters.ppa.data.model.ProjectConfig;
 
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  * Repository for ProjectConfig data
  */
-public class ProjectConfigRepository {
+public class ProjectConfigRepository extends BaseRepository {
     
     private final ProjectConfigDao dao;
     private final LiveData<List<ProjectConfig>> allConfigs;
-    private final Executor executor;
     
     public ProjectConfigRepository(Context context) {
-        AppDatabase database = AppDatabase.getInstance(context);
+        super(context);
         dao = database.projectConfigDao();
         allConfigs = dao.getAll();
-        executor = Executors.newSingleThreadExecutor();
     }
     
     public LiveData<List<ProjectConfig>> getAll() {
@@ -34,23 +28,7 @@ public class ProjectConfigRepository {
     }
     
     public long insert(ProjectConfig config) {
-        final long[] result = {0};
-        CountDownLatch latch = new CountDownLatch(1);
-        executor.execute(() -> {
-            try {
-                result[0] = dao.insert(config);
-            } catch (Exception e) {
-                result[0] = 0;
-            } finally {
-                latch.countDown();
-            }
-        });
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            result[0] = 0;
-        }
-        return result[0];
+        return callSync(() -> dao.insert(config), 0L);
     }
     
     public void delete(ProjectConfig config) {
@@ -58,43 +36,11 @@ public class ProjectConfigRepository {
     }
     
     public int getCount() {
-        final int[] count = {0};
-        CountDownLatch latch = new CountDownLatch(1);
-        executor.execute(() -> {
-            try {
-                count[0] = dao.getCount();
-            } catch (Exception e) {
-                count[0] = 0;
-            } finally {
-                latch.countDown();
-            }
-        });
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            count[0] = 0;
-        }
-        return count[0];
+        return callSync(() -> dao.getCount(), 0);
     }
     
     public List<ProjectConfig> getAllSync() {
-        final List<ProjectConfig>[] result = new List[]{null};
-        CountDownLatch latch = new CountDownLatch(1);
-        executor.execute(() -> {
-            try {
-                result[0] = dao.getAllSync();
-            } catch (Exception e) {
-                result[0] = new java.util.ArrayList<>();
-            } finally {
-                latch.countDown();
-            }
-        });
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            result[0] = new java.util.ArrayList<>();
-        }
-        return result[0];
+        return callSync(() -> dao.getAllSync(), new java.util.ArrayList<>());
     }
 }
 
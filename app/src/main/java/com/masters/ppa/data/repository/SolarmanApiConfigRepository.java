@@ -1,24 +1,25 @@
 package com.masters.ppa.data.repository;
 
 import android.app.Application;
-import android.os.AsyncTask;
 
 import androidx.lifecycle.LiveData;
 
+import com.masters.ppa.data.api.SolarmanTokenManager;
 import com.masters.ppa.data.dao.SolarmanApiConfigDao;
-import com.masters.ppa.data.database.AppDatabase;
 import com.masters.ppa.data.model.SolarmanApiConfig;
 
 /**
  * Repository for SolarmanApiConfig data
  */
-public class SolarmanApiConfigRepository {
+public class SolarmanApiConfigRepository extends BaseRepository {
     
+    private final Application application;
     private final SolarmanApiConfigDao solarmanApiConfigDao;
     private final LiveData<SolarmanApiConfig> solarmanApiConfig;
     
     public SolarmanApiConfigRepository(Application application) {
-        AppDatabase database = AppDatabase.getInstance(application);
+        super(application);
+        this.application = application;
         solarmanApiConfigDao = database.solarmanApiConfigDao();
         solarmanApiConfig = solarmanApiConfigDao.getSolarmanApiConfig();
     }
@@ -44,14 +45,20 @@ public class SolarmanApiConfigRepository {
      * @param solarmanApiConfig SolarmanApiConfig to save
      */
     public void insert(SolarmanApiConfig solarmanApiConfig) {
-        new InsertAsyncTask(solarmanApiConfigDao).execute(solarmanApiConfig);
+        executor.execute(() -> {
+            solarmanApiConfigDao.insert(solarmanApiConfig);
+            SolarmanTokenManager.getInstance(application).onConfigChanged();
+        });
     }
     
     /**
      * Delete API configuration
      */
     public void delete() {
-        new DeleteAsyncTask(solarmanApiConfigDao).execute();
+        executor.execute(() -> {
+            solarmanApiConfigDao.deleteAll();
+            SolarmanTokenManager.getInstance(application).onConfigChanged();
+        });
     }
     
     /**
@@ -61,38 +68,4 @@ public class SolarmanApiConfigRepository {
     public boolean exists() {
         return solarmanApiConfigDao.getCount() > 0;
     }
-    
-    /**
-     * AsyncTask for insert operation
-     */
-    private static class InsertAsyncTask extends AsyncTask<SolarmanApiConfig, Void, Void> {
-        private final SolarmanApiConfigDao asyncTaskDao;
-        
-        InsertAsyncTask(SolarmanApiConfigDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @Override
-        protected Void doInBackground(final SolarmanApiConfig... params) {
-            asyncTaskDao.insert(params[0]);
-            return null;
-        }
-    }
-    
-    /**
-     * AsyncTask for delete operation
-     */
-    private static class DeleteAsyncTask extends AsyncTask<Void, Void, Void> {
-        private final SolarmanApiConfigDao asyncTaskDao;
-        
-        DeleteAsyncTask(SolarmanApiConfigDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @Override
-        protected Void doInBackground(final Void... params) {
-            asyncTaskDao.deleteAll();
-            return null;
-        }
-    }
 }
@@ -2,32 +2,25 @@ package com.masters.ppa.data.repository;
 
 import android.app.Application;
 import android.content.Context;
-import android.os.AsyncTask;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
 import com.masters.ppa.data.dao.StationConfigDao;
-import com.masters.ppa.data.database.AppDatabase;
 import com.masters.ppa.data.model.StationConfig;
 
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-
 /**
  * Repository for StationConfig data
  */
-public class StationConfigRepository {
+public class StationConfigRepository extends BaseRepository {
     
     private final StationConfigDao stationConfigDao;
     private final LiveData<StationConfig> stationConfig;
-    private final Executor executor;
     
     public StationConfigRepository(Context context) {
-        AppDatabase database = AppDatabase.getInstance(context);
+        super(context);
         stationConfigDao = database.stationConfigDao();
         stationConfig = stationConfigDao.getStationConfig();
-        executor = Executors.newSingleThreadExecutor();
     }
     
     /**
@@ -51,14 +44,14 @@ public class StationConfigRepository {
      * @param stationConfig StationConfig to save
      */
     public void insert(StationConfig stationConfig) {
-        new InsertAsyncTask(stationConfigDao).execute(stationConfig);
+        executor.execute(() -> stationConfigDao.insert(stationConfig));
     }
     
     /**
      * Delete station configuration
      */
     public void delete() {
-        new DeleteAsyncTask(stationConfigDao).execute();
+        executor.execute(stationConfigDao::deleteAll);
     }
     
     /**
@@ -73,38 +66,4 @@ public class StationConfigRepository {
         });
         return result;
     }
-    
-    /**
-     * AsyncTask for insert operation
-     */
-    private static class InsertAsyncTask extends AsyncTask<StationConfig, Void, Void> {
-        private final StationConfigDao asyncTaskDao;
-        
-        InsertAsyncTask(StationConfigDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @Override
-        protected Void doInBackground(final StationConfig... params) {
-            asyncTaskDao.insert(params[0]);
-            return null;
-        }
-    }
-    
-    /**
-     * AsyncTask for delete operation
-     */
-    private static class DeleteAsyncTask extends AsyncTask<Void, Void, Void> {
-        private final StationConfigDao asyncTaskDao;
-        
-        DeleteAsyncTask(StationConfigDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @Override
-        protected Void doInBackground(final Void... params) {
-            asyncTaskDao.deleteAll();
-            return null;
-        }
-    }
 }
@@ -0,0 +1,162 @@
+package com.masters.ppa.data.repository;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.masters.ppa.data.dao.StationDataDao;
+import com.masters.ppa.data.model.StationData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keyset pager over station_data for lists and charts.
+ *
+ * Holds a window of at most maxPages pages (newest first) and moves it with loadOlder /
+ * loadNewer; pages that fall out of the window are dropped and reloaded when scrolled back.
+ * Pages are addressed by (timestamp, id), so no OFFSET scans are needed.
+ */
+public class StationDataPager {
+
+    private final BaseRepository repository;
+    private final StationDataDao dao;
+    private final int pageSize;
+    private final int maxPages;
+
+    // First = newest page; only touched on the repository executor
+    private final ArrayDeque<List<StationData>> pages = new ArrayDeque<>();
+    private volatile boolean hasOlder;
+    private volatile boolean hasNewer;
+    private final AtomicBoolean olderPending = new AtomicBoolean();
+    private final AtomicBoolean newerPending = new AtomicBoolean();
+
+    private final MutableLiveData<List<StationData>> window = new MutableLiveData<>();
+
+    StationDataPager(BaseRepository repository, StationDataDao dao, int pageSize, int maxPages) {
+        this.repository = repository;
+        this.dao = dao;
+        this.pageSize = pageSize;
+        this.maxPages = Math.max(2, maxPages);
+    }
+
+    /**
+     * Rows of the current window, newest first
+     * @return LiveData<List<StationData>>
+     */
+    public LiveData<List<StationData>> getWindow() {
+        return window;
+    }
+
+    public boolean hasOlder() {
+        return hasOlder;
+    }
+
+    public boolean hasNewer() {
+        return hasNewer;
+    }
+
+    /**
+     * (Re)start the window at anchor and prefetch one older page
+     * @param anchor Newest timestamp to show, or null for the latest data
+     */
+    public void loadInitial(Date anchor) {
+        repository.executor.execute(() -> {
+            pages.clear();
+            Date before = anchor != null ? anchor : new Date(Long.MAX_VALUE);
+            List<StationData> first = dao.getPageBefore(before, Integer.MAX_VALUE, pageSize);
+            hasNewer = anchor != null;
+            hasOlder = first.size() == pageSize;
+            if (!first.isEmpty()) {
+                pages.add(first);
+            }
+            if (hasOlder) {
+                appendOlderPage();
+            }
+            publish();
+        });
+    }
+
+    /**
+     * Extend the window by one older page (ignored while one is already queued)
+     */
+    public void loadOlder() {
+        if (!hasOlder || !olderPending.compareAndSet(false, true)) {
+            return;
+        }
+        repository.executor.execute(() -> {
+            try {
+                appendOlderPage();
+                publish();
+            } finally {
+                olderPending.set(false);
+            }
+        });
+    }
+
+    /**
+     * Extend the window by one newer page (ignored while one is already queued)
+     */
+    public void loadNewer() {
+        if (!hasNewer || !newerPending.compareAndSet(false, true)) {
+            return;
+        }
+        repository.executor.execute(() -> {
+            try {
+                prependNewerPage();
+                publish();
+            } finally {
+                newerPending.set(false);
+            }
+        });
+    }
+
+    private void appendOlderPage() {
+        if (pages.isEmpty()) {
+            hasOlder = false;
+            return;
+        }
+        List<StationData> last = pages.peekLast();
+        StationData oldest = last.get(last.size() - 1);
+        List<StationData> page = dao.getPageBefore(oldest.getTimestamp(), oldest.getId(), pageSize);
+        hasOlder = page.size() == pageSize;
+        if (page.isEmpty()) {
+            return;
+        }
+        pages.addLast(page);
+        if (pages.size() > maxPages) {
+            pages.removeFirst();
+            hasNewer = true;
+        }
+    }
+
+    private void prependNewerPage() {
+        if (pages.isEmpty()) {
+            hasNewer = false;
+            return;
+        }
+        StationData newest = pages.peekFirst().get(0);
+        List<StationData> page = new ArrayList<>(dao.getPageAfter(newest.getTimestamp(), newest.getId(), pageSize));
+        hasNewer = page.size() == pageSize;
+        if (page.isEmpty()) {
+            return;
+        }
+        Collections.reverse(page);
+        pages.addFirst(page);
+        if (pages.size() > maxPages) {
+            pages.removeLast();
+            hasOlder = true;
+        }
+    }
+
+    private void publish() {
+        List<StationData> rows = new ArrayList<>(pages.size() * pageSize);
+        for (List<StationData> page : pages) {
+            rows.addAll(page);
+        }
+        window.postValue(Collections.unmodifiableList(rows));
+    }
+}
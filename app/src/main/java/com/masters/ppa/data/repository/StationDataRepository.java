@@ -1,12 +1,11 @@
 package com.masters.ppa.data.repository;
 
 import android.app.Application;
-import android.os.AsyncTask;
+import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 
 import com.masters.ppa.data.dao.StationDataDao;
-import com.masters.ppa.data.database.AppDatabase;
 import com.masters.ppa.data.model.StationData;
 import com.masters.ppa.utils.CsvUtils;
 
@@ -16,29 +15,47 @@ import java.util.List;
 /**
  * Repository for StationData
  */
-public class StationDataRepository {
+public class StationDataRepository extends BaseRepository {
+    
+    private static final String TAG = "StationDataRepository";
     
     private final StationDataDao stationDataDao;
-    private final LiveData<List<StationData>> allStationData;
     private final LiveData<StationData> latestStationData;
     private final LiveData<Date> lastUpdatedDate;
     private final Application application;
     
     public StationDataRepository(Application application) {
+        super(application);
         this.application = application;
-        AppDatabase database = AppDatabase.getInstance(application);
         stationDataDao = database.stationDataDao();
-        allStationData = stationDataDao.getAllStationData();
         latestStationData = stationDataDao.getLatestStationData();
         lastUpdatedDate = stationDataDao.getLastUpdatedDate();
     }
     
     /**
-     * Get all station data as LiveData
+     * Get station data of the last days as LiveData, newest first
+     * @param days Number of days back from now
      * @return LiveData<List<StationData>>
      */
-    public LiveData<List<StationData>> getAllStationData() {
-        return allStationData;
+    public LiveData<List<StationData>> getRecentStationData(int days) {
+        return stationDataDao.getStationDataSince(new Date(System.currentTimeMillis() - days * 24L * 60 * 60 * 1000));
+    }
+    
+    /**
+     * Get station data in a date range, oldest first
+     * @return LiveData<List<StationData>>
+     */
+    public LiveData<List<StationData>> getStationDataBetweenDates(Date startDate, Date endDate) {
+        return stationDataDao.getStationDataBetweenDates(startDate, endDate);
+    }
+    
+    /**
+     * Pager over station data that keeps only a window of pages in memory
+     * @param pageSize Rows per page
+     * @param maxPages Pages kept before the far end of the window is dropped
+     */
+    public StationDataPager createPager(int pageSize, int maxPages) {
+        return new StationDataPager(this, stationDataDao, pageSize, maxPages);
     }
     
     /**
@@ -62,7 +79,7 @@ public class StationDataRepository {
      * @param stationData StationData to insert
      */
     public void insert(StationData stationData) {
-        new InsertAsyncTask(stationDataDao).execute(stationData);
+        executor.execute(() -> stationDataDao.insert(stationData));
     }
     
     /**
@@ -70,18 +87,19 @@ public class StationDataRepository {
      * @param stationDataList List of StationData to insert
      */
     public void insertAll(List<StationData> stationDataList) {
-        new InsertAllAsyncTask(stationDataDao).execute(stationDataList);
+        executor.execute(() -> stationDataDao.insertAllChunked(stationDataList));
     }
     
     /**
      * Delete all station data
      */
     public void deleteAll() {
-        new DeleteAllAsyncTask(stationDataDao).execute();
+        executor.execute(stationDataDao::deleteAll);
     }
     
     /**
-     * Load station data from CSV file
+     * Load station data from CSV file, replacing the stored rows in one transaction
+     * (blocks until done; call from a background thread)
      * @param isTestMode If true, load from test file
      * @return true if successful
      */
@@ -89,14 +107,23 @@ public class StationDataRepository {
         String filename = isTestMode ? CsvUtils.TEST_STATION_CSV : "station_data.csv";
         List<StationData> stationDataList = CsvUtils.readStationData(application, filename);
         
-        if (!stationDataList.isEmpty()) {
-            // Clear existing data and insert new data
-            deleteAll();
-            insertAll(stationDataList);
-            return true;
+        if (stationDataList.isEmpty()) {
+            return false;
         }
         
-        return false;
+        long start = System.currentTimeMillis();
+        try {
+            callWrite(() -> {
+                stationDataDao.replaceAll(stationDataList);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error replacing station data", e);
+            return false;
+        }
+        Log.d(TAG, "Replaced data with " + stationDataList.size() + " rows in "
+            + (System.currentTimeMillis() - start) + " ms");
+        return true;
     }
     
     /**
@@ -111,56 +138,4 @@ public class StationDataRepository {
         // For now, just return false to indicate no data was fetched
         return false;
     }
-    
-    /**
-     * AsyncTask for insert operation
-     */
-    private static class InsertAsyncTask extends AsyncTask<StationData, Void, Void> {
-        private final StationDataDao asyncTaskDao;
-        
-        InsertAsyncTask(StationDataDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @Override
-        protected Void doInBackground(final StationData... params) {
-            asyncTaskDao.insert(params[0]);
-            return null;
-        }
-    }
-    
-    /**
-     * AsyncTask for insert all operation
-     */
-    private static class InsertAllAsyncTask extends AsyncTask<List<StationData>, Void, Void> {
-        private final StationDataDao asyncTaskDao;
-        
-        InsertAllAsyncTask(StationDataDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @SafeVarargs
-        @Override
-        protected final Void doInBackground(final List<StationData>... params) {
-            asyncTaskDao.insertAll(params[0]);
-            return null;
-        }
-    }
-    
-    /**
-     * AsyncTask for delete all operation
-     */
-    private static class DeleteAllAsyncTask extends AsyncTask<Void, Void, Void> {
-        private final StationDataDao asyncTaskDao;
-        
-        DeleteAllAsyncTask(StationDataDao dao) {
-            asyncTaskDao = dao;
-        }
-        
-        @Override
-        protected Void doInBackground(Void... voids) {
-            asyncTaskDao.deleteAll();
-            return null;
-        }
-    }
 }
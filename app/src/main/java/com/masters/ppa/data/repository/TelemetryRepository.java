@@ -0,0 +1,472 @@
+package com.masters.ppa.data.repository;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.masters.ppa.data.api.SolarmanHistoryParser.HistoryRecord;
+import com.masters.ppa.data.dao.TelemetryDao;
+import com.masters.ppa.data.model.StationTelemetry;
+import com.masters.ppa.data.model.TelemetryDaily;
+import com.masters.ppa.data.model.TelemetryHourly;
+import com.masters.ppa.data.model.TelemetryKey;
+import com.masters.ppa.utils.CsvDayIndex;
+import com.masters.ppa.utils.DateUtils;
+import com.masters.ppa.utils.SchemaCsvWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Repository for the raw Solarman station history, the source of truth for station telemetry.
+ *
+ * Each history row is stored once in station_telemetry (with the values analysis needs) and
+ * its raw key/value pairs in telemetry_value. Batches are written in one transaction through
+ * prepared statements, which also refreshes the hourly/daily rollups of the periods they touch.
+ * station_data.csv can be regenerated with exportCsv.
+ */
+public class TelemetryRepository extends BaseRepository {
+
+    private static final String TAG = "TelemetryRepository";
+
+    // Rows per transaction when importing a CSV file
+    private static final int IMPORT_BATCH_ROWS = 2000;
+
+    private static final String INSERT_ROW_SQL = "INSERT OR REPLACE INTO station_telemetry "
+        + "(epoch, collectTime, pvPowerKw, batterySoc, batteryPowerRaw, batteryTempC, gridPower, loadPower) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_VALUE_SQL =
+        "INSERT OR REPLACE INTO telemetry_value (epoch, keyId, value) VALUES (?, ?, ?)";
+
+    private static final Pattern NUMBER_PATTERN =
+        Pattern.compile("([-+]?\\d*\\.?\\d+(?:[eE][-+]?\\d+)?)");
+
+    // Bumped on every change, so snapshots built from the store can tell they are stale
+    private static final AtomicLong modificationCount = new AtomicLong();
+
+    private final TelemetryDao telemetryDao;
+
+    // Key name -> dictionary id, shared by all instances; only touched on the executor
+    private static Map<String, Integer> keyIds;
+
+    public TelemetryRepository(Context context) {
+        super(context);
+        telemetryDao = database.telemetryDao();
+    }
+
+    /**
+     * Counter that changes whenever telemetry is written or deleted (in this process)
+     */
+    public static long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    /**
+     * Epoch seconds of a collectTime value as stored in the epoch columns, or null if unparseable
+     */
+    public static Long toEpoch(String collectTime) {
+        LocalDateTime time = DateUtils.parseLocalDateTime(collectTime != null ? collectTime.trim() : null);
+        return time != null ? time.toEpochSecond(ZoneOffset.UTC) : null;
+    }
+
+    /**
+     * Store fetched history rows, replacing rows with the same time, and wait until they are
+     * written (must be called from background thread)
+     * @return Number of rows stored
+     * @throws RuntimeException If the batch could not be written (nothing of it is stored)
+     */
+    public int writeRecords(List<HistoryRecord> records) {
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+        return callWrite(() -> writeBatch(records));
+    }
+
+    /**
+     * Stored rows in [fromEpoch, toEpoch] (seconds) as history records with their raw values,
+     * oldest first (must be called from background thread)
+     */
+    public List<HistoryRecord> getRecordsSync(long fromEpoch, long toEpoch) {
+        return callSync(() -> {
+            List<HistoryRecord> records = new ArrayList<>();
+            try (Cursor cursor = telemetryDao.getRawRowsCursor(fromEpoch, toEpoch)) {
+                readRecords(cursor, records::add);
+            }
+            return records;
+        }, new ArrayList<>());
+    }
+
+    /**
+     * Rows in [fromEpoch, toEpoch] (seconds), oldest first (must be called from background thread)
+     */
+    public List<StationTelemetry> getRangeSync(long fromEpoch, long toEpoch) {
+        return telemetryDao.getRangeSync(fromEpoch, toEpoch);
+    }
+
+    /**
+     * Hourly rollups with period start in [fromEpoch, toEpoch], oldest first
+     * (must be called from background thread)
+     */
+    public List<TelemetryHourly> getHourlyRollupsSync(long fromEpoch, long toEpoch) {
+        return telemetryDao.getHourlyRollupsSync(fromEpoch, toEpoch);
+    }
+
+    /**
+     * Daily rollups with period start in [fromEpoch, toEpoch], oldest first
+     * (must be called from background thread)
+     */
+    public List<TelemetryDaily> getDailyRollupsSync(long fromEpoch, long toEpoch) {
+        return telemetryDao.getDailyRollupsSync(fromEpoch, toEpoch);
+    }
+
+    /**
+     * Daily rollups with period start in [fromEpoch, toEpoch], oldest first
+     */
+    public LiveData<List<TelemetryDaily>> getDailyRollups(long fromEpoch, long toEpoch) {
+        return telemetryDao.getDailyRollups(fromEpoch, toEpoch);
+    }
+
+    /**
+     * All daily rollups, oldest first (must be called from background thread)
+     */
+    public List<TelemetryDaily> getAllDailyRollupsSync() {
+        return telemetryDao.getAllDailyRollupsSync();
+    }
+
+    /**
+     * Number of stored rows (must be called from background thread)
+     */
+    public int getRowCountSync() {
+        return telemetryDao.getRowCountSync();
+    }
+
+    /**
+     * Time range of the stored rows as {first, last} epoch seconds, or null if the store is empty
+     * (must be called from background thread)
+     */
+    public long[] getEpochRangeSync() {
+        Long first = telemetryDao.getFirstEpochSync();
+        Long last = telemetryDao.getLastEpochSync();
+        return first != null && last != null ? new long[]{first, last} : null;
+    }
+
+    /**
+     * Delete rows older than epoch (seconds) and the rollups of periods before it, and wait
+     * until they are gone (must be called from background thread)
+     * @return Number of rows deleted
+     */
+    public int deleteBefore(long epoch) {
+        return callWrite(() -> {
+            int deleted = telemetryDao.deleteBefore(epoch);
+            modificationCount.incrementAndGet();
+            if (deleted > 0) {
+                Log.d(TAG, "Deleted " + deleted + " telemetry rows before " + epoch);
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Delete all telemetry, its rollups and the key dictionary, and wait until they are gone
+     * (must be called from background thread)
+     */
+    public void clear() {
+        callWrite(() -> {
+            telemetryDao.deleteAll();
+            keyIds = null;
+            modificationCount.incrementAndGet();
+            Log.d(TAG, "Cleared telemetry store");
+            return null;
+        });
+    }
+
+    /**
+     * One-time import of an existing station_data.csv into an empty store
+     * (must be called from background thread)
+     * @return Number of rows imported
+     * @throws RuntimeException If the import fails
+     */
+    public int importCsvIfEmpty(File csvFile) {
+        return callWrite(() -> {
+            if (!csvFile.exists() || telemetryDao.getFirstEpochSync() != null) {
+                return 0;
+            }
+            return importCsv(csvFile);
+        });
+    }
+
+    /**
+     * Write all rows to csvFile in the station_data.csv layout (collectTime + one column per key)
+     * (must be called from background thread)
+     * @return Number of rows written
+     */
+    public int exportCsv(File csvFile) {
+        return callSync(() -> {
+            long start = System.currentTimeMillis();
+            int[] rows = {0};
+            try (SchemaCsvWriter csvWriter = SchemaCsvWriter.open(csvFile, "collectTime", false);
+                 Cursor cursor = telemetryDao.getRawRowsCursor()) {
+                readRecords(cursor, record -> {
+                    csvWriter.writeRow(record.collectTime, record.keys, record.values);
+                    rows[0]++;
+                });
+            }
+            // Day offsets changed; the index is rebuilt from the file on next load
+            CsvDayIndex.indexFileFor(csvFile).delete();
+            Log.d(TAG, "Exported " + rows[0] + " telemetry rows to " + csvFile.getName() + " in " +
+                (System.currentTimeMillis() - start) + " ms");
+            return rows[0];
+        }, 0);
+    }
+
+    /**
+     * Receives the records rebuilt by readRecords
+     */
+    private interface RecordConsumer {
+        void accept(HistoryRecord record) throws Exception;
+    }
+
+    /**
+     * Rebuild one record per row from a raw rows cursor (see TelemetryDao.getRawRowsCursor)
+     */
+    private void readRecords(Cursor cursor, RecordConsumer consumer) throws Exception {
+        Map<Integer, String> keyNames = new HashMap<>();
+        for (TelemetryKey key : telemetryDao.getAllKeysSync()) {
+            keyNames.put(key.getId(), key.getName());
+        }
+
+        List<String> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        long currentEpoch = 0;
+        String currentTime = null;
+        while (cursor.moveToNext()) {
+            long epoch = cursor.getLong(0);
+            if (currentTime != null && epoch != currentEpoch) {
+                consumer.accept(new HistoryRecord(currentTime,
+                    keys.toArray(new String[0]), values.toArray(new String[0])));
+                keys.clear();
+                values.clear();
+            }
+            currentEpoch = epoch;
+            currentTime = cursor.isNull(1) ? String.valueOf(epoch) : cursor.getString(1);
+            String key = cursor.isNull(2) ? null : keyNames.get(cursor.getInt(2));
+            if (key != null) {
+                keys.add(key);
+                values.add(cursor.isNull(3) ? "" : cursor.getString(3));
+            }
+        }
+        if (currentTime != null) {
+            consumer.accept(new HistoryRecord(currentTime,
+                keys.toArray(new String[0]), values.toArray(new String[0])));
+        }
+    }
+
+    private int importCsv(File csvFile) throws Exception {
+        long start = System.currentTimeMillis();
+        int imported = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(csvFile), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null) {
+                return 0;
+            }
+            String[] headerCols = header.split(",");
+            for (int i = 0; i < headerCols.length; i++) {
+                headerCols[i] = headerCols[i].trim();
+            }
+
+            List<HistoryRecord> batch = new ArrayList<>(IMPORT_BATCH_ROWS);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",", -1);
+                if (parts.length < 2) continue;
+
+                List<String> keys = new ArrayList<>(parts.length);
+                List<String> values = new ArrayList<>(parts.length);
+                for (int i = 1; i < parts.length && i < headerCols.length; i++) {
+                    if (!parts[i].isEmpty() && !headerCols[i].isEmpty()) {
+                        keys.add(headerCols[i]);
+                        values.add(parts[i]);
+                    }
+                }
+                batch.add(new HistoryRecord(parts[0].trim(),
+                    keys.toArray(new String[0]), values.toArray(new String[0])));
+                if (batch.size() >= IMPORT_BATCH_ROWS) {
+                    imported += writeBatch(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                imported += writeBatch(batch);
+            }
+        }
+        Log.d(TAG, "Imported " + imported + " rows from " + csvFile.getName() + " in " +
+            (System.currentTimeMillis() - start) + " ms");
+        return imported;
+    }
+
+    /**
+     * Write rows in one transaction with prepared statements (runs on the executor)
+     */
+    private int writeBatch(List<HistoryRecord> records) {
+        int[] written = {0};
+        try {
+            database.runInTransaction(() -> {
+                long minEpoch = Long.MAX_VALUE;
+                long maxEpoch = Long.MIN_VALUE;
+                try (SupportSQLiteStatement rowStatement = database.compileStatement(INSERT_ROW_SQL);
+                     SupportSQLiteStatement valueStatement = database.compileStatement(INSERT_VALUE_SQL)) {
+                    for (HistoryRecord record : records) {
+                        Long epoch = writeRow(rowStatement, valueStatement, record);
+                        if (epoch != null) {
+                            written[0]++;
+                            minEpoch = Math.min(minEpoch, epoch);
+                            maxEpoch = Math.max(maxEpoch, epoch);
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException("Error writing telemetry batch", e);
+                }
+                if (written[0] > 0) {
+                    telemetryDao.refreshRollups(minEpoch, maxEpoch);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Keys added in the rolled back transaction are gone again
+            keyIds = null;
+            throw e;
+        }
+        modificationCount.incrementAndGet();
+        return written[0];
+    }
+
+    /**
+     * Write one row and its values
+     * @return Epoch of the row, or null if its time could not be parsed
+     */
+    private Long writeRow(SupportSQLiteStatement rowStatement, SupportSQLiteStatement valueStatement,
+                          HistoryRecord record) {
+        Long epoch = toEpoch(record.collectTime);
+        if (epoch == null) {
+            return null;
+        }
+
+        float pvPowerKw = 0f;
+        float batterySoc = 0f;
+        float batteryPower = 0f;
+        float batteryTemp = 25.0f;
+        float gridPower = 0f;
+        float loadPower = 0f;
+        for (int i = 0; i < record.keys.length; i++) {
+            String key = record.keys[i];
+            String value = record.values[i];
+            if (key == null || key.isEmpty()) {
+                continue;
+            }
+
+            valueStatement.bindLong(1, epoch);
+            valueStatement.bindLong(2, resolveKeyId(key));
+            if (value != null) {
+                valueStatement.bindString(3, value);
+            } else {
+                valueStatement.bindNull(3);
+            }
+            valueStatement.executeInsert();
+
+            switch (key.toLowerCase(Locale.ROOT)) {
+                case "pvtp":
+                    pvPowerKw = parsePvtpKw(value);
+                    break;
+                case "soc_bap2":
+                    batterySoc = parseFloat(value, 0f);
+                    break;
+                case "p_bap2":
+                    batteryPower = parseFloat(value, 0f);
+                    break;
+                case "t_bap1":
+                    batteryTemp = parseFloat(value, 25.0f);
+                    break;
+                case "pcc_ap1":
+                case "pcc_ap2":
+                case "pcc_ap3":
+                    gridPower += parseFloat(value, 0f);
+                    break;
+                case "ap1":
+                case "ap2":
+                case "ap3":
+                    loadPower += parseFloat(value, 0f);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        rowStatement.bindLong(1, epoch);
+        rowStatement.bindString(2, record.collectTime.trim());
+        rowStatement.bindDouble(3, pvPowerKw);
+        rowStatement.bindDouble(4, batterySoc);
+        rowStatement.bindDouble(5, batteryPower);
+        rowStatement.bindDouble(6, batteryTemp);
+        rowStatement.bindDouble(7, gridPower);
+        rowStatement.bindDouble(8, loadPower);
+        rowStatement.executeInsert();
+        return epoch;
+    }
+
+    /**
+     * Dictionary id of a key, adding it on first use
+     */
+    private int resolveKeyId(String name) {
+        if (keyIds == null) {
+            keyIds = new HashMap<>();
+            for (TelemetryKey key : telemetryDao.getAllKeysSync()) {
+                keyIds.put(key.getName(), key.getId());
+            }
+        }
+        Integer id = keyIds.get(name);
+        if (id == null) {
+            long inserted = telemetryDao.insertKey(new TelemetryKey(name));
+            id = inserted != -1 ? (int) inserted : telemetryDao.getKeySync(name).getId();
+            keyIds.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Extract PV power from a PVTP value (W -> kW)
+     */
+    private static float parsePvtpKw(String value) {
+        if (value == null) {
+            return 0f;
+        }
+        Matcher matcher = NUMBER_PATTERN.matcher(value.trim().replace(",", "."));
+        return matcher.find() ? parseFloat(matcher.group(1), 0f) / 1000f : 0f;
+    }
+
+    private static float parseFloat(String str, float defaultValue) {
+        if (str == null || str.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Float.parseFloat(str.trim().replace(",", "."));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
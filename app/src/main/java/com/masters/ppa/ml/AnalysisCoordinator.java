@@ -0,0 +1,142 @@
+package com.masters.ppa.ml;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordinates forecast and battery analysis over a shared history snapshot.
+ * History is parsed and aligned once; analyseAll runs both jobs in parallel on it.
+ */
+public class AnalysisCoordinator {
+
+    private static final String TAG = "AnalysisCoordinator";
+    private static final int ANALYSIS_THREADS = 2;
+
+    private static AnalysisCoordinator instance;
+
+    private final Context context;
+    private final ExecutorService analysisExecutor = Executors.newFixedThreadPool(ANALYSIS_THREADS);
+    // Only runs non-blocking parse tasks, so waiting on it from an analysis thread cannot deadlock
+    private final ExecutorService loaderExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Object snapshotLock = new Object();
+    private HistorySnapshot snapshot;
+
+    public interface ProgressCallback {
+        void onProgress(String message);
+    }
+
+    public interface AnalysisCallback {
+        void onComplete(CombinedResult result);
+    }
+
+    /**
+     * Results of "analyse everything"; a failed job leaves its result null and sets its error
+     */
+    public static class CombinedResult {
+        public volatile ForecastProcessor.ForecastResult forecast;
+        public volatile BatteryProcessor.BatteryResult battery;
+        public volatile Exception forecastError;
+        public volatile Exception batteryError;
+    }
+
+    private AnalysisCoordinator(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized AnalysisCoordinator getInstance(Context context) {
+        if (instance == null) {
+            instance = new AnalysisCoordinator(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Get shared history snapshot, reloading it only when telemetry or the weather CSV changed
+     */
+    public HistorySnapshot getSnapshot() throws Exception {
+        synchronized (snapshotLock) {
+            if (snapshot == null || !snapshot.isCurrent(context)) {
+                snapshot = HistorySnapshot.load(context, loaderExecutor);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Drop cached snapshot; called after station or weather data was fetched
+     */
+    public void invalidateSnapshot() {
+        synchronized (snapshotLock) {
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Run a task on the shared analysis executor
+     */
+    public void execute(Runnable task) {
+        analysisExecutor.execute(task);
+    }
+
+    /**
+     * Run forecast and battery analysis in parallel on one snapshot; callback is posted on the
+     * main thread once both jobs have finished
+     */
+    public void analyseAll(ProgressCallback progressCallback, AnalysisCallback callback) {
+        long start = System.currentTimeMillis();
+        CombinedResult result = new CombinedResult();
+        AtomicInteger remaining = new AtomicInteger(2);
+
+        Runnable onJobDone = () -> {
+            if (remaining.decrementAndGet() == 0) {
+                Log.d(TAG, "Analysis completed in " + (System.currentTimeMillis() - start) + " ms");
+                mainHandler.post(() -> callback.onComplete(result));
+            }
+        };
+
+        analysisExecutor.execute(() -> {
+            try {
+                result.forecast = newForecastProcessor(progressCallback).runForecast();
+            } catch (Exception e) {
+                Log.e(TAG, "Forecast job failed", e);
+                result.forecastError = e;
+            } finally {
+                onJobDone.run();
+            }
+        });
+
+        analysisExecutor.execute(() -> {
+            try {
+                result.battery = newBatteryProcessor(progressCallback).runAnalysis();
+            } catch (Exception e) {
+                Log.e(TAG, "Battery job failed", e);
+                result.batteryError = e;
+            } finally {
+                onJobDone.run();
+            }
+        });
+    }
+
+    private ForecastProcessor newForecastProcessor(ProgressCallback callback) {
+        ForecastProcessor processor = new ForecastProcessor(context);
+        if (callback != null) {
+            processor.setProgressCallback(message -> callback.onProgress("Forecast: " + message));
+        }
+        return processor;
+    }
+
+    private BatteryProcessor newBatteryProcessor(ProgressCallback callback) {
+        BatteryProcessor processor = new BatteryProcessor(context);
+        if (callback != null) {
+            processor.setProgressCallback(message -> callback.onProgress("Battery: " + message));
+        }
+        return processor;
+    }
+}
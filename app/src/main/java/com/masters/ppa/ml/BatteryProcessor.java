@@ -9,13 +9,9 @@ import com.masters.ppa.data.repository.BatteryConfigRepository;
 import com.masters.ppa.data.repository.StationConfigRepository;
 
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -53,7 +49,7 @@ public class BatteryProcessor {
     
     public BatteryProcessor(Context context) {
         this.context = context.getApplicationContext();
-        this.modelLoader = ModelLoader.getInstance(context);
+        this.modelLoader = ModelLoader.getInstance(context, ModelLoader.ModelType.BATTERY);
         this.stationConfigRepository = new StationConfigRepository(context);
         this.batteryConfigRepository = new BatteryConfigRepository(context);
     }
@@ -126,24 +122,22 @@ public class BatteryProcessor {
         
         reportProgress("Loading operational data...");
         
-        // Load station data
-        List<StationDataRow> stationData = loadStationData();
-        if (stationData.isEmpty()) {
+        // Station and weather history are parsed once and shared with the forecast
+        HistorySnapshot snapshot = AnalysisCoordinator.getInstance(context).getSnapshot();
+        if (snapshot.getStationRowCount() == 0) {
             throw new Exception("Operational data not found. Please load data on Station page.");
         }
         
         reportProgress("Loading weather data...");
         
-        // Load weather data
-        List<WeatherDataRow> weatherData = loadWeatherData();
-        if (weatherData.isEmpty()) {
+        if (snapshot.getWeatherRowCount() == 0) {
             throw new Exception("Weather data not found. Please load data on Station page.");
         }
         
         reportProgress("Aligning data...");
         
         // Align data
-        List<AlignedRow> alignedData = alignData(stationData, weatherData, 
+        List<AlignedRow> alignedData = alignData(snapshot, 
             stationConfig.getLatitude(), stationConfig.getLongitude());
         
         if (alignedData.isEmpty()) {
@@ -219,233 +213,39 @@ public class BatteryProcessor {
     }
     
     /**
-     * Load station data from CSV
+     * Align station rows with nearest valid weather rows from the shared snapshot
      */
-    private List<StationDataRow> loadStationData() throws Exception {
-        List<StationDataRow> rows = new ArrayList<>();
-        
-        File stationFile = new File(context.getFilesDir(), "csv/station_data.csv");
-        if (!stationFile.exists()) {
-            return rows;
-        }
-        
-        BufferedReader reader = new BufferedReader(new InputStreamReader(
-            new FileInputStream(stationFile)));
-        
-        String header = reader.readLine();
-        if (header == null) {
-            reader.close();
-            return rows;
-        }
-        
-        String[] headerCols = header.split(",");
-        Map<String, Integer> colIndex = new HashMap<>();
-        for (int i = 0; i < headerCols.length; i++) {
-            colIndex.put(headerCols[i].trim().toLowerCase(), i);
-        }
-        
-        DateTimeFormatter[] formatters = {
-            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm"),
-            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
-            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
-        };
+    private List<AlignedRow> alignData(HistorySnapshot snapshot, double lat, double lon) {
+        List<AlignedRow> aligned = new ArrayList<>();
         
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] parts = line.split(",");
-            if (parts.length < 3) continue;
-            
-            try {
-                int idxTime = colIndex.getOrDefault("collecttime", -1);
-                if (idxTime < 0 || idxTime >= parts.length) continue;
-                
-                String timeStr = parts[idxTime].trim();
-                LocalDateTime time = null;
-                
-                if (timeStr.matches("\\d+")) {
-                    long timestamp = Long.parseLong(timeStr);
-                    long millis = timestamp < 2_000_000_000L ? timestamp * 1000L : timestamp;
-                    time = LocalDateTime.ofEpochSecond(millis / 1000, 0, ZoneOffset.UTC);
-                } else {
-                    for (DateTimeFormatter formatter : formatters) {
-                        try {
-                            time = LocalDateTime.parse(timeStr, formatter);
-                            break;
-                        } catch (Exception e) {
-                            // Try next format
-                        }
-                    }
-                }
-                
-                if (time == null) continue;
-                
-                StationDataRow row = new StationDataRow();
-                row.time = time;
-                row.batterySocRaw = parseFloat(parts[colIndex.getOrDefault("soc_bap2", -1)], 0f);
-                row.battTempC = parseFloat(parts[colIndex.getOrDefault("t_bap1", -1)], 25.0f);
-                
-                // Battery power
-                float battPowerRaw = parseFloat(parts[colIndex.getOrDefault("p_bap2", -1)], 0f);
-                float maxAbs = Math.abs(battPowerRaw);
-                row.batteryPowerKw = maxAbs > 100f ? battPowerRaw / 1000f : battPowerRaw;
-                
-                // PV power
-                int idxPvtp = colIndex.getOrDefault("pvtp", -1);
-                if (idxPvtp >= 0 && idxPvtp < parts.length) {
-                    String pvtpStr = parts[idxPvtp].trim().replace(",", ".");
-                    java.util.regex.Pattern numPattern = java.util.regex.Pattern.compile(
-                        "([-+]?\\d*\\.?\\d+(?:[eE][-+]?\\d+)?)");
-                    java.util.regex.Matcher matcher = numPattern.matcher(pvtpStr);
-                    if (matcher.find()) {
-                        row.pvPowerKw = parseFloat(matcher.group(1), 0f) / 1000f;
-                    }
-                }
-                
-                // Grid power
-                float grid1 = parseFloat(parts[colIndex.getOrDefault("pcc_ap1", -1)], 0f);
-                float grid2 = parseFloat(parts[colIndex.getOrDefault("pcc_ap2", -1)], 0f);
-                float grid3 = parseFloat(parts[colIndex.getOrDefault("pcc_ap3", -1)], 0f);
-                row.gridPowerKw = grid1 + grid2 + grid3;
-                
-                // Load power
-                float load1 = parseFloat(parts[colIndex.getOrDefault("ap1", -1)], 0f);
-                float load2 = parseFloat(parts[colIndex.getOrDefault("ap2", -1)], 0f);
-                float load3 = parseFloat(parts[colIndex.getOrDefault("ap3", -1)], 0f);
-                row.loadPowerKw = load1 + load2 + load3;
-                
-                rows.add(row);
-            } catch (Exception e) {
-                Log.w(TAG, "Error parsing station row: " + line, e);
+        for (int i = 0; i < snapshot.getStationRowCount(); i++) {
+            int w = snapshot.getNearestValidWeather(i);
+            if (w < 0) {
+                continue;
             }
-        }
-        
-        reader.close();
-        return rows;
-    }
-    
-    /**
-     * Load weather data from CSV
-     */
-    private List<WeatherDataRow> loadWeatherData() throws Exception {
-        List<WeatherDataRow> rows = new ArrayList<>();
-        
-        File weatherFile = new File(context.getFilesDir(), "csv/weather_data.csv");
-        if (!weatherFile.exists()) {
-            return rows;
-        }
-        
-        BufferedReader reader = new BufferedReader(new InputStreamReader(
-            new FileInputStream(weatherFile)));
-        
-        String header = reader.readLine();
-        if (header == null) {
-            reader.close();
-            return rows;
-        }
-        
-        String[] headerCols = header.split(",");
-        Map<String, Integer> colIndex = new HashMap<>();
-        for (int i = 0; i < headerCols.length; i++) {
-            colIndex.put(headerCols[i].trim().toLowerCase(), i);
-        }
-        
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
-        
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] parts = line.split(",");
-            if (parts.length < 3) continue;
             
-            try {
-                int timeIdx = colIndex.getOrDefault("time", -1);
-                if (timeIdx < 0 || timeIdx >= parts.length) continue;
-                
-                String timeStr = parts[timeIdx].trim();
-                LocalDateTime time = null;
-                try {
-                    time = LocalDateTime.parse(timeStr, formatter);
-                } catch (Exception e) {
-                    // Try alternative formats
-                    DateTimeFormatter[] altFormatters = {
-                        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
-                        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
-                    };
-                    for (DateTimeFormatter altFormatter : altFormatters) {
-                        try {
-                            time = LocalDateTime.parse(timeStr, altFormatter);
-                            break;
-                        } catch (Exception e2) {
-                            // Try next
-                        }
-                    }
-                }
-                
-                if (time == null) continue;
-                
-                WeatherDataRow row = new WeatherDataRow();
-                row.time = time;
-                row.irradianceWm2 = parseFloat(parts[colIndex.getOrDefault("irradiance_wm2", 
-                    colIndex.getOrDefault("shortwave_radiation", -1))], 0f);
-                row.temperature2m = parseFloat(parts[colIndex.getOrDefault("temperature_2m", -1)], 0f);
-                row.cloudCover = parseFloat(parts[colIndex.getOrDefault("cloud_cover", -1)], 0f);
-                
-                if (row.irradianceWm2 > 0 && row.temperature2m != 0 && row.cloudCover >= 0) {
-                    rows.add(row);
-                }
-            } catch (Exception e) {
-                Log.w(TAG, "Error parsing weather row: " + line, e);
-            }
-        }
-        
-        reader.close();
-        return rows;
-    }
-    
-    /**
-     * Align station and weather data
-     */
-    private List<AlignedRow> alignData(List<StationDataRow> stationData, 
-                                       List<WeatherDataRow> weatherData,
-                                       double lat, double lon) {
-        List<AlignedRow> aligned = new ArrayList<>();
-        
-        // Sort by time
-        stationData.sort((a, b) -> a.time.compareTo(b.time));
-        weatherData.sort((a, b) -> a.time.compareTo(b.time));
-        
-        // Merge with 1 hour tolerance
-        for (StationDataRow station : stationData) {
-            WeatherDataRow bestWeather = null;
-            long minDiff = Long.MAX_VALUE;
+            AlignedRow row = new AlignedRow();
+            row.time = snapshot.getStationTime(i);
+            row.batterySocRaw = snapshot.getBatterySoc(i);
+            row.battTempC = snapshot.getBatteryTempC(i);
             
-            for (WeatherDataRow weather : weatherData) {
-                long diff = Math.abs(java.time.Duration.between(station.time, weather.time).toMinutes());
-                if (diff <= 60 && diff < minDiff) {
-                    minDiff = diff;
-                    bestWeather = weather;
-                }
-            }
+            // Battery power
+            float battPowerRaw = snapshot.getBatteryPowerRaw(i);
+            row.batteryPowerKw = Math.abs(battPowerRaw) > 100f ? battPowerRaw / 1000f : battPowerRaw;
             
-            if (bestWeather != null) {
-                AlignedRow row = new AlignedRow();
-                row.time = station.time;
-                row.batterySocRaw = station.batterySocRaw;
-                row.battTempC = station.battTempC;
-                row.batteryPowerKw = station.batteryPowerKw;
-                row.pvPowerKw = station.pvPowerKw;
-                row.gridPowerKw = station.gridPowerKw;
-                row.loadPowerKw = station.loadPowerKw;
-                row.irradianceWm2 = bestWeather.irradianceWm2;
-                row.temperature2m = bestWeather.temperature2m;
-                row.cloudCover = bestWeather.cloudCover;
-                
-                // Calculate solar elevation
-                float solarElev = calculateSolarElevation(lat, lon, row.time);
-                row.solarElev = Math.max(-5f, Math.min(90f, solarElev));
-                row.solarElevNorm = Math.max(0f, row.solarElev) / 90f;
-                
-                aligned.add(row);
-            }
+            row.pvPowerKw = snapshot.getPvPowerKw(i);
+            row.gridPowerKw = snapshot.getGridPower(i);
+            row.loadPowerKw = snapshot.getLoadPower(i);
+            row.irradianceWm2 = snapshot.getIrradianceWm2(w);
+            row.temperature2m = snapshot.getTemperature2m(w);
+            row.cloudCover = snapshot.getCloudCover(w);
+            
+            // Calculate solar elevation
+            float solarElev = calculateSolarElevation(lat, lon, row.time);
+            row.solarElev = Math.max(-5f, Math.min(90f, solarElev));
+            row.solarElevNorm = Math.max(0f, row.solarElev) / 90f;
+            
+            aligned.add(row);
         }
         
         // Clean SoC
@@ -602,43 +402,6 @@ public class BatteryProcessor {
         }
     }
     
-    /**
-     * Parse float from string
-     */
-    private float parseFloat(String str, float defaultValue) {
-        if (str == null || str.trim().isEmpty()) {
-            return defaultValue;
-        }
-        try {
-            return Float.parseFloat(str.trim().replace(",", "."));
-        } catch (NumberFormatException e) {
-            return defaultValue;
-        }
-    }
-    
-    /**
-     * Station data row
-     */
-    private static class StationDataRow {
-        LocalDateTime time;
-        float batterySocRaw;
-        float battTempC;
-        float batteryPowerKw;
-        float pvPowerKw;
-        float gridPowerKw;
-        float loadPowerKw;
-    }
-    
-    /**
-     * Weather data row
-     */
-    private static class WeatherDataRow {
-        LocalDateTime time;
-        float irradianceWm2;
-        float temperature2m;
-        float cloudCover;
-    }
-    
     /**
      * Aligned data row
      */
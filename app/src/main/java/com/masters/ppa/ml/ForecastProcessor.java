@@ -3,16 +3,17 @@ package com.masters.ppa.ml;
 import android.content.Context;
 import android.util.Log;
 
+import com.masters.ppa.data.api.HourlyWeather;
+import com.masters.ppa.data.api.WeatherApiService;
+import com.masters.ppa.data.api.WeatherStore;
 import com.masters.ppa.data.model.StationConfig;
+import com.masters.ppa.data.model.StationTelemetry;
+import com.masters.ppa.data.model.TelemetryDaily;
 import com.masters.ppa.data.repository.StationConfigRepository;
+import com.masters.ppa.data.repository.TelemetryRepository;
 
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -23,9 +24,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 /**
  * Processor for preparing weather data and running forecast predictions
  * Implements the same logic as Python forecast code
@@ -34,6 +32,12 @@ public class ForecastProcessor {
     
     private static final String TAG = "ForecastProcessor";
     
+    // Operational rows are matched to weather rows within 2 hours
+    private static final long OPS_MATCH_TOLERANCE_SECONDS = 2 * 60 * 60;
+    
+    // Calibration uses days where at least this share of the station rows has weather
+    private static final float MIN_CALIBRATION_DAY_COVERAGE = 0.9f;
+    
     private final Context context;
     private final ModelLoader modelLoader;
     private final StationConfigRepository stationConfigRepository;
@@ -183,9 +187,9 @@ public class ForecastProcessor {
         
         reportProgress("Loading weather data...");
         List<WeatherRow> weatherRows = loadWeatherData();
-        reportProgress("Loaded " + weatherRows.size() + " weather rows from CSV");
+        reportProgress("Loaded " + weatherRows.size() + " weather rows");
         if (weatherRows.isEmpty()) {
-            reportProgress("Weather data file not found. Attempting to fetch from API...");
+            reportProgress("Weather forecast not found. Attempting to fetch from API...");
             StationConfig config = stationConfigRepository.getStationConfigSync();
             if (config == null) {
                 throw new Exception("Station configuration not found. Cannot fetch weather data.");
@@ -194,7 +198,7 @@ public class ForecastProcessor {
             try {
                 fetchWeatherDataSync(config.getLatitude(), config.getLongitude());
                 weatherRows = loadWeatherData();
-                reportProgress("Loaded " + weatherRows.size() + " weather rows from CSV after fetch");
+                reportProgress("Loaded " + weatherRows.size() + " weather rows after fetch");
                 if (weatherRows.isEmpty()) {
                     throw new Exception("Failed to fetch weather data. Please check your internet connection and try again.");
                 }
@@ -291,127 +295,30 @@ public class ForecastProcessor {
     }
     
     /**
-     * Load weather data from API file
+     * Load the stored 7-day forecast (missing values as 0)
      */
-    private List<WeatherRow> loadWeatherData() throws Exception {
-        List<WeatherRow> rows = new ArrayList<>();
-        
-        java.io.File weatherFile = new java.io.File(
-            context.getFilesDir(), 
-            "csv/weather/weather_next_7days.csv"
-        );
-        
-        if (!weatherFile.exists()) {
-            weatherFile = new java.io.File(
-                context.getFilesDir(), 
-                "csv/weather_next_7days.csv"
-            );
-        }
-        
-        if (!weatherFile.exists()) {
-            Log.w(TAG, "Weather file not found. Tried:");
-            Log.w(TAG, "  - " + new java.io.File(context.getFilesDir(), "csv/weather/weather_next_7days.csv").getAbsolutePath());
-            Log.w(TAG, "  - " + new java.io.File(context.getFilesDir(), "csv/weather_next_7days.csv").getAbsolutePath());
-            return rows;
-        }
-        
-        Log.d(TAG, "Loading weather data from: " + weatherFile.getAbsolutePath());
-        
-        BufferedReader reader = new BufferedReader(new InputStreamReader(
-            new java.io.FileInputStream(weatherFile)
-        ));
-        
-        // Read header
-        String header = reader.readLine();
-        if (header == null) {
-            reader.close();
-            return rows;
-        }
-        
-        String[] headerCols = header.split(",");
-        Map<String, Integer> colIndex = new HashMap<>();
-        for (int i = 0; i < headerCols.length; i++) {
-            colIndex.put(headerCols[i].trim().toLowerCase(), i);
+    private List<WeatherRow> loadWeatherData() {
+        HourlyWeather weather = WeatherStore.load(context, WeatherStore.FORECAST);
+        if (weather == null) {
+            Log.w(TAG, "Weather forecast not found in " + WeatherStore.fileFor(context, WeatherStore.FORECAST));
+            return new ArrayList<>();
         }
-        
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
-        
-        String line;
-        int lineNumber = 0;
-        int parsedCount = 0;
-        int errorCount = 0;
-        
-        while ((line = reader.readLine()) != null) {
-            lineNumber++;
-            String[] parts = line.split(",");
-            if (parts.length < 4) {
-                Log.w(TAG, "Skipping row " + lineNumber + ": too few columns (" + parts.length + ")");
-                continue;
-            }
-            
-            try {
-                // Parse time
-                int timeIdx = colIndex.getOrDefault("time", -1);
-                if (timeIdx < 0 || timeIdx >= parts.length) {
-                    Log.w(TAG, "Skipping row " + lineNumber + ": time column not found");
-                    continue;
-                }
-                
-                String timeStr = parts[timeIdx].trim();
-                LocalDateTime time = null;
-                try {
-                    time = LocalDateTime.parse(timeStr, formatter);
-                } catch (Exception e) {
-                    // Try alternative formats
-                    DateTimeFormatter[] altFormatters = {
-                        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
-                        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
-                    };
-                    for (DateTimeFormatter altFormatter : altFormatters) {
-                        try {
-                            time = LocalDateTime.parse(timeStr, altFormatter);
-                            break;
-                        } catch (Exception e2) {
-                            // Try next format
-                        }
-                    }
-                    if (time == null) {
-                        Log.w(TAG, "Skipping row " + lineNumber + ": cannot parse time: " + timeStr);
-                        errorCount++;
-                        continue;
-                    }
-                }
-                
-                // Parse temperature_2m
-                int tempIdx = colIndex.getOrDefault("temperature_2m", -1);
-                float temp = (tempIdx >= 0 && tempIdx < parts.length) ? 
-                    parseFloat(parts[tempIdx], 0f) : 0f;
-                
-                // Parse cloud_cover
-                int cloudIdx = colIndex.getOrDefault("cloud_cover", -1);
-                float cloud = (cloudIdx >= 0 && cloudIdx < parts.length) ? 
-                    parseFloat(parts[cloudIdx], 0f) : 0f;
-                
-                // Parse shortwave_radiation
-                int irrIdx = colIndex.getOrDefault("shortwave_radiation", -1);
-                float irr = (irrIdx >= 0 && irrIdx < parts.length) ? 
-                    parseFloat(parts[irrIdx], 0f) : 0f;
-                
-                // Parse wind_speed_10m
-                int windIdx = colIndex.getOrDefault("wind_speed_10m", -1);
-                float wind = (windIdx >= 0 && windIdx < parts.length) ? 
-                    parseFloat(parts[windIdx], 0f) : 0f;
-                
-                rows.add(new WeatherRow(time, temp, cloud, irr, wind));
-                parsedCount++;
-            } catch (Exception e) {
-                Log.w(TAG, "Error parsing row " + lineNumber + ": " + line, e);
-                errorCount++;
-            }
+        return toWeatherRows(weather);
+    }
+    
+    private static List<WeatherRow> toWeatherRows(HourlyWeather weather) {
+        int temp = HourlyWeather.columnIndex(HourlyWeather.COL_TEMPERATURE);
+        int cloud = HourlyWeather.columnIndex(HourlyWeather.COL_CLOUD_COVER);
+        int irr = HourlyWeather.columnIndex(HourlyWeather.COL_SHORTWAVE_RADIATION);
+        int wind = HourlyWeather.columnIndex(HourlyWeather.COL_WIND_SPEED);
+        
+        List<WeatherRow> rows = new ArrayList<>(weather.size());
+        for (int i = 0; i < weather.size(); i++) {
+            rows.add(new WeatherRow(weather.getTime(i),
+                weather.get(temp, i, 0f), weather.get(cloud, i, 0f),
+                weather.get(irr, i, 0f), weather.get(wind, i, 0f)));
         }
-        
-        reader.close();
-        Log.d(TAG, "Loaded " + parsedCount + " weather rows (errors: " + errorCount + ", total lines: " + lineNumber + ")");
+        Log.d(TAG, "Loaded " + rows.size() + " weather rows");
         return rows;
     }
     
@@ -488,15 +395,10 @@ public class ForecastProcessor {
      * Load operational data from Solarman CSV file
      */
     private void loadOperationalDataFromCsv(List<WeatherRow> weatherRows) throws Exception {
-        // First, try to find station_data.csv (new format)
-        java.io.File stationDataFile = new java.io.File(
-            context.getFilesDir(), 
-            "csv/station_data.csv"
-        );
-        
-        if (stationDataFile.exists()) {
-            Log.d(TAG, "Loading operational data from station_data.csv");
-            loadOperationalDataFromStationCsv(weatherRows, stationDataFile);
+        // First, try the telemetry store (fed by station_data.csv fetches)
+        if (StationHistoryLoader.hasData(context)) {
+            Log.d(TAG, "Loading operational data from telemetry store");
+            loadOperationalDataFromStore(weatherRows);
             return;
         }
         
@@ -603,108 +505,36 @@ public class ForecastProcessor {
     }
     
     /**
-     * Load operational data from station_data.csv (new format)
+     * Load operational data from the telemetry store, querying only the weather rows' time
+     * range plus the 2h matching tolerance
      */
-    private void loadOperationalDataFromStationCsv(List<WeatherRow> weatherRows, java.io.File csvFile) throws Exception {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(
-            new java.io.FileInputStream(csvFile)
-        ));
-        
-        // Read header
-        String header = reader.readLine();
-        if (header == null) {
-            reader.close();
+    private void loadOperationalDataFromStore(List<WeatherRow> weatherRows) throws Exception {
+        if (weatherRows.isEmpty()) {
             return;
         }
-        
-        String[] headerCols = header.split(",");
-        Map<String, Integer> colIndex = new HashMap<>();
-        for (int i = 0; i < headerCols.length; i++) {
-            colIndex.put(headerCols[i].trim().toLowerCase(), i);
+        long minEpoch = Long.MAX_VALUE;
+        long maxEpoch = Long.MIN_VALUE;
+        for (WeatherRow row : weatherRows) {
+            long epoch = row.time.toEpochSecond(ZoneOffset.UTC);
+            minEpoch = Math.min(minEpoch, epoch);
+            maxEpoch = Math.max(maxEpoch, epoch);
         }
         
-        // Find column indices (case-insensitive)
-        int idxTime = colIndex.getOrDefault("collecttime", -1);
-        int idxSoc = colIndex.getOrDefault("soc_bap2", -1);
-        int idxBatteryPower = colIndex.getOrDefault("p_bap2", -1);
-        int idxPcc1 = colIndex.getOrDefault("pcc_ap1", -1);
-        int idxPcc2 = colIndex.getOrDefault("pcc_ap2", -1);
-        int idxPcc3 = colIndex.getOrDefault("pcc_ap3", -1);
-        int idxAp1 = colIndex.getOrDefault("ap1", -1);
-        int idxAp2 = colIndex.getOrDefault("ap2", -1);
-        int idxAp3 = colIndex.getOrDefault("ap3", -1);
-        int idxPvtp = colIndex.getOrDefault("pvtp", -1);
+        StationHistoryLoader.prepare(context);
+        List<StationTelemetry> stationRows = new TelemetryRepository(context)
+            .getRangeSync(minEpoch - OPS_MATCH_TOLERANCE_SECONDS, maxEpoch + OPS_MATCH_TOLERANCE_SECONDS);
         
-        // Read all rows and store by time
         Map<LocalDateTime, float[]> opsDataMap = new HashMap<>();
-        DateTimeFormatter[] formatters = {
-            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm"),
-            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
-            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
-        };
-        
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] parts = line.split(",");
-            if (parts.length < 3) continue;
-            
-            try {
-                if (idxTime < 0 || idxTime >= parts.length) continue;
-                
-                String timeStr = parts[idxTime].trim();
-                LocalDateTime time = null;
-                for (DateTimeFormatter formatter : formatters) {
-                    try {
-                        time = LocalDateTime.parse(timeStr, formatter);
-                        break;
-                    } catch (Exception e) {
-                        // Try next format
-                    }
-                }
-                if (time == null) continue;
-                
-                float soc = (idxSoc >= 0 && idxSoc < parts.length) ? 
-                    parseFloat(parts[idxSoc], 0f) : 0f;
-                float batteryPower = (idxBatteryPower >= 0 && idxBatteryPower < parts.length) ? 
-                    parseFloat(parts[idxBatteryPower], 0f) : 0f;
-                
-                float grid1 = (idxPcc1 >= 0 && idxPcc1 < parts.length) ? 
-                    parseFloat(parts[idxPcc1], 0f) : 0f;
-                float grid2 = (idxPcc2 >= 0 && idxPcc2 < parts.length) ? 
-                    parseFloat(parts[idxPcc2], 0f) : 0f;
-                float grid3 = (idxPcc3 >= 0 && idxPcc3 < parts.length) ? 
-                    parseFloat(parts[idxPcc3], 0f) : 0f;
-                float gridPower = grid1 + grid2 + grid3;
-                
-                float load1 = (idxAp1 >= 0 && idxAp1 < parts.length) ? 
-                    parseFloat(parts[idxAp1], 0f) : 0f;
-                float load2 = (idxAp2 >= 0 && idxAp2 < parts.length) ? 
-                    parseFloat(parts[idxAp2], 0f) : 0f;
-                float load3 = (idxAp3 >= 0 && idxAp3 < parts.length) ? 
-                    parseFloat(parts[idxAp3], 0f) : 0f;
-                float loadPower = load1 + load2 + load3;
-                
-                // Extract power from PVTP (similar to extract_power_kw in Python)
-                float powerKw = 0f;
-                if (idxPvtp >= 0 && idxPvtp < parts.length) {
-                    String pvtpStr = parts[idxPvtp].trim().replace(",", ".");
-                    java.util.regex.Pattern numPattern = java.util.regex.Pattern.compile(
-                        "([-+]?\\d*\\.?\\d+(?:[eE][-+]?\\d+)?)"
-                    );
-                    java.util.regex.Matcher matcher = numPattern.matcher(pvtpStr);
-                    if (matcher.find()) {
-                        powerKw = parseFloat(matcher.group(1), 0f) / 1000f; // Convert W to kW
-                    }
-                }
-                
-                opsDataMap.put(time, new float[]{soc, batteryPower, gridPower, loadPower, powerKw});
-            } catch (Exception e) {
-                Log.w(TAG, "Error parsing station data row: " + line, e);
-            }
+        for (StationTelemetry station : stationRows) {
+            opsDataMap.put(LocalDateTime.ofEpochSecond(station.getEpoch(), 0, ZoneOffset.UTC), new float[]{
+                station.getBatterySoc(),
+                station.getBatteryPowerRaw(),
+                station.getGridPower(),
+                station.getLoadPower(),
+                station.getPvPowerKw()
+            });
         }
         
-        reader.close();
-        
         // Match operational data to weather rows (backward merge, tolerance 2h)
         matchOperationalDataToWeatherRows(weatherRows, opsDataMap);
     }
@@ -745,7 +575,7 @@ public class ForecastProcessor {
             
             for (LocalDateTime csvTime : opsDataMap.keySet()) {
                 long diff = Math.abs(java.time.Duration.between(row.time, csvTime).toMinutes());
-                if (diff <= 120 && diff < minDiff) { // 2 hours tolerance
+                if (diff <= OPS_MATCH_TOLERANCE_SECONDS / 60 && diff < minDiff) { // 2 hours tolerance
                     minDiff = diff;
                     bestTime = csvTime;
                 }
@@ -979,465 +809,52 @@ public class ForecastProcessor {
     }
     
     /**
-     * Fetch weather data synchronously from Open-Meteo API
-     * This is used when weather CSV file is not found
+     * Fetch the 7-day forecast synchronously from Open-Meteo API into the weather store
+     * (reusing the grid cell cache when fresh). This is used when no stored forecast is found
      */
     private void fetchWeatherDataSync(double lat, double lon) throws Exception {
         Log.d(TAG, "Fetching weather data synchronously from API...");
-        
-        LocalDate today = LocalDate.now(ZoneOffset.UTC);
-        LocalDate endDate = today.plusDays(6);
-        
-        String url = "https://api.open-meteo.com/v1/forecast?latitude=" + lat + "&longitude=" + lon +
-                "&hourly=temperature_2m,cloud_cover,shortwave_radiation," +
-                "direct_radiation,diffuse_radiation,wind_speed_10m" +
-                "&start_date=" + today + "&end_date=" + endDate + "&timezone=auto";
-        
-        Log.d(TAG, "Fetching weather from: " + url);
-        
-        // Create HTTP connection
-        HttpURLConnection connection = null;
-        try {
-            URL requestUrl = new URL(url);
-            connection = (HttpURLConnection) requestUrl.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(20000);
-            connection.setReadTimeout(20000);
-            
-            int responseCode = connection.getResponseCode();
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                throw new Exception("HTTP error: " + responseCode);
-            }
-            
-            // Read response
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-            }
-            
-            // Parse JSON
-            JSONObject json = new JSONObject(response.toString());
-            if (!json.has("hourly")) {
-                throw new Exception("Invalid API response: no hourly data");
-            }
-            
-            JSONObject hourly = json.getJSONObject("hourly");
-            JSONArray times = hourly.getJSONArray("time");
-            JSONArray temps = hourly.getJSONArray("temperature_2m");
-            JSONArray clouds = hourly.getJSONArray("cloud_cover");
-            JSONArray swr = hourly.getJSONArray("shortwave_radiation");
-            JSONArray dr = hourly.getJSONArray("direct_radiation");
-            JSONArray dif = hourly.getJSONArray("diffuse_radiation");
-            JSONArray wind = hourly.getJSONArray("wind_speed_10m");
-            
-            // Create output directory
-            File weatherDir = new File(context.getFilesDir(), "csv/weather");
-            if (!weatherDir.exists()) {
-                weatherDir.mkdirs();
-            }
-            
-            // Create output file
-            File outputFile = new File(weatherDir, "weather_next_7days.csv");
-            
-            // Write CSV file
-            try (FileWriter writer = new FileWriter(outputFile, false)) {
-                // Write header
-                writer.write("time,temperature_2m,cloud_cover,shortwave_radiation,direct_radiation,diffuse_radiation,wind_speed_10m\n");
-                
-                // Write data rows
-                for (int i = 0; i < times.length(); i++) {
-                    String timestamp = times.getString(i);
-                    double temp = temps.optDouble(i, Double.NaN);
-                    double cloud = clouds.optDouble(i, Double.NaN);
-                    double radiation = swr.optDouble(i, Double.NaN);
-                    double direct = dr.optDouble(i, Double.NaN);
-                    double diffuse = dif.optDouble(i, Double.NaN);
-                    double windSpeed = wind.optDouble(i, Double.NaN);
-                    
-                    writer.write(timestamp + "," +
-                            formatDouble(temp) + "," +
-                            formatDouble(cloud) + "," +
-                            formatDouble(radiation) + "," +
-                            formatDouble(direct) + "," +
-                            formatDouble(diffuse) + "," +
-                            formatDouble(windSpeed) + "\n");
-                }
-            }
-            
-            Log.d(TAG, "Weather data saved to: " + outputFile.getAbsolutePath());
-            
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
-        }
+        HourlyWeather weather = new WeatherApiService(context).fetch7DaysWeatherSync(lat, lon);
+        Log.d(TAG, "Weather forecast stored: " + weather.size() + " rows");
     }
     
     /**
-     * Format double value for CSV output
+     * Build aligned historical rows (station + nearest weather within 1 hour) from the shared snapshot
      */
-    private static String formatDouble(double value) {
-        if (Double.isNaN(value)) {
-            return "";
-        }
-        return String.format(Locale.US, "%.1f", value);
-    }
-    
-    /**
-     * Load historical Solarman data from station_data.csv
-     */
-    private List<HistoricalRow> loadSolarmanHist() throws Exception {
-        List<HistoricalRow> rows = new ArrayList<>();
-        
-        java.io.File stationFile = new java.io.File(context.getFilesDir(), "csv/station_data.csv");
-        if (!stationFile.exists()) {
-            Log.w(TAG, "Station data CSV not found: " + stationFile.getAbsolutePath());
-            return rows;
-        }
-        
-        Log.d(TAG, "Loading historical Solarman data from: " + stationFile.getAbsolutePath());
-        
-        BufferedReader reader = new BufferedReader(new InputStreamReader(
-            new java.io.FileInputStream(stationFile)
-        ));
-        
-        // Read header
-        String header = reader.readLine();
-        if (header == null) {
-            reader.close();
-            return rows;
-        }
-        
-        String[] headerCols = header.split(",");
-        Map<String, Integer> colIndex = new HashMap<>();
-        for (int i = 0; i < headerCols.length; i++) {
-            colIndex.put(headerCols[i].trim().toLowerCase(), i);
-        }
-        
-        // Find column indices
-        int idxTime = colIndex.getOrDefault("collecttime", -1);
-        int idxPvtp = colIndex.getOrDefault("pvtp", -1);
-        int idxSoc = colIndex.getOrDefault("soc_bap2", -1);
-        int idxBatteryPower = colIndex.getOrDefault("p_bap2", -1);
-        int idxPcc1 = colIndex.getOrDefault("pcc_ap1", -1);
-        int idxPcc2 = colIndex.getOrDefault("pcc_ap2", -1);
-        int idxPcc3 = colIndex.getOrDefault("pcc_ap3", -1);
-        int idxAp1 = colIndex.getOrDefault("ap1", -1);
-        int idxAp2 = colIndex.getOrDefault("ap2", -1);
-        int idxAp3 = colIndex.getOrDefault("ap3", -1);
-        
-        Log.d(TAG, "Column indices - collectTime: " + idxTime + ", PVTP: " + idxPvtp + 
-            ", SOC_BAP2: " + idxSoc + ", P_BAP2: " + idxBatteryPower);
-        Log.d(TAG, "Available columns: " + String.join(", ", colIndex.keySet()));
-        
-        if (idxTime < 0 || idxPvtp < 0) {
-            Log.w(TAG, "Required columns not found in station data CSV. collectTime: " + 
-                idxTime + ", PVTP: " + idxPvtp);
-            reader.close();
-            return rows;
-        }
-        
-        DateTimeFormatter[] formatters = {
-            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm"),
-            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
-            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
-        };
-        
-        String line;
-        int lineNumber = 0;
-        int parsedCount = 0;
-        int errorCount = 0;
+    private List<HistoricalRow> buildAlignedHistory(HistorySnapshot snapshot, StationConfig config) {
+        List<HistoricalRow> aligned = new ArrayList<>();
+        HistoricalRow[] weatherCache = new HistoricalRow[snapshot.getWeatherRowCount()];
         
-        while ((line = reader.readLine()) != null) {
-            lineNumber++;
-            String[] parts = line.split(",");
-            if (parts.length < 3) {
-                Log.w(TAG, "Skipping row " + lineNumber + ": too few columns (" + parts.length + ")");
+        for (int i = 0; i < snapshot.getStationRowCount(); i++) {
+            int w = snapshot.getNearestWeather(i);
+            if (w < 0 || !snapshot.isValidWeather(w)) {
                 continue;
             }
-            
-            try {
-                String timeStr = parts[idxTime].trim();
-                if (timeStr.isEmpty()) {
-                    Log.w(TAG, "Skipping row " + lineNumber + ": empty time");
-                    continue;
-                }
-                
-                LocalDateTime time = null;
-                
-                // Check if it's Unix timestamp (numeric string)
-                if (timeStr.matches("\\d+")) {
-                    try {
-                        long timestamp = Long.parseLong(timeStr);
-                        long millis;
-                        if (timestamp < 2_000_000_000L) {
-                            // Seconds
-                            millis = timestamp * 1000L;
-                        } else {
-                            // Milliseconds
-                            millis = timestamp;
-                        }
-                        time = LocalDateTime.ofEpochSecond(millis / 1000, 0, 
-                            java.time.ZoneOffset.UTC);
-                    } catch (Exception e) {
-                        Log.w(TAG, "Error parsing Unix timestamp: " + timeStr, e);
-                    }
-                } else {
-                    // Try date-time formats
-                    for (DateTimeFormatter formatter : formatters) {
-                        try {
-                            time = LocalDateTime.parse(timeStr, formatter);
-                            break;
-                        } catch (Exception e) {
-                            // Try next format
-                        }
-                    }
-                }
-                
-                if (time == null) {
-                    Log.w(TAG, "Skipping row " + lineNumber + ": cannot parse time: " + timeStr);
-                    errorCount++;
-                    continue;
-                }
-                
-                HistoricalRow row = new HistoricalRow();
-                row.time = time;
-                
-                // Extract power from PVTP
-                float powerKw = 0f;
-                if (idxPvtp >= 0 && idxPvtp < parts.length) {
-                    String pvtpStr = parts[idxPvtp].trim().replace(",", ".");
-                    java.util.regex.Pattern numPattern = java.util.regex.Pattern.compile(
-                        "([-+]?\\d*\\.?\\d+(?:[eE][-+]?\\d+)?)"
-                    );
-                    java.util.regex.Matcher matcher = numPattern.matcher(pvtpStr);
-                    if (matcher.find()) {
-                        powerKw = parseFloat(matcher.group(1), 0f) / 1000f;
-                    }
-                }
-                row.powerKw = Math.max(0f, powerKw);
-                
-                row.batterySoc = (idxSoc >= 0 && idxSoc < parts.length) ? 
-                    parseFloat(parts[idxSoc], 0f) : 0f;
-                row.batteryPower = (idxBatteryPower >= 0 && idxBatteryPower < parts.length) ? 
-                    parseFloat(parts[idxBatteryPower], 0f) : 0f;
-                
-                float grid1 = (idxPcc1 >= 0 && idxPcc1 < parts.length) ? 
-                    parseFloat(parts[idxPcc1], 0f) : 0f;
-                float grid2 = (idxPcc2 >= 0 && idxPcc2 < parts.length) ? 
-                    parseFloat(parts[idxPcc2], 0f) : 0f;
-                float grid3 = (idxPcc3 >= 0 && idxPcc3 < parts.length) ? 
-                    parseFloat(parts[idxPcc3], 0f) : 0f;
-                row.gridPower = grid1 + grid2 + grid3;
-                
-                float load1 = (idxAp1 >= 0 && idxAp1 < parts.length) ? 
-                    parseFloat(parts[idxAp1], 0f) : 0f;
-                float load2 = (idxAp2 >= 0 && idxAp2 < parts.length) ? 
-                    parseFloat(parts[idxAp2], 0f) : 0f;
-                float load3 = (idxAp3 >= 0 && idxAp3 < parts.length) ? 
-                    parseFloat(parts[idxAp3], 0f) : 0f;
-                row.loadPower = load1 + load2 + load3;
-                
-                rows.add(row);
-                parsedCount++;
-            } catch (Exception e) {
-                Log.w(TAG, "Error parsing historical row " + lineNumber + ": " + line, e);
-                errorCount++;
+            if (weatherCache[w] == null) {
+                weatherCache[w] = createWeatherHistRow(snapshot, w, config);
             }
-        }
-        
-        reader.close();
-        Log.d(TAG, "Loaded " + rows.size() + " historical Solarman records (parsed: " + 
-            parsedCount + ", errors: " + errorCount + ", total lines: " + lineNumber + ")");
-        
-        if (rows.isEmpty() && lineNumber > 0) {
-            Log.w(TAG, "No records loaded. Checked " + lineNumber + " lines. " +
-                "First few lines for debugging:");
-            // Re-read first few lines for debugging
-            try (BufferedReader debugReader = new BufferedReader(new InputStreamReader(
-                new java.io.FileInputStream(stationFile)))) {
-                debugReader.readLine(); // Skip header
-                for (int i = 0; i < Math.min(5, lineNumber); i++) {
-                    String debugLine = debugReader.readLine();
-                    if (debugLine != null) {
-                        Log.w(TAG, "  Line " + (i + 1) + ": " + 
-                            (debugLine.length() > 100 ? debugLine.substring(0, 100) + "..." : debugLine));
-                    }
-                }
-            } catch (Exception e) {
-                Log.w(TAG, "Error reading debug lines", e);
-            }
-        }
-        
-        return rows;
-    }
-    
-    /**
-     * Load historical weather data from weather_data.csv
-     */
-    private List<HistoricalRow> loadWeatherHist(StationConfig config) throws Exception {
-        List<HistoricalRow> rows = new ArrayList<>();
-        
-        // Try multiple paths
-        java.io.File weatherFile = new java.io.File(context.getFilesDir(), "csv/weather_data.csv");
-        if (!weatherFile.exists()) {
-            weatherFile = new java.io.File(context.getFilesDir(), "csv/weather/weather_last_max_period.csv");
-        }
-        
-        if (!weatherFile.exists()) {
-            Log.w(TAG, "Weather history CSV not found");
-            return rows;
-        }
-        
-        Log.d(TAG, "Loading historical weather data from: " + weatherFile.getAbsolutePath());
-        
-        BufferedReader reader = new BufferedReader(new InputStreamReader(
-            new java.io.FileInputStream(weatherFile)
-        ));
-        
-        // Read header
-        String header = reader.readLine();
-        if (header == null) {
-            reader.close();
-            return rows;
-        }
-        
-        String[] headerCols = header.split(",");
-        Map<String, Integer> colIndex = new HashMap<>();
-        for (int i = 0; i < headerCols.length; i++) {
-            colIndex.put(headerCols[i].trim().toLowerCase(), i);
-        }
-        
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
-        
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] parts = line.split(",");
-            if (parts.length < 3) continue;
+            HistoricalRow weather = weatherCache[w];
             
-            try {
-                int timeIdx = colIndex.getOrDefault("time", -1);
-                if (timeIdx < 0 || timeIdx >= parts.length) continue;
-                
-                String timeStr = parts[timeIdx].trim();
-                LocalDateTime time = null;
-                try {
-                    time = LocalDateTime.parse(timeStr, formatter);
-                } catch (Exception e) {
-                    DateTimeFormatter[] altFormatters = {
-                        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
-                        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
-                    };
-                    for (DateTimeFormatter altFormatter : altFormatters) {
-                        try {
-                            time = LocalDateTime.parse(timeStr, altFormatter);
-                            break;
-                        } catch (Exception e2) {
-                            // Try next format
-                        }
-                    }
-                    if (time == null) continue;
-                }
-                
-                HistoricalRow row = new HistoricalRow();
-                row.time = time;
-                
-                int tempIdx = colIndex.getOrDefault("temperature_2m", -1);
-                row.temperature2m = (tempIdx >= 0 && tempIdx < parts.length) ? 
-                    parseFloat(parts[tempIdx], 0f) : 0f;
-                
-                int cloudIdx = colIndex.getOrDefault("cloud_cover", -1);
-                row.cloudCover = (cloudIdx >= 0 && cloudIdx < parts.length) ? 
-                    parseFloat(parts[cloudIdx], 0f) : 0f;
-                
-                int irrIdx = colIndex.getOrDefault("shortwave_radiation", -1);
-                if (irrIdx < 0) {
-                    irrIdx = colIndex.getOrDefault("irradiance_wm2", -1);
-                }
-                row.irradianceWm2 = (irrIdx >= 0 && irrIdx < parts.length) ? 
-                    parseFloat(parts[irrIdx], 0f) : 0f;
-                
-                // Add solar geometry
-                float solarElev = calculateSolarElevation(
-                    config.getLatitude(), config.getLongitude(), time);
-                row.solarElevNorm = Math.max(0f, Math.max(-5f, Math.min(90f, solarElev))) / 90f;
-                
-                // Calculate derived features
-                int hour = time.getHour();
-                row.hourSin = (float) Math.sin(2 * Math.PI * hour / 24.0);
-                row.hourCos = (float) Math.cos(2 * Math.PI * hour / 24.0);
-                
-                int dayOfYear = time.getDayOfYear();
-                row.daySin = (float) Math.sin(2 * Math.PI * dayOfYear / 365.0);
-                row.dayCos = (float) Math.cos(2 * Math.PI * dayOfYear / 365.0);
-                
-                row.effectiveIrradiance = row.irradianceWm2 * (1 - row.cloudCover / 100f);
-                row.irradianceSq = row.irradianceWm2 * row.irradianceWm2;
-                row.tempSq = row.temperature2m * row.temperature2m;
-                row.hourSinIrr = row.hourSin * row.irradianceWm2;
-                
-                rows.add(row);
-            } catch (Exception e) {
-                Log.w(TAG, "Error parsing weather history row: " + line, e);
-            }
-        }
-        
-        reader.close();
-        Log.d(TAG, "Loaded " + rows.size() + " historical weather records");
-        return rows;
-    }
-    
-    /**
-     * Align historical Solarman and weather data
-     */
-    private List<HistoricalRow> alignHistData(List<HistoricalRow> solRows, List<HistoricalRow> weatherRows) {
-        List<HistoricalRow> aligned = new ArrayList<>();
-        
-        // Sort both by time
-        solRows.sort((a, b) -> a.time.compareTo(b.time));
-        weatherRows.sort((a, b) -> a.time.compareTo(b.time));
-        
-        // Merge with 1 hour tolerance
-        for (HistoricalRow solRow : solRows) {
-            HistoricalRow bestWeather = null;
-            long minDiff = Long.MAX_VALUE;
-            
-            for (HistoricalRow weatherRow : weatherRows) {
-                long diff = Math.abs(java.time.Duration.between(solRow.time, weatherRow.time).toMinutes());
-                if (diff <= 60 && diff < minDiff) {
-                    minDiff = diff;
-                    bestWeather = weatherRow;
-                }
-            }
-            
-            if (bestWeather != null && bestWeather.irradianceWm2 > 0 && 
-                bestWeather.temperature2m != 0 && bestWeather.cloudCover >= 0) {
-                // Merge data
-                HistoricalRow merged = new HistoricalRow();
-                merged.time = solRow.time;
-                merged.powerKw = solRow.powerKw;
-                merged.batterySoc = solRow.batterySoc;
-                merged.batteryPower = solRow.batteryPower;
-                merged.gridPower = solRow.gridPower;
-                merged.loadPower = solRow.loadPower;
-                merged.temperature2m = bestWeather.temperature2m;
-                merged.cloudCover = bestWeather.cloudCover;
-                merged.irradianceWm2 = bestWeather.irradianceWm2;
-                merged.solarElevNorm = bestWeather.solarElevNorm;
-                merged.hourSin = bestWeather.hourSin;
-                merged.hourCos = bestWeather.hourCos;
-                merged.daySin = bestWeather.daySin;
-                merged.dayCos = bestWeather.dayCos;
-                merged.effectiveIrradiance = bestWeather.effectiveIrradiance;
-                merged.irradianceSq = bestWeather.irradianceSq;
-                merged.tempSq = bestWeather.tempSq;
-                merged.hourSinIrr = bestWeather.hourSinIrr;
-                aligned.add(merged);
-            }
+            HistoricalRow merged = new HistoricalRow();
+            merged.time = snapshot.getStationTime(i);
+            merged.powerKw = Math.max(0f, snapshot.getPvPowerKw(i));
+            merged.batterySoc = snapshot.getBatterySoc(i);
+            merged.batteryPower = snapshot.getBatteryPowerRaw(i);
+            merged.gridPower = snapshot.getGridPower(i);
+            merged.loadPower = snapshot.getLoadPower(i);
+            merged.temperature2m = weather.temperature2m;
+            merged.cloudCover = weather.cloudCover;
+            merged.irradianceWm2 = weather.irradianceWm2;
+            merged.solarElevNorm = weather.solarElevNorm;
+            merged.hourSin = weather.hourSin;
+            merged.hourCos = weather.hourCos;
+            merged.daySin = weather.daySin;
+            merged.dayCos = weather.dayCos;
+            merged.effectiveIrradiance = weather.effectiveIrradiance;
+            merged.irradianceSq = weather.irradianceSq;
+            merged.tempSq = weather.tempSq;
+            merged.hourSinIrr = weather.hourSinIrr;
+            aligned.add(merged);
         }
         
         // Add lags
@@ -1455,6 +872,37 @@ public class ForecastProcessor {
         return aligned;
     }
     
+    /**
+     * Create weather history row with solar geometry and derived features
+     */
+    private HistoricalRow createWeatherHistRow(HistorySnapshot snapshot, int index, StationConfig config) {
+        HistoricalRow row = new HistoricalRow();
+        row.time = snapshot.getWeatherTime(index);
+        row.temperature2m = snapshot.getTemperature2m(index);
+        row.cloudCover = snapshot.getCloudCover(index);
+        row.irradianceWm2 = snapshot.getIrradianceWm2(index);
+        
+        // Add solar geometry
+        float solarElev = calculateSolarElevation(
+            config.getLatitude(), config.getLongitude(), row.time);
+        row.solarElevNorm = Math.max(0f, Math.max(-5f, Math.min(90f, solarElev))) / 90f;
+        
+        // Calculate derived features
+        int hour = row.time.getHour();
+        row.hourSin = (float) Math.sin(2 * Math.PI * hour / 24.0);
+        row.hourCos = (float) Math.cos(2 * Math.PI * hour / 24.0);
+        
+        int dayOfYear = row.time.getDayOfYear();
+        row.daySin = (float) Math.sin(2 * Math.PI * dayOfYear / 365.0);
+        row.dayCos = (float) Math.cos(2 * Math.PI * dayOfYear / 365.0);
+        
+        row.effectiveIrradiance = row.irradianceWm2 * (1 - row.cloudCover / 100f);
+        row.irradianceSq = row.irradianceWm2 * row.irradianceWm2;
+        row.tempSq = row.temperature2m * row.temperature2m;
+        row.hourSinIrr = row.hourSin * row.irradianceWm2;
+        return row;
+    }
+    
     /**
      * Compute linear calibration on historical data
      */
@@ -1463,17 +911,16 @@ public class ForecastProcessor {
         float capKw, float performanceRatio) {
         
         try {
-            // Load historical data
-            List<HistoricalRow> solRows = loadSolarmanHist();
-            List<HistoricalRow> weatherRows = loadWeatherHist(config);
+            // Load historical data (shared with battery analysis)
+            HistorySnapshot snapshot = AnalysisCoordinator.getInstance(context).getSnapshot();
             
-            if (solRows.isEmpty() || weatherRows.isEmpty()) {
+            if (snapshot.getStationRowCount() == 0 || snapshot.getWeatherRowCount() == 0) {
                 Log.w(TAG, "No history for calibration. Using identity (a=1, b=0).");
                 return new CalibrationResult(1.0f, 0.0f);
             }
             
             // Align data
-            List<HistoricalRow> aligned = alignHistData(solRows, weatherRows);
+            List<HistoricalRow> aligned = buildAlignedHistory(snapshot, config);
             if (aligned.isEmpty()) {
                 Log.w(TAG, "No overlapping history. Using identity calibration.");
                 return new CalibrationResult(1.0f, 0.0f);
@@ -1486,7 +933,6 @@ public class ForecastProcessor {
             }
             
             // Prepare features and predictions
-            List<Float> yTrueList = new ArrayList<>();
             List<Float> yPredList = new ArrayList<>();
             List<Float> irrList = new ArrayList<>();
             
@@ -1513,32 +959,38 @@ public class ForecastProcessor {
                 }
                 
                 yPredList.add(predKw);
-                yTrueList.add(row.powerKw);
                 irrList.add(row.irradianceWm2);
             }
             
-            // Filter by daylight (irr > 50 W/m²) and convert to daily energy
-            Map<LocalDate, Float> dailyTrueKwh = new HashMap<>();
+            // Predicted daily energy over daylight rows (irr > 50 W/m²)
             Map<LocalDate, Float> dailyPredKwh = new HashMap<>();
+            Map<LocalDate, Integer> alignedPerDay = new HashMap<>();
             
             for (int i = 0; i < aligned.size(); i++) {
+                LocalDate date = aligned.get(i).time.toLocalDate();
+                alignedPerDay.merge(date, 1, Integer::sum);
                 if (irrList.get(i) > 50f) {
-                    LocalDate date = aligned.get(i).time.toLocalDate();
-                    float trueKwh = yTrueList.get(i) * (5f / 60f);
                     float predKwh = yPredList.get(i) * (5f / 60f);
-                    dailyTrueKwh.put(date, dailyTrueKwh.getOrDefault(date, 0f) + trueKwh);
-                    dailyPredKwh.put(date, dailyPredKwh.getOrDefault(date, 0f) + predKwh);
+                    dailyPredKwh.merge(date, predKwh, Float::sum);
                 }
             }
             
-            // Filter days with positive true energy
+            // Measured daily energy comes from the telemetry rollups; days the weather
+            // covers only partly are skipped, as the prediction would miss part of the day
             List<Float> dailyTrue = new ArrayList<>();
             List<Float> dailyPred = new ArrayList<>();
-            for (LocalDate date : dailyTrueKwh.keySet()) {
-                float trueKwh = dailyTrueKwh.get(date);
-                if (trueKwh > 0) {
-                    dailyTrue.add(trueKwh);
-                    dailyPred.add(dailyPredKwh.get(date));
+            long fromEpoch = aligned.get(0).time.toLocalDate().atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            long toEpoch = aligned.get(aligned.size() - 1).time.toEpochSecond(ZoneOffset.UTC);
+            for (TelemetryDaily day : new TelemetryRepository(context).getDailyRollupsSync(fromEpoch, toEpoch)) {
+                Float predKwh = dailyPredKwh.get(day.getDay());
+                Integer alignedRows = alignedPerDay.get(day.getDay());
+                if (predKwh == null || alignedRows == null
+                        || alignedRows < day.getSampleCount() * MIN_CALIBRATION_DAY_COVERAGE) {
+                    continue;
+                }
+                if (day.getPvEnergyKwh() > 0) {
+                    dailyTrue.add((float) day.getPvEnergyKwh());
+                    dailyPred.add(predKwh);
                 }
             }
             
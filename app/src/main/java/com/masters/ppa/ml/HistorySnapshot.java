@@ -0,0 +1,396 @@
+package com.masters.ppa.ml;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.masters.ppa.data.api.HourlyWeather;
+import com.masters.ppa.data.api.WeatherStore;
+import com.masters.ppa.data.repository.TelemetryRepository;
+import com.masters.ppa.utils.DateUtils;
+import com.masters.ppa.utils.PpaBinFile;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Immutable, time-sorted view of station and weather history shared by the analysis jobs.
+ * Station rows are aligned to the nearest weather row (1 hour tolerance) once at load time;
+ * only station rows that can align with a weather row are loaded from the telemetry store.
+ */
+public final class HistorySnapshot {
+
+    private static final String TAG = "HistorySnapshot";
+
+    static final String STATION_CSV = "csv/station_data.csv";
+    static final String WEATHER_CSV = "csv/weather_data.csv";
+    static final String WEATHER_CSV_FALLBACK = "csv/weather/weather_last_max_period.csv";
+
+    private static final long ALIGN_TOLERANCE_MINUTES = 60;
+
+    // Station columns (sorted by time)
+    private final int stationRowCount;
+    private final LongBuffer stationEpochSeconds;
+    private final FloatBuffer pvPowerKw;
+    private final FloatBuffer batterySoc;
+    private final FloatBuffer batteryPowerRaw;
+    private final FloatBuffer batteryTempC;
+    private final FloatBuffer gridPower;
+    private final FloatBuffer loadPower;
+
+    // Weather columns (sorted by time)
+    private final LocalDateTime[] weatherTimes;
+    private final float[] temperature2m;
+    private final float[] cloudCover;
+    private final float[] irradianceWm2;
+
+    // Station row -> weather row, -1 when nothing within tolerance
+    private final int[] nearestWeather;
+    private final int[] nearestValidWeather;
+
+    // Telemetry store version and weather file stamp used to detect stale snapshots
+    private final long stationModificationCount;
+    private final FileStamp weatherStamp;
+
+    private HistorySnapshot(PpaBinFile.Columns station, WeatherColumns weather,
+                            long stationModificationCount, FileStamp weatherStamp) throws Exception {
+        this.stationRowCount = station.getRowCount();
+        this.stationEpochSeconds = station.getLongColumn(StationHistoryLoader.COL_TIME);
+        this.pvPowerKw = station.getFloatColumn(StationHistoryLoader.COL_PV_POWER_KW);
+        this.batterySoc = station.getFloatColumn(StationHistoryLoader.COL_BATTERY_SOC);
+        this.batteryPowerRaw = station.getFloatColumn(StationHistoryLoader.COL_BATTERY_POWER);
+        this.batteryTempC = station.getFloatColumn(StationHistoryLoader.COL_BATTERY_TEMP);
+        this.gridPower = station.getFloatColumn(StationHistoryLoader.COL_GRID_POWER);
+        this.loadPower = station.getFloatColumn(StationHistoryLoader.COL_LOAD_POWER);
+        this.weatherTimes = weather.times;
+        this.temperature2m = weather.temperature2m;
+        this.cloudCover = weather.cloudCover;
+        this.irradianceWm2 = weather.irradianceWm2;
+        this.stationModificationCount = stationModificationCount;
+        this.weatherStamp = weatherStamp;
+
+        boolean[] valid = new boolean[weatherTimes.length];
+        for (int i = 0; i < valid.length; i++) {
+            valid[i] = isValidWeather(i);
+        }
+        this.nearestWeather = alignNearest(stationEpochSeconds, stationRowCount, weatherTimes, null);
+        this.nearestValidWeather = alignNearest(stationEpochSeconds, stationRowCount, weatherTimes, valid);
+    }
+
+    /**
+     * Load snapshot; the weather history is parsed while the telemetry store is prepared, then only
+     * the station rows within the weather range (plus alignment tolerance) are queried
+     */
+    static HistorySnapshot load(Context context, ExecutorService loaderExecutor) throws Exception {
+        long start = System.currentTimeMillis();
+        File weatherFile = resolveWeatherFile(context);
+        long modificationCount = TelemetryRepository.getModificationCount();
+
+        Future<WeatherColumns> weatherFuture = loaderExecutor.submit(() -> parseWeather(weatherFile));
+        StationHistoryLoader.prepare(context);
+        WeatherColumns weather = weatherFuture.get();
+
+        long fromEpoch = Long.MIN_VALUE;
+        long toEpoch = Long.MAX_VALUE;
+        if (weather.times.length > 0) {
+            long tolerance = ALIGN_TOLERANCE_MINUTES * 60;
+            fromEpoch = weather.times[0].toEpochSecond(ZoneOffset.UTC) - tolerance;
+            toEpoch = weather.times[weather.times.length - 1].toEpochSecond(ZoneOffset.UTC) + tolerance;
+        }
+        PpaBinFile.Columns station = StationHistoryLoader.load(context, fromEpoch, toEpoch);
+
+        HistorySnapshot snapshot = new HistorySnapshot(station, weather,
+            modificationCount, FileStamp.of(weatherFile));
+        Log.d(TAG, "Snapshot loaded: " + snapshot.getStationRowCount() + " station rows, " +
+            snapshot.getWeatherRowCount() + " weather rows in " +
+            (System.currentTimeMillis() - start) + " ms");
+        return snapshot;
+    }
+
+    /**
+     * Check that telemetry and the weather file have not changed since the snapshot was loaded
+     */
+    boolean isCurrent(Context context) {
+        return stationModificationCount == TelemetryRepository.getModificationCount()
+            && weatherStamp.matches(resolveWeatherFile(context));
+    }
+
+    /**
+     * Weather history source: the archive store, else a CSV from before the archive existed
+     */
+    static File resolveWeatherFile(Context context) {
+        File weatherFile = WeatherStore.fileFor(context, WeatherStore.HISTORY);
+        if (weatherFile.exists()) {
+            return weatherFile;
+        }
+        weatherFile = new File(context.getFilesDir(), WEATHER_CSV);
+        if (!weatherFile.exists()) {
+            weatherFile = new File(context.getFilesDir(), WEATHER_CSV_FALLBACK);
+        }
+        return weatherFile;
+    }
+
+    /**
+     * True if there is weather history to analyse
+     */
+    public static boolean hasWeatherHistory(Context context) {
+        File weatherFile = resolveWeatherFile(context);
+        return weatherFile.exists() && weatherFile.length() > 0;
+    }
+
+    public int getStationRowCount() {
+        return stationRowCount;
+    }
+
+    public int getWeatherRowCount() {
+        return weatherTimes.length;
+    }
+
+    public LocalDateTime getStationTime(int i) {
+        return LocalDateTime.ofEpochSecond(stationEpochSeconds.get(i), 0, ZoneOffset.UTC);
+    }
+    public float getPvPowerKw(int i) { return pvPowerKw.get(i); }
+    public float getBatterySoc(int i) { return batterySoc.get(i); }
+    public float getBatteryPowerRaw(int i) { return batteryPowerRaw.get(i); }
+    public float getBatteryTempC(int i) { return batteryTempC.get(i); }
+    public float getGridPower(int i) { return gridPower.get(i); }
+    public float getLoadPower(int i) { return loadPower.get(i); }
+
+    public LocalDateTime getWeatherTime(int i) { return weatherTimes[i]; }
+    public float getTemperature2m(int i) { return temperature2m[i]; }
+    public float getCloudCover(int i) { return cloudCover[i]; }
+    public float getIrradianceWm2(int i) { return irradianceWm2[i]; }
+
+    /**
+     * Nearest weather row for a station row, or -1 if none within 1 hour
+     */
+    public int getNearestWeather(int stationIndex) {
+        return nearestWeather[stationIndex];
+    }
+
+    /**
+     * Nearest weather row with usable irradiance/temperature/cloud values, or -1
+     */
+    public int getNearestValidWeather(int stationIndex) {
+        return nearestValidWeather[stationIndex];
+    }
+
+    /**
+     * Weather row has positive irradiance, non-zero temperature and valid cloud cover
+     */
+    public boolean isValidWeather(int weatherIndex) {
+        return irradianceWm2[weatherIndex] > 0
+            && temperature2m[weatherIndex] != 0
+            && cloudCover[weatherIndex] >= 0;
+    }
+
+    /**
+     * Two-pointer nearest-time match over sorted arrays (earlier row wins ties)
+     */
+    private static int[] alignNearest(LongBuffer times, int count, LocalDateTime[] candidates, boolean[] include) {
+        int[] result = new int[count];
+        int[] index = filterIndices(candidates.length, include);
+        long[] candidateSeconds = new long[index.length];
+        for (int k = 0; k < index.length; k++) {
+            candidateSeconds[k] = candidates[index[k]].toEpochSecond(ZoneOffset.UTC);
+        }
+
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            long t = times.get(i);
+            while (j + 1 < candidateSeconds.length && candidateSeconds[j + 1] <= t) {
+                j++;
+            }
+            int best = -1;
+            long bestDiff = Long.MAX_VALUE;
+            for (int k = j; k <= j + 1 && k < candidateSeconds.length; k++) {
+                long diffMinutes = Math.abs(candidateSeconds[k] - t) / 60;
+                if (diffMinutes <= ALIGN_TOLERANCE_MINUTES && diffMinutes < bestDiff) {
+                    bestDiff = diffMinutes;
+                    best = index[k];
+                }
+            }
+            result[i] = best;
+        }
+        return result;
+    }
+
+    private static int[] filterIndices(int length, boolean[] include) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (include == null || include[i]) count++;
+        }
+        int[] index = new int[count];
+        int k = 0;
+        for (int i = 0; i < length; i++) {
+            if (include == null || include[i]) index[k++] = i;
+        }
+        return index;
+    }
+
+    /**
+     * Read weather history (archive store or CSV) into sorted columns
+     */
+    private static WeatherColumns parseWeather(File weatherFile) throws Exception {
+        if (weatherFile.getName().endsWith(PpaBinFile.EXTENSION)) {
+            return readWeatherStore(weatherFile);
+        }
+        List<float[]> values = new ArrayList<>();
+        List<LocalDateTime> times = new ArrayList<>();
+
+        if (weatherFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(weatherFile)))) {
+                String header = reader.readLine();
+                if (header != null) {
+                    Map<String, Integer> colIndex = indexHeader(header);
+                    int idxTime = colIndex.getOrDefault("time", -1);
+                    int idxTemp = colIndex.getOrDefault("temperature_2m", -1);
+                    int idxCloud = colIndex.getOrDefault("cloud_cover", -1);
+                    int idxIrr = colIndex.getOrDefault("shortwave_radiation",
+                        colIndex.getOrDefault("irradiance_wm2", -1));
+
+                    String line;
+                    while (idxTime >= 0 && (line = reader.readLine()) != null) {
+                        String[] parts = line.split(",");
+                        if (parts.length < 3 || idxTime >= parts.length) continue;
+
+                        LocalDateTime time = parseTime(parts[idxTime].trim());
+                        if (time == null) continue;
+
+                        times.add(time);
+                        values.add(new float[]{
+                            column(parts, idxTemp, 0f),
+                            column(parts, idxCloud, 0f),
+                            column(parts, idxIrr, 0f)
+                        });
+                    }
+                }
+            }
+        } else {
+            Log.w(TAG, "Weather history CSV not found");
+        }
+
+        Integer[] order = sortedOrder(times);
+        WeatherColumns columns = new WeatherColumns(order.length);
+        for (int k = 0; k < order.length; k++) {
+            float[] row = values.get(order[k]);
+            columns.times[k] = times.get(order[k]);
+            columns.temperature2m[k] = row[0];
+            columns.cloudCover[k] = row[1];
+            columns.irradianceWm2[k] = row[2];
+        }
+        return columns;
+    }
+
+    /**
+     * Archived weather is already sorted and deduplicated by hour; missing values read as 0
+     */
+    private static WeatherColumns readWeatherStore(File weatherFile) {
+        HourlyWeather weather = WeatherStore.load(weatherFile);
+        int size = weather != null ? weather.size() : 0;
+        int idxTemp = HourlyWeather.columnIndex(HourlyWeather.COL_TEMPERATURE);
+        int idxCloud = HourlyWeather.columnIndex(HourlyWeather.COL_CLOUD_COVER);
+        int idxIrr = HourlyWeather.columnIndex(HourlyWeather.COL_SHORTWAVE_RADIATION);
+
+        WeatherColumns columns = new WeatherColumns(size);
+        for (int i = 0; i < size; i++) {
+            columns.times[i] = weather.getTime(i);
+            columns.temperature2m[i] = weather.get(idxTemp, i, 0f);
+            columns.cloudCover[i] = weather.get(idxCloud, i, 0f);
+            columns.irradianceWm2[i] = weather.get(idxIrr, i, 0f);
+        }
+        return columns;
+    }
+
+    static Map<String, Integer> indexHeader(String header) {
+        String[] headerCols = header.split(",");
+        Map<String, Integer> colIndex = new HashMap<>();
+        for (int i = 0; i < headerCols.length; i++) {
+            colIndex.put(headerCols[i].trim().toLowerCase(), i);
+        }
+        return colIndex;
+    }
+
+    static Integer[] sortedOrder(List<LocalDateTime> times) {
+        Integer[] order = new Integer[times.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        java.util.Arrays.sort(order, (a, b) -> times.get(a).compareTo(times.get(b)));
+        return order;
+    }
+
+    /**
+     * Parse time as Unix timestamp (seconds or millis) or one of the known date-time formats
+     */
+    static LocalDateTime parseTime(String timeStr) {
+        return DateUtils.parseLocalDateTime(timeStr);
+    }
+
+    static float column(String[] parts, int idx, float defaultValue) {
+        return (idx >= 0 && idx < parts.length) ? parseFloat(parts[idx], defaultValue) : defaultValue;
+    }
+
+    static float parseFloat(String str, float defaultValue) {
+        if (str == null || str.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Float.parseFloat(str.trim().replace(",", "."));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Size and modification time of a source file
+     */
+    private static final class FileStamp {
+        final String path;
+        final long length;
+        final long lastModified;
+
+        private FileStamp(String path, long length, long lastModified) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        static FileStamp of(File file) {
+            return file.exists()
+                ? new FileStamp(file.getAbsolutePath(), file.length(), file.lastModified())
+                : new FileStamp(file.getAbsolutePath(), -1, -1);
+        }
+
+        boolean matches(File file) {
+            FileStamp other = of(file);
+            return path.equals(other.path) && length == other.length && lastModified == other.lastModified;
+        }
+    }
+
+    private static final class WeatherColumns {
+        final LocalDateTime[] times;
+        final float[] temperature2m;
+        final float[] cloudCover;
+        final float[] irradianceWm2;
+
+        WeatherColumns(int size) {
+            times = new LocalDateTime[size];
+            temperature2m = new float[size];
+            cloudCover = new float[size];
+            irradianceWm2 = new float[size];
+        }
+    }
+}
@@ -45,7 +45,8 @@ public class ModelLoader {
         }
     }
 
-    private static ModelLoader instance;
+    // One loader per model type so forecast and battery inference can run concurrently
+    private static final Map<ModelType, ModelLoader> instances = new java.util.EnumMap<>(ModelType.class);
     private final Context context;
     private Interpreter tflite;
     private FlexDelegate flexDelegate; // For Select TF Ops support (battery model)
@@ -63,10 +64,19 @@ public class ModelLoader {
     }
 
     public static synchronized ModelLoader getInstance(Context context) {
-        if (instance == null) {
-            instance = new ModelLoader(context);
+        return getInstance(context, ModelType.PREDICTION);
+    }
+
+    /**
+     * Get loader dedicated to the given model type
+     */
+    public static synchronized ModelLoader getInstance(Context context, ModelType modelType) {
+        ModelLoader loader = instances.get(modelType);
+        if (loader == null) {
+            loader = new ModelLoader(context);
+            instances.put(modelType, loader);
         }
-        return instance;
+        return loader;
     }
 
     /**
@@ -74,7 +84,7 @@ public class ModelLoader {
      * @param modelType Type of model to load (defaults to PREDICTION)
      * @return true if loaded successfully
      */
-    public boolean loadModel(ModelType modelType) {
+    public synchronized boolean loadModel(ModelType modelType) {
         if (modelType == null) {
             modelType = ModelType.PREDICTION;
         }
@@ -224,7 +234,8 @@ public class ModelLoader {
             return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
         } catch (ClassCastException e) {
             // Fallback for non-FileInputStream assets
-            java.io.File file = new java.io.File(context.getFilesDir(), "temp_model.tflite");
+            java.io.File file = new java.io.File(context.getFilesDir(),
+                "temp_model_" + path.replace('/', '_'));
             try (InputStream in = context.getAssets().open(path);
                  java.io.FileOutputStream out = new java.io.FileOutputStream(file)) {
                 byte[] buffer = new byte[1024];
@@ -292,7 +303,7 @@ public class ModelLoader {
      * @param rawInput Input features in EXACT order as features list from scaler.json
      * @return Predicted power in WATTS (W), without cap applied
      */
-    public float getRawModelPrediction(float[] rawInput) {
+    public synchronized float getRawModelPrediction(float[] rawInput) {
         if (tflite == null) {
             Log.e(TAG, "Model not loaded");
             return -1;
@@ -339,7 +350,7 @@ public class ModelLoader {
      *                  Features should already be normalized except for is_valid channel
      * @return Result containing class predictions, stress, and utilization arrays
      */
-    public BatteryPredictionResult predictBattery(float[][][] sequences) {
+    public synchronized BatteryPredictionResult predictBattery(float[][][] sequences) {
         if (tflite == null || currentModelType != ModelType.BATTERY) {
             Log.e(TAG, "Battery model not loaded");
             return null;
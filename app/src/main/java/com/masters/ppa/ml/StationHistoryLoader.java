@@ -0,0 +1,95 @@
+package com.masters.ppa.ml;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.masters.ppa.data.model.StationTelemetry;
+import com.masters.ppa.data.repository.TelemetryRepository;
+import com.masters.ppa.utils.PpaBinFile;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Station history columns for analysis, read from the telemetry store for a time window.
+ * An existing station_data.csv is imported into the store once, the first time it is needed.
+ */
+public final class StationHistoryLoader {
+
+    private static final String TAG = "StationHistoryLoader";
+
+    // Column names of the loaded columns
+    static final String COL_TIME = "time_epoch_s";
+    static final String COL_PV_POWER_KW = "pv_power_kw";
+    static final String COL_BATTERY_SOC = "battery_soc";
+    static final String COL_BATTERY_POWER = "battery_power_raw";
+    static final String COL_BATTERY_TEMP = "battery_temp_c";
+    static final String COL_GRID_POWER = "grid_power";
+    static final String COL_LOAD_POWER = "load_power";
+
+    private StationHistoryLoader() {
+    }
+
+    public static File getCsvFile(Context context) {
+        return new File(context.getFilesDir(), HistorySnapshot.STATION_CSV);
+    }
+
+    /**
+     * Check whether any station history is available (stored or still waiting for import)
+     * (must be called from background thread)
+     */
+    public static boolean hasData(Context context) {
+        return getCsvFile(context).exists() || new TelemetryRepository(context).getEpochRangeSync() != null;
+    }
+
+    /**
+     * Move history kept only in station_data.csv into the store (once) and drop the old binary
+     * sidecar (must be called from background thread, before load)
+     */
+    static void prepare(Context context) {
+        File csvFile = getCsvFile(context);
+        int imported = new TelemetryRepository(context).importCsvIfEmpty(csvFile);
+        if (imported > 0) {
+            Log.d(TAG, "Imported " + imported + " station rows from " + csvFile.getName());
+        }
+        File sidecar = PpaBinFile.sidecarFor(csvFile);
+        if (sidecar.exists() && sidecar.delete()) {
+            Log.d(TAG, "Deleted obsolete station cache " + sidecar.getName());
+        }
+    }
+
+    /**
+     * Load time-sorted station columns for [fromEpoch, toEpoch] (seconds)
+     * (must be called from background thread)
+     */
+    static PpaBinFile.Columns load(Context context, long fromEpoch, long toEpoch) {
+        List<StationTelemetry> rows = new TelemetryRepository(context).getRangeSync(fromEpoch, toEpoch);
+        int rowCount = rows.size();
+        long[] epochSeconds = new long[rowCount];
+        float[][] columns = new float[6][rowCount];
+        for (int k = 0; k < rowCount; k++) {
+            StationTelemetry row = rows.get(k);
+            epochSeconds[k] = row.getEpoch();
+            columns[0][k] = row.getPvPowerKw();
+            columns[1][k] = row.getBatterySoc();
+            columns[2][k] = row.getBatteryPowerRaw();
+            columns[3][k] = row.getBatteryTempC();
+            columns[4][k] = row.getGridPower();
+            columns[5][k] = row.getLoadPower();
+        }
+
+        Map<String, long[]> longs = new LinkedHashMap<>();
+        longs.put(COL_TIME, epochSeconds);
+        Map<String, float[]> floats = new LinkedHashMap<>();
+        floats.put(COL_PV_POWER_KW, columns[0]);
+        floats.put(COL_BATTERY_SOC, columns[1]);
+        floats.put(COL_BATTERY_POWER, columns[2]);
+        floats.put(COL_BATTERY_TEMP, columns[3]);
+        floats.put(COL_GRID_POWER, columns[4]);
+        floats.put(COL_LOAD_POWER, columns[5]);
+        Log.d(TAG, "Loaded " + rowCount + " station rows from telemetry store");
+        return PpaBinFile.Columns.inMemory(rowCount, longs, floats);
+    }
+}
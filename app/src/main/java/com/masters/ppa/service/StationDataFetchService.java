@@ -20,6 +20,7 @@ import androidx.core.app.NotificationCompat;
 import com.masters.ppa.MainActivity;
 import com.masters.ppa.R;
 import com.masters.ppa.data.api.SolarmanStationDataService;
+import com.masters.ppa.ml.AnalysisCoordinator;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -99,6 +100,7 @@ public class StationDataFetchService extends Service {
                 @Override
                 public void onSuccess(String filePath, int rowCount, String firstTimestamp, String lastTimestamp) {
                     Log.d(TAG, "Fetch completed: " + rowCount + " rows");
+                    AnalysisCoordinator.getInstance(StationDataFetchService.this).invalidateSnapshot();
                     addProgressMessage("Data saved successfully");
                     updateNotification("Fetch completed", "Saved " + rowCount + " rows");
                     
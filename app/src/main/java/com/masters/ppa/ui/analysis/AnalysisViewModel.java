@@ -12,14 +12,20 @@ import com.masters.ppa.R;
 import com.masters.ppa.data.api.InverterApiService;
 import com.masters.ppa.data.model.GenerationData;
 import com.masters.ppa.data.model.InverterDataGroups;
+import com.masters.ppa.data.model.InverterMetric;
 import com.masters.ppa.data.model.SolarmanApiConfig;
 import com.masters.ppa.data.model.StationData;
 import com.masters.ppa.data.parser.InverterDataParser;
+import com.masters.ppa.data.parser.MetricClassificationRegistry;
 import com.masters.ppa.data.repository.GenerationDataRepository;
+import com.masters.ppa.data.repository.LiveSampleRepository;
 import com.masters.ppa.data.repository.SolarmanApiConfigRepository;
+import com.masters.ppa.data.repository.StationDataPager;
 import com.masters.ppa.data.repository.StationConfigRepository;
 import com.masters.ppa.data.repository.StationDataRepository;
+import com.masters.ppa.ml.AnalysisCoordinator;
 import com.masters.ppa.utils.FileUtils;
+import com.masters.ppa.utils.StateUtils;
 
 import org.json.JSONObject;
 
@@ -31,6 +37,9 @@ import java.util.Locale;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ViewModel for the Analysis screen
@@ -43,6 +52,7 @@ public class AnalysisViewModel extends AndroidViewModel {
     private final StationDataRepository stationDataRepository;
     private final GenerationDataRepository generationDataRepository;
     private final SolarmanApiConfigRepository solarmanApiConfigRepository;
+    private final LiveSampleRepository liveSampleRepository;
     private final InverterApiService inverterApiService;
     
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
@@ -51,7 +61,33 @@ public class AnalysisViewModel extends AndroidViewModel {
     private final MutableLiveData<InverterDataGroups> inverterData = new MutableLiveData<>();
     private final MutableLiveData<Date> inverterLastUpdated = new MutableLiveData<>();
     
+    // Combined forecast + battery analysis
+    private final MutableLiveData<Boolean> analysisRunning = new MutableLiveData<>(false);
+    private final MutableLiveData<String> analysisProgress = new MutableLiveData<>();
+    private final MutableLiveData<AnalysisCoordinator.CombinedResult> analysisResult = new MutableLiveData<>();
+    
     private final Executor executor = Executors.newSingleThreadExecutor();
+    
+    // Live inverter polling
+    public static final long DEFAULT_LIVE_POLL_INTERVAL_MS = 30 * 1000L;
+    private static final long MIN_LIVE_POLL_INTERVAL_MS = 10 * 1000L;
+    // Snapshot is written to the binary current-data file (StateUtils) at most this often while polling
+    private static final long PERSIST_INTERVAL_MS = 5 * 60 * 1000L;
+    
+    // Station data browser: one page is one day of 5-minute rows
+    private static final int STATION_PAGE_SIZE = 288;
+    private static final int STATION_MAX_PAGES = 5;
+    private StationDataPager stationDataPager;
+    
+    private final MutableLiveData<Boolean> livePolling = new MutableLiveData<>(false);
+    private final ScheduledExecutorService liveExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final Object inverterLock = new Object();
+    private ScheduledFuture<?> livePollTask;
+    private InverterDataGroups lastInverterData;
+    private InverterDataGroups lastPostedInverterData;
+    private InverterDataGroups unsavedInverterData;
+    private long lastPersistTime;
+    private boolean livePollFailing;
 
     public AnalysisViewModel(@NonNull Application application) {
         super(application);
@@ -59,6 +95,7 @@ public class AnalysisViewModel extends AndroidViewModel {
         stationDataRepository = new StationDataRepository(application);
         generationDataRepository = new GenerationDataRepository(application);
         solarmanApiConfigRepository = new SolarmanApiConfigRepository(application);
+        liveSampleRepository = new LiveSampleRepository(application);
         inverterApiService = new InverterApiService(application);
         initStationDataCheck();
     }
@@ -99,11 +136,59 @@ public class AnalysisViewModel extends AndroidViewModel {
     }
     
     /**
-     * Get all station data
+     * Get station data of the last days
+     * @return LiveData<List<StationData>>
+     */
+    public LiveData<List<StationData>> getRecentStationData(int days) {
+        return stationDataRepository.getRecentStationData(days);
+    }
+    
+    /**
+     * Paged station data for lists and charts, newest first; only a window of
+     * STATION_MAX_PAGES pages is held in memory. The first call loads the latest page.
      * @return LiveData<List<StationData>>
      */
-    public LiveData<List<StationData>> getAllStationData() {
-        return stationDataRepository.getAllStationData();
+    public LiveData<List<StationData>> getStationDataWindow() {
+        if (stationDataPager == null) {
+            stationDataPager = stationDataRepository.createPager(STATION_PAGE_SIZE, STATION_MAX_PAGES);
+            stationDataPager.loadInitial(null);
+        }
+        return stationDataPager.getWindow();
+    }
+    
+    /**
+     * @return true if older rows exist beyond the loaded window
+     */
+    public boolean hasOlderStationData() {
+        return stationDataPager != null && stationDataPager.hasOlder();
+    }
+    
+    /**
+     * Move the station data window to start at anchor (null = latest data)
+     */
+    public void jumpStationDataTo(Date anchor) {
+        if (stationDataPager == null) {
+            stationDataPager = stationDataRepository.createPager(STATION_PAGE_SIZE, STATION_MAX_PAGES);
+        }
+        stationDataPager.loadInitial(anchor);
+    }
+    
+    /**
+     * Load the next older page, e.g. when a list is scrolled near its end
+     */
+    public void loadOlderStationData() {
+        if (stationDataPager != null) {
+            stationDataPager.loadOlder();
+        }
+    }
+    
+    /**
+     * Load the next newer page, e.g. when a list is scrolled near its start
+     */
+    public void loadNewerStationData() {
+        if (stationDataPager != null) {
+            stationDataPager.loadNewer();
+        }
     }
     
     /**
@@ -154,6 +239,47 @@ public class AnalysisViewModel extends AndroidViewModel {
         return isLoading;
     }
     
+    /**
+     * Get whether the combined forecast and battery analysis is running
+     * @return LiveData<Boolean>
+     */
+    public LiveData<Boolean> getAnalysisRunning() {
+        return analysisRunning;
+    }
+    
+    /**
+     * Get latest progress message of the running analysis ("Forecast: ..." or "Battery: ...")
+     * @return LiveData<String>
+     */
+    public LiveData<String> getAnalysisProgress() {
+        return analysisProgress;
+    }
+    
+    /**
+     * Get result of the last combined analysis
+     * @return LiveData<CombinedResult>
+     */
+    public LiveData<AnalysisCoordinator.CombinedResult> getAnalysisResult() {
+        return analysisResult;
+    }
+    
+    /**
+     * Run forecast and battery analysis in parallel on one history snapshot and publish both
+     * results through getAnalysisResult; ignored while a run is in progress (call on main thread)
+     */
+    public void runAnalysis() {
+        if (Boolean.TRUE.equals(analysisRunning.getValue())) {
+            return;
+        }
+        analysisRunning.setValue(true);
+        AnalysisCoordinator.getInstance(getApplication()).analyseAll(
+            analysisProgress::postValue,
+            result -> {
+                analysisResult.setValue(result);
+                analysisRunning.setValue(false);
+            });
+    }
+    
     /**
      * Get operation success status
      * @return LiveData<Boolean>
@@ -226,10 +352,8 @@ public class AnalysisViewModel extends AndroidViewModel {
                 Future<JSONObject> dataFuture = inverterApiService.getCurrentDataAsync(config.getDeviceSn());
                 JSONObject response = dataFuture.get();
                 
-                // Parse response
-                InverterDataGroups groups = InverterDataParser.parseJsonResponse(response);
-                inverterData.postValue(groups);
-                inverterLastUpdated.postValue(new Date());
+                // Parse response (diffed against the previous snapshot, persisted right away)
+                InverterDataGroups groups = publishInverterData(response, true);
                 
                 operationSuccess.postValue(true);
                 operationMessage.postValue("Inverter data updated successfully");
@@ -246,6 +370,136 @@ public class AnalysisViewModel extends AndroidViewModel {
         });
     }
     
+    /**
+     * Diff response against the previous snapshot and publish it; unchanged polls only
+     * update the timestamp. Persistence is throttled unless forced.
+     */
+    private InverterDataGroups publishInverterData(JSONObject response, boolean forcePersist) throws Exception {
+        List<InverterMetric> metrics = InverterDataParser.parseMetrics(response);
+        InverterDataGroups groups;
+        synchronized (inverterLock) {
+            if (lastInverterData == null) {
+                groups = new InverterDataGroups();
+                for (InverterMetric metric : metrics) {
+                    groups.addMetric(metric);
+                }
+            } else {
+                groups = lastInverterData.updatedWith(metrics);
+            }
+            MetricClassificationRegistry.get().saveIfDirty();
+            lastInverterData = groups;
+            
+            boolean changed = groups.getChangedKeys() == null || !groups.getChangedKeys().isEmpty();
+            if (changed) {
+                liveSampleRepository.record(groups, System.currentTimeMillis());
+                // postValue keeps only the latest value - carry over changes not yet delivered
+                if (lastPostedInverterData != null && inverterData.getValue() != lastPostedInverterData) {
+                    groups.mergeChangesFrom(lastPostedInverterData);
+                }
+                lastPostedInverterData = groups;
+                inverterData.postValue(groups);
+                unsavedInverterData = groups;
+            }
+            persistInverterData(forcePersist);
+        }
+        inverterLastUpdated.postValue(new Date());
+        return groups;
+    }
+    
+    /**
+     * Write latest snapshot if forced or PERSIST_INTERVAL_MS passed since the last write
+     */
+    private void persistInverterData(boolean force) {
+        synchronized (inverterLock) {
+            if (unsavedInverterData == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (!force && now - lastPersistTime < PERSIST_INTERVAL_MS) {
+                return;
+            }
+            StateUtils.saveCurrentData(getApplication(), unsavedInverterData);
+            unsavedInverterData = null;
+            lastPersistTime = now;
+        }
+    }
+    
+    /**
+     * @return LiveData<Boolean> true while live polling is running
+     */
+    public LiveData<Boolean> isLivePolling() {
+        return livePolling;
+    }
+    
+    /**
+     * Poll current inverter data every intervalMs until stopped; only changed metrics are
+     * reported to observers (see InverterDataGroups.getChangedKeys())
+     */
+    public void startLivePolling(long intervalMs) {
+        long interval = Math.max(MIN_LIVE_POLL_INTERVAL_MS, intervalMs);
+        synchronized (liveExecutor) {
+            if (livePollTask != null) {
+                livePollTask.cancel(false);
+            }
+            livePollFailing = false;
+            livePollTask = liveExecutor.scheduleWithFixedDelay(this::pollInverterData,
+                0, interval, TimeUnit.MILLISECONDS);
+        }
+        livePolling.setValue(true);
+        Log.d(TAG, "Live polling started, interval " + interval + " ms");
+    }
+    
+    /**
+     * Stop live polling and write the latest snapshot
+     */
+    public void stopLivePolling() {
+        synchronized (liveExecutor) {
+            if (livePollTask == null) {
+                return;
+            }
+            livePollTask.cancel(false);
+            livePollTask = null;
+        }
+        livePolling.setValue(false);
+        liveExecutor.execute(() -> persistInverterData(true));
+        liveExecutor.execute(liveSampleRepository::flush);
+        Log.d(TAG, "Live polling stopped");
+    }
+    
+    private void pollInverterData() {
+        try {
+            SolarmanApiConfig config = solarmanApiConfigRepository.getSolarmanApiConfigSync();
+            if (config == null || config.getDeviceSn() == null || config.getDeviceSn().isEmpty()) {
+                throw new Exception("Solarman API configuration not found. Please configure in Settings.");
+            }
+            JSONObject response = inverterApiService.getCurrentDataAsync(config.getDeviceSn()).get();
+            publishInverterData(response, false);
+            livePollFailing = false;
+        } catch (Exception e) {
+            Log.w(TAG, "Live inverter poll failed", e);
+            // Report only the first failure of a streak
+            if (!livePollFailing) {
+                livePollFailing = true;
+                operationSuccess.postValue(false);
+                operationMessage.postValue("Live update failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        synchronized (liveExecutor) {
+            if (livePollTask != null) {
+                livePollTask.cancel(false);
+                livePollTask = null;
+            }
+        }
+        liveExecutor.execute(() -> persistInverterData(true));
+        liveExecutor.execute(liveSampleRepository::flush);
+        liveExecutor.shutdown();
+    }
+    
     /**
      * Refresh station data (now uses inverter API)
      */
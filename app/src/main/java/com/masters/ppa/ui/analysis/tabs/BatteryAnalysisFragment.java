@@ -1,5 +1,6 @@
 package com.masters.ppa.ui.analysis.tabs;
 
+import android.content.Context;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.os.Handler;
@@ -34,7 +35,10 @@ import com.github.mikephil.charting.formatter.ValueFormatter;
 import com.masters.ppa.MainActivity;
 import com.masters.ppa.R;
 import com.masters.ppa.databinding.FragmentBatteryAnalysisBinding;
+import com.masters.ppa.ml.AnalysisCoordinator;
 import com.masters.ppa.ml.BatteryProcessor;
+import com.masters.ppa.ml.HistorySnapshot;
+import com.masters.ppa.ml.StationHistoryLoader;
 import com.masters.ppa.ui.analysis.AnalysisViewModel;
 import com.masters.ppa.utils.ChartUtils;
 import com.masters.ppa.utils.FileUtils;
@@ -46,8 +50,6 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Fragment for the Battery Analysis tab in Analysis screen
@@ -59,8 +61,7 @@ public class BatteryAnalysisFragment extends Fragment {
 
     private FragmentBatteryAnalysisBinding binding;
     private AnalysisViewModel viewModel;
-    private BatteryProcessor batteryProcessor;
-    private ExecutorService executor;
+    private AnalysisCoordinator analysisCoordinator;
     private Handler mainHandler;
     
     // Class labels matching BatteryProcessor
@@ -87,11 +88,11 @@ public class BatteryAnalysisFragment extends Fragment {
         super.onViewCreated(view, savedInstanceState);
         viewModel = new ViewModelProvider(requireParentFragment()).get(AnalysisViewModel.class);
         
-        batteryProcessor = new BatteryProcessor(requireContext().getApplicationContext());
-        executor = Executors.newSingleThreadExecutor();
+        analysisCoordinator = AnalysisCoordinator.getInstance(requireContext());
         mainHandler = new Handler(Looper.getMainLooper());
         
         setupCharts();
+        setupObservers();
         setupListeners();
     }
     
@@ -120,6 +121,38 @@ public class BatteryAnalysisFragment extends Fragment {
         binding.chartSocTemp.setPinchZoom(false);
     }
     
+    /**
+     * Setup observers of the combined analysis run (started from this tab or the forecast tab)
+     */
+    private void setupObservers() {
+        viewModel.getAnalysisRunning().observe(getViewLifecycleOwner(), running -> {
+            if (Boolean.TRUE.equals(running)) {
+                binding.btnAnalyse.setEnabled(false);
+                showProgress("Analysis...", "Initializing...");
+            } else {
+                hideProgress();
+                binding.btnAnalyse.setEnabled(true);
+            }
+        });
+        
+        viewModel.getAnalysisProgress().observe(getViewLifecycleOwner(), message -> {
+            if (message != null) {
+                updateProgress("Analysis...", message);
+            }
+        });
+        
+        viewModel.getAnalysisResult().observe(getViewLifecycleOwner(), result -> {
+            if (result == null) {
+                return;
+            }
+            if (result.battery != null) {
+                displayResults(result.battery);
+            } else if (result.batteryError != null) {
+                showError("Analysis error: " + result.batteryError.getMessage());
+            }
+        });
+    }
+    
     /**
      * Setup button click listeners
      */
@@ -128,13 +161,14 @@ public class BatteryAnalysisFragment extends Fragment {
     }
     
     /**
-     * Run battery analysis
+     * Check data availability, then run forecast and battery analysis together
      */
     private void runAnalysis() {
-        // Check data availability first
-        executor.execute(() -> {
-            boolean hasStationData = checkDataFile("csv/station_data.csv");
-            boolean hasWeatherData = checkDataFile("csv/weather_data.csv");
+        // Taken on the main thread; the fragment may be detached when the check runs
+        Context appContext = requireContext().getApplicationContext();
+        analysisCoordinator.execute(() -> {
+            boolean hasStationData = StationHistoryLoader.hasData(appContext);
+            boolean hasWeatherData = HistorySnapshot.hasWeatherHistory(appContext);
             
             if (!hasStationData || !hasWeatherData) {
                 String message = "";
@@ -153,62 +187,10 @@ public class BatteryAnalysisFragment extends Fragment {
                 return;
             }
             
-            // Start analysis
-            mainHandler.post(() -> {
-                binding.btnAnalyse.setEnabled(false);
-                showProgress("Battery Analysis...", "Initializing...");
-                blockNavigation(true);
-                
-                // Set progress callback
-                batteryProcessor.setProgressCallback(message -> {
-                    mainHandler.post(() -> {
-                        if (binding != null && isAdded()) {
-                            updateProgress("Battery Analysis...", message);
-                        }
-                    });
-                });
-                
-                executor.execute(() -> {
-                    try {
-                        BatteryProcessor.BatteryResult result = batteryProcessor.runAnalysis();
-                        
-                        mainHandler.post(() -> {
-                            if (binding != null && isAdded()) {
-                                hideProgress();
-                                binding.btnAnalyse.setEnabled(true);
-                                blockNavigation(false);
-                                displayResults(result);
-                            }
-                        });
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error running battery analysis", e);
-                        mainHandler.post(() -> {
-                            if (binding != null && isAdded()) {
-                                hideProgress();
-                                binding.btnAnalyse.setEnabled(true);
-                                blockNavigation(false);
-                                showError("Analysis error: " + e.getMessage());
-                            }
-                        });
-                    }
-                });
-            });
+            mainHandler.post(viewModel::runAnalysis);
         });
     }
     
-    /**
-     * Check if data file exists and is not empty
-     */
-    private boolean checkDataFile(String relativePath) {
-        try {
-            java.io.File dataFile = new java.io.File(requireContext().getFilesDir(), relativePath);
-            return dataFile.exists() && dataFile.length() > 0;
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking data file: " + relativePath, e);
-            return false;
-        }
-    }
-    
     /**
      * Display analysis results
      */
@@ -624,9 +606,6 @@ public class BatteryAnalysisFragment extends Fragment {
     public void onDestroyView() {
         super.onDestroyView();
         blockNavigation(false);
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
         binding = null;
     }
 }
@@ -10,6 +10,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -25,9 +26,13 @@ import com.masters.ppa.utils.NetworkUtils;
 import com.masters.ppa.utils.StateUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Fragment for the Current Data tab in Analysis screen
@@ -41,6 +46,18 @@ public class CurrentDataFragment extends Fragment implements NetworkUtils.Networ
     private InverterMetricAdapter cumulativeSummaryAdapter;
     private InverterMetricAdapter advancedAdapter;
     private boolean isAdvancedExpanded = false;
+    private boolean liveModeEnabled = false;
+    // Set once the ViewModel delivered data, so a late saved snapshot does not overwrite it
+    private boolean hasLiveData;
+    
+    // Metrics shown in the power flow diagram (by key, or by name as fallback)
+    private static final Set<String> DIAGRAM_KEYS = new HashSet<>(Arrays.asList(
+        "PVTP", "Etdy_ge1", "B_left_cap1", "B_P1", "Etdy_cg1", "Etdy_dcg1", "PCC_AP1", "PCC_AP2", "PCC_AP3",
+        "t_gc_tdy1", "Etdy_pu1", "T_AC_OP", "AC1", "AC2", "AC3", "AV1", "AV2", "AV3", "Etdy_use1"));
+    private static final Set<String> DIAGRAM_NAMES = new HashSet<>(Arrays.asList(
+        "pv total power", "daily production (active)", "soc", "battery power", "daily charging energy",
+        "daily discharging energy", "daily grid feed-in", "daily energy purchased", "total ac output power",
+        "daily consumption"));
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -53,6 +70,7 @@ public class CurrentDataFragment extends Fragment implements NetworkUtils.Networ
         super.onViewCreated(view, savedInstanceState);
         viewModel = new ViewModelProvider(requireParentFragment()).get(AnalysisViewModel.class);
         
+        hasLiveData = false;
         setupRecyclerViews();
         setupObservers();
         setupListeners();
@@ -63,22 +81,24 @@ public class CurrentDataFragment extends Fragment implements NetworkUtils.Networ
     }
     
     /**
-     * Load saved state from SharedPreferences
+     * Load saved state in the background and show it unless live data arrived first
      */
     private void loadSavedState() {
-        InverterDataGroups savedGroups = StateUtils.loadCurrentData(requireContext());
-        if (savedGroups != null && !savedGroups.getAllMetrics().isEmpty()) {
+        StateUtils.loadCurrentDataAsync(requireContext(), (savedGroups, timestamp) -> {
+            if (binding == null || savedGroups == null || savedGroups.getAllMetrics().isEmpty()
+                    || hasLiveData) {
+                return;
+            }
             updateUI(savedGroups);
             binding.textNoData.setVisibility(View.GONE);
             
             // Update timestamp if available
-            long timestamp = StateUtils.getCurrentDataTimestamp(requireContext());
             if (timestamp > 0) {
                 binding.textLastUpdated.setText(getString(R.string.last_updated, 
                     FileUtils.formatDate(new java.util.Date(timestamp))));
                 binding.textLastUpdated.setVisibility(View.VISIBLE);
             }
-        }
+        });
     }
     
     /**
@@ -119,10 +139,10 @@ public class CurrentDataFragment extends Fragment implements NetworkUtils.Networ
         // Inverter data
         viewModel.getInverterData().observe(getViewLifecycleOwner(), groups -> {
             if (groups != null && !groups.getAllMetrics().isEmpty()) {
+                hasLiveData = true;
                 updateUI(groups);
                 binding.textNoData.setVisibility(View.GONE);
-                // Save state when data is updated
-                StateUtils.saveCurrentData(requireContext(), groups);
+                // State is persisted by the ViewModel (throttled while live polling)
             } else {
                 showNoData();
             }
@@ -143,6 +163,32 @@ public class CurrentDataFragment extends Fragment implements NetworkUtils.Networ
         });
         
         binding.btnMore.setOnClickListener(v -> toggleAdvancedInfo());
+        
+        binding.switchLive.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            liveModeEnabled = isChecked;
+            if (isChecked) {
+                viewModel.startLivePolling(AnalysisViewModel.DEFAULT_LIVE_POLL_INTERVAL_MS);
+            } else {
+                viewModel.stopLivePolling();
+            }
+        });
+    }
+    
+    @Override
+    public void onResume() {
+        super.onResume();
+        if (liveModeEnabled) {
+            viewModel.startLivePolling(AnalysisViewModel.DEFAULT_LIVE_POLL_INTERVAL_MS);
+        }
+    }
+    
+    @Override
+    public void onPause() {
+        super.onPause();
+        // Poll only while the tab is visible
+        if (liveModeEnabled) {
+            viewModel.stopLivePolling();
+        }
     }
     
     /**
@@ -155,8 +201,10 @@ public class CurrentDataFragment extends Fragment implements NetworkUtils.Networ
             binding.textSystemStatus.setText("Grid Status: " + gridStatus.getValue());
         }
         
-        // Update power flow diagram
-        updatePowerFlowDiagram(groups);
+        // Update power flow diagram (skipped when none of its metrics changed)
+        if (affectsPowerFlowDiagram(groups)) {
+            updatePowerFlowDiagram(groups);
+        }
         
         // Update status card
         updateStatusCard(groups);
@@ -187,6 +235,28 @@ public class CurrentDataFragment extends Fragment implements NetworkUtils.Networ
         binding.cardCumulativeSummary.setVisibility(View.VISIBLE);
     }
     
+    /**
+     * True if a metric used by the power flow diagram changed in this snapshot
+     */
+    private boolean affectsPowerFlowDiagram(InverterDataGroups groups) {
+        Set<String> changedKeys = groups.getChangedKeys();
+        if (changedKeys == null) {
+            return true;
+        }
+        for (String key : changedKeys) {
+            if (DIAGRAM_KEYS.contains(key)) {
+                return true;
+            }
+            InverterMetric metric = groups.getMetric(key);
+            // Removed metric (null) may have been a fallback by name
+            if (metric == null || (metric.getName() != null
+                    && DIAGRAM_NAMES.contains(metric.getName().toLowerCase(Locale.ROOT)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     /**
      * Update power flow diagram
      */
@@ -409,7 +479,7 @@ public class CurrentDataFragment extends Fragment implements NetworkUtils.Networ
      */
     private List<InverterMetric> filterPowerFlowMetrics(InverterDataGroups groups) {
         List<InverterMetric> filtered = new ArrayList<>();
-        java.util.Set<String> addedKeys = new java.util.HashSet<>();
+        Set<String> addedKeys = new HashSet<>();
         
         // Important keys for panels (PV) - only current values, no daily/cumulative
         String[] panelKeys = {"PVTP", "DP1", "DP2", "DV1", "DV2", "DC1", "DC2", "DPi_t1"};
@@ -511,9 +581,38 @@ public class CurrentDataFragment extends Fragment implements NetworkUtils.Networ
         
         private List<InverterMetric> metrics = new ArrayList<>();
         
+        /**
+         * Replace items; only rows whose metric changed are rebound
+         */
         public void setMetrics(List<InverterMetric> newMetrics) {
-            this.metrics = newMetrics != null ? newMetrics : new ArrayList<>();
-            notifyDataSetChanged();
+            List<InverterMetric> oldMetrics = metrics;
+            List<InverterMetric> updated = newMetrics != null ? newMetrics : new ArrayList<>();
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                    return oldMetrics.size();
+                }
+                
+                @Override
+                public int getNewListSize() {
+                    return updated.size();
+                }
+                
+                @Override
+                public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                    return Objects.equals(oldMetrics.get(oldPosition).getKey(),
+                        updated.get(newPosition).getKey());
+                }
+                
+                @Override
+                public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                    InverterMetric oldMetric = oldMetrics.get(oldPosition);
+                    InverterMetric newMetric = updated.get(newPosition);
+                    return oldMetric == newMetric || oldMetric.hasSameContent(newMetric);
+                }
+            });
+            this.metrics = updated;
+            diff.dispatchUpdatesTo(this);
         }
         
         @NonNull
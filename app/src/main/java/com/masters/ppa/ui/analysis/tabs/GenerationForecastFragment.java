@@ -47,8 +47,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Fragment for the Generation Forecast tab in Analysis screen
@@ -62,11 +60,13 @@ public class GenerationForecastFragment extends Fragment {
     private LineChart chart;
     private LineChart chartDaily;
     
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
     
     private static final int MAX_PROGRESS_MESSAGES = 10;
     
+    // Set once the database delivered rows, so a late saved snapshot does not overwrite them
+    private boolean hasLiveData;
+    
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -96,6 +96,7 @@ public class GenerationForecastFragment extends Fragment {
         // Hide operational warning by default
         binding.textOperationalWarning.setVisibility(View.GONE);
         
+        hasLiveData = false;
         setupChart();
         setupObservers();
         setupListeners();
@@ -105,21 +106,22 @@ public class GenerationForecastFragment extends Fragment {
     }
     
     /**
-     * Load saved state from SharedPreferences
+     * Load saved state in the background and show it unless live data arrived first
      */
     private void loadSavedState() {
-        List<GenerationData> savedData = StateUtils.loadForecastData(requireContext());
-        if (savedData != null && !savedData.isEmpty()) {
+        StateUtils.loadForecastDataAsync(requireContext(), (savedData, timestamp) -> {
+            if (binding == null || savedData == null || savedData.isEmpty() || hasLiveData) {
+                return;
+            }
             updateGenerationChart(savedData);
             
             // Update timestamp if available
-            long timestamp = StateUtils.getForecastDataTimestamp(requireContext());
             if (timestamp > 0) {
                 binding.textLastUpdated.setText(getString(R.string.last_updated, 
                     FileUtils.formatDate(new java.util.Date(timestamp))));
                 binding.textLastUpdated.setVisibility(View.VISIBLE);
             }
-        }
+        });
     }
     
     /**
@@ -158,6 +160,7 @@ public class GenerationForecastFragment extends Fragment {
         // Generation data
         viewModel.getAllGenerationData().observe(getViewLifecycleOwner(), generationDataList -> {
             if (generationDataList != null && !generationDataList.isEmpty()) {
+                hasLiveData = true;
                 updateGenerationChart(generationDataList);
                 // Save state when data is updated
                 StateUtils.saveForecastData(requireContext(), generationDataList);
@@ -166,11 +169,43 @@ public class GenerationForecastFragment extends Fragment {
         
         // Loading state
         viewModel.getIsLoading().observe(getViewLifecycleOwner(), isLoading -> {
-            binding.btnForecast.setEnabled(!isLoading);
+            binding.btnForecast.setEnabled(!isLoading
+                && !Boolean.TRUE.equals(viewModel.getAnalysisRunning().getValue()));
             if (progressBar != null) {
                 progressBar.setVisibility(isLoading ? View.VISIBLE : View.GONE);
             }
         });
+        
+        // Combined forecast + battery analysis (started from this tab or the battery tab)
+        viewModel.getAnalysisRunning().observe(getViewLifecycleOwner(), running -> {
+            boolean isRunning = Boolean.TRUE.equals(running);
+            binding.btnForecast.setEnabled(!isRunning
+                && !Boolean.TRUE.equals(viewModel.getIsLoading().getValue()));
+            if (isRunning) {
+                showProgress("Analysis...", "Initializing...");
+            } else {
+                hideProgress();
+            }
+            blockNavigation(isRunning);
+        });
+        
+        viewModel.getAnalysisProgress().observe(getViewLifecycleOwner(), message -> {
+            if (message != null) {
+                updateProgress("Analysis...", message);
+            }
+        });
+        
+        viewModel.getAnalysisResult().observe(getViewLifecycleOwner(), result -> {
+            if (result == null) {
+                return;
+            }
+            if (result.forecast != null) {
+                displayForecast(result.forecast);
+            } else if (result.forecastError != null) {
+                binding.textOperationalWarning.setVisibility(View.GONE);
+                showToast("Error during forecast: " + result.forecastError.getMessage());
+            }
+        });
     }
     
     /**
@@ -181,95 +216,55 @@ public class GenerationForecastFragment extends Fragment {
     }
     
     /**
-     * Run normal forecast using weather data from API
+     * Run forecast and battery analysis together; the results arrive through the view model
      */
     private void runForecast() {
         // Hide warning at the start of forecast
         binding.textOperationalWarning.setVisibility(View.GONE);
-        
-        binding.btnForecast.setEnabled(false);
-        showProgress("Forecast...", "Initializing...");
-        
-        // Block navigation during forecast
-        blockNavigation(true);
-
-        executor.execute(() -> {
-            try {
-                ForecastProcessor processor = new ForecastProcessor(requireContext().getApplicationContext());
-                
-                // Set progress callback
-                processor.setProgressCallback(message -> {
-                    mainHandler.post(() -> {
-                        if (binding != null && isAdded()) {
-                            updateProgress("Forecast...", message);
-                        }
-                    });
-                });
-                
-                ForecastProcessor.ForecastResult result = processor.runForecast();
-
-                // Calculate daily aggregation (kWh)
-                Map<LocalDate, Float> dateToEnergyKwh = new HashMap<>();
-                for (int i = 0; i < result.predictedPowerW.size(); i++) {
-                    LocalDate date = result.dates.get(i);
-                    float powerW = result.predictedPowerW.get(i);
-                    // Hourly data: daily energy increment (kWh) = powerW / 1000
-                    float energyKwh = powerW / 1000f;
-                    dateToEnergyKwh.put(date, dateToEnergyKwh.getOrDefault(date, 0f) + energyKwh);
-                }
-
-                // Find min and max daily energy
-                float minDailyKwh = Float.MAX_VALUE;
-                float maxDailyKwh = Float.MIN_VALUE;
-                for (Float dailyKwh : dateToEnergyKwh.values()) {
-                    if (dailyKwh < minDailyKwh) minDailyKwh = dailyKwh;
-                    if (dailyKwh > maxDailyKwh) maxDailyKwh = dailyKwh;
-                }
-                if (minDailyKwh == Float.MAX_VALUE) minDailyKwh = 0f;
-                if (maxDailyKwh == Float.MIN_VALUE) maxDailyKwh = 0f;
+        viewModel.runAnalysis();
+    }
+    
+    /**
+     * Show forecast charts, table and recommendations for a finished analysis
+     */
+    private void displayForecast(ForecastProcessor.ForecastResult result) {
+        // Calculate daily aggregation (kWh)
+        Map<LocalDate, Float> dateToEnergyKwh = new HashMap<>();
+        for (int i = 0; i < result.predictedPowerW.size(); i++) {
+            LocalDate date = result.dates.get(i);
+            float powerW = result.predictedPowerW.get(i);
+            // Hourly data: daily energy increment (kWh) = powerW / 1000
+            float energyKwh = powerW / 1000f;
+            dateToEnergyKwh.put(date, dateToEnergyKwh.getOrDefault(date, 0f) + energyKwh);
+        }
 
-                // Sort dates for chart
-                List<LocalDate> sortedDates = new ArrayList<>(dateToEnergyKwh.keySet());
-                sortedDates.sort(LocalDate::compareTo);
-                List<Float> dailyEnergyKwh = new ArrayList<>();
-                for (LocalDate date : sortedDates) {
-                    dailyEnergyKwh.add(dateToEnergyKwh.get(date));
-                }
+        // Find min and max daily energy
+        float minDailyKwh = Float.MAX_VALUE;
+        float maxDailyKwh = Float.MIN_VALUE;
+        for (Float dailyKwh : dateToEnergyKwh.values()) {
+            if (dailyKwh < minDailyKwh) minDailyKwh = dailyKwh;
+            if (dailyKwh > maxDailyKwh) maxDailyKwh = dailyKwh;
+        }
+        if (minDailyKwh == Float.MAX_VALUE) minDailyKwh = 0f;
+        if (maxDailyKwh == Float.MIN_VALUE) maxDailyKwh = 0f;
 
-                float finalMinDaily = minDailyKwh;
-                float finalMaxDaily = maxDailyKwh;
-                boolean finalOperationalDataFound = result.operationalDataFound;
-                boolean finalCalibrationPerformed = result.calibrationPerformed;
-                requireActivity().runOnUiThread(() -> {
-                    hideProgress();
-                    updateForecastCharts(result.predictedPowerW, result.dates, sortedDates, dailyEnergyKwh, "Forecast");
-                    updateForecastTable(result, sortedDates, dailyEnergyKwh);
-                    updateForecastRecommendations(result, sortedDates, dailyEnergyKwh);
-                    updateOperationalDataWarning(finalOperationalDataFound, finalCalibrationPerformed);
-                    if (tvSummary != null) {
-                        tvSummary.setText(String.format(Locale.getDefault(), 
-                            "Predicted daily energy: min %.2f kWh, max %.2f kWh", 
-                            finalMinDaily, finalMaxDaily));
-                    }
-                    binding.btnForecast.setEnabled(true);
-                    blockNavigation(false);
-                    
-                    // Save forecast result - convert to GenerationData list for saving
-                    // Note: Forecast result is different from GenerationData, but we save what we can
-                    // The chart data is already saved via updateGenerationChart when LiveData updates
-                });
+        // Sort dates for chart
+        List<LocalDate> sortedDates = new ArrayList<>(dateToEnergyKwh.keySet());
+        sortedDates.sort(LocalDate::compareTo);
+        List<Float> dailyEnergyKwh = new ArrayList<>();
+        for (LocalDate date : sortedDates) {
+            dailyEnergyKwh.add(dateToEnergyKwh.get(date));
+        }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-                requireActivity().runOnUiThread(() -> {
-                    hideProgress();
-                    binding.textOperationalWarning.setVisibility(View.GONE);
-                    binding.btnForecast.setEnabled(true);
-                    blockNavigation(false);
-                    showToast("Error during forecast: " + e.getMessage());
-                });
-            }
-        });
+        updateForecastCharts(result.predictedPowerW, result.dates, sortedDates, dailyEnergyKwh, "Forecast");
+        updateForecastTable(result, sortedDates, dailyEnergyKwh);
+        updateForecastRecommendations(result, sortedDates, dailyEnergyKwh);
+        updateOperationalDataWarning(result.operationalDataFound, result.calibrationPerformed);
+        if (tvSummary != null) {
+            tvSummary.setText(String.format(Locale.getDefault(), 
+                "Predicted daily energy: min %.2f kWh, max %.2f kWh", 
+                minDailyKwh, maxDailyKwh));
+        }
     }
     
     /**
@@ -707,9 +702,6 @@ public class GenerationForecastFragment extends Fragment {
         super.onDestroyView();
         // Unblock navigation when fragment is destroyed
         blockNavigation(false);
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
         binding = null;
     }
 }
@@ -18,6 +18,7 @@ import com.masters.ppa.data.api.WeatherApiService;
 import com.masters.ppa.data.model.StationConfig;
 import com.masters.ppa.data.repository.StationConfigRepository;
 import com.masters.ppa.databinding.FragmentStationAnalysisBinding;
+import com.masters.ppa.ml.AnalysisCoordinator;
 import com.masters.ppa.service.StationDataFetchService;
 import com.masters.ppa.ui.analysis.AnalysisViewModel;
 import com.masters.ppa.utils.CsvUtils;
@@ -54,7 +55,8 @@ import java.util.concurrent.Executors;
 public class StationAnalysisFragment extends Fragment implements NetworkUtils.NetworkStatusListener {
 
     private static final String TAG = "StationAnalysisFragment";
-    private static final String WEATHER_DATA_CSV = "weather_data.csv";
+    private static final String WEATHER_HISTORY_CSV = WeatherApiService.CSV_WEATHER_3MONTHS;
+    private static final String WEATHER_CSV_DIR = "csv/weather";
     private static final String STATION_DATA_CSV = "station_data.csv";
     private static final String CSV_DIR = "csv";
     private static final int MAX_PROGRESS_MESSAGES = 10;
@@ -201,6 +203,7 @@ public class StationAnalysisFragment extends Fragment implements NetworkUtils.Ne
      * Fetch weather data for last 3 months
      */
     private void fetchWeatherData() {
+        Context appContext = requireContext().getApplicationContext();
         binding.btnFetchWeather.setEnabled(false);
         showProgress("Fetching weather data...", "Connecting to API...");
         
@@ -223,21 +226,14 @@ public class StationAnalysisFragment extends Fragment implements NetworkUtils.Ne
                 updateProgress("Fetching weather data...", "Requesting data from API...");
             });
             
-            // Fetch weather data for last 3 months
-            weatherApiService.fetch3MonthsWeather(
+            // Fetch weather days missing from the archive
+            weatherApiService.syncHistoricalWeather(
                 config.getLatitude(), 
                 config.getLongitude(),
                 new WeatherApiService.FetchCallback() {
                     @Override
                     public void onSuccess(String filePath, int rowCount, String firstTimestamp, String lastTimestamp) {
-                        mainHandler.post(() -> {
-                            if (binding == null || !isAdded()) return;
-                            updateProgress("Fetching weather data...", "Saving data to file...");
-                        });
-                        
-                        // Copy file to weather_data.csv
-                        copyToWeatherDataCsv(filePath);
-                        
+                        AnalysisCoordinator.getInstance(appContext).invalidateSnapshot();
                         mainHandler.post(() -> {
                             if (binding == null || !isAdded() || getActivity() == null) return;
                             binding.btnFetchWeather.setEnabled(true);
@@ -355,45 +351,6 @@ public class StationAnalysisFragment extends Fragment implements NetworkUtils.Ne
         }
     }
     
-    /**
-     * Copy weather data file to weather_data.csv
-     */
-    private void copyToWeatherDataCsv(String sourceFilePath) {
-        executor.execute(() -> {
-            Context context = getContext();
-            if (context == null) return;
-            
-            try {
-                File sourceFile = new File(sourceFilePath);
-                if (!sourceFile.exists()) {
-                    Log.e(TAG, "Source file does not exist: " + sourceFilePath);
-                    return;
-                }
-                
-                File csvDir = new File(context.getFilesDir(), CSV_DIR);
-                if (!csvDir.exists()) {
-                    boolean created = csvDir.mkdirs();
-                    if (!created) {
-                        Log.e(TAG, "Failed to create CSV directory");
-                        return;
-                    }
-                }
-                File destFile = new File(csvDir, WEATHER_DATA_CSV);
-                
-                // Copy file
-                java.nio.file.Files.copy(
-                    sourceFile.toPath(),
-                    destFile.toPath(),
-                    java.nio.file.StandardCopyOption.REPLACE_EXISTING
-                );
-                
-                Log.d(TAG, "Weather data copied to: " + destFile.getAbsolutePath());
-            } catch (Exception e) {
-                Log.e(TAG, "Error copying weather data file", e);
-            }
-        });
-    }
-    
     /**
      * Fetch station operational data using foreground service
      */
@@ -436,6 +393,7 @@ public class StationAnalysisFragment extends Fragment implements NetworkUtils.Ne
      */
     private void fetchStationDataDirectly() {
         if (binding == null || !isAdded()) return;
+        Context appContext = requireContext().getApplicationContext();
         
         binding.btnFetchStation.setEnabled(false);
         showProgress("Fetching station data...", "Initializing...");
@@ -454,6 +412,7 @@ public class StationAnalysisFragment extends Fragment implements NetworkUtils.Ne
             new SolarmanStationDataService.FetchCallback() {
                 @Override
                 public void onSuccess(String filePath, int rowCount, String firstTimestamp, String lastTimestamp) {
+                    AnalysisCoordinator.getInstance(appContext).invalidateSnapshot();
                     mainHandler.post(() -> {
                         isFetching = false;
                         if (binding != null && isAdded()) {
@@ -504,7 +463,7 @@ public class StationAnalysisFragment extends Fragment implements NetworkUtils.Ne
         Context context = getContext();
         if (context == null || binding == null || !isAdded()) return;
         
-        Date weatherLastModified = FileUtils.getLastModifiedDate(context, WEATHER_DATA_CSV, CSV_DIR);
+        Date weatherLastModified = FileUtils.getLastModifiedDate(context, WEATHER_HISTORY_CSV, WEATHER_CSV_DIR);
         
         if (weatherLastModified != null) {
             String timeStr = "Last request: " + shortDateTimeFormat.format(weatherLastModified);
@@ -531,7 +490,7 @@ public class StationAnalysisFragment extends Fragment implements NetworkUtils.Ne
             Context context = getContext();
             if (context == null) return;
             
-            String weatherFilePath = FileUtils.getFilePath(context, WEATHER_DATA_CSV, CSV_DIR);
+            String weatherFilePath = FileUtils.getFilePath(context, WEATHER_HISTORY_CSV, WEATHER_CSV_DIR);
             String[] weatherDateRange = CsvUtils.readDateRangeFromCsv(weatherFilePath);
             
             String stationFilePath = FileUtils.getFilePath(context, STATION_DATA_CSV, CSV_DIR);
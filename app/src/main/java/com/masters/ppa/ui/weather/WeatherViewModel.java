@@ -13,6 +13,7 @@ import com.masters.ppa.data.model.StationConfig;
 import com.masters.ppa.data.model.WeatherData;
 import com.masters.ppa.data.repository.StationConfigRepository;
 import com.masters.ppa.data.repository.WeatherDataRepository;
+import com.masters.ppa.ml.AnalysisCoordinator;
 import com.masters.ppa.utils.DateUtils;
 
 import java.io.File;
@@ -201,30 +202,26 @@ public class WeatherViewModel extends AndroidViewModel {
             
             Log.d(TAG, "Fetching weather data for coordinates: " + config.getLatitude() + ", " + config.getLongitude());
             
-            weatherApiService.fetch7DaysWeather(config.getLatitude(), config.getLongitude(), 
-                new WeatherApiService.FetchCallback() {
-                    @Override
-                    public void onSuccess(String filePath, int rowCount, String firstTimestamp, String lastTimestamp) {
-                        loadWeatherDataFromFile(filePath);
-                    }
-
-                    @Override
-                    public void onError(String errorMessage) {
-                        operationSuccess.postValue(false);
-                        operationMessage.postValue("Weather data fetch failed: " + errorMessage);
-                        Log.e(TAG, "Weather data fetch failed: " + errorMessage);
-                        isLoading.postValue(false);
-                    }
-                });
+            // Served from the grid cell cache when the station's cell was fetched recently
+            try {
+                weatherApiService.fetch7DaysWeatherSync(config.getLatitude(), config.getLongitude());
+                loadWeatherDataFromFile(weatherApiService.getWeatherFile(WeatherApiService.CSV_WEATHER_TODAY7)
+                    .getAbsolutePath());
+            } catch (Exception e) {
+                operationSuccess.postValue(false);
+                operationMessage.postValue("Weather data fetch failed: " + e.getMessage());
+                Log.e(TAG, "Weather data fetch failed", e);
+                isLoading.postValue(false);
+            }
         });
     }
     
     /**
-     * Fetch historical weather data (last 3 months)
+     * Sync historical weather data (missing days since the last sync)
      */
     public void fetchHistoricalWeatherData() {
         isLoading.setValue(true);
-        operationMessage.postValue("Fetching historical weather data (last 3 months)...");
+        operationMessage.postValue("Syncing historical weather data...");
         
         executor.execute(() -> {
             StationConfig config = getStationConfigOrNull();
@@ -237,12 +234,13 @@ public class WeatherViewModel extends AndroidViewModel {
             
             Log.d(TAG, "Fetching historical weather data for coordinates: " + config.getLatitude() + ", " + config.getLongitude());
             
-            weatherApiService.fetch3MonthsWeather(config.getLatitude(), config.getLongitude(), 
+            weatherApiService.syncHistoricalWeather(config.getLatitude(), config.getLongitude(), 
                 new WeatherApiService.FetchCallback() {
                     @Override
                     public void onSuccess(String filePath, int rowCount, String firstTimestamp, String lastTimestamp) {
+                        AnalysisCoordinator.getInstance(getApplication()).invalidateSnapshot();
                         operationSuccess.postValue(true);
-                        operationMessage.postValue("Historical weather data saved successfully (last 3 months)");
+                        operationMessage.postValue("Historical weather data up to date (" + firstTimestamp + " - " + lastTimestamp + ")");
                         isLoading.postValue(false);
                     }
 
@@ -0,0 +1,435 @@
+package com.masters.ppa.utils;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Day -> byte offset index of a time-ordered CSV whose first column is a timestamp.
+ *
+ * Offsets are relative to the end of the header line, so they survive header rewrites.
+ * The index (name.dayidx) records the CSV length and mtime; a stale index is rebuilt with
+ * one streaming pass over the file. Trimming becomes a single copy from the cut offset and
+ * the covered date range is read straight from the index.
+ */
+public final class CsvDayIndex {
+
+    private static final String TAG = "CsvDayIndex";
+
+    public static final String EXTENSION = ".dayidx";
+
+    private static final int MAGIC = 0x50504449; // "PPDI"
+    private static final int VERSION = 1;
+    private static final int TAIL_CHUNK = 4096;
+
+    private final File csvFile;
+    private final TreeMap<String, Long> dayOffsets = new TreeMap<>();
+    private int headerBytes;
+
+    private CsvDayIndex(File csvFile) {
+        this.csvFile = csvFile;
+    }
+
+    /**
+     * Index path for a CSV file (station_data.csv -> station_data.dayidx)
+     */
+    public static File indexFileFor(File csvFile) {
+        String name = csvFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(csvFile.getParentFile(), base + EXTENSION);
+    }
+
+    /**
+     * Load index, rebuilding it from the CSV if it is missing or stale
+     */
+    public static CsvDayIndex load(File csvFile) {
+        CsvDayIndex index = new CsvDayIndex(csvFile);
+        if (!csvFile.exists()) {
+            return index;
+        }
+        if (index.read()) {
+            return index;
+        }
+        try {
+            index.rebuild();
+            index.save();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not rebuild index for " + csvFile.getName(), e);
+        }
+        return index;
+    }
+
+    /**
+     * Empty index for a CSV that is about to be (re)written
+     */
+    public static CsvDayIndex create(File csvFile) {
+        return new CsvDayIndex(csvFile);
+    }
+
+    public boolean isEmpty() {
+        return dayOffsets.isEmpty();
+    }
+
+    /**
+     * First indexed day (yyyy-MM-dd) or null
+     */
+    public String getFirstDay() {
+        return dayOffsets.isEmpty() ? null : dayOffsets.firstKey();
+    }
+
+    /**
+     * Last indexed day (yyyy-MM-dd) or null
+     */
+    public String getLastDay() {
+        return dayOffsets.isEmpty() ? null : dayOffsets.lastKey();
+    }
+
+    public boolean containsDay(String day) {
+        return dayOffsets.containsKey(day);
+    }
+
+    /**
+     * Record where a day's rows start; days must be added in ascending order
+     * @param dataOffset Offset relative to the end of the header line
+     */
+    public void addDay(String day, long dataOffset) {
+        if (day == null || (!dayOffsets.isEmpty() && day.compareTo(dayOffsets.lastKey()) <= 0)) {
+            return;
+        }
+        dayOffsets.put(day, dataOffset);
+    }
+
+    /**
+     * Persist index, stamped with the CSV's current length and mtime
+     * @param headerBytes Size of the CSV header line including newline
+     */
+    public void save(int headerBytes) throws IOException {
+        this.headerBytes = headerBytes;
+        save();
+    }
+
+    private void save() throws IOException {
+        File indexFile = indexFileFor(csvFile);
+        File tempFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new java.io.BufferedOutputStream(
+                new FileOutputStream(tempFile, false)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(csvFile.length());
+            out.writeLong(csvFile.lastModified());
+            out.writeInt(headerBytes);
+            out.writeInt(dayOffsets.size());
+            for (Map.Entry<String, Long> entry : dayOffsets.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        }
+        // rename replaces the old index in one step, so a crash never leaves it missing
+        if (!tempFile.renameTo(indexFile)) {
+            throw new IOException("Failed to rename " + tempFile.getName());
+        }
+    }
+
+    private boolean read() {
+        File indexFile = indexFileFor(csvFile);
+        if (!indexFile.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            long length = in.readLong();
+            long modified = in.readLong();
+            if (length != csvFile.length() || modified != csvFile.lastModified()) {
+                Log.d(TAG, "Index of " + csvFile.getName() + " is stale");
+                return false;
+            }
+            headerBytes = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                dayOffsets.put(in.readUTF(), in.readLong());
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Error reading index " + indexFile.getName(), e);
+            dayOffsets.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Rebuild from CSV with one streaming pass (only the first field of each line is decoded;
+     * quotes around it are dropped)
+     */
+    private void rebuild() throws IOException {
+        dayOffsets.clear();
+        headerBytes = 0;
+        SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(csvFile), 65536)) {
+            long position = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b == '\n') {
+                    break;
+                }
+            }
+            headerBytes = (int) position;
+
+            StringBuilder field = new StringBuilder(32);
+            long lineStart = position;
+            boolean inFirstField = true;
+            boolean quoted = false;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b == '\n') {
+                    addDay(dayKey(field.toString(), dayFormat), lineStart - headerBytes);
+                    field.setLength(0);
+                    lineStart = position;
+                    inFirstField = true;
+                    quoted = false;
+                } else if (inFirstField) {
+                    if (b == '"') {
+                        quoted = !quoted;
+                    } else if (b == ',' && !quoted) {
+                        inFirstField = false;
+                    } else {
+                        field.append((char) b);
+                    }
+                }
+            }
+            if (position > lineStart) {
+                addDay(dayKey(field.toString(), dayFormat), lineStart - headerBytes);
+            }
+        }
+        Log.d(TAG, "Rebuilt index of " + csvFile.getName() + ": " + dayOffsets.size() + " days");
+    }
+
+    /**
+     * Cut all rows before minDay with a single copy from the cut offset
+     * @return true if the file was changed
+     */
+    public boolean trimBefore(String minDay) throws IOException {
+        if (dayOffsets.isEmpty() || minDay.compareTo(dayOffsets.firstKey()) <= 0) {
+            return false;
+        }
+        String firstKept = dayOffsets.ceilingKey(minDay);
+        long dataEnd = csvFile.length() - headerBytes;
+        long cut = firstKept != null ? dayOffsets.get(firstKept) : dataEnd;
+
+        File tempFile = new File(csvFile.getParentFile(), csvFile.getName() + ".tmp");
+        try (FileInputStream in = new FileInputStream(csvFile);
+             FileOutputStream out = new FileOutputStream(tempFile, false)) {
+            FileChannel source = in.getChannel();
+            FileChannel target = out.getChannel();
+            long position = 0;
+            while (position < headerBytes) {
+                position += source.transferTo(position, headerBytes - position, target);
+            }
+            position = headerBytes + cut;
+            long size = source.size();
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+        }
+        if (!tempFile.renameTo(csvFile)) {
+            throw new IOException("Failed to replace " + csvFile.getName());
+        }
+
+        TreeMap<String, Long> rebased = new TreeMap<>();
+        for (Map.Entry<String, Long> entry : dayOffsets.tailMap(minDay, true).entrySet()) {
+            rebased.put(entry.getKey(), entry.getValue() - cut);
+        }
+        dayOffsets.clear();
+        dayOffsets.putAll(rebased);
+        save();
+        return true;
+    }
+
+    /**
+     * Splice rows of days missing from the file in front of the next indexed day,
+     * with a single copy pass over the file; offsets are shifted and the index saved
+     * @param blocks Day -> complete rows (UTF-8, newline-terminated); indexed days are ignored
+     * @return true if the file was changed
+     */
+    public boolean insertDays(java.util.SortedMap<String, byte[]> blocks) throws IOException {
+        TreeMap<String, byte[]> inserts = new TreeMap<>();
+        for (Map.Entry<String, byte[]> block : blocks.entrySet()) {
+            if (!dayOffsets.containsKey(block.getKey()) && block.getValue().length > 0) {
+                inserts.put(block.getKey(), block.getValue());
+            }
+        }
+        if (inserts.isEmpty()) {
+            return false;
+        }
+        long dataEnd = csvFile.length() - headerBytes;
+
+        TreeMap<String, Long> shifted = new TreeMap<>();
+        File tempFile = new File(csvFile.getParentFile(), csvFile.getName() + ".tmp");
+        try (FileInputStream in = new FileInputStream(csvFile);
+             FileOutputStream out = new FileOutputStream(tempFile, false)) {
+            FileChannel source = in.getChannel();
+            FileChannel target = out.getChannel();
+            long position = 0;
+            long shift = 0;
+            for (Map.Entry<String, byte[]> insert : inserts.entrySet()) {
+                String next = dayOffsets.higherKey(insert.getKey());
+                long insertAt = headerBytes + (next != null ? dayOffsets.get(next) : dataEnd);
+                while (position < insertAt) {
+                    position += source.transferTo(position, insertAt - position, target);
+                }
+                shifted.put(insert.getKey(), insertAt - headerBytes + shift);
+                out.write(insert.getValue());
+                shift += insert.getValue().length;
+            }
+            long size = source.size();
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+        }
+        if (!tempFile.renameTo(csvFile)) {
+            throw new IOException("Failed to replace " + csvFile.getName());
+        }
+
+        for (Map.Entry<String, Long> entry : dayOffsets.entrySet()) {
+            long shift = 0;
+            for (byte[] block : inserts.headMap(entry.getKey()).values()) {
+                shift += block.length;
+            }
+            shifted.put(entry.getKey(), entry.getValue() + shift);
+        }
+        dayOffsets.clear();
+        dayOffsets.putAll(shifted);
+        save();
+        Log.d(TAG, "Inserted " + inserts.size() + " days into " + csvFile.getName());
+        return true;
+    }
+
+    /**
+     * Parse yyyy-MM-dd with the device time zone (same as the CSV day keys)
+     */
+    public static Date parseDay(String day) {
+        if (day == null) {
+            return null;
+        }
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).parse(day);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Day key of a timestamp field: Unix seconds/millis or a string starting with yyyy-MM-dd
+     */
+    public static String dayKey(String timestamp, SimpleDateFormat dayFormat) {
+        String value = timestamp.trim();
+        if (value.isEmpty()) {
+            return null;
+        }
+        if (value.matches("\\d+")) {
+            long time = Long.parseLong(value);
+            long millis = time < 2_000_000_000L ? time * 1000L : time;
+            return dayFormat.format(new Date(millis));
+        }
+        return value.length() >= 10 ? value.substring(0, 10) : null;
+    }
+
+    /**
+     * First field of the first and last data rows, read without scanning the file
+     * @return {first, last}; entries are null if the file has no data rows
+     */
+    public static String[] readBoundaryKeys(File csvFile) {
+        String[] keys = new String[2];
+        if (!csvFile.exists()) {
+            return keys;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(csvFile, "r")) {
+            raf.readLine(); // header
+            String first = nextNonEmptyLine(raf);
+            if (first == null) {
+                return keys;
+            }
+            keys[0] = firstField(first);
+            keys[1] = firstField(lastLine(raf, first));
+        } catch (IOException e) {
+            Log.w(TAG, "Error reading boundary rows of " + csvFile.getName(), e);
+        }
+        return keys;
+    }
+
+    private static String nextNonEmptyLine(RandomAccessFile raf) throws IOException {
+        String line;
+        while ((line = raf.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Last non-empty line, found by reading chunks backwards from the end
+     */
+    private static String lastLine(RandomAccessFile raf, String fallback) throws IOException {
+        long end = raf.length();
+        List<byte[]> chunks = new ArrayList<>();
+        int collected = 0;
+        long position = end;
+        while (position > 0) {
+            int size = (int) Math.min(TAIL_CHUNK, position);
+            position -= size;
+            byte[] chunk = new byte[size];
+            raf.seek(position);
+            raf.readFully(chunk);
+            chunks.add(0, chunk);
+            collected += size;
+
+            byte[] tail = new byte[collected];
+            int offset = 0;
+            for (byte[] c : chunks) {
+                System.arraycopy(c, 0, tail, offset, c.length);
+                offset += c.length;
+            }
+            String text = new String(tail, StandardCharsets.UTF_8);
+            String trimmed = text.replaceAll("[\\r\\n\\s]+$", "");
+            int newline = trimmed.lastIndexOf('\n');
+            if (newline >= 0) {
+                return trimmed.substring(newline + 1);
+            }
+        }
+        return fallback;
+    }
+
+    private static String firstField(String line) {
+        String field;
+        if (line.startsWith("\"")) {
+            int close = line.indexOf('"', 1);
+            field = close > 0 ? line.substring(1, close) : line.substring(1);
+        } else {
+            int comma = line.indexOf(',');
+            field = comma >= 0 ? line.substring(0, comma) : line;
+        }
+        return field.trim();
+    }
+}
@@ -0,0 +1,189 @@
+package com.masters.ppa.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming CSV reader that splits one record at a time into reused buffers.
+ *
+ * Handles quoted fields (with "" escapes and embedded line breaks) as written by OpenCSV's
+ * CSVWriter; blank lines are skipped. Fields are only turned into Strings when asked for, so
+ * rows can be folded into aggregates without keeping them.
+ */
+public final class CsvTokenizer implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int bufferPos;
+    private int bufferLen;
+
+    // Characters of the current record and the end offset of each field
+    private final StringBuilder chars = new StringBuilder(256);
+    private int[] fieldEnds = new int[32];
+    private int fieldCount;
+
+    public CsvTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Open a UTF-8 file
+     */
+    public static CsvTokenizer open(File file) throws IOException {
+        return open(new FileInputStream(file));
+    }
+
+    /**
+     * Read a UTF-8 stream (closed with the tokenizer)
+     */
+    public static CsvTokenizer open(InputStream in) {
+        return new CsvTokenizer(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Advance to the next record
+     * @return false at end of input
+     */
+    public boolean next() throws IOException {
+        chars.setLength(0);
+        fieldCount = 0;
+
+        int c = read();
+        // Skip blank lines
+        while (c == '\n' || c == '\r') {
+            c = read();
+        }
+        if (c == -1) {
+            return false;
+        }
+
+        boolean quoted = false;
+        boolean fieldStart = true;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    endField();
+                    return true;
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c == '"') {
+                        chars.append('"');
+                    } else {
+                        quoted = false;
+                        continue;
+                    }
+                } else {
+                    chars.append((char) c);
+                }
+            } else if (c == -1 || c == '\n') {
+                endField();
+                return true;
+            } else if (c == '\r') {
+                c = read();
+                if (c != '\n' && c != -1) {
+                    bufferPos--;
+                }
+                endField();
+                return true;
+            } else if (c == ',') {
+                endField();
+                fieldStart = true;
+                c = read();
+                continue;
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+            } else {
+                chars.append((char) c);
+            }
+            fieldStart = false;
+            c = read();
+        }
+    }
+
+    /**
+     * Number of fields in the current record
+     */
+    public int size() {
+        return fieldCount;
+    }
+
+    /**
+     * Field value, or "" if the record has fewer fields
+     */
+    public String get(int index) {
+        if (index < 0 || index >= fieldCount) {
+            return "";
+        }
+        return chars.substring(fieldStart(index), fieldEnds[index]);
+    }
+
+    /**
+     * True if the field is missing or empty
+     */
+    public boolean isEmpty(int index) {
+        return index < 0 || index >= fieldCount || fieldStart(index) == fieldEnds[index];
+    }
+
+    /**
+     * Field parsed as a double, or fallback if it is missing, empty or not a number
+     */
+    public double getDouble(int index, double fallback) {
+        if (isEmpty(index)) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(get(index).trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Copy of the current record
+     */
+    public String[] toArray() {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = get(i);
+        }
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int fieldStart(int index) {
+        return index == 0 ? 0 : fieldEnds[index - 1];
+    }
+
+    private void endField() {
+        if (fieldCount == fieldEnds.length) {
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldEnds[fieldCount++] = chars.length();
+    }
+
+    private int read() throws IOException {
+        if (bufferPos == bufferLen) {
+            bufferLen = reader.read(buffer, 0, BUFFER_SIZE);
+            bufferPos = 0;
+            if (bufferLen <= 0) {
+                bufferLen = 0;
+                return -1;
+            }
+        }
+        return buffer[bufferPos++];
+    }
+}
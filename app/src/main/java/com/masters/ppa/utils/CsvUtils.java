@@ -15,8 +15,6 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -47,331 +45,142 @@ public class CsvUtils {
     public static final String STATION_CSV = "station_data.csv";
     
     /**
-     * Read weather data from a CSV file and aggregate by day
-     * @param filePath Path to CSV file
-     * @return List of WeatherData objects
+     * Running min/max/avg of one day's weather rows
      */
-    public static List<WeatherData> readWeatherData(String filePath) {
-        List<WeatherData> weatherDataList = new ArrayList<>();
+    private static class WeatherDayAccumulator {
+        double minTemp = Double.MAX_VALUE;
+        double maxTemp = -Double.MAX_VALUE;
+        double sumTemp;
+        double sumCloud;
+        double sumRadiation;
+        double sumWind;
+        int validTempCount;
+        int validCloudCount;
+        int validRadiationCount;
+        int validWindCount;
         
-        File file = new File(filePath);
-        if (!file.exists()) {
-            Log.e(TAG, "Weather CSV file not found: " + filePath);
-            return weatherDataList;
-        }
-        
-        try (CSVReader reader = new CSVReader(new FileReader(file))) {
-            List<String[]> rows = reader.readAll();
-            
-            // Skip header row
-            boolean isFirst = true;
-            
-            // Map to store aggregated data by date
-            Map<String, List<String[]>> dataByDate = new TreeMap<>();
-            
-            // Group rows by date
-            for (String[] row : rows) {
-                if (isFirst) {
-                    isFirst = false;
-                    continue;
-                }
-                
-                try {
-                    // Extract date part from datetime
-                    String timestamp = row[0];
-                    String dateStr = timestamp.split("T")[0]; // Get only the date part
-                    
-                    // Add row to the corresponding date group
-                    if (!dataByDate.containsKey(dateStr)) {
-                        dataByDate.put(dateStr, new ArrayList<>());
-                    }
-                    dataByDate.get(dateStr).add(row);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error grouping weather data by date", e);
-                }
+        void add(CsvTokenizer row) {
+            // Temperature (column 1)
+            double temp = row.getDouble(1, Double.NaN);
+            if (!Double.isNaN(temp)) {
+                minTemp = Math.min(minTemp, temp);
+                maxTemp = Math.max(maxTemp, temp);
+                sumTemp += temp;
+                validTempCount++;
             }
             
-            Log.d(TAG, "Found " + dataByDate.size() + " unique dates in weather data");
+            // Cloud cover (column 2), original scale (0-100%)
+            double cloudCover = row.getDouble(2, Double.NaN);
+            if (!Double.isNaN(cloudCover)) {
+                sumCloud += cloudCover;
+                validCloudCount++;
+            }
             
-            // Process each date group
-            for (String dateStr : dataByDate.keySet()) {
-                List<String[]> dayRows = dataByDate.get(dateStr);
-                
-                if (dayRows != null && !dayRows.isEmpty()) {
-                    try {
-                        // Create a new WeatherData object for this date
-                        WeatherData weatherData = new WeatherData();
-                        weatherData.setDate(DATE_FORMAT.parse(dateStr));
-                        weatherData.setLastUpdated(new Date());
-                        
-                        // Calculate min, max, and average values
-                        double minTemp = Double.MAX_VALUE;
-                        double maxTemp = Double.MIN_VALUE;
-                        double sumTemp = 0;
-                        double sumCloud = 0;
-                        double sumRadiation = 0;
-                        double sumWind = 0;
-                        
-                        int validTempCount = 0;
-                        int validCloudCount = 0;
-                        int validRadiationCount = 0;
-                        int validWindCount = 0;
-                        
-                        for (String[] row : dayRows) {
-                            try {
-                                // Temperature processing (column 1)
-                                if (row.length > 1 && !row[1].isEmpty()) {
-                                    double temp = Double.parseDouble(row[1]);
-                                    if (!Double.isNaN(temp)) {
-                                        minTemp = Math.min(minTemp, temp);
-                                        maxTemp = Math.max(maxTemp, temp);
-                                        sumTemp += temp;
-                                        validTempCount++;
-                                    }
-                                }
-                                
-                                // Cloud cover processing (column 2)
-                                if (row.length > 2 && !row[2].isEmpty()) {
-                                    double cloudCover = Double.parseDouble(row[2]);
-                                    if (!Double.isNaN(cloudCover)) {
-                                        // Keep original scale (0-100%)
-                                        sumCloud += cloudCover;
-                                        validCloudCount++;
-                                    }
-                                }
-                                
-                                // Shortwave radiation processing (column 3)
-                                if (row.length > 3 && !row[3].isEmpty()) {
-                                    double radiation = Double.parseDouble(row[3]);
-                                    if (!Double.isNaN(radiation)) {
-                                        sumRadiation += radiation;
-                                        validRadiationCount++;
-                                    }
-                                }
-                                
-                                // Wind speed processing (column 6)
-                                if (row.length > 6 && !row[6].isEmpty()) {
-                                    double wind = Double.parseDouble(row[6]);
-                                    if (!Double.isNaN(wind)) {
-                                        sumWind += wind;
-                                        validWindCount++;
-                                    }
-                                }
-                            } catch (NumberFormatException e) {
-                                Log.e(TAG, "Error parsing weather data value: " + e.getMessage());
-                            }
-                        }
-                        
-                        // Set aggregated values with validation and rounding to 1 decimal place
-                        if (validTempCount > 0) {
-                            // Round to 1 decimal place
-                            double avgTemp = Math.round((sumTemp / validTempCount) * 10.0) / 10.0;
-                            double minTempRounded = Math.round(minTemp * 10.0) / 10.0;
-                            double maxTempRounded = Math.round(maxTemp * 10.0) / 10.0;
-                            
-                            weatherData.setTemperatureMin(minTempRounded);
-                            weatherData.setTemperatureMax(maxTempRounded);
-                            weatherData.setTemperatureAvg(avgTemp);
-                        } else {
-                            weatherData.setTemperatureMin(0);
-                            weatherData.setTemperatureMax(0);
-                            weatherData.setTemperatureAvg(0);
-                        }
-                        
-                        // Round cloud cover, radiation and wind speed to 1 decimal place
-                        double avgCloud = validCloudCount > 0 ? Math.round((sumCloud / validCloudCount) * 10.0) / 10.0 : 0;
-                        double dailyRadiation = validRadiationCount > 0 ? Math.round((sumRadiation / 1000.0) * 10.0) / 10.0 : 0;
-                        double avgWind = validWindCount > 0 ? Math.round((sumWind / validWindCount) * 10.0) / 10.0 : 0;
-                        
-                        weatherData.setCloudCover(avgCloud);
-                        weatherData.setShortwaveRadiation(dailyRadiation);
-                        weatherData.setWindSpeed(avgWind);
-                        
-                        weatherDataList.add(weatherData);
-                    } catch (ParseException e) {
-                        Log.e(TAG, "Error parsing date: " + dateStr, e);
-                    }
-                }
+            // Shortwave radiation (column 3)
+            double radiation = row.getDouble(3, Double.NaN);
+            if (!Double.isNaN(radiation)) {
+                sumRadiation += radiation;
+                validRadiationCount++;
             }
             
-            // Sort by date (already sorted by TreeMap, but just to be sure)
-            java.util.Collections.sort(weatherDataList, (a, b) -> a.getDate().compareTo(b.getDate()));
+            // Wind speed (column 6)
+            double wind = row.getDouble(6, Double.NaN);
+            if (!Double.isNaN(wind)) {
+                sumWind += wind;
+                validWindCount++;
+            }
+        }
+        
+        /**
+         * Daily values rounded to 1 decimal place
+         */
+        WeatherData toWeatherData(Date date) {
+            WeatherData weatherData = new WeatherData();
+            weatherData.setDate(date);
+            weatherData.setLastUpdated(new Date());
             
-            Log.d(TAG, "Final weather data count: " + weatherDataList.size() + " days");
+            if (validTempCount > 0) {
+                weatherData.setTemperatureMin(Math.round(minTemp * 10.0) / 10.0);
+                weatherData.setTemperatureMax(Math.round(maxTemp * 10.0) / 10.0);
+                weatherData.setTemperatureAvg(Math.round((sumTemp / validTempCount) * 10.0) / 10.0);
+            } else {
+                weatherData.setTemperatureMin(0);
+                weatherData.setTemperatureMax(0);
+                weatherData.setTemperatureAvg(0);
+            }
             
-        } catch (IOException | CsvException e) {
-            Log.e(TAG, "Error reading weather CSV file", e);
+            weatherData.setCloudCover(validCloudCount > 0 ? Math.round((sumCloud / validCloudCount) * 10.0) / 10.0 : 0);
+            weatherData.setShortwaveRadiation(validRadiationCount > 0 ? Math.round((sumRadiation / 1000.0) * 10.0) / 10.0 : 0);
+            weatherData.setWindSpeed(validWindCount > 0 ? Math.round((sumWind / validWindCount) * 10.0) / 10.0 : 0);
+            return weatherData;
         }
-        
-        return weatherDataList;
     }
     
     /**
-     * Read generation data from a CSV file
-     *
-     * @param application
-     * @param filePath    Path to CSV file
-     * @return List of GenerationData objects
+     * Read weather data from a CSV file and aggregate by day.
+     * Rows are streamed into per-day accumulators, so memory does not grow with the row count.
+     * @param filePath Path to CSV file
+     * @return List of WeatherData objects, ordered by date
      */
-    public static List<GenerationData> readGenerationData(Application application, String filePath) {
-        List<GenerationData> generationDataList = new ArrayList<>();
-
+    public static List<WeatherData> readWeatherData(String filePath) {
+        List<WeatherData> weatherDataList = new ArrayList<>();
+        
         File file = new File(filePath);
         if (!file.exists()) {
-            Log.e(TAG, "Generation CSV file not found: " + filePath);
-            return generationDataList;
-        }
-
-        try (CSVReader reader = new CSVReader(new FileReader(file))) {
-            List<String[]> rows = reader.readAll();
-            if (rows.isEmpty()) {
-                Log.e(TAG, "Generation CSV is empty: " + filePath);
-                return generationDataList;
-            }
-
-            String[] header = rows.get(0);
-
-            generationDataList = parseSolarmanGeneration(rows);
-
-        } catch (IOException | CsvException e) {
-            Log.e(TAG, "Error reading generation CSV file", e);
-        }
-
-        return generationDataList;
-    }
-
-    private static List<GenerationData> parseSolarmanGeneration(List<String[]> rows) {
-        List<GenerationData> list = new ArrayList<>();
-
-        if (rows.isEmpty()) return list;
-
-        String[] header = rows.get(0);
-        int idxTime = -1;
-        int idxPv = -1;
-
-        // Find collectTime index (or first column with "time")
-        for (int i = 0; i < header.length; i++) {
-            String col = header[i] != null ? header[i].trim().toLowerCase(Locale.ROOT) : "";
-            if (idxTime == -1 && col.contains("time")) {
-                idxTime = i;
-            }
-            if (col.equals("pvtp")) {
-                idxPv = i;
-            }
-        }
-
-        if (idxTime == -1 || idxPv == -1) {
-            Log.e(TAG, "Solarman CSV missing required columns: timeIndex=" + idxTime + ", pvIndex=" + idxPv);
-            return list;
+            Log.e(TAG, "Weather CSV file not found: " + filePath);
+            return weatherDataList;
         }
-
-        Log.d(TAG, "Solarman indices: time=" + idxTime + ", PVTP=" + idxPv);
-
-        // Aggregate by date -> energy (kWh)
-        Map<String, Double> energyByDate = new TreeMap<>();
-
-        // Create regex similar to Python extract_power_kw
-        java.util.regex.Pattern numPattern = java.util.regex.Pattern.compile(
-                "([-+]?\\d*\\.?\\d+(?:[eE][-+]?\\d+)?)"
-        );
-
-        boolean isFirst = true;
-        for (String[] row : rows) {
-            if (isFirst) {
-                isFirst = false;
-                continue;
+        
+        Map<String, WeatherDayAccumulator> days = new TreeMap<>();
+        try (CsvTokenizer row = CsvTokenizer.open(file)) {
+            // Skip header row
+            if (!row.next()) {
+                return weatherDataList;
             }
-
-            if (row.length <= Math.max(idxTime, idxPv)) continue;
-
-            try {
-                String timeStr = row[idxTime] != null ? row[idxTime].trim() : "";
-                if (timeStr.isEmpty()) continue;
-
-                Date ts;
-
-                if (timeStr.matches("\\d+")) {
-                    // Unix time (seconds or milliseconds)
-                    long t = Long.parseLong(timeStr);
-                    long millis;
-                    if (t < 2_000_000_000L) { // until ~2033
-                        millis = t * 1000L;
-                    } else {
-                        millis = t;
-                    }
-                    ts = new Date(millis);
-                } else {
-                    // Format "2025-08-02 00:03:04"
-                    ts = DATE_TIME_FORMAT.parse(timeStr);
+            while (row.next()) {
+                // Date part of the ISO timestamp
+                String timestamp = row.get(0);
+                int dateEnd = timestamp.indexOf('T');
+                String dateStr = dateEnd >= 0 ? timestamp.substring(0, dateEnd) : timestamp;
+                
+                WeatherDayAccumulator day = days.get(dateStr);
+                if (day == null) {
+                    day = new WeatherDayAccumulator();
+                    days.put(dateStr, day);
                 }
-
-                // PVTP (AC power in watts)
-                String pvStr = row[idxPv] != null ? row[idxPv].trim().replace(",", ".") : "";
-                if (pvStr.isEmpty()) continue;
-
-                java.util.regex.Matcher m = numPattern.matcher(pvStr);
-                if (!m.find()) continue;
-
-                double powerW = Double.parseDouble(m.group(1));
-                if (Double.isNaN(powerW) || Double.isInfinite(powerW)) continue;
-                if (powerW < 0) powerW = 0.0;
-
-                double powerKw = powerW / 1000.0;
-
-                // Group by date
-                String dateStr = DATE_FORMAT.format(ts);
-                // 5-minute interval → kWh
-                double energyKwh = powerKw * (5.0 / 60.0);
-
-                Double prev = energyByDate.get(dateStr);
-                energyByDate.put(dateStr, (prev == null ? 0.0 : prev) + energyKwh);
-
-            } catch (Exception e) {
-                Log.e(TAG, "Error parsing Solarman row for generation", e);
+                day.add(row);
             }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading weather CSV file", e);
+            return weatherDataList;
         }
-
-        // Convert map to GenerationData list
-        for (Map.Entry<String, Double> entry : energyByDate.entrySet()) {
+        
+        Log.d(TAG, "Found " + days.size() + " unique dates in weather data");
+        
+        for (Map.Entry<String, WeatherDayAccumulator> entry : days.entrySet()) {
             try {
-                GenerationData gd = new GenerationData();
-                gd.setDate(DATE_FORMAT.parse(entry.getKey()));
-                gd.setGenerationKwh(entry.getValue());
-                gd.setPredictedGenerationKwh(0.0);  // Only actual data for now
-                gd.setActual(true);
-                gd.setLastUpdated(new Date());
-                list.add(gd);
-            } catch (Exception e) {
-                Log.e(TAG, "Error creating GenerationData from Solarman aggregated map", e);
+                weatherDataList.add(entry.getValue().toWeatherData(DATE_FORMAT.parse(entry.getKey())));
+            } catch (ParseException e) {
+                Log.e(TAG, "Error parsing date: " + entry.getKey(), e);
             }
         }
-
-        Log.d(TAG, "Parsed " + list.size() + " daily generation records from Solarman raw");
-        return list;
+        
+        Log.d(TAG, "Final weather data count: " + weatherDataList.size() + " days");
+        return weatherDataList;
     }
-
-
-
+    
     public static List<GenerationData> readGenerationDataFromRaw(Context context, int rawResId) {
         List<GenerationData> generationDataList = new ArrayList<>();
-        try (InputStream is = context.getResources().openRawResource(rawResId);
-             InputStreamReader isr = new InputStreamReader(is);
-             CSVReader reader = new CSVReader(isr)) {
-
-            List<String[]> rows = reader.readAll();
-            boolean isFirst = true;
-
-            for (String[] row : rows) {
-                if (isFirst) {
-                    isFirst = false;
-                    continue;
-                }
+        try (CsvTokenizer row = CsvTokenizer.open(context.getResources().openRawResource(rawResId))) {
+            // Skip header row
+            row.next();
+            while (row.next()) {
                 try {
                     GenerationData gd = new GenerationData();
-                    gd.setDate(DATE_FORMAT.parse(row[0]));
-                    gd.setGenerationKwh(Double.parseDouble(row[1]));
-                    gd.setPredictedGenerationKwh(Double.parseDouble(row[2]));
-                    gd.setActual(Boolean.parseBoolean(row[3]));
+                    gd.setDate(DATE_FORMAT.parse(row.get(0)));
+                    gd.setGenerationKwh(Double.parseDouble(row.get(1)));
+                    gd.setPredictedGenerationKwh(Double.parseDouble(row.get(2)));
+                    gd.setActual(Boolean.parseBoolean(row.get(3)));
                     gd.setLastUpdated(new Date());
                     generationDataList.add(gd);
                 } catch (Exception e) {
@@ -389,7 +198,7 @@ public class CsvUtils {
 
 
     /**
-     * Read station data from a CSV file
+     * Read station data from a CSV file (streamed row by row)
      *
      * @param application
      * @param filePath    Path to CSV file
@@ -404,37 +213,31 @@ public class CsvUtils {
             return stationDataList;
         }
         
-        try (CSVReader reader = new CSVReader(new FileReader(file))) {
-            List<String[]> rows = reader.readAll();
-            
+        try (CsvTokenizer row = CsvTokenizer.open(file)) {
             // Skip header row
-            boolean isFirst = true;
-            for (String[] row : rows) {
-                if (isFirst) {
-                    isFirst = false;
-                    continue;
-                }
-                
+            row.next();
+            Date now = new Date();
+            while (row.next()) {
                 try {
                     StationData stationData = new StationData();
                     
                     // Parse CSV columns
-                    stationData.setTimestamp(DATE_TIME_FORMAT.parse(row[0]));
-                    stationData.setPowerKw(Double.parseDouble(row[1]));
-                    stationData.setEnergyTodayKwh(Double.parseDouble(row[2]));
-                    stationData.setEnergyTotalKwh(Double.parseDouble(row[3]));
-                    stationData.setBatteryStateOfChargePercent(Double.parseDouble(row[4]));
-                    stationData.setBatteryPowerKw(Double.parseDouble(row[5]));
-                    stationData.setGridPowerKw(Double.parseDouble(row[6]));
-                    stationData.setLoadPowerKw(Double.parseDouble(row[7]));
-                    stationData.setLastUpdated(new Date());
+                    stationData.setTimestamp(DATE_TIME_FORMAT.parse(row.get(0)));
+                    stationData.setPowerKw(Double.parseDouble(row.get(1)));
+                    stationData.setEnergyTodayKwh(Double.parseDouble(row.get(2)));
+                    stationData.setEnergyTotalKwh(Double.parseDouble(row.get(3)));
+                    stationData.setBatteryStateOfChargePercent(Double.parseDouble(row.get(4)));
+                    stationData.setBatteryPowerKw(Double.parseDouble(row.get(5)));
+                    stationData.setGridPowerKw(Double.parseDouble(row.get(6)));
+                    stationData.setLoadPowerKw(Double.parseDouble(row.get(7)));
+                    stationData.setLastUpdated(now);
                     
                     stationDataList.add(stationData);
                 } catch (ParseException | NumberFormatException e) {
                     Log.e(TAG, "Error parsing station data row", e);
                 }
             }
-        } catch (IOException | CsvException e) {
+        } catch (IOException e) {
             Log.e(TAG, "Error reading station CSV file", e);
         }
         
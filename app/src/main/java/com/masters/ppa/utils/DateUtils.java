@@ -2,6 +2,8 @@ package com.masters.ppa.utils;
 
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Locale;
@@ -35,6 +37,13 @@ public class DateUtils {
     private static final ThreadLocal<SimpleDateFormat> DISPLAY_SHORT_DATE_FORMAT = 
         ThreadLocal.withInitial(() -> new SimpleDateFormat(PATTERN_DISPLAY_SHORT_DATE, Locale.getDefault()));
     
+    // Formats of CSV/API time columns, tried in order by parseLocalDateTime
+    private static final DateTimeFormatter[] LOCAL_DATE_TIME_FORMATTERS = {
+        DateTimeFormatter.ofPattern(PATTERN_ISO_DATE_TIME),
+        DateTimeFormatter.ofPattern(PATTERN_ISO_DATE_TIME_FULL),
+        DateTimeFormatter.ofPattern(PATTERN_DATE_TIME)
+    };
+    
     /**
      * Format date range for display (LocalDate)
      * @param startDate Start date
@@ -176,5 +185,33 @@ public class DateUtils {
         
         return null;
     }
+    
+    /**
+     * Parse a time column as Unix timestamp (seconds or millis, taken as UTC) or one of the
+     * ISO / "yyyy-MM-dd HH:mm:ss" formats
+     * @param timeString Time string to parse
+     * @return Parsed LocalDateTime or null if parsing fails
+     */
+    public static LocalDateTime parseLocalDateTime(String timeString) {
+        if (timeString == null || timeString.isEmpty()) {
+            return null;
+        }
+        if (timeString.matches("\\d+")) {
+            try {
+                long timestamp = Long.parseLong(timeString);
+                long millis = timestamp < 2_000_000_000L ? timestamp * 1000L : timestamp;
+                return LocalDateTime.ofEpochSecond(millis / 1000, 0, ZoneOffset.UTC);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        for (DateTimeFormatter formatter : LOCAL_DATE_TIME_FORMATTERS) {
+            try {
+                return LocalDateTime.parse(timeString, formatter);
+            } catch (Exception e) {
+                // Try next format
+            }
+        }
+        return null;
+    }
 }
-
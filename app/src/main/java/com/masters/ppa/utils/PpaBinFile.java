@@ -0,0 +1,255 @@
+package com.masters.ppa.utils;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compact columnar binary file (.ppabin), read through memory-mapped buffer views with no
+ * parsing. Used by the weather store; station history sidecars of this format are obsolete.
+ *
+ * Layout (little-endian): magic, version, source CSV length and mtime, row count,
+ * column descriptors (type + name), padding to 8 bytes, then one block per column.
+ * Long columns are written before float columns so every block stays aligned.
+ */
+public final class PpaBinFile {
+
+    private static final String TAG = "PpaBinFile";
+
+    public static final String EXTENSION = ".ppabin";
+
+    private static final int MAGIC = 0x50504142; // "PPAB"
+    private static final int VERSION = 1;
+    private static final byte TYPE_LONG = 0;
+    private static final byte TYPE_FLOAT = 1;
+
+    private PpaBinFile() {
+    }
+
+    /**
+     * Read-only column views over a mapped (or in-memory) file
+     */
+    public static final class Columns {
+        private final int rowCount;
+        private final long sourceLength;
+        private final long sourceModified;
+        private final Map<String, LongBuffer> longColumns;
+        private final Map<String, FloatBuffer> floatColumns;
+
+        private Columns(int rowCount, long sourceLength, long sourceModified,
+                        Map<String, LongBuffer> longColumns, Map<String, FloatBuffer> floatColumns) {
+            this.rowCount = rowCount;
+            this.sourceLength = sourceLength;
+            this.sourceModified = sourceModified;
+            this.longColumns = Collections.unmodifiableMap(longColumns);
+            this.floatColumns = Collections.unmodifiableMap(floatColumns);
+        }
+
+        /**
+         * Wrap in-memory arrays (e.g. columns loaded from the telemetry store)
+         */
+        public static Columns inMemory(int rowCount, Map<String, long[]> longs, Map<String, float[]> floats) {
+            Map<String, LongBuffer> longColumns = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> entry : longs.entrySet()) {
+                longColumns.put(entry.getKey(), LongBuffer.wrap(entry.getValue()).asReadOnlyBuffer());
+            }
+            Map<String, FloatBuffer> floatColumns = new LinkedHashMap<>();
+            for (Map.Entry<String, float[]> entry : floats.entrySet()) {
+                floatColumns.put(entry.getKey(), FloatBuffer.wrap(entry.getValue()).asReadOnlyBuffer());
+            }
+            return new Columns(rowCount, -1, -1, longColumns, floatColumns);
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Check that the source file still has the length and mtime recorded in the header
+         */
+        public boolean matchesSource(File sourceFile) {
+            return sourceFile.exists()
+                && sourceFile.length() == sourceLength
+                && sourceFile.lastModified() == sourceModified;
+        }
+
+        public LongBuffer getLongColumn(String name) throws IOException {
+            LongBuffer column = longColumns.get(name);
+            if (column == null) {
+                throw new IOException("Missing long column: " + name);
+            }
+            return column;
+        }
+
+        public FloatBuffer getFloatColumn(String name) throws IOException {
+            FloatBuffer column = floatColumns.get(name);
+            if (column == null) {
+                throw new IOException("Missing float column: " + name);
+            }
+            return column;
+        }
+    }
+
+    /**
+     * Sidecar path for a CSV file (station_data.csv -> station_data.ppabin)
+     */
+    public static File sidecarFor(File csvFile) {
+        String name = csvFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(csvFile.getParentFile(), base + EXTENSION);
+    }
+
+    /**
+     * Write columns to file atomically (temp file + rename)
+     * @param sourceFile CSV the data was parsed from; its length and mtime are recorded for staleness checks
+     */
+    public static void write(File file, File sourceFile, int rowCount,
+                             Map<String, long[]> longs, Map<String, float[]> floats) throws IOException {
+        write(file, sourceFile.length(), sourceFile.lastModified(), rowCount, longs, floats);
+    }
+
+    /**
+     * Write columns that have no source file (the file is the primary copy)
+     */
+    public static void write(File file, int rowCount,
+                             Map<String, long[]> longs, Map<String, float[]> floats) throws IOException {
+        write(file, -1, -1, rowCount, longs, floats);
+    }
+
+    private static void write(File file, long sourceLength, long sourceModified, int rowCount,
+                              Map<String, long[]> longs, Map<String, float[]> floats) throws IOException {
+        ByteBuffer header = buildHeader(sourceLength, sourceModified, rowCount, longs, floats);
+
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+             FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            writeFully(channel, header);
+
+            for (Map.Entry<String, long[]> entry : longs.entrySet()) {
+                ByteBuffer block = ByteBuffer.allocate(rowCount * 8).order(ByteOrder.LITTLE_ENDIAN);
+                block.asLongBuffer().put(entry.getValue(), 0, rowCount);
+                writeFully(channel, block);
+            }
+            for (Map.Entry<String, float[]> entry : floats.entrySet()) {
+                ByteBuffer block = ByteBuffer.allocate(rowCount * 4).order(ByteOrder.LITTLE_ENDIAN);
+                block.asFloatBuffer().put(entry.getValue(), 0, rowCount);
+                writeFully(channel, block);
+            }
+            channel.force(false);
+        }
+
+        // rename replaces the old file in one step, so readers never see it missing
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Failed to rename " + tempFile.getName() + " to " + file.getName());
+        }
+        Log.d(TAG, "Wrote " + file.getName() + ": " + rowCount + " rows, " +
+            (longs.size() + floats.size()) + " columns, " + file.length() + " bytes");
+    }
+
+    /**
+     * Map file read-only and expose its columns as buffer views (no parsing)
+     */
+    public static Columns read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (map.remaining() < 32 || map.getInt() != MAGIC) {
+                throw new IOException("Not a .ppabin file: " + file.getName());
+            }
+            int version = map.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported .ppabin version: " + version);
+            }
+            long sourceLength = map.getLong();
+            long sourceModified = map.getLong();
+            int rowCount = map.getInt();
+            int columnCount = map.getInt();
+
+            byte[] types = new byte[columnCount];
+            String[] names = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                types[i] = map.get();
+                byte[] nameBytes = new byte[map.getShort()];
+                map.get(nameBytes);
+                names[i] = new String(nameBytes, StandardCharsets.UTF_8);
+            }
+
+            int offset = align8(map.position());
+            Map<String, LongBuffer> longColumns = new LinkedHashMap<>();
+            Map<String, FloatBuffer> floatColumns = new LinkedHashMap<>();
+            for (int i = 0; i < columnCount; i++) {
+                int width = types[i] == TYPE_LONG ? 8 : 4;
+                int length = rowCount * width;
+                if (offset + length > map.capacity()) {
+                    throw new IOException("Truncated .ppabin file: " + file.getName());
+                }
+                map.position(offset);
+                ByteBuffer block = map.slice().order(ByteOrder.LITTLE_ENDIAN);
+                block.limit(length);
+                if (types[i] == TYPE_LONG) {
+                    longColumns.put(names[i], block.asLongBuffer());
+                } else {
+                    floatColumns.put(names[i], block.asFloatBuffer());
+                }
+                offset += length;
+            }
+
+            return new Columns(rowCount, sourceLength, sourceModified, longColumns, floatColumns);
+        }
+    }
+
+    private static ByteBuffer buildHeader(long sourceLength, long sourceModified, int rowCount,
+                                          Map<String, long[]> longs, Map<String, float[]> floats) {
+        Map<String, Byte> descriptors = new LinkedHashMap<>();
+        for (String name : longs.keySet()) descriptors.put(name, TYPE_LONG);
+        for (String name : floats.keySet()) descriptors.put(name, TYPE_FLOAT);
+
+        int size = 32;
+        for (String name : descriptors.keySet()) {
+            size += 1 + 2 + name.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(align8(size)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(sourceLength);
+        header.putLong(sourceModified);
+        header.putInt(rowCount);
+        header.putInt(descriptors.size());
+        for (Map.Entry<String, Byte> entry : descriptors.entrySet()) {
+            byte[] nameBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            header.put(entry.getValue());
+            header.putShort((short) nameBytes.length);
+            header.put(nameBytes);
+        }
+        header.position(0);
+        return header;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int align8(int value) {
+        return (value + 7) & ~7;
+    }
+}
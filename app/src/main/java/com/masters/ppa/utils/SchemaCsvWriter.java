@@ -0,0 +1,334 @@
+package com.masters.ppa.utils;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only CSV writer with a stable column schema.
+ *
+ * The key -> column registry is stored next to the CSV (name.schema.json), so appending never
+ * has to re-parse the header. New keys become new trailing columns; when that happens the file
+ * is rewritten once, with the new header and older rows padded with empty fields, so every row
+ * has as many fields as the header.
+ */
+public final class SchemaCsvWriter implements Closeable {
+
+    private static final String TAG = "SchemaCsvWriter";
+
+    public static final String SCHEMA_EXTENSION = ".schema.json";
+
+    private final File csvFile;
+    private final File schemaFile;
+    private final String keyColumn;
+    private final List<String> columns;
+    private final Map<String, Integer> columnIndex = new HashMap<>();
+    private int headerBytes;
+    private boolean schemaDirty;
+    private Writer writer;
+
+    private SchemaCsvWriter(File csvFile, String keyColumn, List<String> columns, int headerBytes) {
+        this.csvFile = csvFile;
+        this.schemaFile = schemaFileFor(csvFile);
+        this.keyColumn = keyColumn;
+        this.columns = columns;
+        this.headerBytes = headerBytes;
+        for (int i = 0; i < columns.size(); i++) {
+            columnIndex.put(columns.get(i), i);
+        }
+    }
+
+    /**
+     * Schema path for a CSV file (station_data.csv -> station_data.schema.json)
+     */
+    public static File schemaFileFor(File csvFile) {
+        String name = csvFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(csvFile.getParentFile(), base + SCHEMA_EXTENSION);
+    }
+
+    /**
+     * Open writer
+     * @param keyColumn Name of the first column (row key, e.g. collectTime)
+     * @param append Continue an existing file; otherwise the file is truncated and the schema reset
+     */
+    public static SchemaCsvWriter open(File csvFile, String keyColumn, boolean append) throws IOException {
+        SchemaCsvWriter csv = null;
+        if (append && csvFile.exists() && csvFile.length() > 0) {
+            csv = loadSchema(csvFile, keyColumn);
+            if (csv == null) {
+                csv = migrateHeader(csvFile, keyColumn);
+            }
+        }
+        if (csv == null) {
+            byte[] header = headerLine(keyColumn, new ArrayList<>());
+            csv = new SchemaCsvWriter(csvFile, keyColumn, new ArrayList<>(), header.length);
+            try (FileOutputStream out = new FileOutputStream(csvFile, false)) {
+                out.write(header);
+            }
+            csv.saveSchema();
+        }
+        csv.openWriter();
+        return csv;
+    }
+
+    /**
+     * Columns after the key column, in file order
+     */
+    public List<String> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * Size of the header line in bytes, including the newline
+     */
+    public int getHeaderBytes() {
+        return headerBytes;
+    }
+
+    /**
+     * Bytes of row data written so far (flushes first); used as offset of the next row
+     */
+    public long getDataLength() throws IOException {
+        flush();
+        return csvFile.length() - headerBytes;
+    }
+
+    /**
+     * Write one row; keys not seen before are appended to the schema
+     * @param keys Column keys, parallel to values (empty keys are ignored)
+     */
+    public void writeRow(String key, String[] keys, String[] values) throws IOException {
+        writer.write(formatRow(key, keys, values));
+    }
+
+    /**
+     * Format one row (with newline) against the schema without writing it, e.g. for splicing
+     * rows into the middle of the file; new keys are registered like in writeRow
+     */
+    public String formatRow(String key, String[] keys, String[] values) {
+        addColumns(keys);
+
+        String[] row = new String[columns.size()];
+        for (int i = 0; i < keys.length; i++) {
+            if (!keys[i].isEmpty()) {
+                row[columnIndex.get(keys[i])] = values[i];
+            }
+        }
+
+        StringBuilder line = new StringBuilder(key);
+        for (String value : row) {
+            line.append(',');
+            if (value != null) {
+                line.append(value);
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    /**
+     * Register keys not seen before as new columns without writing a row
+     */
+    public void addColumns(String[] keys) {
+        for (String column : keys) {
+            if (!column.isEmpty() && !columnIndex.containsKey(column)) {
+                columnIndex.put(column, columns.size());
+                columns.add(column);
+                schemaDirty = true;
+            }
+        }
+    }
+
+    /**
+     * Flush rows and, if columns were added, rewrite the file and schema for the new columns
+     * @return true if the file was rewritten; row offsets taken before (e.g. a CsvDayIndex) are stale
+     */
+    public boolean flush() throws IOException {
+        writer.flush();
+        if (!schemaDirty) {
+            return false;
+        }
+        rewriteForSchema();
+        saveSchema();
+        schemaDirty = false;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void openWriter() throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(csvFile, true), StandardCharsets.UTF_8), 8192);
+    }
+
+    private static byte[] headerLine(String keyColumn, List<String> columns) {
+        StringBuilder header = new StringBuilder(keyColumn);
+        for (String column : columns) {
+            header.append(',').append(column);
+        }
+        return header.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copy the file with the current header, padding rows that predate new columns with
+     * empty fields (values never contain commas); the copy replaces the file in one rename
+     */
+    private void rewriteForSchema() throws IOException {
+        byte[] header = headerLine(keyColumn, columns);
+        int separators = columns.size();
+        Log.d(TAG, "Columns of " + csvFile.getName() + " grew to " + separators + ", rewriting file");
+
+        writer.close();
+        File tempFile = new File(csvFile.getParentFile(), csvFile.getName() + ".tmp");
+        try (InputStream in = new BufferedInputStream(new FileInputStream(csvFile), 65536);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile, false), 65536)) {
+            out.write(header);
+            long skipped = 0;
+            while (skipped < headerBytes && in.read() != -1) {
+                skipped++;
+            }
+            int commas = 0;
+            boolean inRow = false;
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    padRow(out, separators - commas);
+                    out.write('\n');
+                    commas = 0;
+                    inRow = false;
+                    continue;
+                }
+                if (b == ',') {
+                    commas++;
+                }
+                out.write(b);
+                inRow = true;
+            }
+            if (inRow) {
+                padRow(out, separators - commas);
+            }
+        }
+        if (!tempFile.renameTo(csvFile)) {
+            throw new IOException("Failed to replace " + csvFile.getName());
+        }
+        headerBytes = header.length;
+        openWriter();
+    }
+
+    private static void padRow(OutputStream out, int missingFields) throws IOException {
+        for (int i = 0; i < missingFields; i++) {
+            out.write(',');
+        }
+    }
+
+    private void saveSchema() throws IOException {
+        try {
+            JSONObject schema = new JSONObject();
+            schema.put("keyColumn", keyColumn);
+            schema.put("headerBytes", headerBytes);
+            schema.put("columns", new JSONArray(columns));
+            try (FileWriter out = new FileWriter(schemaFile, false)) {
+                out.write(schema.toString());
+            }
+        } catch (JSONException e) {
+            throw new IOException("Failed to write schema: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Load registry from schema file; null if missing, unreadable or not matching the CSV
+     */
+    private static SchemaCsvWriter loadSchema(File csvFile, String keyColumn) {
+        File schemaFile = schemaFileFor(csvFile);
+        if (!schemaFile.exists()) {
+            return null;
+        }
+        try {
+            StringBuilder content = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(schemaFile), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    content.append(line);
+                }
+            }
+            JSONObject schema = new JSONObject(content.toString());
+            int headerBytes = schema.getInt("headerBytes");
+            if (!keyColumn.equals(schema.optString("keyColumn")) || headerBytes <= 0
+                    || csvFile.length() < headerBytes) {
+                return null;
+            }
+            JSONArray array = schema.getJSONArray("columns");
+            List<String> columns = new ArrayList<>();
+            for (int i = 0; i < array.length(); i++) {
+                columns.add(array.getString(i));
+            }
+            return new SchemaCsvWriter(csvFile, keyColumn, columns, headerBytes);
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring unreadable schema " + schemaFile.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Build registry from the header of a file written before the schema file existed
+     */
+    private static SchemaCsvWriter migrateHeader(File csvFile, String keyColumn) throws IOException {
+        String header;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(csvFile), StandardCharsets.UTF_8))) {
+            header = reader.readLine();
+        }
+        if (header == null) {
+            return null;
+        }
+        List<String> columns = new ArrayList<>();
+        for (String name : header.split(",")) {
+            String column = name.trim();
+            if (!column.isEmpty() && !column.equals(keyColumn)) {
+                columns.add(column);
+            }
+        }
+        SchemaCsvWriter csv = new SchemaCsvWriter(csvFile, keyColumn, columns,
+            header.getBytes(StandardCharsets.UTF_8).length + 1);
+        csv.saveSchema();
+        Log.d(TAG, "Created schema for " + csvFile.getName() + " with " + columns.size() + " columns");
+        return csv;
+    }
+}
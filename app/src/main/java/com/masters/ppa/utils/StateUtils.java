@@ -2,6 +2,8 @@ package com.masters.ppa.utils;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import com.google.gson.Gson;
@@ -11,193 +13,454 @@ import com.masters.ppa.data.model.InverterDataGroups;
 import com.masters.ppa.data.model.InverterMetric;
 
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Utility class for saving and loading fragment state using SharedPreferences
+ * Saves and loads fragment state snapshots (latest inverter data, last forecast).
+ *
+ * Each snapshot is a small versioned binary file under files/state, read only when asked for
+ * and written atomically (temp file + rename). All file access runs on one background thread,
+ * so a load always sees the saves queued before it. State kept by older versions in
+ * SharedPreferences is moved over on first use.
  */
 public class StateUtils {
-    
+
     private static final String TAG = "StateUtils";
+
+    private static final String STATE_DIR = "state";
+    private static final String CURRENT_DATA_FILE = "current_data.bin";
+    private static final String FORECAST_DATA_FILE = "forecast_data.bin";
+
+    private static final int MAGIC = 0x50505353; // "PPSS"
+    private static final int VERSION = 1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    // Legacy SharedPreferences state, migrated once
     private static final String PREFS_NAME = "fragment_state_prefs";
-    
-    // Keys for SharedPreferences
     private static final String KEY_CURRENT_DATA = "current_data_json";
     private static final String KEY_CURRENT_DATA_TIMESTAMP = "current_data_timestamp";
     private static final String KEY_FORECAST_DATA = "forecast_data_json";
     private static final String KEY_FORECAST_DATA_TIMESTAMP = "forecast_data_timestamp";
-    
+
+    private static final ExecutorService IO_EXECUTOR = Executors.newSingleThreadExecutor(
+        runnable -> new Thread(runnable, "state-io"));
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    // Only touched on IO_EXECUTOR
+    private static boolean legacyMigrated;
+
+    /**
+     * Receives a loaded snapshot on the main thread
+     */
+    public interface LoadCallback<T> {
+        /**
+         * @param data Saved data, or null if there is none
+         * @param timestamp Save time in millis, or 0 if there is no data
+         */
+        void onLoaded(T data, long timestamp);
+    }
+
+    /**
+     * Snapshot contents with their save time
+     */
+    private static final class Snapshot<T> {
+        final T data;
+        final long timestamp;
+
+        Snapshot(T data, long timestamp) {
+            this.data = data;
+            this.timestamp = timestamp;
+        }
+    }
+
     /**
-     * Save InverterDataGroups to SharedPreferences
+     * Save InverterDataGroups (written in the background)
      */
     public static void saveCurrentData(Context context, InverterDataGroups groups) {
         if (context == null || groups == null) {
             return;
         }
-        
-        try {
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            SharedPreferences.Editor editor = prefs.edit();
-            
-            // Convert InverterDataGroups to JSON
-            JSONObject json = new JSONObject();
-            JSONArray allMetricsArray = new JSONArray();
-            
-            // Save all metrics
-            for (InverterMetric metric : groups.getAllMetrics().values()) {
-                JSONObject metricJson = new JSONObject();
-                metricJson.put("key", metric.getKey() != null ? metric.getKey() : "");
-                metricJson.put("name", metric.getName() != null ? metric.getName() : "");
-                metricJson.put("value", metric.getValue() != null ? metric.getValue() : "");
-                metricJson.put("unit", metric.getUnit() != null ? metric.getUnit() : "");
-                allMetricsArray.put(metricJson);
+        Context appContext = context.getApplicationContext();
+        List<InverterMetric> metrics = new ArrayList<>(groups.getAllMetrics().values());
+        long timestamp = System.currentTimeMillis();
+        IO_EXECUTOR.execute(() -> {
+            migrateLegacyState(appContext);
+            try {
+                writeCurrentData(appContext, metrics, timestamp);
+                Log.d(TAG, "Current data saved: " + metrics.size() + " metrics");
+            } catch (IOException e) {
+                Log.e(TAG, "Error saving current data", e);
             }
-            
-            json.put("metrics", allMetricsArray);
-            
-            editor.putString(KEY_CURRENT_DATA, json.toString());
-            editor.putLong(KEY_CURRENT_DATA_TIMESTAMP, System.currentTimeMillis());
-            editor.apply();
-            
-            Log.d(TAG, "Current data saved: " + allMetricsArray.length() + " metrics");
-        } catch (JSONException e) {
-            Log.e(TAG, "Error saving current data", e);
-        }
+        });
     }
-    
+
     /**
-     * Load InverterDataGroups from SharedPreferences
+     * Load InverterDataGroups in the background
+     * @param callback Called on the main thread
+     */
+    public static void loadCurrentDataAsync(Context context, LoadCallback<InverterDataGroups> callback) {
+        loadAsync(context, StateUtils::readCurrentData, callback);
+    }
+
+    /**
+     * Load InverterDataGroups (blocks on file access; call from a background thread)
      */
     public static InverterDataGroups loadCurrentData(Context context) {
-        if (context == null) {
-            return null;
-        }
-        
-        try {
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            String jsonString = prefs.getString(KEY_CURRENT_DATA, null);
-            
-            if (jsonString == null || jsonString.isEmpty()) {
-                return null;
-            }
-            
-            JSONObject json = new JSONObject(jsonString);
-            JSONArray metricsArray = json.getJSONArray("metrics");
-            
-            // Reconstruct InverterDataGroups
-            InverterDataGroups groups = new InverterDataGroups();
-            for (int i = 0; i < metricsArray.length(); i++) {
-                JSONObject metricJson = metricsArray.getJSONObject(i);
-                InverterMetric metric = new InverterMetric(
-                    metricJson.optString("key", ""),
-                    metricJson.optString("name", ""),
-                    metricJson.optString("value", ""),
-                    metricJson.optString("unit", "")
-                );
-                groups.addMetric(metric);
-            }
-            
-            Log.d(TAG, "Current data loaded: " + metricsArray.length() + " metrics");
-            return groups;
-        } catch (JSONException e) {
-            Log.e(TAG, "Error loading current data", e);
-            return null;
-        }
+        Snapshot<InverterDataGroups> snapshot = loadSync(context, StateUtils::readCurrentData);
+        return snapshot != null ? snapshot.data : null;
     }
-    
+
     /**
-     * Get timestamp of saved current data
+     * Get timestamp of saved current data (blocks on file access; call from a background thread)
      */
     public static long getCurrentDataTimestamp(Context context) {
-        if (context == null) {
-            return 0;
-        }
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        return prefs.getLong(KEY_CURRENT_DATA_TIMESTAMP, 0);
+        return readTimestamp(context, CURRENT_DATA_FILE);
     }
-    
+
     /**
-     * Save GenerationData list to SharedPreferences
+     * Save GenerationData list (written in the background)
      */
     public static void saveForecastData(Context context, List<GenerationData> generationDataList) {
         if (context == null || generationDataList == null) {
             return;
         }
-        
-        try {
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            SharedPreferences.Editor editor = prefs.edit();
-            
-            // Use Gson to serialize list
-            Gson gson = new Gson();
-            String json = gson.toJson(generationDataList);
-            
-            editor.putString(KEY_FORECAST_DATA, json);
-            editor.putLong(KEY_FORECAST_DATA_TIMESTAMP, System.currentTimeMillis());
-            editor.apply();
-            
-            Log.d(TAG, "Forecast data saved: " + generationDataList.size() + " items");
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving forecast data", e);
-        }
+        Context appContext = context.getApplicationContext();
+        List<GenerationData> rows = new ArrayList<>(generationDataList);
+        long timestamp = System.currentTimeMillis();
+        IO_EXECUTOR.execute(() -> {
+            migrateLegacyState(appContext);
+            try {
+                writeForecastData(appContext, rows, timestamp);
+                Log.d(TAG, "Forecast data saved: " + rows.size() + " items");
+            } catch (IOException e) {
+                Log.e(TAG, "Error saving forecast data", e);
+            }
+        });
     }
-    
+
+    /**
+     * Load GenerationData list in the background
+     * @param callback Called on the main thread
+     */
+    public static void loadForecastDataAsync(Context context, LoadCallback<List<GenerationData>> callback) {
+        loadAsync(context, StateUtils::readForecastData, callback);
+    }
+
     /**
-     * Load GenerationData list from SharedPreferences
+     * Load GenerationData list (blocks on file access; call from a background thread)
      */
     public static List<GenerationData> loadForecastData(Context context) {
+        Snapshot<List<GenerationData>> snapshot = loadSync(context, StateUtils::readForecastData);
+        return snapshot != null ? snapshot.data : null;
+    }
+
+    /**
+     * Get timestamp of saved forecast data (blocks on file access; call from a background thread)
+     */
+    public static long getForecastDataTimestamp(Context context) {
+        return readTimestamp(context, FORECAST_DATA_FILE);
+    }
+
+    /**
+     * Drop saved forecast (e.g. after the station model changed)
+     */
+    public static void clearForecastData(Context context) {
+        if (context == null) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        IO_EXECUTOR.execute(() -> {
+            migrateLegacyState(appContext);
+            deleteSnapshot(appContext, FORECAST_DATA_FILE);
+            Log.d(TAG, "Forecast data cleared");
+        });
+    }
+
+    /**
+     * Clear all saved state
+     */
+    public static void clearAllState(Context context) {
+        if (context == null) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        IO_EXECUTOR.execute(() -> {
+            migrateLegacyState(appContext);
+            deleteSnapshot(appContext, CURRENT_DATA_FILE);
+            deleteSnapshot(appContext, FORECAST_DATA_FILE);
+            Log.d(TAG, "All state cleared");
+        });
+    }
+
+    /**
+     * Reads one snapshot file (runs on IO_EXECUTOR)
+     */
+    private interface SnapshotReader<T> {
+        Snapshot<T> read(Context context) throws IOException;
+    }
+
+    private static <T> void loadAsync(Context context, SnapshotReader<T> reader, LoadCallback<T> callback) {
+        if (context == null || callback == null) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        IO_EXECUTOR.execute(() -> {
+            Snapshot<T> snapshot = readSnapshot(appContext, reader);
+            MAIN_HANDLER.post(() -> {
+                if (snapshot != null) {
+                    callback.onLoaded(snapshot.data, snapshot.timestamp);
+                } else {
+                    callback.onLoaded(null, 0);
+                }
+            });
+        });
+    }
+
+    private static <T> Snapshot<T> loadSync(Context context, SnapshotReader<T> reader) {
         if (context == null) {
             return null;
         }
-        
+        Context appContext = context.getApplicationContext();
+        return await(() -> readSnapshot(appContext, reader), null);
+    }
+
+    private static long readTimestamp(Context context, String fileName) {
+        if (context == null) {
+            return 0;
+        }
+        Context appContext = context.getApplicationContext();
+        return await(() -> {
+            migrateLegacyState(appContext);
+            File file = snapshotFile(appContext, fileName);
+            if (!file.exists()) {
+                return 0L;
+            }
+            try (DataInputStream in = openSnapshot(file)) {
+                return in != null ? in.readLong() : 0L;
+            }
+        }, 0L);
+    }
+
+    private static <T> T await(Callable<T> task, T fallback) {
+        Future<T> future = IO_EXECUTOR.submit(task);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback;
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading saved state", e);
+            return fallback;
+        }
+    }
+
+    private static <T> Snapshot<T> readSnapshot(Context context, SnapshotReader<T> reader) {
+        migrateLegacyState(context);
         try {
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-            String jsonString = prefs.getString(KEY_FORECAST_DATA, null);
-            
-            if (jsonString == null || jsonString.isEmpty()) {
+            return reader.read(context);
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading saved state", e);
+            return null;
+        }
+    }
+
+    private static void writeCurrentData(Context context, Collection<InverterMetric> metrics,
+                                         long timestamp) throws IOException {
+        writeSnapshot(snapshotFile(context, CURRENT_DATA_FILE), timestamp, out -> {
+            out.writeInt(metrics.size());
+            for (InverterMetric metric : metrics) {
+                out.writeUTF(metric.getKey() != null ? metric.getKey() : "");
+                out.writeUTF(metric.getName() != null ? metric.getName() : "");
+                out.writeUTF(metric.getValue() != null ? metric.getValue() : "");
+                out.writeUTF(metric.getUnit() != null ? metric.getUnit() : "");
+            }
+        });
+    }
+
+    private static Snapshot<InverterDataGroups> readCurrentData(Context context) throws IOException {
+        File file = snapshotFile(context, CURRENT_DATA_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = openSnapshot(file)) {
+            if (in == null) {
                 return null;
             }
-            
-            // Use Gson to deserialize list
-            Gson gson = new Gson();
-            Type listType = new TypeToken<List<GenerationData>>(){}.getType();
-            List<GenerationData> generationDataList = gson.fromJson(jsonString, listType);
-            
-            Log.d(TAG, "Forecast data loaded: " + (generationDataList != null ? generationDataList.size() : 0) + " items");
-            return generationDataList;
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading forecast data", e);
+            long timestamp = in.readLong();
+            int count = in.readInt();
+            InverterDataGroups groups = new InverterDataGroups();
+            for (int i = 0; i < count; i++) {
+                groups.addMetric(new InverterMetric(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF()));
+            }
+            Log.d(TAG, "Current data loaded: " + count + " metrics");
+            return new Snapshot<>(groups, timestamp);
+        }
+    }
+
+    private static void writeForecastData(Context context, List<GenerationData> rows,
+                                          long timestamp) throws IOException {
+        writeSnapshot(snapshotFile(context, FORECAST_DATA_FILE), timestamp, out -> {
+            out.writeInt(rows.size());
+            for (GenerationData row : rows) {
+                out.writeInt(row.getId());
+                out.writeLong(row.getDate() != null ? row.getDate().getTime() : NO_DATE);
+                out.writeDouble(row.getGenerationKwh());
+                out.writeDouble(row.getPredictedGenerationKwh());
+                out.writeBoolean(row.isActual());
+                out.writeLong(row.getLastUpdated() != null ? row.getLastUpdated().getTime() : NO_DATE);
+            }
+        });
+    }
+
+    private static Snapshot<List<GenerationData>> readForecastData(Context context) throws IOException {
+        File file = snapshotFile(context, FORECAST_DATA_FILE);
+        if (!file.exists()) {
             return null;
         }
+        try (DataInputStream in = openSnapshot(file)) {
+            if (in == null) {
+                return null;
+            }
+            long timestamp = in.readLong();
+            int count = in.readInt();
+            List<GenerationData> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                GenerationData row = new GenerationData();
+                row.setId(in.readInt());
+                long date = in.readLong();
+                row.setDate(date != NO_DATE ? new Date(date) : null);
+                row.setGenerationKwh(in.readDouble());
+                row.setPredictedGenerationKwh(in.readDouble());
+                row.setActual(in.readBoolean());
+                long lastUpdated = in.readLong();
+                row.setLastUpdated(lastUpdated != NO_DATE ? new Date(lastUpdated) : null);
+                rows.add(row);
+            }
+            Log.d(TAG, "Forecast data loaded: " + count + " items");
+            return new Snapshot<>(Collections.unmodifiableList(rows), timestamp);
+        }
     }
-    
+
     /**
-     * Get timestamp of saved forecast data
+     * Writes the body of a snapshot file
      */
-    public static long getForecastDataTimestamp(Context context) {
-        if (context == null) {
-            return 0;
+    private interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Write header (magic, version, timestamp) and body to a temp file, then rename it over file
+     */
+    private static void writeSnapshot(File file, long timestamp, BodyWriter body) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir.getAbsolutePath());
+        }
+        File tempFile = new File(dir, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tempFile, false)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(timestamp);
+            body.write(out);
+        }
+        // Rename replaces the old snapshot in one step, so readers never find it missing
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Failed to rename " + tempFile.getName());
         }
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        return prefs.getLong(KEY_FORECAST_DATA_TIMESTAMP, 0);
     }
-    
+
     /**
-     * Clear all saved state
+     * Open a snapshot positioned at its timestamp, or null if the header does not match
      */
-    public static void clearAllState(Context context) {
-        if (context == null) {
+    private static DataInputStream openSnapshot(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            Log.w(TAG, "Ignoring snapshot with unknown format: " + file.getName());
+            in.close();
+            return null;
+        }
+        return in;
+    }
+
+    private static File snapshotFile(Context context, String fileName) {
+        return new File(new File(context.getFilesDir(), STATE_DIR), fileName);
+    }
+
+    /**
+     * Remove a snapshot for the clear operations (writes replace it by rename instead)
+     */
+    private static void deleteSnapshot(Context context, String fileName) {
+        File file = snapshotFile(context, fileName);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Could not delete snapshot: " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Move state saved in SharedPreferences by older versions into snapshot files
+     * (runs on IO_EXECUTOR, once per process)
+     */
+    private static void migrateLegacyState(Context context) {
+        if (legacyMigrated) {
             return;
         }
+        legacyMigrated = true;
+
         SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getAll().isEmpty()) {
+            return;
+        }
+        try {
+            String currentJson = prefs.getString(KEY_CURRENT_DATA, null);
+            if (currentJson != null && !currentJson.isEmpty()
+                    && !snapshotFile(context, CURRENT_DATA_FILE).exists()) {
+                JSONArray metricsArray = new JSONObject(currentJson).getJSONArray("metrics");
+                List<InverterMetric> metrics = new ArrayList<>(metricsArray.length());
+                for (int i = 0; i < metricsArray.length(); i++) {
+                    JSONObject metricJson = metricsArray.getJSONObject(i);
+                    metrics.add(new InverterMetric(
+                        metricJson.optString("key", ""),
+                        metricJson.optString("name", ""),
+                        metricJson.optString("value", ""),
+                        metricJson.optString("unit", "")
+                    ));
+                }
+                writeCurrentData(context, metrics, prefs.getLong(KEY_CURRENT_DATA_TIMESTAMP, 0));
+            }
+
+            String forecastJson = prefs.getString(KEY_FORECAST_DATA, null);
+            if (forecastJson != null && !forecastJson.isEmpty()
+                    && !snapshotFile(context, FORECAST_DATA_FILE).exists()) {
+                Type listType = new TypeToken<List<GenerationData>>(){}.getType();
+                List<GenerationData> rows = new Gson().fromJson(forecastJson, listType);
+                if (rows != null) {
+                    writeForecastData(context, rows, prefs.getLong(KEY_FORECAST_DATA_TIMESTAMP, 0));
+                }
+            }
+            Log.d(TAG, "Migrated saved state from SharedPreferences");
+        } catch (Exception e) {
+            Log.e(TAG, "Error migrating saved state; dropping it", e);
+        }
         prefs.edit().clear().apply();
-        Log.d(TAG, "All state cleared");
     }
 }
-
@@ -0,0 +1,118 @@
+package com.masters.ppa.data.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * In-flight limit of the shared client for synchronous calls
+ */
+public class HttpClientProviderTest {
+
+    private static final int CALLS = 12;
+
+    private MockWebServer server;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                int current = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(current, Math::max);
+                Thread.sleep(100);
+                inFlight.decrementAndGet();
+                return new MockResponse().setBody("ok");
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void synchronousCalls_areCappedPerHost() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CALLS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < CALLS; i++) {
+                results.add(pool.submit(() -> {
+                    Request request = new Request.Builder().url(server.url("/data")).build();
+                    try (Response response = HttpClientProvider.getClient().newCall(request).execute()) {
+                        return response.code();
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(200, (int) result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(CALLS, server.getRequestCount());
+        assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() <= 4);
+        assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() > 1);
+    }
+
+    @Test
+    public void hostSlot_isHeldUntilBodyIsClosed() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                // Headers arrive at once, the body trickles in
+                return new MockResponse().setBody(new String(new char[1024]).replace('\0', 'x'))
+                    .throttleBody(256, 50, TimeUnit.MILLISECONDS);
+            }
+        });
+        AtomicInteger reading = new AtomicInteger();
+        AtomicInteger maxReading = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(CALLS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < CALLS; i++) {
+                results.add(pool.submit(() -> {
+                    Request request = new Request.Builder().url(server.url("/body")).build();
+                    try (Response response = HttpClientProvider.getClient().newCall(request).execute()) {
+                        maxReading.accumulateAndGet(reading.incrementAndGet(), Math::max);
+                        // Read without closing, so the count drops before the slot is returned
+                        int length = response.body().source().readUtf8().length();
+                        reading.decrementAndGet();
+                        return length;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(1024, (int) result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertTrue("max reading " + maxReading.get(), maxReading.get() <= 4);
+    }
+}
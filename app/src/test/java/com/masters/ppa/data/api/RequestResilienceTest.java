@@ -0,0 +1,161 @@
+package com.masters.ppa.data.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Retry and rate limiting of RequestResilience against a local server
+ */
+public class RequestResilienceTest {
+
+    private MockWebServer server;
+    private final OkHttpClient client = new OkHttpClient();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void retryAfter_isHonouredOn429() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "1"));
+        server.enqueue(new MockResponse().setBody("ok"));
+        RequestResilience resilience = new RequestResilience(null, new TokenBucketRateLimiter(10, 100.0));
+
+        long start = System.currentTimeMillis();
+        String body = resilience.execute("/retry-after", 3, attempt -> call("/retry-after"));
+
+        assertEquals("ok", body);
+        assertEquals(2, server.getRequestCount());
+        assertTrue(System.currentTimeMillis() - start >= 1000);
+    }
+
+    @Test
+    public void clientError_isNotRetried() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(400));
+        server.enqueue(new MockResponse().setBody("ok"));
+        RequestResilience resilience = new RequestResilience(null, new TokenBucketRateLimiter(10, 100.0));
+
+        try {
+            resilience.execute("/bad-request", 3, attempt -> call("/bad-request"));
+            fail("Expected HttpStatusException");
+        } catch (RequestResilience.HttpStatusException e) {
+            assertEquals(400, e.getCode());
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void ioError_isRetriedEvenWhenWrapped() throws Exception {
+        RequestResilience resilience = new RequestResilience(null, new TokenBucketRateLimiter(10, 100.0));
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = resilience.execute("/io", 3, attempt -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new Exception("Request failed", new IOException("connection reset"));
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void otherErrors_areNotRetriedNorCountedForCircuit() throws Exception {
+        RequestResilience resilience = new RequestResilience(null, new TokenBucketRateLimiter(10, 100.0));
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 6; i++) {
+            try {
+                resilience.execute("/invalid", 3, attempt -> {
+                    calls.incrementAndGet();
+                    throw new IllegalArgumentException("Device SN is required");
+                });
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException expected) {
+                // not retried
+            }
+        }
+
+        assertEquals(6, calls.get());
+        assertFalse(resilience.getMetrics().get("/invalid").circuitOpen);
+    }
+
+    @Test
+    public void rejection_isNotRetriedNorCountedForCircuit() throws Exception {
+        RequestResilience resilience = new RequestResilience(null, new TokenBucketRateLimiter(10, 100.0));
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 8; i++) {
+            try {
+                resilience.execute("/rejected", 3, attempt -> {
+                    calls.incrementAndGet();
+                    throw new RequestResilience.ApiRejectedException("range too large");
+                });
+                fail("Expected ApiRejectedException");
+            } catch (RequestResilience.ApiRejectedException expected) {
+                // not retried
+            }
+        }
+
+        assertEquals(8, calls.get());
+        RequestResilience.EndpointMetrics metrics = resilience.getMetrics().get("/rejected");
+        assertEquals(8, metrics.rejected);
+        assertFalse(metrics.circuitOpen);
+    }
+
+    @Test
+    public void attempts_arePacedBySharedLimiter() throws Exception {
+        RequestResilience resilience = new RequestResilience(null, new TokenBucketRateLimiter(1, 10.0));
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 6; i++) {
+            server.enqueue(new MockResponse().setBody("ok"));
+        }
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            resilience.execute("/first", 1, attempt -> {
+                calls.incrementAndGet();
+                return call("/first");
+            });
+            resilience.execute("/second", 1, attempt -> {
+                calls.incrementAndGet();
+                return call("/second");
+            });
+        }
+
+        // One burst permit, then 100 ms per permit across both endpoints
+        assertEquals(6, calls.get());
+        assertTrue(System.currentTimeMillis() - start >= 450);
+    }
+
+    private String call(String path) throws Exception {
+        Request request = new Request.Builder().url(server.url(path)).build();
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new RequestResilience.HttpStatusException(response.code(),
+                    RequestResilience.retryAfterMs(response), "HTTP " + response.code());
+            }
+            return response.body().string();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.masters.ppa.data.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Window splitting and per-day handoff of SolarmanHistoryFetcher against a local server
+ */
+public class SolarmanHistoryFetcherTest {
+
+    private static final long ONE_DAY_MS = SolarmanHistoryFetcher.ONE_DAY_MS;
+
+    private MockWebServer server;
+    private SolarmanHistoryFetcher fetcher;
+    private long firstDay;
+    private final Map<Long, List<SolarmanHistoryParser.HistoryRecord>> stored = new TreeMap<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        RequestResilience resilience = new RequestResilience(null, new TokenBucketRateLimiter(10, 100.0));
+        fetcher = new SolarmanHistoryFetcher(new OkHttpClient(), server.url("/device/v1.0/historical").toString(),
+            resilience, new FixedTokens(), 1L, "SN1", null);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2024, Calendar.MARCH, 4);
+        firstDay = calendar.getTimeInMillis();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void rangeRejection_splitsWindowAndRetriesHalves() throws Exception {
+        long lastDay = firstDay + 3 * ONE_DAY_MS;
+        server.enqueue(new MockResponse().setBody("{\"success\":false,\"msg\":\"time range exceeds the limit\"}"));
+        server.enqueue(new MockResponse().setBody(history(firstDay, firstDay + ONE_DAY_MS)));
+        server.enqueue(new MockResponse().setBody(history(firstDay + 2 * ONE_DAY_MS, lastDay)));
+
+        SolarmanHistoryFetcher.HistoryWindow window = fetcher.fetchWindow(firstDay, lastDay, 1, stored::put);
+
+        assertEquals(3, server.getRequestCount());
+        assertTrue(window.failures.isEmpty());
+        for (long day = firstDay; day <= lastDay; day += ONE_DAY_MS) {
+            assertEquals(1, (int) window.days.get(day));
+            assertEquals(1, stored.get(day).size());
+        }
+
+        RecordedRequest whole = server.takeRequest();
+        assertTrue(whole.getBody().readUtf8().contains("\"endTime\":\"2024-03-07\""));
+        String firstHalf = server.takeRequest().getBody().readUtf8();
+        assertTrue(firstHalf.contains("\"startTime\":\"2024-03-04\""));
+        assertTrue(firstHalf.contains("\"endTime\":\"2024-03-05\""));
+        String secondHalf = server.takeRequest().getBody().readUtf8();
+        assertTrue(secondHalf.contains("\"startTime\":\"2024-03-06\""));
+        assertTrue(secondHalf.contains("\"endTime\":\"2024-03-07\""));
+    }
+
+    @Test
+    public void otherRejection_marksEveryDayFailed() throws Exception {
+        long lastDay = firstDay + 3 * ONE_DAY_MS;
+        server.enqueue(new MockResponse().setBody("{\"success\":false,\"msg\":\"device not found\"}"));
+
+        SolarmanHistoryFetcher.HistoryWindow window = fetcher.fetchWindow(firstDay, lastDay, 1, stored::put);
+
+        assertEquals(1, server.getRequestCount());
+        assertTrue(window.days.isEmpty());
+        assertEquals(4, window.failures.size());
+        assertTrue(stored.isEmpty());
+    }
+
+    @Test
+    public void recordsBeforeFailedEnvelope_areNotHandedOver() throws Exception {
+        // paramDataList ahead of the success flag
+        String history = history(firstDay, firstDay);
+        String body = "{" + history.substring(history.indexOf("\"paramDataList\""), history.length() - 1)
+            + ",\"success\":false,\"msg\":\"device not found\"}";
+        server.enqueue(new MockResponse().setBody(body));
+
+        SolarmanHistoryFetcher.HistoryWindow window = fetcher.fetchWindow(firstDay, firstDay, 1, stored::put);
+
+        assertTrue(stored.isEmpty());
+        assertNotNull(window.failures.get(firstDay));
+    }
+
+    @Test
+    public void emptyDays_areHandedOverAndSinkFailuresStayPerDay() throws Exception {
+        long lastDay = firstDay + 2 * ONE_DAY_MS;
+        server.enqueue(new MockResponse().setBody(history(firstDay, firstDay + ONE_DAY_MS)));
+
+        SolarmanHistoryFetcher.HistoryWindow window = fetcher.fetchWindow(firstDay, lastDay, 1, (day, records) -> {
+            if (day == firstDay + ONE_DAY_MS) {
+                throw new IOException("disk full");
+            }
+            stored.put(day, records);
+        });
+
+        assertEquals(1, (int) window.days.get(firstDay));
+        assertEquals(0, (int) window.days.get(lastDay));
+        assertTrue(stored.get(lastDay).isEmpty());
+        assertEquals(1, window.failures.size());
+        assertTrue(window.failures.containsKey(firstDay + ONE_DAY_MS));
+    }
+
+    /**
+     * Successful response with one record at noon of every day in [fromDay, toDay]
+     */
+    private static String history(long fromDay, long toDay) {
+        StringBuilder body = new StringBuilder("{\"success\":true,\"paramDataList\":[");
+        for (long day = fromDay; day <= toDay; day += ONE_DAY_MS) {
+            if (day > fromDay) {
+                body.append(',');
+            }
+            long collectTime = (day + ONE_DAY_MS / 2) / 1000;
+            body.append("{\"collectTime\":\"").append(collectTime)
+                .append("\",\"dataList\":[{\"key\":\"PVTP\",\"name\":\"PV power\",\"value\":\"1.5\"}]}");
+        }
+        return body.append("]}").toString();
+    }
+
+    private static final class FixedTokens implements SolarmanHistoryFetcher.TokenSource {
+        @Override
+        public String getAccessToken() {
+            return "token";
+        }
+
+        @Override
+        public String refresh(String rejectedToken) {
+            return "token";
+        }
+    }
+}
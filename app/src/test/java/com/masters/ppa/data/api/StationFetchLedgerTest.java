@@ -0,0 +1,98 @@
+package com.masters.ppa.data.api;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Persistence and gap planning of StationFetchLedger
+ */
+public class StationFetchLedgerTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void saveAndLoad_keepStatusAttemptsAndRows() throws Exception {
+        File csv = new File(folder.getRoot(), "station_data.csv");
+        StationFetchLedger ledger = StationFetchLedger.load(csv);
+        ledger.recordFailed("2024-03-04");
+        ledger.recordFetched("2024-03-04", 288);
+        ledger.recordEmpty("2024-03-05");
+        ledger.save();
+
+        assertEquals("station_data.ledger.json", StationFetchLedger.ledgerFileFor(csv).getName());
+        StationFetchLedger loaded = StationFetchLedger.load(csv);
+        StationFetchLedger.DayEntry fetched = loaded.get("2024-03-04");
+        assertEquals(StationFetchLedger.Status.FETCHED, fetched.status);
+        assertEquals(2, fetched.attempts);
+        assertEquals(288, fetched.rowCount);
+        assertEquals(StationFetchLedger.Status.EMPTY, loaded.get("2024-03-05").status);
+        assertNull(loaded.get("2024-03-06"));
+    }
+
+    @Test
+    public void unreadableLedger_loadsEmpty() throws Exception {
+        File csv = new File(folder.getRoot(), "station_data.csv");
+        Files.write(StationFetchLedger.ledgerFileFor(csv).toPath(), "{\"days\":".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(StationFetchLedger.load(csv).get("2024-03-04"));
+    }
+
+    @Test
+    public void planGapDays_retriesMissingInteriorDaysFewestAttemptsFirst() {
+        File csv = new File(folder.getRoot(), "station_data.csv");
+        SortedSet<String> storedDays = new TreeSet<>(Arrays.asList("2024-03-01", "2024-03-03", "2024-03-08"));
+
+        StationFetchLedger ledger = StationFetchLedger.load(csv);
+        ledger.recordFailed("2024-03-02");
+        ledger.recordEmpty("2024-03-04");
+        ledger.recordEmpty("2024-03-04");
+        // Fetched but missing from the store: not planned again
+        ledger.recordFetched("2024-03-05", 10);
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            ledger.recordFailed("2024-03-06");
+        }
+
+        // Never tried first (newest first), then by attempts; given-up and fetched days are left out
+        assertEquals(Arrays.asList("2024-03-07", "2024-03-02", "2024-03-04"),
+            ledger.planGapDays(storedDays, MAX_ATTEMPTS));
+    }
+
+    @Test
+    public void planGapDays_isEmptyWithoutStoredRange() {
+        File csv = new File(folder.getRoot(), "station_data.csv");
+
+        assertTrue(StationFetchLedger.load(csv).planGapDays(new TreeSet<>(), MAX_ATTEMPTS).isEmpty());
+    }
+
+    @Test
+    public void clear_forgetsDaysAndDeletesFile() {
+        File csv = new File(folder.getRoot(), "station_data.csv");
+        StationFetchLedger ledger = StationFetchLedger.load(csv);
+        ledger.recordFetched("2024-03-04", 1);
+        ledger.save();
+
+        ledger.clear();
+
+        assertNull(ledger.get("2024-03-04"));
+        assertFalse(StationFetchLedger.ledgerFileFor(csv).exists());
+    }
+
+    @Test
+    public void addDays_crossesMonthEnds() {
+        assertEquals("2024-03-01", StationFetchLedger.addDays("2024-02-29", 1));
+        assertEquals("2023-12-31", StationFetchLedger.addDays("2024-01-01", -1));
+    }
+}
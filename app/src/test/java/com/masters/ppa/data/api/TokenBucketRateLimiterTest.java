@@ -0,0 +1,40 @@
+package com.masters.ppa.data.api;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketRateLimiterTest {
+
+    @Test
+    public void burst_isImmediate() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(5, 1.0);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+        }
+
+        assertTrue(System.currentTimeMillis() - start < 500);
+    }
+
+    @Test
+    public void permits_arePacedAfterBurst() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, 20.0);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 12; i++) {
+            limiter.acquire();
+        }
+
+        // 2 from the burst, 10 more at 50 ms each
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("elapsed " + elapsed, elapsed >= 450);
+        assertTrue("elapsed " + elapsed, elapsed < 2000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroRate_isRejected() {
+        new TokenBucketRateLimiter(1, 0);
+    }
+}
@@ -0,0 +1,147 @@
+package com.masters.ppa.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Day offsets of CsvDayIndex: rebuild, reuse, trimming and splicing of station CSV files
+ */
+public class CsvDayIndexTest {
+
+    private static final String HEADER = "collectTime,PVTP,SOC\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void load_indexesDaysAndTrimSeeksToTheFirstKeptDay() throws Exception {
+        File csv = write("station.csv", HEADER
+            + "2024-03-04 00:05:00,1,50\n2024-03-04 12:00:00,2,51\n"
+            + "2024-03-05 00:05:00,3,52\n"
+            + "2024-03-06 00:05:00,4,53\n2024-03-06 23:55:00,5,54\n");
+
+        CsvDayIndex index = CsvDayIndex.load(csv);
+
+        assertEquals("2024-03-04", index.getFirstDay());
+        assertEquals("2024-03-06", index.getLastDay());
+        assertTrue(index.containsDay("2024-03-05"));
+        assertTrue(CsvDayIndex.indexFileFor(csv).exists());
+
+        assertTrue(index.trimBefore("2024-03-05"));
+        assertEquals(HEADER + "2024-03-05 00:05:00,3,52\n"
+            + "2024-03-06 00:05:00,4,53\n2024-03-06 23:55:00,5,54\n", read(csv));
+        assertEquals("2024-03-05", index.getFirstDay());
+        assertFalse(index.trimBefore("2024-03-05"));
+    }
+
+    @Test
+    public void savedIndex_isReusedUntilTheCsvChanges() throws Exception {
+        File csv = write("station.csv", HEADER + "2024-03-04 00:05:00,1,50\n2024-03-05 00:05:00,2,51\n");
+        CsvDayIndex.load(csv);
+
+        // Offsets of the saved index still fit, so trimming from a reloaded index works
+        CsvDayIndex reloaded = CsvDayIndex.load(csv);
+        assertTrue(reloaded.trimBefore("2024-03-05"));
+        assertEquals(HEADER + "2024-03-05 00:05:00,2,51\n", read(csv));
+
+        try (FileOutputStream out = new FileOutputStream(csv, true)) {
+            out.write("2024-03-07 00:05:00,3,52\n".getBytes(StandardCharsets.UTF_8));
+        }
+        CsvDayIndex rebuilt = CsvDayIndex.load(csv);
+        assertEquals("2024-03-05", rebuilt.getFirstDay());
+        assertEquals("2024-03-07", rebuilt.getLastDay());
+    }
+
+    @Test
+    public void crlfLinesAndQuotedTimestamps_areIndexedByDay() throws Exception {
+        String header = "\"collectTime\",\"PVTP\"\r\n";
+        File csv = write("station.csv", header
+            + "\"2024-03-04 00:05:00\",\"1,5\"\r\n"
+            + "\r\n"
+            + "\"2024-03-05 00:05:00\",\"2\"\r\n"
+            + "\"2024-03-06 00:05:00\",\"3\"\r\n");
+
+        CsvDayIndex index = CsvDayIndex.load(csv);
+
+        assertEquals("2024-03-04", index.getFirstDay());
+        assertEquals("2024-03-06", index.getLastDay());
+
+        assertTrue(index.trimBefore("2024-03-06"));
+        assertEquals(header + "\"2024-03-06 00:05:00\",\"3\"\r\n", read(csv));
+
+        String[] boundaries = CsvDayIndex.readBoundaryKeys(csv);
+        assertEquals("2024-03-06 00:05:00", boundaries[0]);
+        assertEquals("2024-03-06 00:05:00", boundaries[1]);
+    }
+
+    @Test
+    public void insertDays_splicesMissingDaysInDateOrder() throws Exception {
+        File csv = write("station.csv", HEADER + "2024-03-04 00:05:00,1,50\n2024-03-06 00:05:00,3,52\n");
+        CsvDayIndex index = CsvDayIndex.load(csv);
+
+        TreeMap<String, byte[]> blocks = new TreeMap<>();
+        blocks.put("2024-03-04", bytes("2024-03-04 09:00:00,9,99\n"));
+        blocks.put("2024-03-05", bytes("2024-03-05 00:05:00,2,51\n2024-03-05 12:00:00,2,51\n"));
+        blocks.put("2024-03-07", bytes("2024-03-07 00:05:00,4,53\n"));
+
+        assertTrue(index.insertDays(blocks));
+
+        // Indexed days are left alone, missing ones land in front of the next indexed day
+        assertEquals(HEADER + "2024-03-04 00:05:00,1,50\n"
+            + "2024-03-05 00:05:00,2,51\n2024-03-05 12:00:00,2,51\n"
+            + "2024-03-06 00:05:00,3,52\n"
+            + "2024-03-07 00:05:00,4,53\n", read(csv));
+        assertTrue(index.containsDay("2024-03-05"));
+        assertTrue(index.containsDay("2024-03-07"));
+
+        // Shifted offsets were saved: a reloaded index cuts exactly at the spliced day
+        assertTrue(CsvDayIndex.load(csv).trimBefore("2024-03-05"));
+        assertEquals(HEADER + "2024-03-05 00:05:00,2,51\n2024-03-05 12:00:00,2,51\n"
+            + "2024-03-06 00:05:00,3,52\n"
+            + "2024-03-07 00:05:00,4,53\n", read(csv));
+        blocks.remove("2024-03-04");
+        assertFalse(CsvDayIndex.load(csv).insertDays(blocks));
+    }
+
+    @Test
+    public void dayKey_acceptsUnixTimesAndFormattedTimestamps() {
+        SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        Calendar noon = Calendar.getInstance();
+        noon.clear();
+        noon.set(2024, Calendar.MARCH, 4, 12, 0);
+        long millis = noon.getTimeInMillis();
+
+        assertEquals("2024-03-04", CsvDayIndex.dayKey(String.valueOf(millis / 1000), dayFormat));
+        assertEquals("2024-03-04", CsvDayIndex.dayKey(String.valueOf(millis), dayFormat));
+        assertEquals("2024-03-04", CsvDayIndex.dayKey(" 2024-03-04 12:00:00 ", dayFormat));
+        assertNull(CsvDayIndex.dayKey("", dayFormat));
+        assertNull(CsvDayIndex.dayKey("12:00", dayFormat));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), bytes(content));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
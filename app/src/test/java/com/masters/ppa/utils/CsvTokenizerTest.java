@@ -0,0 +1,101 @@
+package com.masters.ppa.utils;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Record splitting of CsvTokenizer: quoting, empty fields, line endings and buffer refills
+ */
+public class CsvTokenizerTest {
+
+    @Test
+    public void quotedFields_keepCommasEscapedQuotesAndLineBreaks() throws Exception {
+        CsvTokenizer csv = tokenizer("\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",plain\n");
+
+        assertTrue(csv.next());
+        assertArrayEquals(new String[]{"a,b", "say \"hi\"", "two\nlines", "plain"}, csv.toArray());
+        assertFalse(csv.next());
+    }
+
+    @Test
+    public void emptyAndTrailingFields_areKept() throws Exception {
+        CsvTokenizer csv = tokenizer("a,,c,\n,,\n\"\",x\nlast,");
+
+        assertTrue(csv.next());
+        assertArrayEquals(new String[]{"a", "", "c", ""}, csv.toArray());
+        assertTrue(csv.isEmpty(3));
+        assertTrue(csv.next());
+        assertEquals(3, csv.size());
+        assertTrue(csv.isEmpty(0) && csv.isEmpty(1) && csv.isEmpty(2));
+        assertTrue(csv.next());
+        assertArrayEquals(new String[]{"", "x"}, csv.toArray());
+        assertTrue(csv.next());
+        assertArrayEquals(new String[]{"last", ""}, csv.toArray());
+        assertFalse(csv.next());
+    }
+
+    @Test
+    public void crlfAndBlankLines_separateRecords() throws Exception {
+        CsvTokenizer csv = tokenizer("h1,h2\r\n\r\n1,2\r\n\n3,4\r5,6");
+
+        assertTrue(csv.next());
+        assertArrayEquals(new String[]{"h1", "h2"}, csv.toArray());
+        assertTrue(csv.next());
+        assertArrayEquals(new String[]{"1", "2"}, csv.toArray());
+        assertTrue(csv.next());
+        assertArrayEquals(new String[]{"3", "4"}, csv.toArray());
+        assertTrue(csv.next());
+        assertArrayEquals(new String[]{"5", "6"}, csv.toArray());
+        assertFalse(csv.next());
+    }
+
+    @Test
+    public void missingFields_andNumbers() throws Exception {
+        CsvTokenizer csv = tokenizer("1.5, 2 ,abc,\n");
+
+        assertTrue(csv.next());
+        assertEquals(1.5, csv.getDouble(0, -1), 0.0);
+        assertEquals(2.0, csv.getDouble(1, -1), 0.0);
+        assertEquals(-1.0, csv.getDouble(2, -1), 0.0);
+        assertEquals(-1.0, csv.getDouble(3, -1), 0.0);
+        assertEquals("", csv.get(9));
+        assertTrue(csv.isEmpty(9));
+        assertTrue(csv.isEmpty(-1));
+    }
+
+    @Test
+    public void recordsSpanningBufferRefills_areSplitCorrectly() throws Exception {
+        // Put the \r of a CRLF on the last char of the 64K buffer, and a long field across the refill
+        int bufferSize = 64 * 1024;
+        StringBuilder input = new StringBuilder();
+        String longField = repeat('x', bufferSize - 3);
+        input.append(longField).append(",1\r\n");
+        String quoted = repeat('y', 70000);
+        input.append('"').append(quoted).append("\",2\n");
+
+        CsvTokenizer csv = tokenizer(input.toString());
+
+        assertTrue(csv.next());
+        assertEquals(2, csv.size());
+        assertEquals(longField, csv.get(0));
+        assertEquals("1", csv.get(1));
+        assertTrue(csv.next());
+        assertEquals(quoted, csv.get(0));
+        assertEquals("2", csv.get(1));
+        assertFalse(csv.next());
+    }
+
+    private static CsvTokenizer tokenizer(String text) {
+        return new CsvTokenizer(new StringReader(text));
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
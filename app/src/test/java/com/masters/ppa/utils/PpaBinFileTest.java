@@ -0,0 +1,132 @@
+package com.masters.ppa.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Write -> map -> read round trip of PpaBinFile column blocks
+ */
+public class PpaBinFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void columns_readBackAlignedWithOddColumnAndRowCounts() throws Exception {
+        int rows = 5;
+        Map<String, long[]> longs = new LinkedHashMap<>();
+        longs.put("time", new long[]{1_700_000_000_000L, 1_700_003_600_000L, 1_700_007_200_000L, -1L, Long.MAX_VALUE});
+        longs.put("day", new long[]{19_675, 19_675, 19_676, 0, 1});
+        longs.put("flags", new long[]{1, 0, 1, 0, 1});
+        Map<String, float[]> floats = new LinkedHashMap<>();
+        floats.put("temperature", new float[]{-3.5f, 0f, 12.25f, Float.NaN, 40f});
+        // Non-ASCII name changes the header length, so the first block needs padding
+        floats.put("radiation_Вт", new float[]{0f, 120.5f, 860f, 1f, 2f});
+        floats.put("cloud", new float[]{100f, 50f, 0f, 25f, 75f});
+
+        File file = new File(folder.getRoot(), "weather.ppabin");
+        PpaBinFile.write(file, rows, longs, floats);
+        PpaBinFile.Columns columns = PpaBinFile.read(file);
+
+        assertEquals(rows, columns.getRowCount());
+        for (Map.Entry<String, long[]> entry : longs.entrySet()) {
+            LongBuffer column = columns.getLongColumn(entry.getKey());
+            assertEquals(rows, column.remaining());
+            for (int i = 0; i < rows; i++) {
+                assertEquals(entry.getKey() + "[" + i + "]", entry.getValue()[i], column.get(i));
+            }
+        }
+        for (Map.Entry<String, float[]> entry : floats.entrySet()) {
+            FloatBuffer column = columns.getFloatColumn(entry.getKey());
+            assertEquals(rows, column.remaining());
+            for (int i = 0; i < rows; i++) {
+                assertEquals(entry.getKey() + "[" + i + "]", entry.getValue()[i], column.get(i), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void longerArrays_writeOnlyRowCountValues() throws Exception {
+        Map<String, long[]> longs = new LinkedHashMap<>();
+        longs.put("time", new long[]{10, 20, 30, 40});
+        Map<String, float[]> floats = new LinkedHashMap<>();
+        floats.put("value", new float[]{1f, 2f, 3f, 4f});
+
+        File file = new File(folder.getRoot(), "weather.ppabin");
+        PpaBinFile.write(file, 3, longs, floats);
+        PpaBinFile.Columns columns = PpaBinFile.read(file);
+
+        assertEquals(3, columns.getLongColumn("time").remaining());
+        assertEquals(30, columns.getLongColumn("time").get(2));
+        assertEquals(3f, columns.getFloatColumn("value").get(2), 0f);
+    }
+
+    @Test
+    public void sourceStamp_detectsChangedSource() throws Exception {
+        File source = folder.newFile("weather.csv");
+        Files.write(source.toPath(), "time,value\n1,2\n".getBytes(StandardCharsets.UTF_8));
+        File file = PpaBinFile.sidecarFor(source);
+        assertEquals("weather.ppabin", file.getName());
+
+        PpaBinFile.write(file, source, 1, single("time", 1L), new LinkedHashMap<>());
+        assertTrue(PpaBinFile.read(file).matchesSource(source));
+
+        Files.write(source.toPath(), "time,value\n1,2\n3,4\n".getBytes(StandardCharsets.UTF_8));
+        assertFalse(PpaBinFile.read(file).matchesSource(source));
+    }
+
+    @Test
+    public void missingColumn_throws() throws Exception {
+        File file = new File(folder.getRoot(), "weather.ppabin");
+        PpaBinFile.write(file, 1, single("time", 1L), new LinkedHashMap<>());
+
+        try {
+            PpaBinFile.read(file).getFloatColumn("time");
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            // Columns are typed; a long column is not served as float
+        }
+    }
+
+    @Test
+    public void truncatedOrForeignFiles_areRejected() throws Exception {
+        File file = new File(folder.getRoot(), "weather.ppabin");
+        PpaBinFile.write(file, 4, single("time", 1L, 2L, 3L, 4L), new LinkedHashMap<>());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 8);
+        }
+        assertReadFails(file);
+
+        File foreign = folder.newFile("foreign.ppabin");
+        Files.write(foreign.toPath(), new byte[64]);
+        assertReadFails(foreign);
+    }
+
+    private static Map<String, long[]> single(String name, long... values) {
+        Map<String, long[]> columns = new LinkedHashMap<>();
+        columns.put(name, values);
+        return columns;
+    }
+
+    private static void assertReadFails(File file) {
+        try {
+            PpaBinFile.read(file);
+            fail("Expected IOException for " + file.getName());
+        } catch (IOException expected) {
+            // Rejected before any column is exposed
+        }
+    }
+}
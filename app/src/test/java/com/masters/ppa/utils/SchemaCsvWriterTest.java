@@ -0,0 +1,130 @@
+package com.masters.ppa.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Column registry, padding and appending of SchemaCsvWriter
+ */
+public class SchemaCsvWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void newKeys_becomeTrailingColumnsAndOlderRowsArePadded() throws Exception {
+        File csv = new File(folder.getRoot(), "station.csv");
+        try (SchemaCsvWriter writer = SchemaCsvWriter.open(csv, "collectTime", false)) {
+            writer.writeRow("t1", keys("PVTP", "SOC"), values("1", "50"));
+            assertTrue(writer.flush());
+            writer.writeRow("t2", keys("SOC", "AP1"), values("51", "200"));
+            assertTrue(writer.flush());
+            writer.writeRow("t3", keys("PVTP"), values("3"));
+            assertFalse(writer.flush());
+            assertEquals(Arrays.asList("PVTP", "SOC", "AP1"), writer.getColumns());
+        }
+
+        assertEquals("collectTime,PVTP,SOC,AP1\nt1,1,50,\nt2,,51,200\nt3,3,,\n", read(csv));
+    }
+
+    @Test
+    public void dataLength_isTheOffsetOfTheNextRow() throws Exception {
+        File csv = new File(folder.getRoot(), "station.csv");
+        try (SchemaCsvWriter writer = SchemaCsvWriter.open(csv, "collectTime", false)) {
+            writer.addColumns(keys("PVTP"));
+            writer.flush();
+            assertEquals(0, writer.getDataLength());
+            writer.writeRow("t1", keys("PVTP"), values("1"));
+            long offset = writer.getDataLength();
+            writer.writeRow("t2", keys("PVTP"), values("2"));
+            writer.flush();
+
+            byte[] content = Files.readAllBytes(csv.toPath());
+            String next = new String(content, (int) (writer.getHeaderBytes() + offset),
+                content.length - writer.getHeaderBytes() - (int) offset, StandardCharsets.UTF_8);
+            assertEquals("t2,2\n", next);
+            assertEquals("collectTime,PVTP\n".length(), writer.getHeaderBytes());
+        }
+    }
+
+    @Test
+    public void append_reusesTheStoredSchema() throws Exception {
+        File csv = new File(folder.getRoot(), "station.csv");
+        try (SchemaCsvWriter writer = SchemaCsvWriter.open(csv, "collectTime", false)) {
+            writer.writeRow("t1", keys("PVTP", "SOC"), values("1", "50"));
+        }
+        assertTrue(SchemaCsvWriter.schemaFileFor(csv).exists());
+
+        try (SchemaCsvWriter writer = SchemaCsvWriter.open(csv, "collectTime", true)) {
+            assertEquals(Arrays.asList("PVTP", "SOC"), writer.getColumns());
+            // Keys in another order still land in their columns
+            writer.writeRow("t2", keys("SOC", "PVTP"), values("51", "2"));
+            assertFalse(writer.flush());
+        }
+
+        assertEquals("collectTime,PVTP,SOC\nt1,1,50\nt2,2,51\n", read(csv));
+    }
+
+    @Test
+    public void append_withoutSchemaTakesColumnsFromTheHeader() throws Exception {
+        File csv = folder.newFile("station.csv");
+        Files.write(csv.toPath(), "collectTime,PVTP,SOC\nt1,1,50\n".getBytes(StandardCharsets.UTF_8));
+
+        try (SchemaCsvWriter writer = SchemaCsvWriter.open(csv, "collectTime", true)) {
+            assertEquals(Arrays.asList("PVTP", "SOC"), writer.getColumns());
+            assertEquals("collectTime,PVTP,SOC\n".length(), writer.getHeaderBytes());
+            writer.writeRow("t2", keys("AP1"), values("200"));
+        }
+
+        assertEquals("collectTime,PVTP,SOC,AP1\nt1,1,50,\nt2,,,200\n", read(csv));
+        assertTrue(SchemaCsvWriter.schemaFileFor(csv).exists());
+    }
+
+    @Test
+    public void openWithoutAppend_truncatesFileAndSchema() throws Exception {
+        File csv = new File(folder.getRoot(), "station.csv");
+        try (SchemaCsvWriter writer = SchemaCsvWriter.open(csv, "collectTime", false)) {
+            writer.writeRow("t1", keys("PVTP"), values("1"));
+        }
+
+        try (SchemaCsvWriter writer = SchemaCsvWriter.open(csv, "collectTime", false)) {
+            assertTrue(writer.getColumns().isEmpty());
+            writer.writeRow("t2", keys("SOC"), values("50"));
+        }
+
+        assertEquals("collectTime,SOC\nt2,50\n", read(csv));
+    }
+
+    @Test
+    public void formatRow_registersKeysWithoutWriting() throws Exception {
+        File csv = new File(folder.getRoot(), "station.csv");
+        try (SchemaCsvWriter writer = SchemaCsvWriter.open(csv, "collectTime", false)) {
+            writer.addColumns(keys("PVTP", "", "SOC"));
+            assertEquals("t1,,50\n", writer.formatRow("t1", keys("SOC", ""), values("50", "ignored")));
+            assertEquals(Arrays.asList("PVTP", "SOC"), writer.getColumns());
+        }
+
+        assertEquals("collectTime,PVTP,SOC\n", read(csv));
+    }
+
+    private static String[] keys(String... keys) {
+        return keys;
+    }
+
+    private static String[] values(String... values) {
+        return values;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}